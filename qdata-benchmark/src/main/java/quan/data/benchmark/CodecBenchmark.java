@@ -0,0 +1,96 @@
+package quan.data.benchmark;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.openjdk.jmh.annotations.*;
+import quan.data.DataRegistry;
+import quan.data.EntityCodecProvider;
+import quan.data.Transaction;
+import quan.data.benchmark.player.ItemBean;
+import quan.data.benchmark.player.PlayerData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编解码器查找和{@link quan.data.Entity#toJson()}的基准测试
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    /**
+     * 是否预先注册生成的编解码器
+     */
+    @Param({"true", "false"})
+    public boolean registered;
+
+    private DataRegistry dataRegistry;
+
+    private PlayerData playerData;
+
+    @Setup
+    public void setup() {
+        dataRegistry = DataRegistry.load("quan.data.benchmark");
+        if (registered) {
+            EntityCodecProvider.DEFAULT_PROVIDER.register(dataRegistry);
+        }
+
+        Transaction.run(() -> {
+            playerData = new PlayerData(1L);
+            playerData.setName("player1").setLevel(10).setExp(1000).setGold(99999).setVip(true);
+            playerData.setItem(new ItemBean(1, 1, 0));
+            for (int i = 1; i <= 20; i++) {
+                playerData.getItems().put(i, new ItemBean(i, i * 10, System.currentTimeMillis()));
+                playerData.getFriends().add((long) i);
+                playerData.getLogs().add("log" + i);
+            }
+        });
+    }
+
+    @Benchmark
+    public String toJson() {
+        return playerData.toJson();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Codec<PlayerData> lookup() {
+        return EntityCodecProvider.DEFAULT_PROVIDER.get(PlayerData.class, EntityCodecProvider.DEFAULT_REGISTRY);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 1000, batchSize = 1)
+    @Warmup(iterations = 100, batchSize = 1)
+    public Codec<PlayerData> firstLookup(FreshProvider fresh) {
+        return fresh.provider.get(PlayerData.class, fresh.codecRegistry);
+    }
+
+    /**
+     * 每次调用都使用新的提供者，测量第一次查找编解码器的开销，只有{@link #firstLookup(FreshProvider)}使用，
+     * 不会影响其他基准测试
+     */
+    @State(Scope.Thread)
+    public static class FreshProvider {
+
+        private EntityCodecProvider provider;
+
+        private CodecRegistry codecRegistry;
+
+        @Setup(Level.Invocation)
+        public void setup(CodecBenchmark benchmark) {
+            provider = new EntityCodecProvider();
+            if (benchmark.registered) {
+                provider.register(benchmark.dataRegistry);
+            }
+            codecRegistry = CodecRegistries.fromProviders(provider);
+        }
+
+    }
+
+}
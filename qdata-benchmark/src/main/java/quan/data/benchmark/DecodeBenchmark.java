@@ -0,0 +1,112 @@
+package quan.data.benchmark;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import quan.data.EntityCodecProvider;
+import quan.data.Transaction;
+import quan.data.benchmark.player.ItemBean;
+import quan.data.benchmark.player.PlayerData;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询结果解码的基准测试，对比直接用CodecImpl解码和先保留为{@link RawBsonDocument}再按需读取或解码
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    private static final int COUNT = 1000;
+
+    private static final DecoderContext decoderContext = DecoderContext.builder().build();
+
+    /**
+     * 每条数据的集合字段元素数量
+     */
+    @Param({"5", "50"})
+    public int size;
+
+    private Codec<PlayerData> codec;
+
+    /**
+     * 模拟驱动从网络读到的文档
+     */
+    private byte[][] documents;
+
+    @Setup
+    public void setup() {
+        codec = EntityCodecProvider.DEFAULT_REGISTRY.get(PlayerData.class);
+        documents = new byte[COUNT][];
+
+        Transaction.run(() -> {
+            for (int i = 0; i < COUNT; i++) {
+                PlayerData playerData = new PlayerData((long) i);
+                playerData.setName("player" + i).setLevel(i % 100).setExp(i * 10L).setGold(99999).setVip(i % 2 == 0);
+                playerData.setItem(new ItemBean(1, 1, 0));
+                for (int j = 1; j <= size; j++) {
+                    playerData.getItems().put(j, new ItemBean(j, j * 10, System.currentTimeMillis()));
+                    playerData.getFriends().add((long) j);
+                    playerData.getLogs().add("log" + j);
+                }
+
+                BasicOutputBuffer buffer = new BasicOutputBuffer();
+                try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+                    codec.encode(writer, playerData, EncoderContext.builder().build());
+                }
+                documents[i] = buffer.toByteArray();
+            }
+        });
+    }
+
+    /**
+     * 现在的查询路径，驱动直接解码成数据对象
+     */
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void decode(Blackhole blackhole) {
+        for (byte[] document : documents) {
+            try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(document))) {
+                blackhole.consume(codec.decode(reader, decoderContext));
+            }
+        }
+    }
+
+    /**
+     * 只保留原始文档，再读取一个字段，例如按字段过滤
+     */
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void rawField(Blackhole blackhole) {
+        for (byte[] document : documents) {
+            RawBsonDocument rawDocument = new RawBsonDocument(document.clone());
+            blackhole.consume(rawDocument.getInt32(PlayerData.LEVEL).getValue());
+        }
+    }
+
+    /**
+     * 保留原始文档之后再从它的缓冲区解码成数据对象
+     */
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void rawDecode(Blackhole blackhole) {
+        for (byte[] document : documents) {
+            RawBsonDocument rawDocument = new RawBsonDocument(document.clone());
+            try (BsonBinaryReader reader = new BsonBinaryReader(rawDocument.getByteBuffer().asNIO())) {
+                blackhole.consume(codec.decode(reader, decoderContext));
+            }
+        }
+    }
+
+}
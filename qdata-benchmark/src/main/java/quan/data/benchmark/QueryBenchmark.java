@@ -0,0 +1,76 @@
+package quan.data.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import quan.data.DataCache;
+import quan.data.Transaction;
+import quan.data.benchmark.player.PlayerData;
+import quan.data.query.Query;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地查询的基准测试，缓存中的数据量远大于{@link Query#PARALLEL_THRESHOLD}，
+ * 对比走内存索引的查询和并行扫描全部数据的查询
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    /**
+     * 缓存中的数据量
+     */
+    @Param({"100000"})
+    public int size;
+
+    @Setup
+    public void setup() {
+        Transaction.run(() -> {
+            for (long i = 1; i <= size; i++) {
+                DataCache.put(new PlayerData(i).setName("player" + i).setLevel((int) (i % 100)).setExp(i * 10).setGold(i % 1000));
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataCache.clear(PlayerData.class);
+    }
+
+    /**
+     * 等值条件走哈希索引
+     */
+    @Benchmark
+    public int indexEq() {
+        return Query.of(PlayerData.class).eq(PlayerData.LEVEL, 50).count();
+    }
+
+    /**
+     * 范围条件走有序索引
+     */
+    @Benchmark
+    public int indexRange() {
+        return Query.of(PlayerData.class).gte(PlayerData.LEVEL, 10).lt(PlayerData.LEVEL, 12).count();
+    }
+
+    /**
+     * 没有索引的字段并行扫描全部数据
+     */
+    @Benchmark
+    public int parallelScan() {
+        return Query.of(PlayerData.class).eq(PlayerData.GOLD, 500L).count();
+    }
+
+    /**
+     * 并行扫描之后排序取前几个
+     */
+    @Benchmark
+    public List<PlayerData> parallelScanTop() {
+        return Query.of(PlayerData.class).gt(PlayerData.GOLD, 900L).desc(PlayerData.EXP).limit(10).list();
+    }
+
+}
@@ -0,0 +1,235 @@
+package quan.data.benchmark;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+import quan.data.Data;
+import quan.data.DataAccessor;
+import quan.data.DataCodec;
+import quan.data.Entity;
+import quan.data.EntityCodecProvider;
+import quan.data.Transaction;
+import quan.data.benchmark.shape.*;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同结构的文档的编解码和更新补丁基准测试，测试数据类由definition/shape.xml生成，不需要数据库<br/>
+ * flat:只有基本类型字段，compact:紧凑模式的flat，deep:多层嵌套Bean，map:大集合字段
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class ShapeBenchmark {
+
+    private static final EncoderContext encoderContext = EncoderContext.builder().build();
+
+    private static final DecoderContext decoderContext = DecoderContext.builder().build();
+
+    /**
+     * 只生成更新补丁，不写数据库
+     */
+    private static final DataAccessor accessor = new DataAccessor() {
+
+        @Override
+        public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+            return null;
+        }
+
+        @Override
+        public <D extends Data<?>> Iterable<D> find(Class<D> clazz, Map<String, Object> conditions) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+        }
+
+    };
+
+    @Param({"flat", "compact", "deep", "map"})
+    public String shape;
+
+    /**
+     * 所有字段都修改过的数据
+     */
+    private Data<?> data;
+
+    private Codec codec;
+
+    private byte[] bson;
+
+    private String json;
+
+    private byte[] binary;
+
+    private BasicOutputBuffer outputBuffer;
+
+    @Setup
+    public void setup() {
+        //长整数用超过int范围的值，否则宽松模式的JSON解析时会被当成int
+        long base = 1L << 40;
+
+        //不在事务中创建，修改过的字段会一直保留，用来生成更新补丁
+        Transaction.setLocalOptional(true);
+        try {
+            switch (shape) {
+                case "flat":
+                    data = newFlatData(base);
+                    break;
+                case "compact":
+                    data = newCompactFlatData(base);
+                    break;
+                case "deep":
+                    data = newDeepData(base);
+                    break;
+                default:
+                    data = newMapData(base);
+            }
+        } finally {
+            Transaction.setLocalOptional(false);
+        }
+
+        codec = EntityCodecProvider.DEFAULT_REGISTRY.get(data.getClass());
+        outputBuffer = new BasicOutputBuffer(1024);
+        encode();
+        bson = outputBuffer.toByteArray();
+        json = data.toJson();
+        binary = data.toBinary();
+
+        if (getPatch() == null) {
+            throw new IllegalStateException("没有生成更新补丁");
+        }
+    }
+
+    private static FlatData newFlatData(long base) {
+        FlatData flatData = new FlatData(base);
+        flatData.setName("player").setTitle("title").setLevel(100).setExp(base + 1).setGold(base + 2).setDiamond(base + 3);
+        flatData.setVip(true).setVipLevel((short) 5).setPower(123456).setSpeed(1.5F).setRate(0.25D);
+        flatData.setLoginTime(base + 4).setLogoutTime(base + 5).setSignature("signature").setGuild(10).setStage(20);
+        return flatData;
+    }
+
+    private static CompactFlatData newCompactFlatData(long base) {
+        CompactFlatData flatData = new CompactFlatData(base);
+        flatData.setName("player").setTitle("title").setLevel(100).setExp(base + 1).setGold(base + 2).setDiamond(base + 3);
+        flatData.setVip(true).setVipLevel((short) 5).setPower(123456).setSpeed(1.5F).setRate(0.25D);
+        flatData.setLoginTime(base + 4).setLogoutTime(base + 5).setSignature("signature").setGuild(10).setStage(20);
+        return flatData;
+    }
+
+    private static LeafBean newLeafBean(int id, long base) {
+        return new LeafBean(id, "leaf" + id, base + id);
+    }
+
+    private static MiddleBean newMiddleBean(int id, long base) {
+        MiddleBean middleBean = new MiddleBean();
+        middleBean.setId(id).setLeaf(newLeafBean(id, base));
+        for (int i = 1; i <= 5; i++) {
+            middleBean.getLeaves().add(newLeafBean(i, base));
+        }
+        return middleBean;
+    }
+
+    private static TopBean newTopBean(int id, long base) {
+        TopBean topBean = new TopBean();
+        topBean.setId(id).setMiddle(newMiddleBean(id, base));
+        for (int i = 1; i <= 5; i++) {
+            topBean.getMiddles().add(newMiddleBean(i, base));
+        }
+        return topBean;
+    }
+
+    private static DeepData newDeepData(long base) {
+        DeepData deepData = new DeepData(base);
+        deepData.setTop(newTopBean(0, base));
+        for (int i = 1; i <= 10; i++) {
+            deepData.getTops().put(i, newTopBean(i, base));
+        }
+        return deepData;
+    }
+
+    private static MapData newMapData(long base) {
+        MapData mapData = new MapData(base);
+        for (int i = 1; i <= 1000; i++) {
+            mapData.getLeaves().put(i, newLeafBean(i, base));
+            mapData.getCounts().put(i, base + i);
+            mapData.getNames().put("name" + i, i);
+            mapData.getTags().add("tag" + i);
+        }
+        return mapData;
+    }
+
+    @Benchmark
+    public int encode() {
+        outputBuffer.truncateToPosition(0);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(outputBuffer)) {
+            codec.encode(writer, data, encoderContext);
+        }
+        return outputBuffer.getPosition();
+    }
+
+    @Benchmark
+    public Object decode() {
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bson))) {
+            return codec.decode(reader, decoderContext);
+        }
+    }
+
+    @Benchmark
+    public String toJson() {
+        return data.toJson();
+    }
+
+    @Benchmark
+    public Object parseJson() {
+        return Entity.parseJson(data.getClass(), json);
+    }
+
+    @Benchmark
+    public byte[] toBinary() {
+        return data.toBinary();
+    }
+
+    @Benchmark
+    public Object parseBinary() {
+        return Entity.parseBinary(data.getClass(), binary);
+    }
+
+    /**
+     * 生成字段名:字段值的更新补丁
+     */
+    @Benchmark
+    public Map<String, Object> getPatch() {
+        return accessor.getPatch(data);
+    }
+
+    /**
+     * 直接把更新补丁编码成BSON
+     */
+    @Benchmark
+    public int encodePatch() {
+        outputBuffer.truncateToPosition(0);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(outputBuffer)) {
+            writer.writeStartDocument();
+            writer.writeStartDocument("$set");
+            ((DataCodec) codec).encodePatch(writer, data, encoderContext);
+            writer.writeEndDocument();
+            writer.writeEndDocument();
+        }
+        return outputBuffer.getPosition();
+    }
+
+}
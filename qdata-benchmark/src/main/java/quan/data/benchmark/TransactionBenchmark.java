@@ -0,0 +1,150 @@
+package quan.data.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import quan.data.Transaction;
+import quan.data.benchmark.player.ItemBean;
+import quan.data.benchmark.player.PlayerData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存事务的基准测试，事务中的操作包含了开启和提交事务的开销，需要减去{@link #emptyTransaction()}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionBenchmark {
+
+    /**
+     * 集合字段的元素数量
+     */
+    @Param({"10", "1000"})
+    public int size;
+
+    private PlayerData playerData;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        playerData = Transaction.run(() -> {
+            PlayerData playerData = new PlayerData(1L);
+            playerData.setName("player1").setLevel(10).setExp(1000).setGold(99999);
+            for (int i = 1; i <= size; i++) {
+                playerData.getItems().put(i, new ItemBean(i, i, 0));
+                playerData.getFriends().add((long) i);
+                playerData.getLogs().add("log" + i);
+            }
+            return playerData;
+        });
+    }
+
+    /**
+     * 不在事务中修改数据
+     */
+    @State(Scope.Thread)
+    public static class OptionalState {
+
+        @Setup
+        public void setup() {
+            Transaction.setLocalOptional(true);
+        }
+
+        @TearDown
+        public void tearDown() {
+            Transaction.setLocalOptional(false);
+        }
+
+    }
+
+    @Benchmark
+    public void emptyTransaction() {
+        Transaction.run(() -> {
+        });
+    }
+
+    @Benchmark
+    public int getOutside() {
+        return playerData.getLevel();
+    }
+
+    @Benchmark
+    public int getInside() {
+        return Transaction.run(() -> playerData.getLevel());
+    }
+
+    @Benchmark
+    public void setOutside(OptionalState optional) {
+        playerData.setLevel(++counter & 0xFF);
+    }
+
+    @Benchmark
+    public void setInside() {
+        Transaction.run(() -> {
+            playerData.setLevel(++counter & 0xFF);
+        });
+    }
+
+    @Benchmark
+    public void nested() {
+        Transaction.run(() -> {
+            playerData.setLevel(++counter & 0xFF);
+            Transaction.run(() -> {
+                playerData.setGold(counter);
+            }, true);
+        });
+    }
+
+    /**
+     * 内嵌事务失败回滚，外层事务继续提交
+     */
+    @Benchmark
+    public void nestedRollback() {
+        Transaction.run(() -> {
+            playerData.setLevel(++counter & 0xFF);
+            Transaction.run(() -> {
+                playerData.setGold(counter);
+                Transaction.rollback();
+            }, true);
+        });
+    }
+
+    @Benchmark
+    public void listMutation() {
+        Transaction.run(() -> {
+            playerData.getLogs().add("log");
+            playerData.getLogs().remove(playerData.getLogs().size() - 1);
+        });
+    }
+
+    @Benchmark
+    public void setMutation() {
+        Transaction.run(() -> {
+            playerData.getFriends().add(-1L);
+            playerData.getFriends().remove(-1L);
+        });
+    }
+
+    @Benchmark
+    public void mapMutation() {
+        Transaction.run(() -> {
+            int key = ++counter % size + 1;
+            playerData.getItems().put(key, new ItemBean(key, counter, 0));
+        });
+    }
+
+    @Benchmark
+    public long mapIteration() {
+        return Transaction.run(() -> {
+            long count = 0;
+            for (ItemBean itemBean : playerData.getItems().values()) {
+                count += itemBean.getCount();
+            }
+            return count;
+        });
+    }
+
+}
@@ -1,7 +1,6 @@
 package quan.data;
 
 import java.util.*;
-import java.util.function.BiConsumer;
 
 /**
  * 数据类对应一张表，每个数据实例对应表中的一行
@@ -19,11 +18,21 @@ public abstract class Data<I> implements Entity {
 
     State state;
 
+    /**
+     * 数据被放进缓存后所在的表，参考{@link DataCache}
+     */
+    DataCache.Table<?> cacheTable;
+
     /**
      * 修改过的字段编号
      */
     protected final BitSet _updatedFields = new BitSet();
 
+    /**
+     * 只加载了部分字段时已加载的字段编号，为空时代表加载了全部字段
+     */
+    BitSet loadedFields;
+
     public static DataAccessor _getDefaultAccessor() {
         return defaultAccessor;
     }
@@ -40,20 +49,72 @@ public abstract class Data<I> implements Entity {
         }
     }
 
+    /**
+     * 数据类的所有字段名，下标加1就是字段在数据中的位置
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> fields(Class<? extends Data<?>> clazz) {
+        try {
+            return (List<String>) clazz.getField("_FIELDS").get(clazz);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * 主键ID
      */
     public abstract I id();
 
     /**
-     * 不在事务中需要设置存取器时通过反射引用此方法
+     * 通过字段位置获取字段值，由生成的代码调用字段的getter实现
+     *
+     * @param position 字段位置，参考{@link #fields(Class)}
+     */
+    public abstract Object _getFieldValue(int position);
+
+    /**
+     * 数据库查询出来的数据不在事务中设置存取器，给存取器的实现调用
      */
-    @SuppressWarnings("unused")
-    private static final BiConsumer<Data<?>, DataAccessor> _setAccessor = (data, accessor) -> {
+    public static void _setAccessor(Data<?> data, DataAccessor accessor) {
         data.accessor = accessor;
         data.state = State.UPDATE;
-    };
+    }
+
+    /**
+     * 查询时只加载了部分字段需要标记，给存取器的实现调用
+     */
+    public static void _setLoadedFields(Data<?> data, BitSet loadedFields) {
+        data.loadedFields = loadedFields;
+    }
+
+    /**
+     * 是否只加载了部分字段，部分加载的数据不能插入和放进缓存，也不能访问未加载的字段
+     */
+    public final boolean isPartial() {
+        return loadedFields != null;
+    }
+
+    /**
+     * 字段是否已加载
+     *
+     * @param position 字段位置，参考{@link #fields(Class)}
+     */
+    public final boolean isLoaded(int position) {
+        return loadedFields == null || loadedFields.get(position);
+    }
 
+    /**
+     * 由生成的代码在访问字段之前调用，未加载的字段不能访问
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected final void _checkLoaded(int position) {
+        if (loadedFields != null && !loadedFields.get(position)) {
+            List<String> fields = fields((Class) getClass());
+            String field = fields == null ? String.valueOf(position) : fields.get(position - 1);
+            throw new IllegalStateException(String.format("数据[%s(%s)]只加载了部分字段，不能访问未加载的字段[%s]", getClass().getName(), id(), field));
+        }
+    }
 
     private void _setAccessor(Transaction transaction, DataAccessor accessor, State state) {
         State oldState = this.state;
@@ -99,6 +160,9 @@ public abstract class Data<I> implements Entity {
      */
     public final void insert(DataAccessor accessor) {
         Objects.requireNonNull(accessor, "参数[accessor]不能为空");
+        if (loadedFields != null) {
+            throw new IllegalStateException(String.format("数据[%s(%s)]只加载了部分字段，不能插入", getClass().getName(), id()));
+        }
 
         Transaction transaction = Transaction.get();
         if (transaction != null) {
@@ -131,7 +195,7 @@ public abstract class Data<I> implements Entity {
             _setAccessor(transaction, accessor, State.UPDATE);
         } else if (Transaction.isOptional()) {
             this.accessor = accessor;
-            Map<String, Object> patch = _getPatch();
+            Map<String, Object> patch = accessor.getPatch(this);
             if (patch != null) {
                 _updatedFields.clear();
                 Map<Data<?>, Map<String, Object>> updates = new HashMap<>();
@@ -201,10 +265,20 @@ public abstract class Data<I> implements Entity {
             this.accessor = null;
             this.state = null;
             this._updatedFields.clear();
+            if (cacheTable != null) {
+                cacheTable.remove(this);
+            }
         } else {
             this.accessor = log.accessor;
             this.state = State.UPDATE;
+            if (loadedFields != null) {
+                //部分加载的数据不能覆盖未加载的字段
+                log.updatedFields.and(loadedFields);
+            }
             this._updatedFields.or(log.updatedFields);
+            if (cacheTable != null) {
+                cacheTable.update(this, log.updatedFields);
+            }
         }
     }
 
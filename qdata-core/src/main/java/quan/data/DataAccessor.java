@@ -32,10 +32,31 @@ public interface DataAccessor {
      *
      * @param inserts 要插入的数据
      * @param deletes 要删除的数据
-     * @param updates 要更新的数据和更新补丁，参考{@link Data#_getPatch()}
+     * @param updates 要更新的数据和更新补丁，参考{@link #getPatch(Data)}
      */
     void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates);
 
+    /**
+     * 内存事务提交之前检查要写的数据，在提交修改的线程上调用，这时还在事务中，读到的是事务中的字段值<br/>
+     * 抛出异常时事务失败，内存中的修改都不会生效，异常会抛给开启事务的调用者，例如检查数据库的唯一约束
+     *
+     * @param inserts 要插入的数据
+     * @param deletes 要删除的数据
+     * @param updates 要更新的数据
+     */
+    default void validate(Set<Data<?>> inserts, Set<Data<?>> deletes, Set<Data<?>> updates) {
+    }
+
+    /**
+     * 生成数据修改过的字段的更新补丁，在提交修改的线程上调用<br/>
+     * 默认是字段名:字段值，存取器可以返回编码好的{@link EncodedPatch}，写入时直接使用编码好的更新文档
+     *
+     * @return 没有修改过的字段时返回空
+     */
+    default Map<String, Object> getPatch(Data<?> data) {
+        return data._getPatch();
+    }
+
     /**
      * 插入数据，参考{@link Data#insert(DataAccessor)}
      */
@@ -0,0 +1,421 @@
+package quan.data;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 常驻内存的数据缓存，按数据类分表存放，并且根据数据类上的{@link Index}注解建立内存索引<br/>
+ * 事务提交时根据修改过的字段增量维护索引，数据被删除时自动移出缓存<br/>
+ * 只有从数据库查询出来或者已经插入过的数据在事务中的修改才会同步到索引，
+ * 不在事务中修改数据时，只有开启了{@link Transaction#isOptional()}的修改才会同步到索引<br/>
+ * 唯一索引冲突时会拒绝修改，事务中的修改在提交之前检查，冲突时事务失败
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class DataCache {
+
+    private static final Map<Class<?>, Table<?>> tables = new ConcurrentHashMap<>();
+
+    /**
+     * 唯一索引的检查和修改串行执行，事务提交之前检查通过后一直持有到事务结束
+     */
+    private static final ReentrantLock uniqueLock = new ReentrantLock();
+
+    /**
+     * 注册数据类，建立它的内存索引，文本索引会被忽略
+     */
+    public static <D extends Data<?>> Table<D> register(Class<D> clazz) {
+        return (Table<D>) tables.computeIfAbsent(clazz, k -> new Table<>(clazz));
+    }
+
+    public static boolean isRegistered(Class<? extends Data<?>> clazz) {
+        return tables.containsKey(clazz);
+    }
+
+    /**
+     * 获取指定数据类的缓存表，未注册时返回空
+     */
+    public static <D extends Data<?>> Table<D> getTable(Class<D> clazz) {
+        return (Table<D>) tables.get(clazz);
+    }
+
+    static Collection<Table<?>> getTables() {
+        return tables.values();
+    }
+
+    private static <D extends Data<?>> Table<D> checkTable(Class<D> clazz) {
+        Table<D> table = (Table<D>) tables.get(clazz);
+        if (table == null) {
+            throw new IllegalArgumentException("数据类[" + clazz.getName() + "]未注册");
+        }
+        return table;
+    }
+
+    /**
+     * 把数据放进缓存，数据类未注册时会自动注册，部分加载的数据不能放进缓存
+     */
+    public static void put(Data<?> data) {
+        Objects.requireNonNull(data, "参数[data]不能为空");
+        if (data.isPartial()) {
+            throw new IllegalArgumentException(String.format("数据[%s(%s)]只加载了部分字段，不能放进缓存", data.getClass().getName(), data.id()));
+        }
+        register((Class) data.getClass()).put(data);
+    }
+
+    /**
+     * 把数据移出缓存
+     */
+    public static void remove(Data<?> data) {
+        Objects.requireNonNull(data, "参数[data]不能为空");
+        if (data.cacheTable != null) {
+            data.cacheTable.remove(data);
+        }
+    }
+
+    public static boolean contains(Data<?> data) {
+        return data != null && data.cacheTable != null;
+    }
+
+    /**
+     * 通过主键查询缓存中的数据
+     */
+    public static <D extends Data<I>, I> D get(Class<D> clazz, I id) {
+        Table<D> table = (Table<D>) tables.get(clazz);
+        return table == null ? null : table.get(id);
+    }
+
+    /**
+     * 缓存中指定数据类的所有数据
+     */
+    public static <D extends Data<?>> Collection<D> getAll(Class<D> clazz) {
+        Table<D> table = (Table<D>) tables.get(clazz);
+        return table == null ? Collections.emptyList() : table.getAll();
+    }
+
+    /**
+     * 获取指定数据类的内存索引
+     */
+    public static <D extends Data<?>> MemoryIndex<D> getIndex(Class<D> clazz, String indexName) {
+        MemoryIndex<D> index = checkTable(clazz).getIndex(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException(String.format("数据类[%s]的索引[%s]不存在", clazz.getName(), indexName));
+        }
+        return index;
+    }
+
+    /**
+     * 通过索引等值查询缓存中的数据
+     *
+     * @param values 所有索引字段的值，和索引字段一一对应
+     * @see MemoryIndex#find(Object...)
+     */
+    public static <D extends Data<?>> Set<D> find(Class<D> clazz, String indexName, Object... values) {
+        return getIndex(clazz, indexName).find(values);
+    }
+
+    /**
+     * 通过索引按字段范围查询缓存中的数据，该字段必须是某个索引的第一个字段
+     *
+     * @see MemoryIndex#findRange(Object, boolean, Object, boolean)
+     */
+    public static <D extends Data<?>> List<D> findRange(Class<D> clazz, String field, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        MemoryIndex<D> index = checkTable(clazz).getLeadingIndex(field);
+        if (index == null) {
+            throw new IllegalArgumentException(String.format("数据类[%s]的字段[%s]不是索引的第一个字段", clazz.getName(), field));
+        }
+        return index.findRange(from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * 清空指定数据类的缓存
+     */
+    public static void clear(Class<? extends Data<?>> clazz) {
+        Table<?> table = tables.get(clazz);
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    /**
+     * 事务提交之前检查缓存中的数据修改之后唯一索引是否冲突，这时读到的是事务中的字段值<br/>
+     * 同一个事务中删除的数据和修改了索引字段的数据让出的索引键可以被其他数据使用
+     *
+     * @throws IllegalStateException 唯一索引冲突
+     */
+    static void validate(Map<Data<?>, Data.Log> dataLogs) {
+        //唯一索引:新的索引键:数据
+        Map<MemoryIndex, Map<Object, Data<?>>> newKeys = null;
+
+        for (Data<?> data : dataLogs.keySet()) {
+            Table<?> table = data.cacheTable;
+            Data.Log log = dataLogs.get(data);
+            if (table == null || table.uniqueIndexes.isEmpty() || log.state == Data.State.DELETE) {
+                continue;
+            }
+
+            for (MemoryIndex index : table.uniqueIndexes) {
+                if (!index.isUpdated(log.updatedFields)) {
+                    continue;
+                }
+                if (newKeys == null) {
+                    newKeys = new HashMap<>();
+                }
+                Object key = index.newKey(data);
+                Data<?> other = newKeys.computeIfAbsent(index, k -> new HashMap<>()).putIfAbsent(key, data);
+                if (other != null) {
+                    throw new IllegalStateException(String.format("数据[%s(%s)]和[%s(%s)]的唯一索引[%s]冲突:%s",
+                            data.getClass().getName(), data.id(), other.getClass().getName(), other.id(), index.getName(), key));
+                }
+            }
+        }
+
+        if (newKeys == null) {
+            return;
+        }
+
+        uniqueLock.lock();
+        try {
+            for (MemoryIndex index : newKeys.keySet()) {
+                for (Map.Entry<Object, Data<?>> entry : newKeys.get(index).entrySet()) {
+                    Data<?> data = entry.getValue();
+                    for (Object value : index.get(entry.getKey())) {
+                        Data.Log log = dataLogs.get(value);
+                        if (value != data && (log == null || log.state != Data.State.DELETE && !index.isUpdated(log.updatedFields))) {
+                            throw new IllegalStateException(String.format("数据[%s(%s)]的唯一索引[%s]冲突:%s",
+                                    data.getClass().getName(), data.id(), index.getName(), entry.getKey()));
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            uniqueLock.unlock();
+            throw e;
+        }
+
+        Transaction.onFinished(uniqueLock::unlock);
+    }
+
+    /**
+     * 一个数据类对应的缓存表
+     */
+    public static class Table<D extends Data<?>> {
+
+        private final Class<D> clazz;
+
+        private final List<String> fields;
+
+        /**
+         * 主键:数据
+         */
+        private final Map<Object, D> rows = new ConcurrentHashMap<>();
+
+        private final Map<String, MemoryIndex<D>> indexes = new LinkedHashMap<>();
+
+        private final List<MemoryIndex<D>> uniqueIndexes = new ArrayList<>();
+
+        /**
+         * 被索引的所有字段位置
+         */
+        private final BitSet indexedFields = new BitSet();
+
+        /**
+         * 预热快照中还没有解码的数据
+         */
+        private volatile WarmSnapshot.Section<D> section;
+
+        private Table(Class<D> clazz) {
+            this.clazz = clazz;
+            this.fields = Data.fields(clazz);
+
+            Index[] annotations = clazz.getAnnotationsByType(Index.class);
+            if (annotations.length > 0 && fields == null) {
+                throw new IllegalArgumentException(clazz.getName() + "._FIELDS未定义");
+            }
+
+            for (Index annotation : annotations) {
+                if (annotation.type() == Index.Type.TEXT) {
+                    continue;
+                }
+                MemoryIndex<D> index = new MemoryIndex<>(annotation, fields);
+                indexes.put(index.getName(), index);
+                if (index.getType() == Index.Type.UNIQUE) {
+                    uniqueIndexes.add(index);
+                }
+                for (int position : index.getPositions()) {
+                    indexedFields.set(position);
+                }
+            }
+        }
+
+        public Class<D> getDataClass() {
+            return clazz;
+        }
+
+        public Collection<MemoryIndex<D>> getIndexes() {
+            return Collections.unmodifiableCollection(indexes.values());
+        }
+
+        public MemoryIndex<D> getIndex(String indexName) {
+            return indexes.get(indexName);
+        }
+
+        /**
+         * 获取以指定字段开头的索引
+         */
+        public MemoryIndex<D> getLeadingIndex(String field) {
+            for (MemoryIndex<D> index : indexes.values()) {
+                if (index.getFields().get(0).equals(field)) {
+                    return index;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 唯一索引冲突时抛出异常，不会放进缓存
+         */
+        void put(Data<?> data) {
+            if (uniqueIndexes.isEmpty()) {
+                put0((D) data);
+                return;
+            }
+
+            uniqueLock.lock();
+            try {
+                put0((D) data);
+            } finally {
+                uniqueLock.unlock();
+            }
+        }
+
+        private void put0(D data) {
+            Object id = Objects.requireNonNull(data.id(), "数据主键不能为空");
+
+            //相同主键的旧数据会被替换掉，不算冲突
+            D old = rows.get(id);
+            for (MemoryIndex<D> index : uniqueIndexes) {
+                index.checkUnique(data, index.newKey(data), old);
+            }
+
+            WarmSnapshot.Section<D> section = this.section;
+            if (section != null) {
+                section.discard(id);
+            }
+
+            old = rows.put(id, data);
+            if (old != null && old != data) {
+                remove0(old);
+            }
+
+            data.cacheTable = this;
+            for (MemoryIndex<D> index : indexes.values()) {
+                index.update(data, false);
+            }
+        }
+
+        void remove(Data<?> data) {
+            D d = (D) data;
+            rows.remove(d.id(), d);
+            remove0(d);
+        }
+
+        private void remove0(D data) {
+            data.cacheTable = null;
+            for (MemoryIndex<D> index : indexes.values()) {
+                index.remove(data);
+            }
+        }
+
+        /**
+         * 事务提交后根据修改过的字段更新索引
+         */
+        void update(Data<?> data, BitSet updatedFields) {
+            if (!updatedFields.intersects(indexedFields)) {
+                return;
+            }
+            //唯一索引已经在提交之前检查过了
+            for (MemoryIndex<D> index : indexes.values()) {
+                if (index.isUpdated(updatedFields)) {
+                    index.update((D) data, false);
+                }
+            }
+        }
+
+        /**
+         * 不在事务中修改数据字段后更新索引，唯一索引冲突时抛出异常，字段已经修改了，但是索引不会修改
+         */
+        void update(Data<?> data, int position) {
+            if (!indexedFields.get(position)) {
+                return;
+            }
+
+            uniqueLock.lock();
+            try {
+                for (MemoryIndex<D> index : uniqueIndexes) {
+                    if (index.contains(position)) {
+                        index.checkUnique((D) data, index.newKey((D) data), null);
+                    }
+                }
+                for (MemoryIndex<D> index : indexes.values()) {
+                    if (index.contains(position)) {
+                        index.update((D) data, false);
+                    }
+                }
+            } finally {
+                uniqueLock.unlock();
+            }
+        }
+
+        public D get(Object id) {
+            D data = rows.get(id);
+            WarmSnapshot.Section<D> section = this.section;
+            if (data == null && section != null) {
+                data = section.materialize(id);
+            }
+            return data;
+        }
+
+        D getRow(Object id) {
+            return rows.get(id);
+        }
+
+        public Collection<D> getAll() {
+            materializeAll();
+            return Collections.unmodifiableCollection(rows.values());
+        }
+
+        public int size() {
+            materializeAll();
+            return rows.size();
+        }
+
+        void setSection(WarmSnapshot.Section<D> section) {
+            this.section = section;
+        }
+
+        void removeSection(WarmSnapshot.Section<D> section) {
+            if (this.section == section) {
+                this.section = null;
+            }
+        }
+
+        /**
+         * 解码预热快照中剩下的所有数据
+         */
+        void materializeAll() {
+            WarmSnapshot.Section<D> section = this.section;
+            if (section != null) {
+                section.materializeAll();
+            }
+        }
+
+        void clear() {
+            section = null;
+            rows.values().forEach(d -> d.cacheTable = null);
+            rows.clear();
+            indexes.values().forEach(MemoryIndex::clear);
+        }
+
+    }
+
+}
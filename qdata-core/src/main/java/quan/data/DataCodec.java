@@ -0,0 +1,19 @@
+package quan.data;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * 生成的数据类编解码器，除了编码完整的数据之外还可以只编码修改过的字段
+ */
+public interface DataCodec<D extends Data<?>> extends Codec<D> {
+
+    /**
+     * 把修改过的字段直接写成更新文档($set)的内容，不经过{@link Data#_getPatch()}的中间映射
+     *
+     * @return 是否有修改过的字段
+     */
+    boolean encodePatch(BsonWriter writer, D value, EncoderContext encoderContext);
+
+}
@@ -0,0 +1,81 @@
+package quan.data;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+import quan.data.binary.BinaryCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+
+/**
+ * 数据类注册表，由代码生成器在包前缀下生成实现类{@link #CLASS_NAME}，启动时不用再扫描类路径<br/>
+ * 生成代码时指定了资源路径会同时注册成{@link ServiceLoader}的服务，数据类所在的包和包前缀没有包含关系时也能找到
+ */
+public interface DataRegistry {
+
+    /**
+     * 生成的实现类的简单类名
+     */
+    String CLASS_NAME = "DataRegistryImpl";
+
+    /**
+     * 所有的数据类
+     */
+    List<Class<? extends Data<?>>> getDataClasses();
+
+    /**
+     * 数据类:表名
+     */
+    Map<Class<? extends Data<?>>, String> getDataNames();
+
+    /**
+     * 实体类:编解码器构造方法，包含数据类和Bean
+     */
+    Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> getCodecFactories();
+
+    /**
+     * 实体类:二进制编解码器
+     */
+    Map<Class<? extends Entity>, BinaryCodec<?>> getBinaryCodecs();
+
+    /**
+     * 加载数据类所在包对应的注册表，从这个包开始逐级向上查找包前缀下生成的实现类，
+     * 找不到时再通过{@link ServiceLoader}查找生成代码时注册的服务<br/>
+     * 注册表所在的包比数据类所在的包大时，只保留这个包下的数据类
+     *
+     * @param packageName 数据类所在的包名，为空时加载所有的注册表
+     * @return 没有生成注册表时返回空
+     */
+    static DataRegistry load(String packageName) {
+        String prefix = packageName == null ? "" : packageName;
+        while (true) {
+            DataRegistry registry = loadClass(prefix.isEmpty() ? CLASS_NAME : prefix + "." + CLASS_NAME);
+            if (registry != null) {
+                return PackageDataRegistry.of(packageName, List.of(registry));
+            }
+            if (prefix.isEmpty()) {
+                break;
+            }
+            prefix = prefix.contains(".") ? prefix.substring(0, prefix.lastIndexOf('.')) : "";
+        }
+
+        List<DataRegistry> registries = new ArrayList<>();
+        ServiceLoader.load(DataRegistry.class).forEach(registries::add);
+        return PackageDataRegistry.of(packageName, registries);
+    }
+
+    private static DataRegistry loadClass(String className) {
+        try {
+            Class<?> registryClass = Class.forName(className);
+            return (DataRegistry) registryClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            throw new IllegalStateException("加载数据类注册表[" + className + "]失败", e);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package quan.data;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 通过{@link DataCodec#encodePatch}直接编码好的更新补丁，不经过{@link Data#_getPatch()}的中间映射<br/>
+ * 作为更新补丁读取时仍然是字段名:字段值，字段值是编码后的{@link BsonValue}，
+ * 存取器可以通过{@link #getUpdate()}直接使用编码好的更新文档
+ */
+public final class EncodedPatch extends AbstractMap<String, Object> {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    /**
+     * 包含$set的更新文档
+     */
+    private final RawBsonDocument update;
+
+    private final RawBsonDocument set;
+
+    private EncodedPatch(RawBsonDocument update) {
+        this.update = update;
+        this.set = (RawBsonDocument) update.get("$set");
+    }
+
+    /**
+     * 使用生成的编解码器编码数据修改过的字段，编解码器不是{@link DataCodec}时返回{@link Data#_getPatch()}
+     *
+     * @return 没有修改过的字段时返回空
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Map<String, Object> of(Data<?> data, CodecRegistry registry) {
+        Codec<?> codec = registry.get(data.getClass());
+        if (!(codec instanceof DataCodec)) {
+            return data._getPatch();
+        }
+
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        boolean patched;
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+            writer.writeStartDocument("$set");
+            patched = ((DataCodec) codec).encodePatch(writer, data, ENCODER_CONTEXT);
+            writer.writeEndDocument();
+            writer.writeEndDocument();
+        }
+
+        return patched ? new EncodedPatch(new RawBsonDocument(buffer.getInternalBuffer(), 0, buffer.getPosition())) : null;
+    }
+
+    /**
+     * 包含$set的更新文档
+     */
+    public RawBsonDocument getUpdate() {
+        return update;
+    }
+
+    /**
+     * $set的内容，字段名:编码后的字段值
+     */
+    public RawBsonDocument getSet() {
+        return set;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return set.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return set.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return set.size();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return Collections.<String, Object>unmodifiableMap(set).entrySet();
+    }
+
+}
@@ -1,35 +1,83 @@
 package quan.data;
 
-import org.bson.codecs.Codec;
-import org.bson.codecs.DecoderContext;
-import org.bson.codecs.EncoderContext;
 import org.bson.json.JsonReader;
-import org.bson.json.JsonWriter;
+import quan.data.binary.BinaryCodecs;
+import quan.data.binary.BinaryWriter;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 public interface Entity {
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     default String toJson() {
-        try (StringWriter stringWriter = new StringWriter()) {
-            JsonWriter jsonWriter = new JsonWriter(stringWriter);
-            Codec codec = EntityCodecProvider.DEFAULT_REGISTRY.get(getClass());
-            codec.encode(jsonWriter, this, EncoderContext.builder().build());
-            return stringWriter.toString();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        StringWriter writer = new StringWriter();
+        EntityJson.encode(this, writer);
+        return writer.toString();
+    }
+
+    /**
+     * 把JSON直接写入{@link Appendable}，不产生中间字符串
+     */
+    default void toJson(Appendable out) {
+        EntityJson.encode(this, out);
+    }
+
+    /**
+     * 把JSON编码成UTF-8直接写入输出流，不会刷新和关闭输出流
+     */
+    default void toJson(OutputStream out) {
+        EntityJson.encode(this, out);
+    }
+
+    /**
+     * 把JSON编码成UTF-8写入缓冲区的当前位置
+     *
+     * @throws java.nio.BufferOverflowException 缓冲区空间不够
+     */
+    default void toJson(ByteBuffer buffer) {
+        EntityJson.encode(this, buffer);
     }
 
     static <T extends Entity> T parseJson(Class<T> clazz, String json) {
-        Objects.requireNonNull(clazz);
         Objects.requireNonNull(json);
-        try (JsonReader reader = new JsonReader(json)) {
-            Codec<T> codec = EntityCodecProvider.DEFAULT_REGISTRY.get(clazz);
-            return codec.decode(reader, DecoderContext.builder().build());
-        }
+        return EntityJson.decode(clazz, new JsonReader(json));
+    }
+
+    /**
+     * 从字符流读取JSON，不会关闭字符流
+     */
+    static <T extends Entity> T parseJson(Class<T> clazz, Reader reader) {
+        return EntityJson.decode(clazz, reader);
+    }
+
+    /**
+     * 从UTF-8编码的输入流读取JSON，不会关闭输入流
+     */
+    static <T extends Entity> T parseJson(Class<T> clazz, InputStream in) {
+        Objects.requireNonNull(in);
+        return EntityJson.decode(clazz, new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 编码成紧凑的二进制格式
+     *
+     * @see quan.data.binary.BinaryCodec
+     */
+    default byte[] toBinary() {
+        BinaryWriter writer = new BinaryWriter();
+        BinaryCodecs.encode(writer, this);
+        return writer.toBytes();
+    }
+
+    static <T extends Entity> T parseBinary(Class<T> clazz, byte[] bytes) {
+        Objects.requireNonNull(bytes);
+        return BinaryCodecs.decode(clazz, ByteBuffer.wrap(bytes));
     }
 
 }
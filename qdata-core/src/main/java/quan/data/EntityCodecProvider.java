@@ -7,10 +7,15 @@ import org.bson.codecs.configuration.CodecRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
-
+/**
+ * 实体类的编解码器提供者，可以被多个线程同时使用<br/>
+ * 通过{@link #register(DataRegistry)}预先注册生成的编解码器构造方法后不再需要反射，
+ * 没有注册的实体类第一次使用时才通过反射创建编解码器
+ */
 @SuppressWarnings("unchecked")
 public class EntityCodecProvider implements CodecProvider {
 
@@ -20,7 +25,12 @@ public class EntityCodecProvider implements CodecProvider {
 
     public static final CodecRegistry DEFAULT_REGISTRY = CodecRegistries.fromProviders(DEFAULT_PROVIDER);
 
-    private Map<Class<?>, Codec<?>> codecs = new HashMap<>();
+    private final Map<Class<?>, Codec<?>> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * 实体类:编解码器构造方法
+     */
+    private final Map<Class<?>, Function<CodecRegistry, Codec<?>>> codecFactories = new ConcurrentHashMap<>();
 
     public EntityCodecProvider() {
     }
@@ -29,25 +39,39 @@ public class EntityCodecProvider implements CodecProvider {
         codecs.put(codec.getEncoderClass(), codec);
     }
 
+    /**
+     * 注册生成的编解码器构造方法，并且预先创建好所有的编解码器
+     */
+    public void register(DataRegistry registry) {
+        codecFactories.putAll(registry.getCodecFactories());
+
+        CodecRegistry codecRegistry = this == DEFAULT_PROVIDER ? DEFAULT_REGISTRY : CodecRegistries.fromProviders(this);
+        registry.getCodecFactories().forEach((clazz, codecFactory) -> codecs.computeIfAbsent(clazz, k -> codecFactory.apply(codecRegistry)));
+    }
+
     @Override
     public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
-        if (!Entity.class.isAssignableFrom(clazz)) {
-            return null;
+        Codec<T> codec = (Codec<T>) codecs.get(clazz);
+        if (codec != null || !Entity.class.isAssignableFrom(clazz)) {
+            return codec;
         }
 
-        Codec<T> codec = (Codec<T>) codecs.get(clazz);
+        return (Codec<T>) codecs.computeIfAbsent(clazz, k -> newCodec(k, registry));
+    }
 
-        if (codec == null) {
-            try {
-                Class<?> codecClass = Class.forName(clazz.getName() + "$CodecImpl");
-                codec = (Codec<T>) codecClass.getDeclaredConstructor(CodecRegistry.class).newInstance(registry);
-                addCodec(codec);
-            } catch (Exception e) {
-                logger.error("", e);
-            }
+    private Codec<?> newCodec(Class<?> clazz, CodecRegistry registry) {
+        Function<CodecRegistry, Codec<?>> codecFactory = codecFactories.get(clazz);
+        if (codecFactory != null) {
+            return codecFactory.apply(registry);
         }
 
-        return codec;
+        try {
+            Class<?> codecClass = Class.forName(clazz.getName() + "$CodecImpl");
+            return (Codec<?>) codecClass.getDeclaredConstructor(CodecRegistry.class).newInstance(registry);
+        } catch (Exception e) {
+            logger.error("", e);
+            return null;
+        }
     }
 
 }
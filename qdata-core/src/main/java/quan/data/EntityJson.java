@@ -0,0 +1,138 @@
+package quan.data;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import quan.data.util.Utf8Writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 实体的流式JSON编解码，编解码上下文和UTF-8写入器在同一个线程里重复使用
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+final class EntityJson {
+
+    static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    /**
+     * 正在使用时为空，嵌套调用时会创建新的写入器
+     */
+    private static final ThreadLocal<Utf8Writer> utf8Writers = new ThreadLocal<>();
+
+    private EntityJson() {
+    }
+
+    static void encode(Entity entity, Writer writer) {
+        Codec codec = EntityCodecProvider.DEFAULT_REGISTRY.get(entity.getClass());
+        codec.encode(new JsonWriter(writer), entity, ENCODER_CONTEXT);
+    }
+
+    static void encode(Entity entity, Appendable out) {
+        Objects.requireNonNull(out);
+        encode(entity, out instanceof Writer ? (Writer) out : new AppendableWriter(out));
+    }
+
+    static void encode(Entity entity, OutputStream out) {
+        Objects.requireNonNull(out);
+        Utf8Writer writer = acquireWriter();
+        try {
+            encode(entity, writer.reset(out));
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            utf8Writers.set(writer);
+        }
+    }
+
+    static void encode(Entity entity, ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        Utf8Writer writer = acquireWriter();
+        try {
+            encode(entity, writer.reset(buffer));
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            utf8Writers.set(writer);
+        }
+    }
+
+    private static Utf8Writer acquireWriter() {
+        Utf8Writer writer = utf8Writers.get();
+        if (writer == null) {
+            return new Utf8Writer();
+        }
+        utf8Writers.set(null);
+        return writer;
+    }
+
+    static <T extends Entity> T decode(Class<T> clazz, JsonReader reader) {
+        Objects.requireNonNull(clazz);
+        try (reader) {
+            Codec<T> codec = EntityCodecProvider.DEFAULT_REGISTRY.get(clazz);
+            return codec.decode(reader, DECODER_CONTEXT);
+        }
+    }
+
+    static <T extends Entity> T decode(Class<T> clazz, Reader reader) {
+        Objects.requireNonNull(reader);
+        return decode(clazz, new JsonReader(reader));
+    }
+
+    /**
+     * 把{@link Appendable}适配成{@link Writer}
+     */
+    private static class AppendableWriter extends Writer {
+
+        private final Appendable out;
+
+        AppendableWriter(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.append((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            for (int i = off, end = off + len; i < end; i++) {
+                out.append(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.append(str, off, off + len);
+        }
+
+        @Override
+        public Writer append(CharSequence csq, int start, int end) throws IOException {
+            out.append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,983 @@
+package quan.data;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonNull;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.BsonValueCodecProvider;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodecProvider;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.IterableCodecProvider;
+import org.bson.codecs.MapCodecProvider;
+import org.bson.codecs.ValueCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 本地的日志结构数据存取器，不需要MongoDB，适合单机工具、离线服务器和测试<br/>
+ * 插入、更新补丁和删除按顺序追加到目录下的段文件里，打开时重放所有段文件，在内存中建立每张表的主键到记录位置的索引，
+ * 查询时读取记录，合并更新补丁之后再通过{@link EntityCodecProvider}的编解码器解码<br/>
+ * 一条数据的更新补丁太多时会重新写一份完整文档，当前段文件超过大小限制之后切换到新的段文件，后台定期把有效记录比例太低的旧段文件里的有效记录合并写到当前段文件，再删除旧段文件<br/>
+ * 段文件头：魔数、格式版本，之后每次{@link #write(Set, Set, Map)}写一帧：4字节长度、4字节CRC32、记录，
+ * 每条记录是类型、表名、BSON文档，插入记录是完整文档，更新记录是_id和$set，删除记录只有_id，
+ * 一帧是一个整体，最后一个段文件末尾不完整或者校验失败的帧在打开时会被截掉<br/>
+ * 插入已经存在的主键会覆盖原来的数据，更新和删除不存在的数据会被忽略
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class LogDatabase implements DataAccessor, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogDatabase.class);
+
+    private static final int MAGIC = 0x51444C47;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte INSERT = 1, UPDATE = 2, DELETE = 3;
+
+    /**
+     * 合并时每一帧的大小
+     */
+    private static final int FRAME_SIZE = 1024 * 1024;
+
+    /**
+     * 一条数据的更新补丁达到这个数量时重新写一份完整文档，旧的记录就不再有效了
+     */
+    private static final int MAX_PATCHES = 16;
+
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("(\\d+)\\.seg");
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    /**
+     * 编码没有生成编解码器的更新补丁和查询条件
+     */
+    private static final CodecRegistry REGISTRY = CodecRegistries.fromProviders(EntityCodecProvider.DEFAULT_PROVIDER, new ValueCodecProvider(),
+            new BsonValueCodecProvider(), new DocumentCodecProvider(), new IterableCodecProvider(), new MapCodecProvider());
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    /**
+     * 每次写完是否强制刷到磁盘
+     */
+    private volatile boolean sync = true;
+
+    /**
+     * 有效记录的字节数占比低于这个值的旧段文件会被合并
+     */
+    private volatile double compactRatio = 0.5;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 段文件ID:段文件
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private Segment activeSegment;
+
+    /**
+     * 表名:主键:索引项
+     */
+    private final Map<String, Map<Object, Entry>> collections = new HashMap<>();
+
+    private ScheduledExecutorService compactExecutor;
+
+    private boolean closed;
+
+    /**
+     * 段文件大小限制为64MB，每分钟检查一次合并
+     */
+    public LogDatabase(Path directory) throws IOException {
+        this(directory, 64 * 1024 * 1024, 60000);
+    }
+
+    /**
+     * @param directory       段文件所在目录，不存在时会创建
+     * @param segmentSize     段文件大小限制(字节)
+     * @param compactInterval 后台合并段文件的时间间隔(毫秒)，不大于0时不在后台合并，可以调用{@link #compact()}
+     */
+    public LogDatabase(Path directory, long segmentSize, long compactInterval) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("参数[segmentSize]不合法");
+        }
+
+        this.directory = Objects.requireNonNull(directory);
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        open();
+
+        if (compactInterval > 0) {
+            compactExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "log-database-compact");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactExecutor.scheduleWithFixedDelay(this::compactQuietly, compactInterval, compactInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    public void setCompactRatio(double compactRatio) {
+        if (compactRatio < 0 || compactRatio > 1) {
+            throw new IllegalArgumentException("参数[compactRatio]必须在0到1之间");
+        }
+        this.compactRatio = compactRatio;
+    }
+
+    /**
+     * 打开目录下的所有段文件并重放
+     */
+    private void open() throws IOException {
+        List<Long> segmentIds = new ArrayList<>();
+        try (var paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME_PATTERN.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segmentIds.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        segmentIds.sort(null);
+
+        try {
+            for (int i = 0; i < segmentIds.size(); i++) {
+                Segment segment = new Segment(segmentIds.get(i), directory);
+                segments.put(segment.id, segment);
+                replay(segment, i == segmentIds.size() - 1);
+            }
+
+            if (segments.isEmpty()) {
+                activeSegment = newSegment(1);
+            } else {
+                activeSegment = segments.lastEntry().getValue();
+            }
+        } catch (IOException | RuntimeException e) {
+            segments.values().forEach(Segment::close);
+            throw e;
+        }
+    }
+
+    private Segment newSegment(long id) throws IOException {
+        Segment segment = new Segment(id, directory);
+        segment.writeHeader();
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * 重放段文件，最后一个段文件末尾不完整的帧会被截掉，其他段文件损坏时抛出异常
+     */
+    private void replay(Segment segment, boolean last) throws IOException {
+        long size = segment.channel.size();
+        if (size < HEADER_SIZE) {
+            if (!last) {
+                throw new IllegalStateException("段文件[" + segment.path + "]不完整");
+            }
+            segment.channel.truncate(0);
+            segment.writeHeader();
+            return;
+        }
+
+        ByteBuffer header = segment.read(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IllegalStateException("文件[" + segment.path + "]不是段文件");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("段文件[" + segment.path + "]的格式版本[" + version + "]不支持");
+        }
+
+        long position = segment.scan(HEADER_SIZE, size, this::replay);
+        if (position < size) {
+            if (!last) {
+                throw new IllegalStateException("段文件[" + segment.path + "]在位置[" + position + "]损坏");
+            }
+            logger.warn("段文件[{}]末尾有{}字节不完整的数据，已经截掉", segment.path, size - position);
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private void replay(Segment segment, byte type, String collection, long position, int length, int size) throws IOException {
+        Location location = new Location(segment, position, length, size);
+        Object key = key(new RawBsonDocument(segment.read(position, length).array()).get("_id"));
+        apply(type, collection, key, location);
+    }
+
+    /**
+     * 把一条记录应用到索引上
+     *
+     * @return 更新记录对应的索引项
+     */
+    private Entry apply(byte type, String collection, Object key, Location location) {
+        Map<Object, Entry> entries = collections.computeIfAbsent(collection, k -> new HashMap<>());
+        Entry entry = entries.get(key);
+
+        switch (type) {
+            case INSERT:
+                if (entry != null) {
+                    entry.release();
+                }
+                entries.put(key, new Entry(location));
+                location.segment.liveBytes += location.size;
+                break;
+            case UPDATE:
+                if (entry != null) {
+                    if (entry.patches == null) {
+                        entry.patches = new ArrayList<>(2);
+                    }
+                    entry.patches.add(location);
+                    location.segment.liveBytes += location.size;
+                }
+                return entry;
+            case DELETE:
+                if (entry != null) {
+                    entry.release();
+                    entries.remove(key);
+                }
+                break;
+            default:
+                throw new IllegalStateException("段文件[" + location.segment.path + "]在位置[" + location.position + "]的记录类型[" + type + "]不合法");
+        }
+        return null;
+    }
+
+    @Override
+    public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+        Objects.requireNonNull(_id, "参数[_id]不能为空");
+        String collection = collection(clazz);
+
+        lock.readLock().lock();
+        try {
+            checkClosed();
+            Map<Object, Entry> entries = collections.get(collection);
+            Entry entry = entries == null ? null : entries.get(key(_id));
+            return entry == null ? null : decode(clazz, entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历整张表查询，条件是字段名:字段值，字段名可以是以点分隔的路径，主键的字段名是_id
+     */
+    @Override
+    public <D extends Data<?>> List<D> find(Class<D> clazz, Map<String, Object> conditions) {
+        String collection = collection(clazz);
+        BsonDocument filter = conditions == null || conditions.isEmpty() ? null : new Document(conditions).toBsonDocument(BsonDocument.class, REGISTRY);
+        List<D> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            checkClosed();
+            Map<Object, Entry> entries = collections.get(collection);
+            if (entries == null) {
+                return result;
+            }
+
+            for (Entry entry : entries.values()) {
+                if (filter == null) {
+                    result.add(decode(clazz, entry));
+                    continue;
+                }
+
+                BsonDocument document = merge(entry);
+                if (match(document, filter)) {
+                    result.add(decode(clazz, new BsonDocumentReader(document)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * 表中的数据数量
+     */
+    public int count(Class<? extends Data<?>> clazz) {
+        lock.readLock().lock();
+        try {
+            Map<Object, Entry> entries = collections.get(collection(clazz));
+            return entries == null ? 0 : entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 段文件数量
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <D extends Data<?>> D decode(Class<D> clazz, Entry entry) throws IOException {
+        if (entry.patches == null) {
+            return decode(clazz, new BsonBinaryReader(entry.base.read()));
+        } else {
+            return decode(clazz, new BsonDocumentReader(merge(entry)));
+        }
+    }
+
+    private <D extends Data<?>> D decode(Class<D> clazz, org.bson.BsonReader reader) {
+        D data = EntityCodecProvider.DEFAULT_REGISTRY.get(clazz).decode(reader, DECODER_CONTEXT);
+        data.accessor = this;
+        data.state = Data.State.UPDATE;
+        return data;
+    }
+
+    /**
+     * 读取完整文档并合并更新补丁
+     */
+    private static BsonDocument merge(Entry entry) throws IOException {
+        BsonDocument document = new BsonDocument();
+        document.putAll(new RawBsonDocument(entry.base.read().array()));
+
+        if (entry.patches != null) {
+            for (Location patch : entry.patches) {
+                BsonDocument set = new RawBsonDocument(patch.read().array()).getDocument("$set");
+                for (Map.Entry<String, BsonValue> field : set.entrySet()) {
+                    if (field.getValue().isNull()) {
+                        document.remove(field.getKey());
+                    } else {
+                        document.put(field.getKey(), field.getValue());
+                    }
+                }
+            }
+        }
+
+        return document;
+    }
+
+    private static boolean match(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+            BsonValue value = document;
+            for (String name : condition.getKey().split("\\.")) {
+                value = value instanceof BsonDocument ? ((BsonDocument) value).get(name) : null;
+            }
+            if (!equals(value == null ? BsonNull.VALUE : value, condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(BsonValue value1, BsonValue value2) {
+        if (value1.isNumber() && value2.isNumber()) {
+            if (value1.isDouble() || value2.isDouble()) {
+                return value1.asNumber().doubleValue() == value2.asNumber().doubleValue();
+            }
+            return value1.asNumber().longValue() == value2.asNumber().longValue();
+        }
+        return value1.equals(value2);
+    }
+
+    /**
+     * 使用生成的编解码器把修改过的字段直接编码成包含$set的更新文档
+     *
+     * @see EncodedPatch
+     */
+    @Override
+    public Map<String, Object> getPatch(Data<?> data) {
+        return EncodedPatch.of(data, EntityCodecProvider.DEFAULT_REGISTRY);
+    }
+
+    @Override
+    public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+        Frame frame = new Frame();
+
+        if (inserts != null) {
+            for (Data<?> data : inserts) {
+                frame.add(INSERT, collection(data.getClass()), key(data.id()), encodeData(data));
+            }
+        }
+
+        if (updates != null) {
+            for (Data<?> data : updates.keySet()) {
+                frame.add(UPDATE, collection(data.getClass()), key(data.id()), encodeUpdate(data.id(), updates.get(data)));
+            }
+        }
+
+        if (deletes != null) {
+            for (Data<?> data : deletes) {
+                frame.add(DELETE, collection(data.getClass()), key(data.id()), encodeUpdate(data.id(), null));
+            }
+        }
+
+        if (frame.records.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            append(frame);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 编码插入记录的完整文档，只返回文档本身的字节，不包含缓冲区多余的空间
+     */
+    private static byte[] encodeData(Data<?> data) {
+        Codec codec = EntityCodecProvider.DEFAULT_REGISTRY.get(data.getClass());
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            codec.encode(writer, data, ENCODER_CONTEXT);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 编码更新记录或者删除记录的文档
+     *
+     * @param patch 为空时是删除记录
+     */
+    private static byte[] encodeUpdate(Object id, Map<String, Object> patch) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(patch == null ? 32 : 256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+            writer.writeName("_id");
+            writeId(writer, id);
+
+            if (patch instanceof EncodedPatch) {
+                RawBsonDocument set = ((EncodedPatch) patch).getSet();
+                writer.writeName("$set");
+                writer.pipe(new BsonBinaryReader(set.getByteBuffer().asNIO()));
+            } else if (patch != null) {
+                writer.writeName("$set");
+                BSON_DOCUMENT_CODEC.encode(writer, new Document(patch).toBsonDocument(BsonDocument.class, REGISTRY), ENCODER_CONTEXT);
+            }
+
+            writer.writeEndDocument();
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeId(BsonWriter writer, Object id) {
+        if (id instanceof Long) {
+            writer.writeInt64((Long) id);
+        } else if (id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            writer.writeInt32(((Number) id).intValue());
+        } else if (id instanceof Double || id instanceof Float) {
+            writer.writeDouble(((Number) id).doubleValue());
+        } else if (id instanceof String) {
+            writer.writeString((String) id);
+        } else if (id instanceof Boolean) {
+            writer.writeBoolean((Boolean) id);
+        } else {
+            throw new IllegalArgumentException("不支持的主键类型:" + id.getClass().getName());
+        }
+    }
+
+    /**
+     * 主键在索引中的键，整数统一为long，浮点数统一为double
+     */
+    private static Object key(Object id) {
+        if (id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        } else if (id instanceof Float) {
+            return ((Float) id).doubleValue();
+        } else {
+            return id;
+        }
+    }
+
+    private static Object key(BsonValue id) {
+        if (id == null) {
+            throw new IllegalStateException("记录没有_id");
+        }
+
+        BsonType type = id.getBsonType();
+        switch (type) {
+            case INT32:
+            case INT64:
+                return id.asNumber().longValue();
+            case DOUBLE:
+                return id.asDouble().getValue();
+            case STRING:
+                return id.asString().getValue();
+            case BOOLEAN:
+                return id.asBoolean().getValue();
+            default:
+                throw new IllegalStateException("不支持的主键类型:" + type);
+        }
+    }
+
+    private static String collection(Class<?> clazz) {
+        String name = Data.name((Class) clazz);
+        return name != null ? name : clazz.getName();
+    }
+
+    /**
+     * 把一帧追加到当前段文件，并更新索引，更新补丁太多的数据再追加一帧完整文档
+     */
+    private void append(Frame frame) throws IOException {
+        if (activeSegment.size >= segmentSize) {
+            roll();
+        }
+
+        Segment segment = activeSegment;
+        long framePosition = segment.size;
+        ByteBuffer buffer = frame.toBuffer();
+        segment.write(framePosition, buffer);
+        if (sync) {
+            segment.channel.force(false);
+        }
+        segment.size = framePosition + buffer.limit();
+
+        Frame folds = null;
+        long position = framePosition + 8;
+        for (Record record : frame.records) {
+            int size = 1 + 2 + record.collectionBytes.length + 4 + record.document.length;
+            Location location = new Location(segment, position + size - record.document.length, record.document.length, size);
+            Entry entry = apply(record.type, record.collection, record.key, location);
+            position += size;
+
+            if (entry != null && entry.patches.size() >= MAX_PATCHES) {
+                if (folds == null) {
+                    folds = new Frame();
+                }
+                folds.add(INSERT, record.collection, record.key, toBytes(merge(entry)));
+            }
+        }
+
+        if (folds != null) {
+            append(folds);
+        }
+    }
+
+    /**
+     * 切换到新的段文件
+     */
+    private void roll() throws IOException {
+        if (!sync) {
+            activeSegment.channel.force(false);
+        }
+        activeSegment = newSegment(activeSegment.id + 1);
+    }
+
+    /**
+     * 合并有效记录比例太低的旧段文件，把其中有效的数据重新写成完整文档追加到当前段文件，再删除旧段文件
+     *
+     * @return 删除的段文件数量
+     */
+    public int compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+
+            List<Segment> compactSegments = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment != activeSegment && segment.liveBytes < (segment.size - HEADER_SIZE) * compactRatio) {
+                    compactSegments.add(segment);
+                }
+            }
+
+            for (Segment segment : compactSegments) {
+                compact(segment);
+            }
+
+            return compactSegments.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        Frame frame = new Frame();
+
+        //有记录在这个段文件里的数据重新写成完整文档
+        for (Map.Entry<String, Map<Object, Entry>> collectionEntries : collections.entrySet()) {
+            for (Map.Entry<Object, Entry> keyEntry : collectionEntries.getValue().entrySet()) {
+                Entry entry = keyEntry.getValue();
+                if (!entry.references(segment)) {
+                    continue;
+                }
+
+                byte[] document = entry.patches == null ? entry.base.read().array() : toBytes(merge(entry));
+                frame.add(INSERT, collectionEntries.getKey(), keyEntry.getKey(), document);
+                if (frame.size >= FRAME_SIZE) {
+                    append(frame);
+                    frame = new Frame();
+                }
+            }
+        }
+
+        //还有更旧的段文件时删除记录要保留下来，否则重放时旧段文件里被删除的数据会复活
+        if (segments.firstKey() < segment.id) {
+            Frame deletes = frame;
+            segment.scan(HEADER_SIZE, segment.size, (s, type, collection, position, length, size) -> {
+                if (type != DELETE) {
+                    return;
+                }
+                Object key = key(new RawBsonDocument(s.read(position, length).array()).get("_id"));
+                Map<Object, Entry> entries = collections.get(collection);
+                if (entries == null || !entries.containsKey(key)) {
+                    deletes.add(DELETE, collection, key, s.read(position, length).array());
+                }
+            });
+        }
+
+        if (!frame.records.isEmpty()) {
+            append(frame);
+        }
+
+        if (segment.liveBytes > 0) {
+            throw new IllegalStateException("段文件[" + segment.path + "]合并之后还有" + segment.liveBytes + "字节有效记录");
+        }
+
+        //不管是否同步刷盘，删除旧段文件之前重写的记录都要先落盘，否则操作系统崩溃时这些数据就丢了
+        activeSegment.channel.force(false);
+
+        segments.remove(segment.id);
+        segment.close();
+        Files.deleteIfExists(segment.path);
+        logger.info("合并段文件[{}]完成", segment.path);
+    }
+
+    private static byte[] toBytes(BsonDocument document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            BSON_DOCUMENT_CODEC.encode(writer, document, ENCODER_CONTEXT);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            logger.error("合并段文件出错", e);
+        }
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw new IllegalStateException("数据库已经关闭了");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactExecutor != null) {
+            compactExecutor.shutdownNow();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!sync) {
+                activeSegment.channel.force(false);
+            }
+        } catch (IOException e) {
+            logger.error("", e);
+        } finally {
+            segments.values().forEach(Segment::close);
+            collections.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    private static class Segment {
+
+        private final long id;
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        /**
+         * 文件大小，也是下一帧的写入位置
+         */
+        private long size;
+
+        /**
+         * 有效记录的字节数
+         */
+        private long liveBytes;
+
+        Segment(long id, Path directory) throws IOException {
+            this.id = id;
+            this.path = directory.resolve(String.format("%016d.seg", id));
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        void writeHeader() throws IOException {
+            write(0, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip());
+            channel.force(false);
+            size = HEADER_SIZE;
+        }
+
+        void write(long position, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.rewind();
+        }
+
+        ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IllegalStateException("段文件[" + path + "]在位置[" + position + "]的记录不完整");
+                }
+            }
+            return buffer.flip();
+        }
+
+        /**
+         * 逐帧读取记录，遇到不完整或者校验失败的帧时停止
+         *
+         * @return 最后一个完整帧的结束位置
+         */
+        long scan(long position, long end, RecordVisitor visitor) throws IOException {
+            CRC32 crc32 = new CRC32();
+
+            while (position + 8 <= end) {
+                ByteBuffer frameHeader = read(position, 8);
+                int length = frameHeader.getInt();
+                int checksum = frameHeader.getInt();
+                if (length <= 0 || position + 8 + length > end) {
+                    break;
+                }
+
+                ByteBuffer body = read(position + 8, length);
+                crc32.reset();
+                crc32.update(body);
+                if ((int) crc32.getValue() != checksum) {
+                    break;
+                }
+
+                body.rewind();
+                long bodyPosition = position + 8;
+                while (body.hasRemaining()) {
+                    int recordStart = body.position();
+                    byte type = body.get();
+                    byte[] collectionBytes = new byte[body.getShort()];
+                    body.get(collectionBytes);
+                    int documentLength = body.getInt();
+                    int documentStart = body.position();
+                    body.position(documentStart + documentLength);
+                    visitor.visit(this, type, new String(collectionBytes, StandardCharsets.UTF_8), bodyPosition + documentStart, documentLength, body.position() - recordStart);
+                }
+
+                position += 8 + length;
+            }
+
+            return position;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("", e);
+            }
+        }
+
+    }
+
+    private interface RecordVisitor {
+
+        void visit(Segment segment, byte type, String collection, long position, int length, int size) throws IOException;
+
+    }
+
+    /**
+     * 记录在段文件中的位置
+     */
+    private static class Location {
+
+        private final Segment segment;
+
+        /**
+         * BSON文档的位置
+         */
+        private final long position;
+
+        /**
+         * BSON文档的长度
+         */
+        private final int length;
+
+        /**
+         * 整条记录的字节数
+         */
+        private final int size;
+
+        Location(Segment segment, long position, int length, int size) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.size = size;
+        }
+
+        ByteBuffer read() throws IOException {
+            return segment.read(position, length);
+        }
+
+    }
+
+    /**
+     * 一条数据的索引项，完整文档和之后的更新补丁
+     */
+    private static class Entry {
+
+        private final Location base;
+
+        private List<Location> patches;
+
+        Entry(Location base) {
+            this.base = base;
+        }
+
+        boolean references(Segment segment) {
+            if (base.segment == segment) {
+                return true;
+            }
+            if (patches != null) {
+                for (Location patch : patches) {
+                    if (patch.segment == segment) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 被覆盖或者删除之后，原来的记录不再有效
+         */
+        void release() {
+            base.segment.liveBytes -= base.size;
+            if (patches != null) {
+                for (Location patch : patches) {
+                    patch.segment.liveBytes -= patch.size;
+                }
+            }
+        }
+
+    }
+
+    private static class Record {
+
+        private final byte type;
+
+        private final String collection;
+
+        private final byte[] collectionBytes;
+
+        private final Object key;
+
+        private final byte[] document;
+
+        Record(byte type, String collection, Object key, byte[] document) {
+            this.type = type;
+            this.collection = collection;
+            this.collectionBytes = collection.getBytes(StandardCharsets.UTF_8);
+            this.key = key;
+            this.document = document;
+        }
+
+    }
+
+    /**
+     * 一次写入的所有记录，作为一个整体校验
+     */
+    private static class Frame {
+
+        private final List<Record> records = new ArrayList<>();
+
+        private int size;
+
+        void add(byte type, String collection, Object key, byte[] document) {
+            Record record = new Record(type, collection, key, document);
+            records.add(record);
+            size += 1 + 2 + record.collectionBytes.length + 4 + document.length;
+        }
+
+        ByteBuffer toBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate(8 + size);
+            buffer.position(8);
+            for (Record record : records) {
+                buffer.put(record.type).putShort((short) record.collectionBytes.length).put(record.collectionBytes);
+                buffer.putInt(record.document.length).put(record.document);
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(buffer.array(), 8, size);
+            buffer.putInt(0, size).putInt(4, (int) crc32.getValue());
+            return buffer.flip();
+        }
+
+    }
+
+}
@@ -0,0 +1,274 @@
+package quan.data;
+
+import quan.data.util.NumberUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 内存索引，根据数据类上的{@link Index}注解建立，包含一个等值查询用的哈希索引和一个范围查询用的排序索引<br/>
+ * 排序索引以第一个索引字段的值排序，和MongoDB使用组合索引前缀的方式一样<br/>
+ * 索引键中的数字会通过{@link NumberUtils#normalize(Object)}统一类型，查询时不用区分数字类型，和遍历数据时的比较结果一致<br/>
+ * 索引的修改串行执行，查询不加锁
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class MemoryIndex<D extends Data<?>> {
+
+    private final String name;
+
+    private final Index.Type type;
+
+    /**
+     * 索引字段名
+     */
+    private final List<String> fields;
+
+    /**
+     * 索引字段在数据中的位置
+     */
+    private final int[] positions;
+
+    /**
+     * 索引键:数据
+     */
+    private final Map<Object, Set<D>> hash = new ConcurrentHashMap<>();
+
+    /**
+     * 第一个字段的值:数据
+     */
+    private final NavigableMap<Object, Set<D>> sorted = new ConcurrentSkipListMap<>(NumberUtils::compare);
+
+    /**
+     * 数据:当前的索引键，用于数据更新后删除旧的索引键
+     */
+    private final Map<D, Object> keys = new ConcurrentHashMap<>();
+
+    MemoryIndex(Index index, List<String> allFields) {
+        this.name = index.name();
+        this.type = index.type();
+        this.fields = List.of(index.fields());
+        this.positions = new int[fields.size()];
+
+        for (int i = 0; i < positions.length; i++) {
+            int position = allFields.indexOf(fields.get(i)) + 1;
+            if (position <= 0) {
+                throw new IllegalArgumentException(String.format("索引[%s]的字段[%s]不存在", name, fields.get(i)));
+            }
+            positions[i] = position;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Index.Type getType() {
+        return type;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    int[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * 判断索引字段是否有修改
+     */
+    boolean isUpdated(BitSet updatedFields) {
+        for (int position : positions) {
+            if (updatedFields.get(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean contains(int position) {
+        for (int p : positions) {
+            if (p == position) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 通过字段值生成索引键，在事务中调用时读到的是事务中的字段值
+     */
+    Object newKey(D data) {
+        if (positions.length == 1) {
+            return NumberUtils.normalize(data._getFieldValue(positions[0]));
+        }
+
+        Object[] values = new Object[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            values[i] = NumberUtils.normalize(data._getFieldValue(positions[i]));
+        }
+        return Arrays.asList(values);
+    }
+
+    private static Object toKey(Object[] values) {
+        if (values.length == 1) {
+            return NumberUtils.normalize(values[0]);
+        }
+
+        Object[] key = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            key[i] = NumberUtils.normalize(values[i]);
+        }
+        return Arrays.asList(key);
+    }
+
+    private static Object leading(Object key) {
+        return key instanceof List ? ((List<?>) key).get(0) : key;
+    }
+
+    /**
+     * 索引键对应的数据
+     */
+    Set<D> get(Object key) {
+        Set<D> values = hash.get(key);
+        return values == null ? Collections.emptySet() : values;
+    }
+
+    /**
+     * 唯一索引的索引键已经被其他数据占用时抛出异常
+     *
+     * @param excluded 不算冲突的数据，例如被替换掉的旧数据
+     */
+    void checkUnique(D data, Object key, D excluded) {
+        if (type != Index.Type.UNIQUE) {
+            return;
+        }
+        for (D value : get(key)) {
+            if (value != data && value != excluded) {
+                throw new IllegalStateException(String.format("数据[%s(%s)]的唯一索引[%s]冲突:%s", data.getClass().getName(), data.id(), name, key));
+            }
+        }
+    }
+
+    /**
+     * 添加或者更新数据的索引键，唯一索引冲突时抛出异常，不会修改索引
+     */
+    void update(D data) {
+        update(data, true);
+    }
+
+    /**
+     * 添加或者更新数据的索引键
+     *
+     * @param check 是否检查唯一索引冲突，事务提交之前已经检查过了，提交过程中交换索引值的数据会短暂地占用同一个索引键
+     */
+    synchronized void update(D data, boolean check) {
+        Object newKey = newKey(data);
+        Object oldKey = keys.get(data);
+        if (Objects.equals(oldKey, newKey)) {
+            return;
+        }
+
+        if (check) {
+            checkUnique(data, newKey, null);
+        }
+
+        keys.put(data, newKey);
+        if (oldKey != null) {
+            remove(data, oldKey);
+        }
+
+        hash.computeIfAbsent(newKey, k -> ConcurrentHashMap.newKeySet()).add(data);
+
+        Object leading = leading(newKey);
+        if (leading != null) {
+            sorted.computeIfAbsent(leading, k -> ConcurrentHashMap.newKeySet()).add(data);
+        }
+    }
+
+    /**
+     * 删除数据的索引键
+     */
+    synchronized void remove(D data) {
+        Object key = keys.remove(data);
+        if (key != null) {
+            remove(data, key);
+        }
+    }
+
+    private void remove(D data, Object key) {
+        Set<D> values = hash.get(key);
+        if (values != null) {
+            values.remove(data);
+            if (values.isEmpty()) {
+                hash.remove(key, values);
+            }
+        }
+
+        Object leading = leading(key);
+        values = leading == null ? null : sorted.get(leading);
+        if (values != null) {
+            values.remove(data);
+            if (values.isEmpty()) {
+                sorted.remove(leading, values);
+            }
+        }
+    }
+
+    /**
+     * 等值查询
+     *
+     * @param values 所有索引字段的值，和索引字段一一对应
+     */
+    public Set<D> find(Object... values) {
+        if (values.length != positions.length) {
+            throw new IllegalArgumentException(String.format("索引[%s]的字段%s和查询参数%s数量不一致", name, fields, Arrays.toString(values)));
+        }
+
+        Set<D> result = hash.get(toKey(values));
+        return result == null ? Collections.emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * 按第一个索引字段的值进行范围查询，结果按该字段升序排列
+     *
+     * @param from 最小值，为空时不限制
+     * @param to   最大值，为空时不限制
+     */
+    public List<D> findRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        NavigableMap<Object, Set<D>> range = sorted;
+        if (from != null && to != null) {
+            range = sorted.subMap(from, fromInclusive, to, toInclusive);
+        } else if (from != null) {
+            range = sorted.tailMap(from, fromInclusive);
+        } else if (to != null) {
+            range = sorted.headMap(to, toInclusive);
+        }
+
+        List<D> result = new ArrayList<>();
+        range.values().forEach(result::addAll);
+        return result;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    synchronized void clear() {
+        hash.clear();
+        sorted.clear();
+        keys.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryIndex{" +
+                "name='" + name + '\'' +
+                ",type=" + type +
+                ",fields=" + fields +
+                ",size=" + size() +
+                '}';
+    }
+
+}
@@ -0,0 +1,44 @@
+package quan.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 内嵌事务的JFR事件
+ *
+ * @see TransactionEvent
+ */
+@Name("quan.data.NestedTransaction")
+@Label("Nested Transaction")
+@Category({"QData", "Transaction"})
+@Description("内嵌事务")
+@StackTrace(false)
+class NestedTransactionEvent extends Event {
+
+    /**
+     * @see TransactionEvent#TYPE
+     */
+    static final EventType TYPE = EventType.getEventType(NestedTransactionEvent.class);
+
+    @Label("Failed")
+    @Description("内嵌事务是否失败或者回滚")
+    boolean failed;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Data Logs")
+    int dataLogs;
+
+    @Label("Node Logs")
+    int nodeLogs;
+
+    @Label("Field Logs")
+    int fieldLogs;
+
+}
@@ -0,0 +1,81 @@
+package quan.data;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+import quan.data.binary.BinaryCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 合并多个注册表，只保留指定包下的数据类，编解码器全部保留，Bean可能在其他包下
+ */
+class PackageDataRegistry implements DataRegistry {
+
+    private final List<Class<? extends Data<?>>> dataClasses = new ArrayList<>();
+
+    private final Map<Class<? extends Data<?>>, String> dataNames = new HashMap<>();
+
+    private final Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> codecFactories = new HashMap<>();
+
+    private final Map<Class<? extends Entity>, BinaryCodec<?>> binaryCodecs = new HashMap<>();
+
+    private PackageDataRegistry() {
+    }
+
+    /**
+     * @return 注册表里没有指定包下的数据类时返回空，只有一个注册表并且不需要过滤时直接返回它
+     */
+    static DataRegistry of(String packageName, List<DataRegistry> registries) {
+        PackageDataRegistry result = new PackageDataRegistry();
+        boolean filtered = false;
+
+        for (DataRegistry registry : registries) {
+            for (Class<? extends Data<?>> dataClass : registry.getDataClasses()) {
+                if (inPackage(dataClass, packageName)) {
+                    result.dataClasses.add(dataClass);
+                    result.dataNames.put(dataClass, registry.getDataNames().get(dataClass));
+                } else {
+                    filtered = true;
+                }
+            }
+            result.codecFactories.putAll(registry.getCodecFactories());
+            result.binaryCodecs.putAll(registry.getBinaryCodecs());
+        }
+
+        if (result.dataClasses.isEmpty()) {
+            return null;
+        }
+
+        return registries.size() == 1 && !filtered ? registries.get(0) : result;
+    }
+
+    private static boolean inPackage(Class<?> clazz, String packageName) {
+        return packageName == null || packageName.isEmpty() || clazz.getName().startsWith(packageName + ".");
+    }
+
+    @Override
+    public List<Class<? extends Data<?>>> getDataClasses() {
+        return Collections.unmodifiableList(dataClasses);
+    }
+
+    @Override
+    public Map<Class<? extends Data<?>>, String> getDataNames() {
+        return Collections.unmodifiableMap(dataNames);
+    }
+
+    @Override
+    public Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> getCodecFactories() {
+        return Collections.unmodifiableMap(codecFactories);
+    }
+
+    @Override
+    public Map<Class<? extends Entity>, BinaryCodec<?>> getBinaryCodecs() {
+        return Collections.unmodifiableMap(binaryCodecs);
+    }
+
+}
@@ -16,6 +16,10 @@ public abstract class Protection {
         return transaction.getFieldLog(field);
     }
 
+    protected static Object _getLocalFieldLog(Transaction transaction, Field field) {
+        return transaction.getLocalFieldLog(field);
+    }
+
     protected static void _setNodeLog(Transaction transaction, Node node, Data<?> owner, int position) {
         if (node != null) {
             transaction.setNodeLog(node, owner, position);
@@ -33,8 +37,11 @@ public abstract class Protection {
     }
 
     protected static void _setDataUpdatedField(Data<?> data, int field) {
-        if (data != null && field > 0) {
+        if (data != null && field > 0 && data.isLoaded(field)) {
             data._updatedFields.set(field);
+            if (data.cacheTable != null) {
+                data.cacheTable.update(data, field);
+            }
         }
     }
 
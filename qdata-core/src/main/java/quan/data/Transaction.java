@@ -1,12 +1,11 @@
 package quan.data;
 
-import org.apache.commons.lang3.tuple.Triple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import quan.data.field.Field;
+import quan.data.metrics.Metrics;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static java.lang.Boolean.FALSE;
@@ -28,6 +27,11 @@ public class Transaction {
      */
     private static final ThreadLocal<Boolean> localOptional = ThreadLocal.withInitial(FALSE::booleanValue);
 
+    /**
+     * 慢事务检测
+     */
+    private static TransactionWatchdog watchdog;
+
     /**
      * 保存事务为线程本地变量
      */
@@ -69,6 +73,41 @@ public class Transaction {
      */
     private int depth = 1;
 
+    /**
+     * 开启事务时是否开启了度量，开启了才会把事务和提交的耗时记录到{@link Metrics}，事务执行期间开关度量不影响当前事务
+     */
+    private boolean metered;
+
+    /**
+     * 开启度量或者慢事务检测时记录的事务开始时间
+     */
+    private long startTime;
+
+    /**
+     * 开启事务时的慢事务检测
+     */
+    private TransactionWatchdog watchedBy;
+
+    /**
+     * 开启事务的{@link Transactional}方法
+     */
+    private String origin;
+
+    /**
+     * 开启JFR记录时的事务事件
+     */
+    private TransactionEvent event;
+
+    /**
+     * 内嵌事务达到过的最大深度，没有内嵌事务时是1，结束时记录到{@link TransactionEvent}
+     */
+    private int maxDepth = 1;
+
+    /**
+     * 提交之前按存取器分组的要写的数据，更新补丁在提交时生成
+     */
+    private Map<DataAccessor, Writes> writes;
+
     /**
      * @see #globalOptional
      */
@@ -87,6 +126,17 @@ public class Transaction {
         return globalOptional || localOptional.get();
     }
 
+    /**
+     * 设置慢事务检测，为空时关闭，只对之后开启的事务生效
+     */
+    public static void setWatchdog(TransactionWatchdog watchdog) {
+        Transaction.watchdog = watchdog;
+    }
+
+    public static TransactionWatchdog getWatchdog() {
+        return watchdog;
+    }
+
     void setDataLog(Data<?> data, DataAccessor accessor, Data.State state) {
         dataLogs.put(data, new Data.Log(accessor, state));
     }
@@ -158,6 +208,13 @@ public class Transaction {
         return null;
     }
 
+    /**
+     * 只查找当前这一层事务的字段日志
+     */
+    Object getLocalFieldLog(Field field) {
+        return fieldLogs.get(field);
+    }
+
     void setNodeLog(Node node, Data<?> owner, int position) {
         Node.Log log = nodeLogs.computeIfAbsent(node, k -> new Node.Log());
         log.owner = owner;
@@ -265,12 +322,35 @@ public class Transaction {
      * 开始事务
      */
     static Transaction begin(boolean nested) {
+        return begin(nested, null);
+    }
+
+    /**
+     * 开始事务
+     *
+     * @param origin 开启事务的{@link Transactional}方法
+     */
+    static Transaction begin(boolean nested, String origin) {
         Transaction transaction = threadLocal.get();
         if (transaction == null) {
             transaction = new Transaction();
             threadLocal.set(transaction);
+            transaction.origin = origin;
+            transaction.metered = Metrics.isEnabled();
+            transaction.watchedBy = watchdog;
+            if (transaction.metered || transaction.watchedBy != null) {
+                transaction.startTime = System.nanoTime();
+            }
+            if (TransactionEvent.TYPE.isEnabled()) {
+                TransactionEvent event = new TransactionEvent();
+                event.begin();
+                transaction.event = event;
+            }
         } else if (nested) {
             save(transaction);
+            if (Metrics.isEnabled()) {
+                Metrics.recordNested();
+            }
         } else {
             throw new IllegalStateException("当前已经在事务中了");
         }
@@ -286,15 +366,49 @@ public class Transaction {
             return;
         }
 
+        //提交之前检查，这时还能读到事务中的修改，检查不通过时事务失败
+        RuntimeException validateError = null;
+        if (!transaction.failed) {
+            try {
+                transaction.validate();
+            } catch (RuntimeException e) {
+                transaction.failed = true;
+                validateError = e;
+            }
+        }
+
         //清空当前线程持有的事务对象
         threadLocal.set(null);
 
+        TransactionEvent event = transaction.event;
+        boolean timed = transaction.metered || event != null;
+
         //事务执行成功，提交事务
         if (!transaction.failed) {
+            long commitStartTime = timed ? System.nanoTime() : 0;
             transaction.commit();
+            if (transaction.metered) {
+                Metrics.recordCommit(commitStartTime);
+            }
+            if (event != null) {
+                event.commitTime = System.nanoTime() - commitStartTime;
+            }
+        }
+
+        if (transaction.metered) {
+            Metrics.recordTransaction(transaction.startTime, transaction.failed, transaction.dataLogs.size(), transaction.fieldLogs.size());
+        }
+
+        if (transaction.watchedBy != null) {
+            try {
+                transaction.watchedBy.check(transaction.origin, transaction.startTime, transaction.failed, transaction.dataLogs, transaction.nodeLogs.size(), transaction.fieldLogs.size());
+            } catch (Exception e) {
+                logger.error("", e);
+            }
         }
 
         //执行事务结束后的特殊任务
+        long listenerStartTime = event != null ? System.nanoTime() : 0;
         int when = transaction.failed ? Listener.WHEN_FAILED : Listener.WHEN_SUCCEEDED;
         for (Listener listener : transaction.listeners) {
             if ((listener.when & when) == when) {
@@ -305,6 +419,53 @@ public class Transaction {
                 }
             }
         }
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.failed = transaction.failed;
+                event.maxDepth = transaction.maxDepth;
+                event.dataLogs = transaction.dataLogs.size();
+                event.nodeLogs = transaction.nodeLogs.size();
+                event.fieldLogs = transaction.fieldLogs.size();
+                event.listenerTime = System.nanoTime() - listenerStartTime;
+                event.commit();
+            }
+        }
+
+        if (validateError != null) {
+            throw validateError;
+        }
+    }
+
+    /**
+     * 开始事务，给{@link TransactionWeaver}织入的代码调用
+     */
+    public static Transaction _begin(boolean nested) {
+        return begin(nested);
+    }
+
+    /**
+     * 开始事务并记录开启事务的方法，给{@link TransactionWeaver}织入的代码调用
+     *
+     * @param origin 开启事务的方法，格式为[类名.方法名]
+     */
+    public static Transaction _begin(boolean nested, String origin) {
+        return begin(nested, origin);
+    }
+
+    /**
+     * 标记事务失败，给{@link TransactionWeaver}织入的代码调用
+     */
+    public static void _fail(Transaction transaction) {
+        transaction.failed = true;
+    }
+
+    /**
+     * 结束事务，给{@link TransactionWeaver}织入的代码调用
+     */
+    public static void _end(Transaction transaction) {
+        end(transaction);
     }
 
     /**
@@ -324,6 +485,13 @@ public class Transaction {
 
         transaction.savepoints[transaction.depth - 1] = savepoint;
         transaction.depth++;
+        transaction.maxDepth = Math.max(transaction.maxDepth, transaction.depth);
+
+        if (NestedTransactionEvent.TYPE.isEnabled()) {
+            NestedTransactionEvent event = new NestedTransactionEvent();
+            event.begin();
+            savepoint.event = event;
+        }
 
         transaction.failed = false;
         transaction.dataLogs = new HashMap<>();
@@ -340,6 +508,19 @@ public class Transaction {
         transaction.savepoints[transaction.depth - 2] = null;
         transaction.depth--;
 
+        NestedTransactionEvent event = savepoint.event;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.failed = transaction.failed;
+                event.depth = transaction.depth + 1;
+                event.dataLogs = transaction.dataLogs.size();
+                event.nodeLogs = transaction.nodeLogs.size();
+                event.fieldLogs = transaction.fieldLogs.size();
+                event.commit();
+            }
+        }
+
         if (!transaction.failed) {
             savepoint.dataLogs.putAll(transaction.dataLogs);
             savepoint.nodeLogs.putAll(transaction.nodeLogs);
@@ -374,10 +555,47 @@ public class Transaction {
         transaction.failed = true;
     }
 
+    /**
+     * 提交之前检查缓存的唯一索引，再按存取器分组要写的数据，并让存取器检查
+     */
+    private void validate() {
+        DataCache.validate(dataLogs);
+
+        for (Data<?> data : dataLogs.keySet()) {
+            Data.Log log = dataLogs.get(data);
+            if (log.accessor == null || log.state == null) {
+                continue;
+            }
+
+            if (writes == null) {
+                writes = new HashMap<>();
+            }
+            Writes write = writes.computeIfAbsent(log.accessor, k -> new Writes());
+            switch (log.state) {
+                case INSERT:
+                    write.inserts.add(data);
+                    break;
+                case UPDATE:
+                    //补丁在提交时再生成
+                    write.updates.put(data, null);
+                    break;
+                case DELETE:
+                    write.deletes.add(data);
+                    break;
+            }
+        }
+
+        if (writes != null) {
+            for (DataAccessor accessor : writes.keySet()) {
+                Writes write = writes.get(accessor);
+                accessor.validate(write.inserts, write.deletes, write.updates.keySet());
+            }
+        }
+    }
+
     /**
      * 提交事务
      */
-    @SuppressWarnings({"unchecked", "rawtypes"})
     private void commit() {
         for (Node node : nodeLogs.keySet()) {
             node.commit(nodeLogs.get(node));
@@ -387,38 +605,31 @@ public class Transaction {
             field.commit(fieldLogs.get(field));
         }
 
-        Map<DataAccessor, Triple> writes = new HashMap<>();
-        Function<DataAccessor, Triple> newTriple = k -> Triple.of(new LinkedHashSet(), new LinkedHashMap<>(), new LinkedHashSet<>());
-
         for (Data<?> data : dataLogs.keySet()) {
             Data.Log log = dataLogs.get(data);
             data.commit(log);
 
-            if (log.accessor != null && log.state != null) {
-                Triple<Set, Map, Set> write = writes.computeIfAbsent(log.accessor, newTriple);
-                switch (log.state) {
-                    case INSERT:
-                        write.getLeft().add(data);
-                        break;
-                    case UPDATE:
-                        Map<String, Object> patch = data._getPatch();
-                        if (patch != null) {
-                            write.getMiddle().put(data, patch);
-                        }
-                        break;
-                    case DELETE:
-                        write.getRight().add(data);
-                        break;
+            if (log.accessor != null && log.state == Data.State.UPDATE) {
+                Map<String, Object> patch = log.accessor.getPatch(data);
+                Map<Data<?>, Map<String, Object>> updates = writes.get(log.accessor).updates;
+                if (patch != null) {
+                    updates.put(data, patch);
+                } else {
+                    updates.remove(data);
                 }
             }
 
             data._updatedFields.clear();
         }
 
+        if (writes == null) {
+            return;
+        }
+
         for (DataAccessor accessor : writes.keySet()) {
             try {
-                Triple<Set, Map, Set> write = writes.get(accessor);
-                accessor.write(write.getLeft(), write.getRight(), write.getMiddle());
+                Writes write = writes.get(accessor);
+                accessor.write(write.inserts, write.deletes, write.updates);
             } catch (Exception e) {
                 logger.error("内存事务提交后写数据库出错", e);
             }
@@ -466,6 +677,11 @@ public class Transaction {
 
         List<Listener> listeners = new ArrayList<>();
 
+        /**
+         * 开启JFR记录时的内嵌事务事件
+         */
+        NestedTransactionEvent event;
+
     }
 
     /**
@@ -493,4 +709,20 @@ public class Transaction {
 
     }
 
+    /**
+     * 同一个存取器要写的数据
+     */
+    private static class Writes {
+
+        Set<Data<?>> inserts = new LinkedHashSet<>();
+
+        Set<Data<?>> deletes = new LinkedHashSet<>();
+
+        /**
+         * 要更新的数据:更新补丁
+         */
+        Map<Data<?>, Map<String, Object>> updates = new LinkedHashMap<>();
+
+    }
+
 }
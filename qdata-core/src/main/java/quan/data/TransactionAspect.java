@@ -1,25 +1,27 @@
 package quan.data;
 
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.reflect.MethodSignature;
-
-import java.lang.reflect.Method;
 
 /**
  * 实现声明式事务的切面<br/>
- * 加载时间必须早于被切类，否则会导致环绕通知不能内联
+ * 加载时间必须早于被切类，否则会导致环绕通知不能内联<br/>
+ * 构建时已经被{@link TransactionWeaver}织入过的类不会再被切
  */
 @Aspect
 public class TransactionAspect {
 
-    @Around("@annotation(quan.data.Transactional) && execution(* *(..))")
-    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
-        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
-        boolean nested = method.getAnnotation(Transactional.class).nested();
+    @Around("@annotation(transactional) && execution(* *(..)) && !within(@quan.data.Transactional.Woven *)")
+    public Object around(ProceedingJoinPoint joinPoint, Transactional transactional) throws Throwable {
+        String origin = null;
+        if (Transaction.getWatchdog() != null) {
+            Signature signature = joinPoint.getSignature();
+            origin = signature.getDeclaringTypeName() + "." + signature.getName();
+        }
 
-        Transaction transaction = Transaction.begin(nested);
+        Transaction transaction = Transaction.begin(transactional.nested(), origin);
         try {
             //不能在around方法外面执行joinPoint，否则会导致不能内联
             return joinPoint.proceed();
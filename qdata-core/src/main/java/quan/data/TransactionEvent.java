@@ -0,0 +1,53 @@
+package quan.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 事务的JFR事件，持续时间从开启事务到执行完监听器，默认不记录调用栈，
+ * 可以通过配置quan.data.Transaction#stackTrace=true开启
+ */
+@Name("quan.data.Transaction")
+@Label("Transaction")
+@Category({"QData", "Transaction"})
+@Description("内存事务")
+@StackTrace(false)
+class TransactionEvent extends Event {
+
+    /**
+     * 缓存下来的事件类型，开启事务时先判断是否开启了记录，没有开启时不创建事件对象
+     */
+    static final EventType TYPE = EventType.getEventType(TransactionEvent.class);
+
+    @Label("Failed")
+    @Description("事务是否失败或者回滚")
+    boolean failed;
+
+    @Label("Max Depth")
+    @Description("内嵌事务的最大深度")
+    int maxDepth;
+
+    @Label("Data Logs")
+    int dataLogs;
+
+    @Label("Node Logs")
+    int nodeLogs;
+
+    @Label("Field Logs")
+    int fieldLogs;
+
+    @Label("Commit Time")
+    @Timespan
+    long commitTime;
+
+    @Label("Listener Time")
+    @Timespan
+    long listenerTime;
+
+}
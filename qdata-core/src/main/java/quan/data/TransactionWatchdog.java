@@ -0,0 +1,337 @@
+package quan.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 慢事务检测，事务结束时执行时间或者日志数量超过限制就生成报告，报告中包含修改了哪些数据类的哪些字段，
+ * 以及是哪个{@link Transactional}方法开启的事务，通过{@link Transaction#run}开启的事务没有这个信息<br/>
+ * 报告按时间间隔限流，被限流的报告只计数，可以通过{@link #addListener(Consumer)}和{@link #getReports()}获取报告
+ *
+ * @see Transaction#setWatchdog(TransactionWatchdog)
+ */
+public class TransactionWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionWatchdog.class);
+
+    /**
+     * 最大执行时间(纳秒)
+     */
+    private final long maxTime;
+
+    /**
+     * 最大日志数量，包含数据日志、节点日志和字段日志
+     */
+    private final int maxLogs;
+
+    /**
+     * 两次报告之间的最小间隔(纳秒)
+     */
+    private final long reportInterval;
+
+    /**
+     * 保留最近的报告数量
+     */
+    private int maxReports = 100;
+
+    private final ArrayDeque<Report> reports = new ArrayDeque<>();
+
+    private final List<Consumer<Report>> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong lastReportTime = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+
+    /**
+     * 上次报告之后被限流的报告数量
+     */
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * @param maxTime        最大执行时间(毫秒)，包含提交时间
+     * @param maxLogs        最大日志数量
+     * @param reportInterval 两次报告之间的最小间隔(毫秒)
+     */
+    public TransactionWatchdog(long maxTime, int maxLogs, long reportInterval) {
+        if (maxTime <= 0 || maxLogs <= 0 || reportInterval < 0) {
+            throw new IllegalArgumentException("参数不合法");
+        }
+        this.maxTime = TimeUnit.MILLISECONDS.toNanos(maxTime);
+        this.maxLogs = maxLogs;
+        this.reportInterval = TimeUnit.MILLISECONDS.toNanos(reportInterval);
+    }
+
+    public void setMaxReports(int maxReports) {
+        if (maxReports < 0) {
+            throw new IllegalArgumentException("参数[maxReports]不能小于0");
+        }
+        this.maxReports = maxReports;
+    }
+
+    public void addListener(Consumer<Report> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(Consumer<Report> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 获取最近的报告，按时间先后排列
+     */
+    public List<Report> getReports() {
+        synchronized (reports) {
+            return new ArrayList<>(reports);
+        }
+    }
+
+    public void clearReports() {
+        synchronized (reports) {
+            reports.clear();
+        }
+    }
+
+    /**
+     * 上次报告之后被限流的报告数量
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * 事务结束时检查，给{@link Transaction}调用
+     */
+    void check(String origin, long startTime, boolean failed, Map<Data<?>, Data.Log> dataLogs, int nodeLogs, int fieldLogs) {
+        long now = System.nanoTime();
+        long time = now - startTime;
+        int logs = dataLogs.size() + nodeLogs + fieldLogs;
+        if (time <= maxTime && logs <= maxLogs) {
+            return;
+        }
+
+        long last = lastReportTime.get();
+        if (now - last < reportInterval || !lastReportTime.compareAndSet(last, now)) {
+            suppressed.incrementAndGet();
+            return;
+        }
+
+        Report report = new Report(origin, Thread.currentThread().getName(), System.currentTimeMillis(), time, failed,
+                dataLogs.size(), nodeLogs, fieldLogs, suppressed.getAndSet(0), updates(dataLogs));
+        logger.warn("{}", report);
+
+        synchronized (reports) {
+            reports.addLast(report);
+            while (reports.size() > maxReports) {
+                reports.removeFirst();
+            }
+        }
+
+        for (Consumer<Report> listener : listeners) {
+            try {
+                listener.accept(report);
+            } catch (Exception e) {
+                logger.error("", e);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Updates> updates(Map<Data<?>, Data.Log> dataLogs) {
+        Map<Class<?>, Updates> updates = new LinkedHashMap<>();
+
+        for (Map.Entry<Data<?>, Data.Log> entry : dataLogs.entrySet()) {
+            Class<? extends Data> dataClass = entry.getKey().getClass();
+            Data.Log log = entry.getValue();
+
+            Updates classUpdates = updates.computeIfAbsent(dataClass, k -> new Updates(dataClass));
+            classUpdates.count++;
+            if (log.state != null) {
+                classUpdates.states.merge(log.state.name(), 1, Integer::sum);
+            }
+
+            List<String> fieldNames = Data.fields((Class) dataClass);
+            BitSet updatedFields = log.updatedFields;
+            for (int i = updatedFields.nextSetBit(0); i >= 0; i = updatedFields.nextSetBit(i + 1)) {
+                String field = fieldNames != null && i > 0 && i <= fieldNames.size() ? fieldNames.get(i - 1) : String.valueOf(i);
+                classUpdates.fields.merge(field, 1, Integer::sum);
+            }
+        }
+
+        return new ArrayList<>(updates.values());
+    }
+
+    /**
+     * 慢事务报告
+     */
+    public static class Report {
+
+        private final String origin;
+
+        private final String thread;
+
+        private final long time;
+
+        private final long duration;
+
+        private final boolean failed;
+
+        private final int dataLogs;
+
+        private final int nodeLogs;
+
+        private final int fieldLogs;
+
+        private final long suppressed;
+
+        private final List<Updates> updates;
+
+        Report(String origin, String thread, long time, long duration, boolean failed, int dataLogs, int nodeLogs, int fieldLogs, long suppressed, List<Updates> updates) {
+            this.origin = origin;
+            this.thread = thread;
+            this.time = time;
+            this.duration = duration;
+            this.failed = failed;
+            this.dataLogs = dataLogs;
+            this.nodeLogs = nodeLogs;
+            this.fieldLogs = fieldLogs;
+            this.suppressed = suppressed;
+            this.updates = Collections.unmodifiableList(updates);
+        }
+
+        /**
+         * 开启事务的{@link Transactional}方法，格式为[类名.方法名]，通过{@link Transaction#run}开启时为空
+         */
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * 报告时间(毫秒时间戳)
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * 事务执行时间(纳秒)
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public int getDataLogs() {
+            return dataLogs;
+        }
+
+        public int getNodeLogs() {
+            return nodeLogs;
+        }
+
+        public int getFieldLogs() {
+            return fieldLogs;
+        }
+
+        /**
+         * 上次报告之后被限流的报告数量
+         */
+        public long getSuppressed() {
+            return suppressed;
+        }
+
+        /**
+         * 按数据类统计的修改
+         */
+        public List<Updates> getUpdates() {
+            return updates;
+        }
+
+        @Override
+        public String toString() {
+            return "慢事务{" +
+                    "origin=" + origin +
+                    ",thread=" + thread +
+                    ",duration=" + duration / 1000000D + "ms" +
+                    ",failed=" + failed +
+                    ",dataLogs=" + dataLogs +
+                    ",nodeLogs=" + nodeLogs +
+                    ",fieldLogs=" + fieldLogs +
+                    ",suppressed=" + suppressed +
+                    ",updates=" + updates +
+                    '}';
+        }
+
+    }
+
+    /**
+     * 一个数据类在事务中的修改
+     */
+    public static class Updates {
+
+        private final Class<?> dataClass;
+
+        private int count;
+
+        private final Map<String, Integer> states = new LinkedHashMap<>();
+
+        private final Map<String, Integer> fields = new LinkedHashMap<>();
+
+        Updates(Class<?> dataClass) {
+            this.dataClass = dataClass;
+        }
+
+        public Class<?> getDataClass() {
+            return dataClass;
+        }
+
+        /**
+         * 有日志的数据数量
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * 状态:数据数量
+         */
+        public Map<String, Integer> getStates() {
+            return Collections.unmodifiableMap(states);
+        }
+
+        /**
+         * 字段名:修改了这个字段的数据数量
+         */
+        public Map<String, Integer> getFields() {
+            return Collections.unmodifiableMap(fields);
+        }
+
+        @Override
+        public String toString() {
+            return dataClass.getSimpleName() + "{" +
+                    "count=" + count +
+                    ",states=" + states +
+                    ",fields=" + fields +
+                    '}';
+        }
+
+    }
+
+}
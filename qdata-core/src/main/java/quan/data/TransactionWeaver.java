@@ -0,0 +1,344 @@
+package quan.data;
+
+import aj.org.objectweb.asm.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 构建时织入声明式事务，把{@link Transactional}方法改写成直接调用事务的开始和结束，运行时不再需要AOP<br/>
+ * 原方法被重命名为私有方法[方法名$transactional]，原方法名下生成的新方法负责开启事务并调用它<br/>
+ * 用法：在编译之后执行main方法，参数是一个或多个class文件所在的目录，
+ * 指定了[--output=输出目录]时织入后的类和其他文件都写到输出目录，不修改原目录，否则直接改写原目录下的class文件
+ */
+public class TransactionWeaver {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionWeaver.class);
+
+    private static final String TRANSACTIONAL = Type.getDescriptor(Transactional.class);
+
+    private static final String WOVEN = Type.getDescriptor(Transactional.Woven.class);
+
+    private static final String TRANSACTION = Type.getInternalName(Transaction.class);
+
+    private static final String SUFFIX = "$transactional";
+
+    /**
+     * 指定输出目录的参数前缀
+     */
+    private static final String OUTPUT = "--output=";
+
+    /**
+     * 织入一个类
+     *
+     * @param classBytes 类的字节码
+     * @return 织入后的字节码，不需要织入时返回空
+     */
+    public static byte[] weave(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+
+        Scanner scanner = new Scanner();
+        reader.accept(scanner, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        if (scanner.woven || scanner.methods.isEmpty()) {
+            return null;
+        }
+
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new Weaver(writer, scanner.methods), 0);
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * 织入目录下的所有类，直接改写原来的class文件
+     *
+     * @return 织入的类数量
+     */
+    public static int weave(Path classesDir) throws IOException {
+        return weave(classesDir, classesDir);
+    }
+
+    /**
+     * 织入目录下的所有类，织入后的类和其他文件按相同的相对路径写到输出目录
+     *
+     * @param outputDir 输出目录，和原目录相同时直接改写原来的class文件
+     * @return 织入的类数量
+     */
+    public static int weave(Path classesDir, Path outputDir) throws IOException {
+        if (!Files.isDirectory(classesDir)) {
+            return 0;
+        }
+
+        boolean inPlace = Files.isDirectory(outputDir) && Files.isSameFile(classesDir, outputDir);
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(classesDir)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        int count = 0;
+        for (Path file : files) {
+            Path outputFile = outputDir.resolve(classesDir.relativize(file).toString());
+            byte[] classBytes = file.toString().endsWith(".class") ? weave(Files.readAllBytes(file)) : null;
+            if (classBytes != null) {
+                Files.createDirectories(outputFile.getParent());
+                Files.write(outputFile, classBytes);
+                count++;
+            } else if (!inPlace) {
+                Files.createDirectories(outputFile.getParent());
+                Files.copy(file, outputFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = null;
+        List<Path> classesDirs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(OUTPUT)) {
+                outputDir = Paths.get(arg.substring(OUTPUT.length()));
+            } else {
+                classesDirs.add(Paths.get(arg));
+            }
+        }
+
+        for (Path classesDir : classesDirs) {
+            int count = weave(classesDir, outputDir == null ? classesDir : outputDir);
+            logger.info("织入声明式事务[{}]:{}个类", classesDir, count);
+        }
+    }
+
+    /**
+     * 扫描需要织入的方法
+     */
+    private static class Scanner extends ClassVisitor {
+
+        boolean woven;
+
+        boolean isInterface;
+
+        /**
+         * 方法名+描述符:是否内嵌事务
+         */
+        final Map<String, Boolean> methods = new HashMap<>();
+
+        Scanner() {
+            super(Opcodes.ASM7);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (descriptor.equals(WOVEN)) {
+                woven = true;
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            int skipAccess = Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC;
+            if (isInterface || (access & skipAccess) != 0 || name.startsWith("<")) {
+                return null;
+            }
+
+            return new MethodVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    if (!annotationDescriptor.equals(TRANSACTIONAL)) {
+                        return null;
+                    }
+                    methods.put(name + descriptor, false);
+                    return new AnnotationVisitor(Opcodes.ASM7) {
+                        @Override
+                        public void visit(String attrName, Object value) {
+                            if (attrName.equals("nested")) {
+                                methods.put(name + descriptor, (Boolean) value);
+                            }
+                        }
+                    };
+                }
+            };
+        }
+
+    }
+
+    /**
+     * 重命名原方法并生成开启事务的新方法
+     */
+    private static class Weaver extends ClassVisitor {
+
+        private final Map<String, Boolean> methods;
+
+        private String className;
+
+        private boolean frames;
+
+        Weaver(ClassVisitor classVisitor, Map<String, Boolean> methods) {
+            super(Opcodes.ASM7, classVisitor);
+            this.methods = methods;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            super.visit(version, access, name, signature, superName, interfaces);
+            className = name;
+            frames = (version & 0xFFFF) >= Opcodes.V1_6;
+            super.visitAnnotation(WOVEN, true).visitEnd();
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            Boolean nested = methods.get(name + descriptor);
+            if (nested == null) {
+                return super.visitMethod(access, name, descriptor, signature, exceptions);
+            }
+
+            int implAccess = access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_VARARGS) | Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC;
+            MethodVisitor impl = super.visitMethod(implAccess, name + SUFFIX, descriptor, signature, exceptions);
+            MethodVisitor wrapper = super.visitMethod(access & ~Opcodes.ACC_SYNCHRONIZED, name, descriptor, signature, exceptions);
+
+            //方法体留在原方法里，注解转移到新方法上
+            return new MethodVisitor(Opcodes.ASM7, impl) {
+
+                @Override
+                public void visitParameter(String parameterName, int parameterAccess) {
+                    wrapper.visitParameter(parameterName, parameterAccess);
+                    super.visitParameter(parameterName, parameterAccess);
+                }
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                    return wrapper.visitAnnotation(annotationDescriptor, visible);
+                }
+
+                @Override
+                public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+                    wrapper.visitAnnotableParameterCount(parameterCount, visible);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String annotationDescriptor, boolean visible) {
+                    return wrapper.visitParameterAnnotation(parameter, annotationDescriptor, visible);
+                }
+
+                @Override
+                public void visitEnd() {
+                    super.visitEnd();
+                    generateWrapper(wrapper, access, name, descriptor, nested);
+                }
+
+            };
+        }
+
+        private void generateWrapper(MethodVisitor mv, int access, String name, String descriptor, boolean nested) {
+            boolean isStatic = (access & Opcodes.ACC_STATIC) != 0;
+            Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+            Type returnType = Type.getReturnType(descriptor);
+
+            List<Object> frameLocals = new ArrayList<>();
+            int transactionIndex = 0;
+            if (!isStatic) {
+                frameLocals.add(className);
+                transactionIndex++;
+            }
+            for (Type argumentType : argumentTypes) {
+                frameLocals.add(frameType(argumentType));
+                transactionIndex += argumentType.getSize();
+            }
+            frameLocals.add(TRANSACTION);
+
+            Label start = new Label();
+            Label end = new Label();
+            Label handler = new Label();
+
+            mv.visitCode();
+            mv.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+
+            //Transaction transaction = Transaction._begin(nested, "类名.方法名")
+            mv.visitInsn(nested ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            mv.visitLdcInsn(Type.getObjectType(className).getClassName() + "." + name);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, TRANSACTION, "_begin", "(ZLjava/lang/String;)L" + TRANSACTION + ";", false);
+            mv.visitVarInsn(Opcodes.ASTORE, transactionIndex);
+
+            //调用原方法
+            mv.visitLabel(start);
+            int index = 0;
+            if (!isStatic) {
+                mv.visitVarInsn(Opcodes.ALOAD, index++);
+            }
+            for (Type argumentType : argumentTypes) {
+                mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), index);
+                index += argumentType.getSize();
+            }
+            mv.visitMethodInsn(isStatic ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL, className, name + SUFFIX, descriptor, false);
+            mv.visitLabel(end);
+
+            //正常返回：Transaction._end(transaction)
+            int resultIndex = transactionIndex + 1;
+            if (returnType.getSort() != Type.VOID) {
+                mv.visitVarInsn(returnType.getOpcode(Opcodes.ISTORE), resultIndex);
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, transactionIndex);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, TRANSACTION, "_end", "(L" + TRANSACTION + ";)V", false);
+            if (returnType.getSort() != Type.VOID) {
+                mv.visitVarInsn(returnType.getOpcode(Opcodes.ILOAD), resultIndex);
+            }
+            mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+            //异常返回：Transaction._fail(transaction)，Transaction._end(transaction)，再抛出异常
+            mv.visitLabel(handler);
+            if (frames) {
+                mv.visitFrame(Opcodes.F_FULL, frameLocals.size(), frameLocals.toArray(), 1, new Object[]{"java/lang/Throwable"});
+            }
+            mv.visitVarInsn(Opcodes.ASTORE, resultIndex);
+            mv.visitVarInsn(Opcodes.ALOAD, transactionIndex);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, TRANSACTION, "_fail", "(L" + TRANSACTION + ";)V", false);
+            mv.visitVarInsn(Opcodes.ALOAD, transactionIndex);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, TRANSACTION, "_end", "(L" + TRANSACTION + ";)V", false);
+            mv.visitVarInsn(Opcodes.ALOAD, resultIndex);
+            mv.visitInsn(Opcodes.ATHROW);
+
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private static Object frameType(Type type) {
+            switch (type.getSort()) {
+                case Type.BOOLEAN:
+                case Type.CHAR:
+                case Type.BYTE:
+                case Type.SHORT:
+                case Type.INT:
+                    return Opcodes.INTEGER;
+                case Type.FLOAT:
+                    return Opcodes.FLOAT;
+                case Type.LONG:
+                    return Opcodes.LONG;
+                case Type.DOUBLE:
+                    return Opcodes.DOUBLE;
+                default:
+                    return type.getInternalName();
+            }
+        }
+
+    }
+
+}
@@ -5,7 +5,8 @@ import quan.data.util.ClassUtils;
 import java.lang.annotation.*;
 
 /**
- * 声明式事务注解，需要先调用{@link ClassUtils#initAop()} ()}初始化AOP
+ * 声明式事务注解，需要先调用{@link ClassUtils#initAop()}初始化AOP，
+ * 或者在构建时使用{@link TransactionWeaver}织入字节码，这样运行时就不再需要AOP
  */
 @Documented
 @Inherited
@@ -19,4 +20,13 @@ public @interface Transactional {
      */
     boolean nested() default false;
 
+    /**
+     * 构建时已经被{@link TransactionWeaver}织入过的类，运行时AOP会跳过这些类
+     */
+    @Documented
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Woven {
+    }
+
 }
@@ -0,0 +1,368 @@
+package quan.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import quan.data.binary.BinaryCodec;
+import quan.data.binary.BinaryCodecs;
+import quan.data.binary.BinaryReader;
+import quan.data.binary.BinaryWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存数据的预热快照，进程退出前把{@link DataCache}中的数据连同状态和修改过的字段保存到文件，
+ * 重启后通过内存映射读取文件，加载时只建立主键到记录位置的映射，第一次访问时才解码<br/>
+ * 有内存索引的数据类加载时会全部解码，保证索引查询的结果是完整的<br/>
+ * 文件头：魔数、格式版本、快照代数、表数量，之后每张表是8字节长度+类名、结构指纹、记录，
+ * 每条记录是状态、修改过的字段、主键、4字节长度+二进制内容<br/>
+ * 结构指纹和当前类不一致的表会被忽略，快照和数据库是否一致需要调用方通过快照代数校验
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class WarmSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmSnapshot.class);
+
+    private static final int MAGIC = 0x51445753;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 缓冲区大小，超过之后写入文件
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 主键类型
+     */
+    private static final byte ID_LONG = 1, ID_INT = 2, ID_SHORT = 3, ID_STRING = 4, ID_BOOL = 5, ID_FLOAT = 6, ID_DOUBLE = 7;
+
+    /**
+     * 保存缓存中的所有数据，先写到临时文件，成功之后再替换原文件，没有生成二进制编解码器的数据类会被忽略
+     *
+     * @param generation 快照代数，加载时用来校验快照是否和数据库一致
+     * @return 保存的记录数
+     */
+    public static int save(Path file, long generation) throws IOException {
+        Objects.requireNonNull(file);
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryWriter writer = new BinaryWriter(BUFFER_SIZE * 2);
+            writer.getBuffer().putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(0);
+            int tableCount = 0;
+
+            for (DataCache.Table<?> table : DataCache.getTables()) {
+                BinaryCodec codec;
+                try {
+                    codec = BinaryCodecs.get(table.getDataClass());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("数据类[{}]没有生成二进制编解码器，不能保存预热快照", table.getDataClass().getName());
+                    continue;
+                }
+
+                table.materializeAll();
+                long sectionPosition = channel.position() + writer.size();
+                writer.getBuffer().putLong(0);
+                writer.writeString(table.getDataClass().getName());
+                writer.getBuffer().putLong(codec.getFingerprint());
+                int tableRowCount = 0;
+
+                for (Data<?> data : table.getAll()) {
+                    writeRecord(writer, codec, data);
+                    tableRowCount++;
+                    if (writer.size() >= BUFFER_SIZE) {
+                        write(channel, writer);
+                    }
+                }
+
+                //回填表的长度
+                write(channel, writer);
+                channel.write(ByteBuffer.allocate(8).putLong(0, channel.position() - sectionPosition - 8), sectionPosition);
+
+                count += tableRowCount;
+                tableCount++;
+            }
+
+            write(channel, writer);
+            channel.write(ByteBuffer.allocate(4).putInt(0, tableCount), 16);
+            channel.force(false);
+        }
+
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static void writeRecord(BinaryWriter writer, BinaryCodec codec, Data<?> data) {
+        writer.writeVarInt(data.state == null || data.accessor == null ? 0 : data.state.ordinal() + 1);
+
+        BitSet updatedFields = data._updatedFields;
+        writer.writeVarInt(updatedFields.cardinality());
+        for (int i = updatedFields.nextSetBit(0); i >= 0; i = updatedFields.nextSetBit(i + 1)) {
+            writer.writeVarInt(i);
+        }
+
+        writeId(writer, data.id());
+
+        int mark = writer.beginLength();
+        codec.encode(writer, data);
+        writer.endLength(mark);
+    }
+
+    private static void writeId(BinaryWriter writer, Object id) {
+        if (id instanceof Long) {
+            writer.writeVarInt(ID_LONG);
+            writer.writeLong((Long) id);
+        } else if (id instanceof Integer) {
+            writer.writeVarInt(ID_INT);
+            writer.writeInt((Integer) id);
+        } else if (id instanceof Short) {
+            writer.writeVarInt(ID_SHORT);
+            writer.writeInt((Short) id);
+        } else if (id instanceof String) {
+            writer.writeVarInt(ID_STRING);
+            writer.writeString((String) id);
+        } else if (id instanceof Boolean) {
+            writer.writeVarInt(ID_BOOL);
+            writer.writeBool((Boolean) id);
+        } else if (id instanceof Float) {
+            writer.writeVarInt(ID_FLOAT);
+            writer.writeFloat((Float) id);
+        } else if (id instanceof Double) {
+            writer.writeVarInt(ID_DOUBLE);
+            writer.writeDouble((Double) id);
+        } else {
+            throw new IllegalArgumentException("不支持的主键类型:" + id.getClass().getName());
+        }
+    }
+
+    private static Object readId(BinaryReader reader) {
+        int type = reader.readVarInt();
+        switch (type) {
+            case ID_LONG:
+                return reader.readLong();
+            case ID_INT:
+                return reader.readInt();
+            case ID_SHORT:
+                return (short) reader.readInt();
+            case ID_STRING:
+                return reader.readString();
+            case ID_BOOL:
+                return reader.readBool();
+            case ID_FLOAT:
+                return reader.readFloat();
+            case ID_DOUBLE:
+                return reader.readDouble();
+            default:
+                throw new IllegalStateException("不支持的主键类型:" + type);
+        }
+    }
+
+    private static void write(FileChannel channel, BinaryWriter writer) throws IOException {
+        ByteBuffer buffer = writer.toBuffer();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        writer.reset();
+    }
+
+    /**
+     * 读取快照代数
+     */
+    public static long readGeneration(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(file, channel).getLong(8);
+        }
+    }
+
+    private static ByteBuffer readHeader(Path file, FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(20);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IllegalStateException("文件[" + file + "]不是预热快照文件");
+            }
+        }
+
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("文件[" + file + "]不是预热快照文件");
+        }
+
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IllegalStateException("预热快照文件[" + file + "]的格式版本[" + version + "]不支持");
+        }
+
+        return header;
+    }
+
+    /**
+     * 映射快照文件，把其中的记录挂到对应的缓存表上，第一次访问时才会解码放进缓存
+     *
+     * @param accessor 保存快照时绑定了访问器的数据会重新绑定到这个访问器上
+     * @return 加载的记录数
+     */
+    public static int load(Path file, DataAccessor accessor) throws IOException {
+        Objects.requireNonNull(file);
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int tableCount = readHeader(file, channel).getInt(16);
+            long position = 20;
+
+            for (int i = 0; i < tableCount; i++) {
+                ByteBuffer lengthBuffer = ByteBuffer.allocate(8);
+                channel.read(lengthBuffer, position);
+                long length = lengthBuffer.getLong(0);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position + 8, length);
+                position += 8 + length;
+
+                Section section = Section.load(file, buffer, accessor);
+                if (section != null) {
+                    count += section.records.size();
+                    section.install();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * 快照里一张表的记录，主键:记录在映射缓冲区中的位置
+     */
+    static class Section<D extends Data<?>> {
+
+        private final DataCache.Table<D> table;
+
+        private final BinaryCodec<D> codec;
+
+        private final ByteBuffer buffer;
+
+        private final DataAccessor accessor;
+
+        private final Map<Object, Integer> records = new ConcurrentHashMap<>();
+
+        private Section(DataCache.Table<D> table, BinaryCodec<D> codec, ByteBuffer buffer, DataAccessor accessor) {
+            this.table = table;
+            this.codec = codec;
+            this.buffer = buffer;
+            this.accessor = accessor;
+        }
+
+        private static Section<?> load(Path file, ByteBuffer buffer, DataAccessor accessor) {
+            BinaryReader reader = new BinaryReader(buffer);
+            String className = reader.readString();
+            long fingerprint = buffer.getLong();
+
+            Class<? extends Data<?>> clazz;
+            BinaryCodec codec;
+            try {
+                clazz = (Class<? extends Data<?>>) Class.forName(className);
+                codec = BinaryCodecs.get(clazz);
+            } catch (Exception e) {
+                logger.warn("预热快照文件[{}]中的数据类[{}]不存在或者没有生成二进制编解码器", file, className);
+                return null;
+            }
+
+            if (fingerprint != codec.getFingerprint()) {
+                logger.warn("预热快照文件[{}]中的数据类[{}]的结构指纹[{}]和当前结构指纹[{}]不一致", file, className, Long.toHexString(fingerprint), Long.toHexString(codec.getFingerprint()));
+                return null;
+            }
+
+            Section section = new Section(DataCache.register((Class) clazz), codec, buffer, accessor);
+            while (buffer.hasRemaining()) {
+                int recordPosition = buffer.position();
+                reader.readVarInt();
+                int updatedCount = reader.readVarInt();
+                for (int j = 0; j < updatedCount; j++) {
+                    reader.readVarInt();
+                }
+                Object id = readId(reader);
+                buffer.position(buffer.position() + 4 + buffer.getInt());
+                section.records.put(id, recordPosition);
+            }
+
+            return section;
+        }
+
+        private void install() {
+            if (records.isEmpty()) {
+                return;
+            }
+            if (table.getIndexes().isEmpty()) {
+                table.setSection(this);
+            } else {
+                records.keySet().forEach(this::materialize);
+            }
+        }
+
+        /**
+         * 解码指定主键的记录并放进缓存，缓存里已经有这个主键的数据时直接返回缓存里的数据
+         */
+        synchronized D materialize(Object id) {
+            D data = table.getRow(id);
+            Integer position = records.remove(id);
+            if (data == null && position != null) {
+                data = decode(position);
+                table.put(data);
+            }
+
+            if (records.isEmpty()) {
+                table.removeSection(this);
+            }
+
+            return data;
+        }
+
+        private D decode(int position) {
+            ByteBuffer buffer = this.buffer.duplicate().position(position);
+            BinaryReader reader = new BinaryReader(buffer);
+            int state = reader.readVarInt();
+
+            BitSet updatedFields = new BitSet();
+            int updatedCount = reader.readVarInt();
+            for (int i = 0; i < updatedCount; i++) {
+                updatedFields.set(reader.readVarInt());
+            }
+
+            readId(reader);
+            int length = buffer.getInt();
+            buffer.limit(buffer.position() + length);
+            D data = codec.decode(reader);
+
+            if (state > 0) {
+                data.accessor = accessor;
+                data.state = Data.State.values()[state - 1];
+            }
+            data._updatedFields.or(updatedFields);
+
+            return data;
+        }
+
+        /**
+         * 主键被其他数据占用了，丢弃快照中的记录
+         */
+        void discard(Object id) {
+            if (records.remove(id) != null && records.isEmpty()) {
+                table.removeSection(this);
+            }
+        }
+
+        void materializeAll() {
+            records.keySet().forEach(this::materialize);
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package quan.data.binary;
+
+import quan.data.Entity;
+
+/**
+ * 实体类的二进制编解码器，由代码生成器生成实现类<br/>
+ * 字段使用标签(字段位置&lt;&lt;3|类型)代替字段名，整数使用ZigZag变长编码，值为默认值的字段不写入
+ */
+public interface BinaryCodec<T extends Entity> {
+
+    /**
+     * 变长整数，bool、short、int、long和枚举
+     */
+    int VARINT = 0;
+
+    /**
+     * 固定8字节，double
+     */
+    int FIXED64 = 1;
+
+    /**
+     * 变长长度+字节，string
+     */
+    int BYTES = 2;
+
+    /**
+     * 固定4字节长度+内容，Bean和集合
+     */
+    int NESTED = 3;
+
+    /**
+     * 固定4字节，float
+     */
+    int FIXED32 = 5;
+
+    /**
+     * 结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    long getFingerprint();
+
+    Class<T> getEncoderClass();
+
+    /**
+     * 编码所有字段，最后写入结束标签
+     */
+    void encode(BinaryWriter writer, T value);
+
+    /**
+     * 解码字段直到读到结束标签
+     */
+    T decode(BinaryReader reader);
+
+}
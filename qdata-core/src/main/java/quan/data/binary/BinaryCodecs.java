@@ -0,0 +1,60 @@
+package quan.data.binary;
+
+import quan.data.DataRegistry;
+import quan.data.Entity;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成的二进制编解码器，可以通过{@link #register(DataRegistry)}预先注册，
+ * 没有注册的实体类第一次使用时才通过反射获取
+ */
+@SuppressWarnings("unchecked")
+public class BinaryCodecs {
+
+    private static final Map<Class<?>, BinaryCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    public static void register(DataRegistry registry) {
+        codecs.putAll(registry.getBinaryCodecs());
+    }
+
+    public static <T extends Entity> BinaryCodec<T> get(Class<T> clazz) {
+        BinaryCodec<T> codec = (BinaryCodec<T>) codecs.get(clazz);
+        if (codec != null) {
+            return codec;
+        }
+        return (BinaryCodec<T>) codecs.computeIfAbsent(clazz, BinaryCodecs::newCodec);
+    }
+
+    private static BinaryCodec<?> newCodec(Class<?> clazz) {
+        try {
+            Class<?> codecClass = Class.forName(clazz.getName() + "$BinaryCodecImpl");
+            return (BinaryCodec<?>) codecClass.getField("INSTANCE").get(null);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("实体类[" + clazz.getName() + "]没有生成二进制编解码器", e);
+        }
+    }
+
+    /**
+     * 编码到写入器的当前位置
+     */
+    @SuppressWarnings("rawtypes")
+    public static void encode(BinaryWriter writer, Entity entity) {
+        Objects.requireNonNull(entity);
+        BinaryCodec codec = get(entity.getClass());
+        codec.encode(writer, entity);
+    }
+
+    /**
+     * 从缓冲区的当前位置解码
+     */
+    public static <T extends Entity> T decode(Class<T> clazz, ByteBuffer buffer) {
+        Objects.requireNonNull(clazz);
+        Objects.requireNonNull(buffer);
+        return get(clazz).decode(new BinaryReader(buffer));
+    }
+
+}
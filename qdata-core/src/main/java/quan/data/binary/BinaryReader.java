@@ -0,0 +1,131 @@
+package quan.data.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static quan.data.binary.BinaryCodec.*;
+
+/**
+ * 二进制格式读取器，从缓冲区的当前位置开始读取
+ */
+public class BinaryReader {
+
+    private final ByteBuffer buffer;
+
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public BinaryReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 读取标签，字段位置是tag&gt;&gt;&gt;3，类型是tag&amp;7
+     *
+     * @return 读到结束标签时返回0
+     */
+    public int readTag() {
+        return readVarInt();
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("变长整数格式错误");
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("变长整数格式错误");
+    }
+
+    public boolean readBool() {
+        return buffer.get() != 0;
+    }
+
+    public int readInt() {
+        int value = readVarInt();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    public long readLong() {
+        long value = readVarLong();
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    public float readFloat() {
+        return buffer.getFloat();
+    }
+
+    public double readDouble() {
+        return buffer.getDouble();
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * 开始读取Bean或者集合字段
+     *
+     * @return 内容的长度
+     */
+    public int beginNested() {
+        return buffer.getInt();
+    }
+
+    /**
+     * 跳过不认识的字段
+     */
+    public void skip(int tag) {
+        switch (tag & 7) {
+            case VARINT:
+                readVarLong();
+                break;
+            case FIXED64:
+                buffer.position(buffer.position() + 8);
+                break;
+            case BYTES:
+                int length = readVarInt();
+                buffer.position(buffer.position() + length);
+                break;
+            case NESTED:
+                buffer.position(buffer.position() + 4 + buffer.getInt(buffer.position()));
+                break;
+            case FIXED32:
+                buffer.position(buffer.position() + 4);
+                break;
+            default:
+                throw new IllegalStateException("不支持的字段类型:" + (tag & 7));
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+package quan.data.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static quan.data.binary.BinaryCodec.*;
+
+/**
+ * 二进制格式写入器，空间不够时自动扩容
+ */
+public class BinaryWriter {
+
+    private ByteBuffer buffer;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int capacity) {
+        this(ByteBuffer.allocate(capacity));
+    }
+
+    /**
+     * 从缓冲区的当前位置开始写入，扩容后缓冲区会被替换，需要通过{@link #getBuffer()}获取
+     */
+    public BinaryWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    public void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * 已写入的内容，和内部缓冲区共享数据
+     */
+    public ByteBuffer toBuffer() {
+        return buffer.duplicate().flip();
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.duplicate().flip().get(bytes);
+        return bytes;
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer newBuffer = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        newBuffer.order(buffer.order());
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    public void writeTag(int position, int wireType) {
+        writeVarInt(position << 3 | wireType);
+    }
+
+    /**
+     * 写入结束标签
+     */
+    public void writeEnd() {
+        writeVarInt(0);
+    }
+
+    /**
+     * 无符号变长整数
+     */
+    public void writeVarInt(int value) {
+        ensureRemaining(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * 无符号变长长整数
+     */
+    public void writeVarLong(long value) {
+        ensureRemaining(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeBool(boolean value) {
+        ensureRemaining(1);
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    public void writeInt(int value) {
+        writeVarInt(value << 1 ^ value >> 31);
+    }
+
+    public void writeLong(long value) {
+        writeVarLong(value << 1 ^ value >> 63);
+    }
+
+    public void writeFloat(float value) {
+        ensureRemaining(4);
+        buffer.putFloat(value);
+    }
+
+    public void writeDouble(double value) {
+        ensureRemaining(8);
+        buffer.putDouble(value);
+    }
+
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensureRemaining(bytes.length);
+        buffer.put(bytes);
+    }
+
+    public void writeBoolField(int position, boolean value) {
+        if (value) {
+            writeTag(position, VARINT);
+            writeBool(true);
+        }
+    }
+
+    public void writeIntField(int position, int value) {
+        if (value != 0) {
+            writeTag(position, VARINT);
+            writeInt(value);
+        }
+    }
+
+    public void writeLongField(int position, long value) {
+        if (value != 0) {
+            writeTag(position, VARINT);
+            writeLong(value);
+        }
+    }
+
+    public void writeFloatField(int position, float value) {
+        if (value != 0) {
+            writeTag(position, FIXED32);
+            writeFloat(value);
+        }
+    }
+
+    public void writeDoubleField(int position, double value) {
+        if (value != 0) {
+            writeTag(position, FIXED64);
+            writeDouble(value);
+        }
+    }
+
+    public void writeStringField(int position, String value) {
+        if (value != null && !value.isEmpty()) {
+            writeTag(position, BYTES);
+            writeString(value);
+        }
+    }
+
+    /**
+     * 开始写入Bean或者集合字段
+     *
+     * @return 传给{@link #endLength(int)}的标记
+     */
+    public int beginNested(int position) {
+        writeTag(position, NESTED);
+        return beginLength();
+    }
+
+    public void endNested(int mark) {
+        endLength(mark);
+    }
+
+    /**
+     * 预留4字节长度
+     *
+     * @return 传给{@link #endLength(int)}的标记
+     */
+    public int beginLength() {
+        ensureRemaining(4);
+        int mark = buffer.position();
+        buffer.position(mark + 4);
+        return mark;
+    }
+
+    /**
+     * 在预留的位置写入之后内容的长度
+     */
+    public void endLength(int mark) {
+        buffer.putInt(mark, buffer.position() - mark - 4);
+    }
+
+}
@@ -0,0 +1,167 @@
+package quan.data.binary;
+
+import quan.data.Data;
+import quan.data.Entity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 二进制格式的实体快照文件<br/>
+ * 文件头：魔数、格式版本、结构指纹、类名，之后每条记录是4字节长度+二进制内容<br/>
+ * 读取时结构指纹和当前类不一致会抛出异常，防止把旧版本类的快照读错
+ */
+public class Snapshot {
+
+    private static final int MAGIC = 0x51444253;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 缓冲区大小，超过之后写入文件
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 保存快照，先写到临时文件，成功之后再替换原文件
+     */
+    public static <E extends Entity> int save(Path file, Class<E> clazz, Iterable<? extends E> entities) throws IOException {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(entities);
+        BinaryCodec<E> codec = BinaryCodecs.get(clazz);
+
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryWriter writer = new BinaryWriter(BUFFER_SIZE * 2);
+            writer.getBuffer().putInt(MAGIC).putInt(VERSION).putLong(codec.getFingerprint());
+            writer.writeString(clazz.getName());
+
+            for (E entity : entities) {
+                if (entity instanceof Data && ((Data<?>) entity).isPartial()) {
+                    throw new IllegalArgumentException("数据[" + clazz.getName() + "(" + ((Data<?>) entity).id() + ")]只加载了部分字段，不能保存快照");
+                }
+
+                int mark = writer.beginLength();
+                codec.encode(writer, entity);
+                writer.endLength(mark);
+                count++;
+
+                if (writer.size() >= BUFFER_SIZE) {
+                    write(channel, writer);
+                }
+            }
+
+            write(channel, writer);
+            channel.force(false);
+        }
+
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static void write(FileChannel channel, BinaryWriter writer) throws IOException {
+        ByteBuffer buffer = writer.toBuffer();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        writer.reset();
+    }
+
+    public static <E extends Entity> List<E> load(Path file, Class<E> clazz) throws IOException {
+        List<E> entities = new ArrayList<>();
+        load(file, clazz, entities::add);
+        return entities;
+    }
+
+    /**
+     * 逐条读取快照
+     *
+     * @return 读取的记录数
+     */
+    public static <E extends Entity> int load(Path file, Class<E> clazz, Consumer<? super E> consumer) throws IOException {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(consumer);
+        BinaryCodec<E> codec = BinaryCodecs.get(clazz);
+        int count = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+
+            buffer = fill(channel, buffer, 16);
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("文件[" + file + "]不是快照文件");
+            }
+
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("快照文件[" + file + "]的格式版本[" + version + "]不支持");
+            }
+
+            long fingerprint = buffer.getLong();
+            BinaryReader reader = new BinaryReader(buffer);
+            String className = reader.readString();
+            if (fingerprint != codec.getFingerprint()) {
+                throw new IllegalStateException(String.format("快照文件[%s]的结构指纹[%x]和当前类[%s]的结构指纹[%x]不一致，快照类[%s]", file, fingerprint, clazz.getName(), codec.getFingerprint(), className));
+            }
+
+            while (true) {
+                buffer = fill(channel, buffer, 4);
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+
+                int length = buffer.getInt();
+                buffer = fill(channel, buffer, length);
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + length);
+                consumer.accept(codec.decode(new BinaryReader(buffer)));
+                buffer.position(buffer.limit()).limit(limit);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * 保证缓冲区里至少有指定长度的数据，不够时从文件读取，缓冲区不够大时扩容
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return buffer;
+        }
+
+        if (buffer.capacity() < length) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        } else {
+            buffer.compact();
+        }
+
+        while (buffer.position() < length) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() > 0) {
+                    throw new IllegalStateException("快照文件不完整");
+                }
+                break;
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+}
@@ -0,0 +1,249 @@
+package quan.data.field;
+
+import quan.data.Data;
+import quan.data.Protection;
+import quan.data.Transaction;
+import quan.data.Validations;
+
+import java.util.BitSet;
+
+/**
+ * 紧凑模式下的基本类型字段，一个数据或者Bean的所有基本类型字段存放在同一个对象里，
+ * 数字、布尔和枚举存放在long数组里，字符串存放在Object数组里，下标是字段在数组里的槽位<br/>
+ * 事务中按槽位记录修改过的值，提交时只写回修改过的槽位，不同事务修改同一个对象里的不同字段不会互相覆盖
+ */
+@SuppressWarnings("unchecked")
+public final class SlotsField extends Protection implements Field {
+
+    private static final Object[] EMPTY_OBJECTS = new Object[0];
+
+    private final long[] longs;
+
+    private final Object[] objects;
+
+    /**
+     * @param longs   long槽位的数量，初始值都是0
+     * @param objects Object槽位的初始值，数组会直接使用，不会复制
+     */
+    public SlotsField(int longs, Object... objects) {
+        this.longs = new long[longs];
+        this.objects = objects.length == 0 ? EMPTY_OBJECTS : objects;
+    }
+
+    @Override
+    public void commit(Object log) {
+        Log _log = (Log) log;
+        for (int slot = _log.longSlots.nextSetBit(0); slot >= 0; slot = _log.longSlots.nextSetBit(slot + 1)) {
+            longs[slot] = _log.longs[slot];
+        }
+        for (int slot = _log.objectSlots.nextSetBit(0); slot >= 0; slot = _log.objectSlots.nextSetBit(slot + 1)) {
+            objects[slot] = _log.objects[slot];
+        }
+    }
+
+    private long longValue(Transaction transaction, int slot) {
+        if (transaction != null) {
+            Log log = (Log) _getFieldLog(transaction, this);
+            if (log != null && log.longSlots.get(slot)) {
+                return log.longs[slot];
+            }
+        }
+        return longs[slot];
+    }
+
+    private Object objectValue(Transaction transaction, int slot) {
+        if (transaction != null) {
+            Log log = (Log) _getFieldLog(transaction, this);
+            if (log != null && log.objectSlots.get(slot)) {
+                return log.objects[slot];
+            }
+        }
+        return objects[slot];
+    }
+
+    /**
+     * 当前这一层事务的字段日志，没有就从外层事务的日志复制一份或者新建一个空日志
+     */
+    private Log log(Transaction transaction) {
+        Log log = (Log) _getLocalFieldLog(transaction, this);
+        if (log == null) {
+            Log outerLog = (Log) _getFieldLog(transaction, this);
+            log = outerLog != null ? new Log(outerLog) : new Log(longs.length, objects.length);
+        }
+        return log;
+    }
+
+    private void setLongValue(int slot, long value, Data<?> owner, int position) {
+        Transaction transaction = Transaction.get();
+        if (transaction != null) {
+            Log log = log(transaction);
+            log.longs[slot] = value;
+            log.longSlots.set(slot);
+            _setFieldLog(transaction, this, log, owner, position);
+        } else if (Transaction.isOptional()) {
+            longs[slot] = value;
+            _setDataUpdatedField(owner, position);
+        } else {
+            Validations.transactionError();
+        }
+    }
+
+    public long getLong(int slot) {
+        return getLong(Transaction.get(), slot);
+    }
+
+    public long getLong(Transaction transaction, int slot) {
+        return longValue(transaction, slot);
+    }
+
+    public void setLong(int slot, long value) {
+        longs[slot] = value;
+    }
+
+    public void setLong(int slot, long value, Data<?> owner, int position) {
+        setLongValue(slot, value, owner, position);
+    }
+
+    public int getInt(int slot) {
+        return (int) getLong(Transaction.get(), slot);
+    }
+
+    public int getInt(Transaction transaction, int slot) {
+        return (int) getLong(transaction, slot);
+    }
+
+    public void setInt(int slot, int value) {
+        longs[slot] = value;
+    }
+
+    public void setInt(int slot, int value, Data<?> owner, int position) {
+        setLongValue(slot, value, owner, position);
+    }
+
+    public short getShort(int slot) {
+        return (short) getLong(Transaction.get(), slot);
+    }
+
+    public short getShort(Transaction transaction, int slot) {
+        return (short) getLong(transaction, slot);
+    }
+
+    public void setShort(int slot, short value) {
+        longs[slot] = value;
+    }
+
+    public void setShort(int slot, short value, Data<?> owner, int position) {
+        setLongValue(slot, value, owner, position);
+    }
+
+    public boolean getBoolean(int slot) {
+        return getLong(Transaction.get(), slot) != 0;
+    }
+
+    public boolean getBoolean(Transaction transaction, int slot) {
+        return getLong(transaction, slot) != 0;
+    }
+
+    public void setBoolean(int slot, boolean value) {
+        longs[slot] = value ? 1 : 0;
+    }
+
+    public void setBoolean(int slot, boolean value, Data<?> owner, int position) {
+        setLongValue(slot, value ? 1 : 0, owner, position);
+    }
+
+    public float getFloat(int slot) {
+        return Float.intBitsToFloat((int) getLong(Transaction.get(), slot));
+    }
+
+    public float getFloat(Transaction transaction, int slot) {
+        return Float.intBitsToFloat((int) getLong(transaction, slot));
+    }
+
+    public void setFloat(int slot, float value) {
+        longs[slot] = Float.floatToRawIntBits(value);
+    }
+
+    public void setFloat(int slot, float value, Data<?> owner, int position) {
+        setLongValue(slot, Float.floatToRawIntBits(value), owner, position);
+    }
+
+    public double getDouble(int slot) {
+        return Double.longBitsToDouble(getLong(Transaction.get(), slot));
+    }
+
+    public double getDouble(Transaction transaction, int slot) {
+        return Double.longBitsToDouble(getLong(transaction, slot));
+    }
+
+    public void setDouble(int slot, double value) {
+        longs[slot] = Double.doubleToRawLongBits(value);
+    }
+
+    public void setDouble(int slot, double value, Data<?> owner, int position) {
+        setLongValue(slot, Double.doubleToRawLongBits(value), owner, position);
+    }
+
+    public <V> V getObject(int slot) {
+        return getObject(Transaction.get(), slot);
+    }
+
+    public <V> V getObject(Transaction transaction, int slot) {
+        return (V) objectValue(transaction, slot);
+    }
+
+    public void setObject(int slot, Object value) {
+        objects[slot] = value;
+    }
+
+    public void setObject(int slot, Object value, Data<?> owner, int position) {
+        Transaction transaction = Transaction.get();
+        if (transaction != null) {
+            Log log = log(transaction);
+            log.objects[slot] = value;
+            log.objectSlots.set(slot);
+            _setFieldLog(transaction, this, log, owner, position);
+        } else if (Transaction.isOptional()) {
+            objects[slot] = value;
+            _setDataUpdatedField(owner, position);
+        } else {
+            Validations.transactionError();
+        }
+    }
+
+    /**
+     * 字段日志，只有修改过的槽位上的值有效
+     */
+    private static class Log {
+
+        private final long[] longs;
+
+        /**
+         * 修改过的long槽位
+         */
+        private final BitSet longSlots;
+
+        private final Object[] objects;
+
+        /**
+         * 修改过的Object槽位
+         */
+        private final BitSet objectSlots;
+
+        Log(int longs, int objects) {
+            this.longs = new long[longs];
+            this.longSlots = new BitSet(longs);
+            this.objects = objects == 0 ? EMPTY_OBJECTS : new Object[objects];
+            this.objectSlots = new BitSet(objects);
+        }
+
+        Log(Log log) {
+            this.longs = log.longs.clone();
+            this.longSlots = (BitSet) log.longSlots.clone();
+            this.objects = log.objects.length == 0 ? EMPTY_OBJECTS : log.objects.clone();
+            this.objectSlots = (BitSet) log.objectSlots.clone();
+        }
+
+    }
+
+}
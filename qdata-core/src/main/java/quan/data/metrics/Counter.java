@@ -0,0 +1,27 @@
+package quan.data.metrics;
+
+/**
+ * 计数器
+ */
+public interface Counter {
+
+    Counter NOOP = new Counter() {
+        @Override
+        public void increment(long amount) {
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+    };
+
+    default void increment() {
+        increment(1);
+    }
+
+    void increment(long amount);
+
+    long count();
+
+}
@@ -0,0 +1,49 @@
+package quan.data.metrics;
+
+/**
+ * 直方图，记录数值的分布
+ */
+public interface Histogram {
+
+    Histogram NOOP = new Histogram() {
+        @Override
+        public void record(long value) {
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+
+        @Override
+        public long max() {
+            return 0;
+        }
+
+        @Override
+        public double mean() {
+            return 0;
+        }
+
+        @Override
+        public long percentile(double percentile) {
+            return 0;
+        }
+    };
+
+    void record(long value);
+
+    long count();
+
+    long max();
+
+    double mean();
+
+    /**
+     * 获取百分位数
+     *
+     * @param percentile 0到100
+     */
+    long percentile(double percentile);
+
+}
@@ -0,0 +1,164 @@
+package quan.data.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 度量入口，默认使用{@link MetricsRegistry#NOOP}，未开启时埋点只有一次volatile字段读取和判断的开销<br/>
+ * 内置的度量名都以qdata.开头，时间单位都是纳秒
+ */
+public final class Metrics {
+
+    /**
+     * 事务执行时间，标签result=succeeded|failed
+     */
+    public static final String TRANSACTION_TIME = "qdata.transaction.time";
+
+    /**
+     * 事务提交时间，包含生成更新补丁和提交给存取器的时间
+     */
+    public static final String COMMIT_TIME = "qdata.transaction.commit.time";
+
+    /**
+     * 事务修改的数据数量
+     */
+    public static final String TRANSACTION_DATA = "qdata.transaction.data";
+
+    /**
+     * 事务修改的字段数量
+     */
+    public static final String TRANSACTION_FIELDS = "qdata.transaction.fields";
+
+    /**
+     * 开启的内嵌事务数量
+     */
+    public static final String NESTED_TRANSACTIONS = "qdata.transaction.nested";
+
+    /**
+     * 当前使用的度量，设置度量实现时整体替换，埋点只读一次这个字段
+     */
+    private static volatile Meters meters = new Meters(MetricsRegistry.NOOP);
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return meters.enabled;
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return meters.registry;
+    }
+
+    /**
+     * 设置度量的实现，需要在启动时设置，设置为{@link MetricsRegistry#NOOP}时关闭度量
+     */
+    public static synchronized void setRegistry(MetricsRegistry registry) {
+        Objects.requireNonNull(registry, "参数[registry]不能为空");
+        meters = new Meters(registry);
+    }
+
+    /**
+     * 获取带一个标签的计数器，同一个度量名的标签名要一样，查找时不会创建新对象
+     */
+    public static Counter counter(String name, String tag, String value) {
+        Meters meters = Metrics.meters;
+        return (Counter) meters.tagged(name, value, v -> meters.registry.counter(name, tag, v));
+    }
+
+    /**
+     * @see #counter(String, String, String)
+     */
+    public static Histogram histogram(String name, String tag, String value) {
+        Meters meters = Metrics.meters;
+        return (Histogram) meters.tagged(name, value, v -> meters.registry.histogram(name, tag, v));
+    }
+
+    /**
+     * @see #counter(String, String, String)
+     */
+    public static Timer timer(String name, String tag, String value) {
+        Meters meters = Metrics.meters;
+        return (Timer) meters.tagged(name, value, v -> meters.registry.timer(name, tag, v));
+    }
+
+    /**
+     * 记录事务执行结束，给{@link quan.data.Transaction}调用
+     *
+     * @param startTime 事务开始时间
+     */
+    public static void recordTransaction(long startTime, boolean failed, int dataCount, int fieldCount) {
+        Meters meters = Metrics.meters;
+        (failed ? meters.failedTime : meters.succeededTime).recordSince(startTime);
+        meters.transactionData.record(dataCount);
+        meters.transactionFields.record(fieldCount);
+    }
+
+    /**
+     * 记录事务提交完成，给{@link quan.data.Transaction}调用
+     */
+    public static void recordCommit(long startTime) {
+        meters.commitTime.recordSince(startTime);
+    }
+
+    /**
+     * 记录开启了内嵌事务，给{@link quan.data.Transaction}调用
+     */
+    public static void recordNested() {
+        meters.nestedTransactions.increment();
+    }
+
+    /**
+     * 同一个度量实现创建的内置度量和带标签的度量缓存，创建后不再修改
+     */
+    private static final class Meters {
+
+        final MetricsRegistry registry;
+
+        final boolean enabled;
+
+        final Timer succeededTime;
+
+        final Timer failedTime;
+
+        final Timer commitTime;
+
+        final Histogram transactionData;
+
+        final Histogram transactionFields;
+
+        final Counter nestedTransactions;
+
+        /**
+         * 带一个标签的度量缓存，度量名:标签值:度量
+         */
+        final Map<String, Map<String, Object>> tagged = new ConcurrentHashMap<>();
+
+        Meters(MetricsRegistry registry) {
+            this.registry = registry;
+            this.enabled = registry != MetricsRegistry.NOOP;
+            this.succeededTime = registry.timer(TRANSACTION_TIME, "result", "succeeded");
+            this.failedTime = registry.timer(TRANSACTION_TIME, "result", "failed");
+            this.commitTime = registry.timer(COMMIT_TIME);
+            this.transactionData = registry.histogram(TRANSACTION_DATA);
+            this.transactionFields = registry.histogram(TRANSACTION_FIELDS);
+            this.nestedTransactions = registry.counter(NESTED_TRANSACTIONS);
+        }
+
+        Object tagged(String name, String value, Function<String, Object> factory) {
+            Map<String, Object> values = tagged.get(name);
+            if (values == null) {
+                values = tagged.computeIfAbsent(name, k -> new ConcurrentHashMap<>());
+            }
+            Object metric = values.get(value);
+            if (metric == null) {
+                metric = values.computeIfAbsent(value, factory);
+            }
+            return metric;
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package quan.data.metrics;
+
+/**
+ * 度量的扩展接口，可以自己实现并适配到其他监控系统
+ *
+ * @see Metrics#setRegistry(MetricsRegistry)
+ */
+public interface MetricsRegistry {
+
+    /**
+     * 不记录任何度量
+     */
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public Counter counter(String name, String... tags) {
+            return Counter.NOOP;
+        }
+
+        @Override
+        public Histogram histogram(String name, String... tags) {
+            return Histogram.NOOP;
+        }
+
+        @Override
+        public Timer timer(String name, String... tags) {
+            return Timer.NOOP;
+        }
+    };
+
+    /**
+     * @param name 度量名
+     * @param tags 标签名和标签值交替排列
+     */
+    Counter counter(String name, String... tags);
+
+    /**
+     * @see #counter(String, String...)
+     */
+    Histogram histogram(String name, String... tags);
+
+    /**
+     * @see #counter(String, String...)
+     */
+    Timer timer(String name, String... tags);
+
+}
@@ -0,0 +1,94 @@
+package quan.data.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在内存中记录度量的简单实现，度量以名字和标签组合成的键区分，例如name{tag1=value1,tag2=value2}
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    static String key(String name, String... tags) {
+        if (tags.length == 0) {
+            return name;
+        }
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("参数[tags]必须是标签名和标签值交替排列");
+        }
+
+        StringBuilder key = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return key.append('}').toString();
+    }
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        return counters.computeIfAbsent(key(name, tags), k -> new SimpleCounter());
+    }
+
+    @Override
+    public Histogram histogram(String name, String... tags) {
+        return histograms.computeIfAbsent(key(name, tags), k -> new LogLinearHistogram());
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(key(name, tags), k -> new LogLinearHistogram());
+    }
+
+    public Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    public Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    public Map<String, Timer> getTimers() {
+        return Collections.unmodifiableMap(timers);
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleMetricsRegistry{" +
+                "counters=" + counters +
+                ",histograms=" + histograms +
+                ",timers=" + timers +
+                '}';
+    }
+
+    private static class SimpleCounter implements Counter {
+
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long count() {
+            return count.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(count());
+        }
+
+    }
+
+}
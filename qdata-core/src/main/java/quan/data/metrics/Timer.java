@@ -0,0 +1,43 @@
+package quan.data.metrics;
+
+/**
+ * 计时器，记录的数值是纳秒
+ */
+public interface Timer extends Histogram {
+
+    Timer NOOP = new Timer() {
+        @Override
+        public void record(long value) {
+        }
+
+        @Override
+        public long count() {
+            return 0;
+        }
+
+        @Override
+        public long max() {
+            return 0;
+        }
+
+        @Override
+        public double mean() {
+            return 0;
+        }
+
+        @Override
+        public long percentile(double percentile) {
+            return 0;
+        }
+    };
+
+    /**
+     * 记录从指定时间开始到现在的耗时
+     *
+     * @param startTime {@link System#nanoTime()}
+     */
+    default void recordSince(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+}
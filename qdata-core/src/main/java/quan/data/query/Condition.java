@@ -0,0 +1,84 @@
+package quan.data.query;
+
+import quan.data.Data;
+import quan.data.util.NumberUtils;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * 查询条件，通过生成的{@link Data#_getFieldValue(int)}读取字段值
+ */
+class Condition {
+
+    final String field;
+
+    /**
+     * 字段在数据中的位置
+     */
+    final int position;
+
+    final Operator operator;
+
+    final Object value;
+
+    final Predicate<Object> predicate;
+
+    Condition(String field, int position, Operator operator, Object value) {
+        this(field, position, operator, value, null);
+    }
+
+    Condition(String field, int position, Predicate<Object> predicate) {
+        this(field, position, Operator.CUSTOM, null, predicate);
+    }
+
+    private Condition(String field, int position, Operator operator, Object value, Predicate<Object> predicate) {
+        this.field = field;
+        this.position = position;
+        this.operator = operator;
+        this.value = NumberUtils.normalize(value);
+        this.predicate = predicate;
+    }
+
+    boolean test(Data<?> data) {
+        Object fieldValue = data._getFieldValue(position);
+
+        switch (operator) {
+            case EQ:
+                return equals(fieldValue, value);
+            case NE:
+                return !equals(fieldValue, value);
+            case GT:
+                return fieldValue != null && NumberUtils.compare(fieldValue, value) > 0;
+            case GTE:
+                return fieldValue != null && NumberUtils.compare(fieldValue, value) >= 0;
+            case LT:
+                return fieldValue != null && NumberUtils.compare(fieldValue, value) < 0;
+            case LTE:
+                return fieldValue != null && NumberUtils.compare(fieldValue, value) <= 0;
+            default:
+                return predicate.test(fieldValue);
+        }
+    }
+
+    private static boolean equals(Object fieldValue, Object value) {
+        if (fieldValue instanceof Number && value instanceof Number) {
+            return NumberUtils.compare(fieldValue, value) == 0;
+        }
+        return Objects.equals(fieldValue, value);
+    }
+
+    boolean isRange() {
+        return operator == Operator.GT || operator == Operator.GTE || operator == Operator.LT || operator == Operator.LTE;
+    }
+
+    @Override
+    public String toString() {
+        return operator == Operator.CUSTOM ? field + " " + operator : field + " " + operator + " " + value;
+    }
+
+    enum Operator {
+        EQ, NE, GT, GTE, LT, LTE, CUSTOM
+    }
+
+}
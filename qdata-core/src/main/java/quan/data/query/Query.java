@@ -0,0 +1,480 @@
+package quan.data.query;
+
+import quan.data.Data;
+import quan.data.DataCache;
+import quan.data.Index;
+import quan.data.MemoryIndex;
+import quan.data.util.NumberUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * 常驻内存数据的本地查询，条件字段使用生成的字段名常量，例如{@link Query#eq(String, Object)}(RoleData.A, 1)<br/>
+ * 字段值通过生成的{@link Data#_getFieldValue(int)}读取，不使用反射<br/>
+ * 查询{@link DataCache}时优先使用内存索引：所有字段都有等值条件的索引走哈希查询，
+ * 第一个字段有等值或者范围条件的索引走范围查询，没有可用的索引时扫描全部数据，数据量较大时使用fork-join并行扫描<br/>
+ * 并行扫描在其他线程上读取的是已提交的字段值，不包含当前事务中未提交的修改
+ */
+public class Query<D extends Data<?>> {
+
+    /**
+     * 数据量超过这个值时并行扫描
+     */
+    public static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * 并行扫描时每个任务处理的数据量
+     */
+    private static final int SPLIT_SIZE = 1024;
+
+    private final Class<D> clazz;
+
+    /**
+     * 所有的字段名，下标加1就是字段在数据中的位置
+     */
+    private final List<String> fields;
+
+    /**
+     * 查询的数据源，为空时查询{@link DataCache}
+     */
+    private final Collection<D> source;
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private Comparator<D> comparator;
+
+    private int limit = -1;
+
+    private Query(Class<D> clazz, Collection<D> source) {
+        this.clazz = Objects.requireNonNull(clazz, "参数[clazz]不能为空");
+        this.fields = Data.fields(clazz);
+        this.source = source;
+        if (fields == null) {
+            throw new IllegalArgumentException(clazz.getName() + "._FIELDS未定义");
+        }
+    }
+
+    /**
+     * 查询{@link DataCache}中的数据
+     */
+    public static <D extends Data<?>> Query<D> of(Class<D> clazz) {
+        return new Query<>(clazz, null);
+    }
+
+    /**
+     * 查询指定集合中的数据，不使用索引
+     */
+    public static <D extends Data<?>> Query<D> of(Class<D> clazz, Collection<D> source) {
+        return new Query<>(clazz, Objects.requireNonNull(source, "参数[source]不能为空"));
+    }
+
+    private int position(String field) {
+        int position = fields.indexOf(field) + 1;
+        if (position <= 0) {
+            throw new IllegalArgumentException(String.format("数据类[%s]的字段[%s]不存在", clazz.getName(), field));
+        }
+        return position;
+    }
+
+    private Query<D> add(String field, Condition.Operator operator, Object value) {
+        if (operator != Condition.Operator.EQ && operator != Condition.Operator.NE) {
+            Objects.requireNonNull(value, "范围条件的值不能为空");
+        }
+        conditions.add(new Condition(field, position(field), operator, value));
+        return this;
+    }
+
+    public Query<D> eq(String field, Object value) {
+        return add(field, Condition.Operator.EQ, value);
+    }
+
+    public Query<D> ne(String field, Object value) {
+        return add(field, Condition.Operator.NE, value);
+    }
+
+    public Query<D> gt(String field, Object value) {
+        return add(field, Condition.Operator.GT, value);
+    }
+
+    public Query<D> gte(String field, Object value) {
+        return add(field, Condition.Operator.GTE, value);
+    }
+
+    public Query<D> lt(String field, Object value) {
+        return add(field, Condition.Operator.LT, value);
+    }
+
+    public Query<D> lte(String field, Object value) {
+        return add(field, Condition.Operator.LTE, value);
+    }
+
+    /**
+     * 闭区间范围条件
+     */
+    public Query<D> between(String field, Object from, Object to) {
+        return gte(field, from).lte(field, to);
+    }
+
+    /**
+     * 自定义条件，不会使用索引
+     */
+    public Query<D> where(String field, Predicate<Object> predicate) {
+        conditions.add(new Condition(field, position(field), Objects.requireNonNull(predicate, "参数[predicate]不能为空")));
+        return this;
+    }
+
+    private Query<D> sort(String field, boolean ascending) {
+        int position = position(field);
+        Comparator<D> c = (d1, d2) -> NumberUtils.compare(d1._getFieldValue(position), d2._getFieldValue(position));
+        if (!ascending) {
+            c = c.reversed();
+        }
+        comparator = comparator == null ? c : comparator.thenComparing(c);
+        return this;
+    }
+
+    /**
+     * 按字段升序排列，可以多次调用按多个字段排序
+     */
+    public Query<D> asc(String field) {
+        return sort(field, true);
+    }
+
+    /**
+     * 按字段降序排列，可以多次调用按多个字段排序
+     */
+    public Query<D> desc(String field) {
+        return sort(field, false);
+    }
+
+    /**
+     * 限制返回的数据数量
+     */
+    public Query<D> limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("参数[limit]不能小于0");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    private boolean test(D data) {
+        for (Condition condition : conditions) {
+            if (!condition.test(data)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 执行查询
+     */
+    public List<D> list() {
+        Plan<D> plan = plan();
+        List<D> result;
+        if (plan.candidates != null) {
+            result = filter(plan.candidates);
+        } else {
+            result = scan(plan.rows);
+        }
+
+        if (comparator != null) {
+            if (limit >= 0 && limit < result.size() / 8) {
+                return top(result);
+            }
+            result.sort(comparator);
+        }
+
+        if (limit >= 0 && result.size() > limit) {
+            result = new ArrayList<>(result.subList(0, limit));
+        }
+
+        return result;
+    }
+
+    /**
+     * 返回第一个满足条件的数据，没有时返回空
+     */
+    public D first() {
+        int oldLimit = limit;
+        limit = 1;
+        try {
+            List<D> result = list();
+            return result.isEmpty() ? null : result.get(0);
+        } finally {
+            limit = oldLimit;
+        }
+    }
+
+    /**
+     * 满足条件的数据数量，忽略limit
+     */
+    public int count() {
+        int oldLimit = limit;
+        Comparator<D> oldComparator = comparator;
+        limit = -1;
+        comparator = null;
+        try {
+            return list().size();
+        } finally {
+            limit = oldLimit;
+            comparator = oldComparator;
+        }
+    }
+
+    /**
+     * 返回查询计划的描述，例如INDEX(aa)、RANGE(aa)、SCAN、PARALLEL_SCAN
+     */
+    public String explain() {
+        return plan().toString();
+    }
+
+    private List<D> filter(Collection<D> candidates) {
+        List<D> result = new ArrayList<>();
+        boolean stopEarly = comparator == null && limit >= 0;
+        for (D data : candidates) {
+            if (stopEarly && result.size() >= limit) {
+                break;
+            }
+            if (test(data)) {
+                result.add(data);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<D> scan(Collection<D> rows) {
+        if (rows.size() < PARALLEL_THRESHOLD) {
+            return filter(rows);
+        }
+
+        Object[] array = rows.toArray();
+        boolean[] matched = new boolean[array.length];
+        ForkJoinPool.commonPool().invoke(new ScanTask(array, matched, 0, array.length));
+
+        List<D> result = new ArrayList<>();
+        for (int i = 0; i < array.length; i++) {
+            if (matched[i]) {
+                result.add((D) array[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只保留排序后的前limit个数据
+     */
+    private List<D> top(List<D> result) {
+        PriorityQueue<D> heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+        for (D data : result) {
+            heap.offer(data);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<D> top = new ArrayList<>(heap);
+        top.sort(comparator);
+        return top;
+    }
+
+    private Plan<D> plan() {
+        if (source != null) {
+            return new Plan<>(source.size() < PARALLEL_THRESHOLD ? "SCAN" : "PARALLEL_SCAN", null, source);
+        }
+
+        DataCache.Table<D> table = DataCache.getTable(clazz);
+        if (table == null) {
+            return new Plan<>("SCAN", null, Collections.emptyList());
+        }
+
+        Plan<D> plan = planIndex(table);
+        if (plan != null) {
+            return plan;
+        }
+
+        plan = planRange(table);
+        if (plan != null) {
+            return plan;
+        }
+
+        Collection<D> rows = table.getAll();
+        return new Plan<>(rows.size() < PARALLEL_THRESHOLD ? "SCAN" : "PARALLEL_SCAN", null, rows);
+    }
+
+    private Object eqValue(String field) {
+        for (Condition condition : conditions) {
+            if (condition.operator == Condition.Operator.EQ && condition.field.equals(field)) {
+                return condition.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 所有字段都有等值条件的索引，优先使用唯一索引
+     */
+    private Plan<D> planIndex(DataCache.Table<D> table) {
+        MemoryIndex<D> matchedIndex = null;
+        Object[] matchedValues = null;
+
+        for (MemoryIndex<D> index : table.getIndexes()) {
+            List<String> indexFields = index.getFields();
+            Object[] values = new Object[indexFields.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = eqValue(indexFields.get(i));
+                if (values[i] == null) {
+                    values = null;
+                    break;
+                }
+            }
+
+            if (values != null && (matchedIndex == null || index.getType() == Index.Type.UNIQUE && matchedIndex.getType() != Index.Type.UNIQUE)) {
+                matchedIndex = index;
+                matchedValues = values;
+            }
+        }
+
+        if (matchedIndex == null) {
+            return null;
+        }
+
+        return new Plan<>("INDEX(" + matchedIndex.getName() + ")", matchedIndex.find(matchedValues), null);
+    }
+
+    /**
+     * 第一个字段有等值或者范围条件的索引，多个条件合并成最小的区间
+     */
+    private Plan<D> planRange(DataCache.Table<D> table) {
+        for (Condition condition : conditions) {
+            if (condition.operator != Condition.Operator.EQ && !condition.isRange() || condition.value == null) {
+                continue;
+            }
+
+            MemoryIndex<D> index = table.getLeadingIndex(condition.field);
+            if (index == null) {
+                continue;
+            }
+
+            Object from = null, to = null;
+            boolean fromInclusive = false, toInclusive = false;
+
+            for (Condition c : conditions) {
+                if (!c.field.equals(condition.field) || c.value == null) {
+                    continue;
+                }
+                Condition.Operator operator = c.operator;
+                if (operator == Condition.Operator.EQ || operator == Condition.Operator.GT || operator == Condition.Operator.GTE) {
+                    boolean inclusive = operator != Condition.Operator.GT;
+                    int compare = from == null ? 1 : NumberUtils.compare(c.value, from);
+                    if (compare > 0 || compare == 0 && !inclusive) {
+                        from = c.value;
+                        fromInclusive = inclusive;
+                    }
+                }
+                if (operator == Condition.Operator.EQ || operator == Condition.Operator.LT || operator == Condition.Operator.LTE) {
+                    boolean inclusive = operator != Condition.Operator.LT;
+                    int compare = to == null ? -1 : NumberUtils.compare(c.value, to);
+                    if (compare < 0 || compare == 0 && !inclusive) {
+                        to = c.value;
+                        toInclusive = inclusive;
+                    }
+                }
+            }
+
+            List<D> candidates;
+            if (from != null && to != null && NumberUtils.compare(from, to) > 0) {
+                candidates = Collections.emptyList();
+            } else {
+                candidates = index.findRange(from, fromInclusive, to, toInclusive);
+            }
+
+            return new Plan<>("RANGE(" + index.getName() + ")", candidates, null);
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "Query{" +
+                "class=" + clazz.getName() +
+                ",conditions=" + conditions +
+                ",limit=" + limit +
+                '}';
+    }
+
+    /**
+     * 查询计划
+     */
+    private static class Plan<D> {
+
+        final String name;
+
+        /**
+         * 通过索引查出来的候选数据
+         */
+        final Collection<D> candidates;
+
+        /**
+         * 需要扫描的全部数据
+         */
+        final Collection<D> rows;
+
+        Plan(String name, Collection<D> candidates, Collection<D> rows) {
+            this.name = name;
+            this.candidates = candidates;
+            this.rows = rows;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    /**
+     * 并行扫描任务，把满足条件的数据下标标记在matched中
+     */
+    private class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] rows;
+
+        private final boolean[] matched;
+
+        private final int from;
+
+        private final int to;
+
+        ScanTask(Object[] rows, boolean[] matched, int from, int to) {
+            this.rows = rows;
+            this.matched = matched;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (to - from <= SPLIT_SIZE) {
+                for (int i = from; i < to; i++) {
+                    matched[i] = test((D) rows[i]);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScanTask(rows, matched, from, middle), new ScanTask(rows, matched, middle, to));
+        }
+
+    }
+
+}
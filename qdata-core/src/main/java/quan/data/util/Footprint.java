@@ -0,0 +1,332 @@
+package quan.data.util;
+
+import quan.data.Bean;
+import quan.data.Data;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据对象的内存占用分析，通过{@link Instrumentation#getObjectSize(Object)}遍历数据对象引用的对象图，
+ * 按数据类、字段和对象类型统计独占的字节数<br/>
+ * 只遍历数据独占的对象：字段、Bean、持久化集合节点、数组、字符串、包装类型和{@link BitSet}，
+ * 其他对象(例如存取器、缓存表、枚举)是共享的，不会统计，多个数据共享的对象只算在第一个遍历到它的字段上<br/>
+ * 字符串和{@link BitSet}内部数组的大小是估算的，不会反射访问JDK的私有字段
+ */
+public class Footprint {
+
+    private static final Map<Class<?>, Field[]> classFields = new ConcurrentHashMap<>();
+
+    private final Instrumentation instrumentation = ClassUtils.getInstrumentation();
+
+    private final long arrayHeader = instrumentation.getObjectSize(new byte[0]);
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Map<Class<?>, DataFootprint> dataFootprints = new LinkedHashMap<>();
+
+    private final Map<Class<?>, TypeFootprint> typeFootprints = new LinkedHashMap<>();
+
+    private long totalBytes;
+
+    /**
+     * 分析一批数据的内存占用
+     */
+    public static Footprint of(Iterable<? extends Data<?>> dataList) {
+        Footprint footprint = new Footprint();
+        for (Data<?> data : dataList) {
+            footprint.add(data);
+        }
+        return footprint;
+    }
+
+    /**
+     * 添加一个数据，已经添加过的数据会被忽略
+     */
+    public Footprint add(Data<?> data) {
+        if (!visited.add(data)) {
+            return this;
+        }
+
+        long selfBytes = record(data);
+        DataFootprint dataFootprint = dataFootprints.computeIfAbsent(data.getClass(), DataFootprint::new);
+        dataFootprint.count++;
+        dataFootprint.bytes += selfBytes;
+        dataFootprint.fields.merge("(self)", selfBytes, Long::sum);
+
+        for (Field field : fields(data.getClass())) {
+            long bytes = walk(get(field, data));
+            if (bytes > 0) {
+                dataFootprint.bytes += bytes;
+                dataFootprint.fields.merge(field.getName(), bytes, Long::sum);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * 遍历一个字段引用的对象图
+     *
+     * @return 新遍历到的对象的字节数
+     */
+    private long walk(Object root) {
+        if (!owned(root) || !visited.add(root)) {
+            return 0;
+        }
+
+        long bytes = 0;
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Object object = stack.pop();
+            bytes += record(object);
+
+            Class<?> clazz = object.getClass();
+            if (clazz.isArray()) {
+                if (!clazz.getComponentType().isPrimitive()) {
+                    for (int i = 0, length = Array.getLength(object); i < length; i++) {
+                        push(stack, Array.get(object, i));
+                    }
+                }
+            } else if (!clazz.getName().startsWith("java.")) {
+                for (Field field : fields(clazz)) {
+                    push(stack, get(field, object));
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    private void push(ArrayDeque<Object> stack, Object object) {
+        if (owned(object) && visited.add(object)) {
+            stack.push(object);
+        }
+    }
+
+    /**
+     * 是否是数据独占的对象
+     */
+    private static boolean owned(Object object) {
+        if (object == null || object instanceof Data || object instanceof Enum) {
+            return false;
+        }
+
+        Class<?> clazz = object.getClass();
+        if (clazz.isArray() || object instanceof Bean || object instanceof String || object instanceof Number
+                || object instanceof Boolean || object instanceof Character || object instanceof BitSet) {
+            return true;
+        }
+
+        String className = clazz.getName();
+        return className.startsWith("quan.data.field.") || className.startsWith("org.pcollections.");
+    }
+
+    /**
+     * 记录一个对象的字节数
+     */
+    private long record(Object object) {
+        long bytes = instrumentation.getObjectSize(object);
+        if (object instanceof String) {
+            String string = (String) object;
+            boolean latin1 = string.chars().allMatch(c -> c < 256);
+            bytes += align(arrayHeader + (latin1 ? string.length() : string.length() * 2L));
+        } else if (object instanceof BitSet) {
+            bytes += align(arrayHeader + ((BitSet) object).size() / 8);
+        }
+
+        TypeFootprint typeFootprint = typeFootprints.computeIfAbsent(object.getClass(), TypeFootprint::new);
+        typeFootprint.count++;
+        typeFootprint.bytes += bytes;
+        totalBytes += bytes;
+
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * 类和父类的所有引用类型的实例字段，遇到JDK的父类(例如pcollections继承的AbstractMap)就停止，
+     * JDK16以后不能再反射访问它们的私有字段
+     */
+    private static Field[] fields(Class<?> clazz) {
+        Field[] fields = classFields.get(clazz);
+        if (fields != null) {
+            return fields;
+        }
+
+        List<Field> fieldList = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && !c.getName().startsWith("java."); c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                    field.setAccessible(true);
+                    fieldList.add(field);
+                }
+            }
+        }
+
+        fields = fieldList.toArray(new Field[0]);
+        classFields.put(clazz, fields);
+        return fields;
+    }
+
+    private static Object get(Field field, Object object) {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 总字节数
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 按数据类统计，按字节数从大到小排列
+     */
+    public List<DataFootprint> getDataFootprints() {
+        List<DataFootprint> list = new ArrayList<>(dataFootprints.values());
+        list.sort(Comparator.comparingLong(DataFootprint::getBytes).reversed());
+        return list;
+    }
+
+    /**
+     * 按对象类型统计，按字节数从大到小排列
+     */
+    public List<TypeFootprint> getTypeFootprints() {
+        List<TypeFootprint> list = new ArrayList<>(typeFootprints.values());
+        list.sort(Comparator.comparingLong(TypeFootprint::getBytes).reversed());
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Footprint{totalBytes=").append(totalBytes);
+        for (DataFootprint dataFootprint : getDataFootprints()) {
+            builder.append("\n  ").append(dataFootprint);
+        }
+        for (TypeFootprint typeFootprint : getTypeFootprints()) {
+            builder.append("\n  ").append(typeFootprint);
+        }
+        return builder.append("\n}").toString();
+    }
+
+    /**
+     * 一个数据类的内存占用
+     */
+    public static class DataFootprint {
+
+        private final Class<?> dataClass;
+
+        private long count;
+
+        private long bytes;
+
+        /**
+         * 字段名:字节数，(self)是数据对象本身
+         */
+        private final Map<String, Long> fields = new LinkedHashMap<>();
+
+        DataFootprint(Class<?> dataClass) {
+            this.dataClass = dataClass;
+        }
+
+        public Class<?> getDataClass() {
+            return dataClass;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * 平均每个数据的字节数
+         */
+        public long getAverageBytes() {
+            return count == 0 ? 0 : bytes / count;
+        }
+
+        /**
+         * 字段名:字节数，按字节数从大到小排列
+         */
+        public Map<String, Long> getFields() {
+            Map<String, Long> sorted = new LinkedHashMap<>();
+            fields.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed()).forEach(e -> sorted.put(e.getKey(), e.getValue()));
+            return sorted;
+        }
+
+        @Override
+        public String toString() {
+            return dataClass.getSimpleName() + "{" +
+                    "count=" + count +
+                    ",bytes=" + bytes +
+                    ",averageBytes=" + getAverageBytes() +
+                    ",fields=" + getFields() +
+                    '}';
+        }
+
+    }
+
+    /**
+     * 一种对象类型的内存占用
+     */
+    public static class TypeFootprint {
+
+        private final Class<?> type;
+
+        private long count;
+
+        private long bytes;
+
+        TypeFootprint(Class<?> type) {
+            this.type = type;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return type.getName() + "{" +
+                    "count=" + count +
+                    ",bytes=" + bytes +
+                    '}';
+        }
+
+    }
+
+}
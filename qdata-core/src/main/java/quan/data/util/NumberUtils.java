@@ -53,4 +53,51 @@ public class NumberUtils extends org.apache.commons.lang3.math.NumberUtils {
         validateMax(value, max, null);
     }
 
+    /**
+     * 整数和整数值的浮点数统一转成Long，其他浮点数统一转成Double，其他类型的值原样返回，
+     * 数值相等的数字转换之后也相等，例如2和2.0
+     */
+    public static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float || value instanceof Double) {
+            double doubleValue = ((Number) value).doubleValue();
+            long longValue = (long) doubleValue;
+            //超出long范围的浮点数转换时会被截断成最大值
+            if (longValue == doubleValue && longValue != Long.MAX_VALUE) {
+                return longValue;
+            }
+            return doubleValue;
+        }
+        return value;
+    }
+
+    /**
+     * 比较两个值的大小，数字按数值比较，其他类型的值必须实现{@link Comparable}，空值最小
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compare(Object value1, Object value2) {
+        if (value1 == value2) {
+            return 0;
+        }
+        if (value1 == null) {
+            return -1;
+        }
+        if (value2 == null) {
+            return 1;
+        }
+
+        if (value1 instanceof Number && value2 instanceof Number) {
+            Number number1 = (Number) value1;
+            Number number2 = (Number) value2;
+            if (number1 instanceof Double || number1 instanceof Float || number2 instanceof Double || number2 instanceof Float) {
+                return Double.compare(number1.doubleValue(), number2.doubleValue());
+            }
+            return Long.compare(number1.longValue(), number2.longValue());
+        }
+
+        return ((Comparable) value1).compareTo(value2);
+    }
+
 }
@@ -0,0 +1,175 @@
+package quan.data.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 直接把字符编码成UTF-8写入输出流或者缓冲区，不产生中间字符串，可以通过reset方法切换目标之后重复使用<br/>
+ * 写入缓冲区时空间不够会抛出{@link java.nio.BufferOverflowException}，不成对的代理字符会被替换成'?'
+ */
+public class Utf8Writer extends Writer {
+
+    private final byte[] bytes;
+
+    private int size;
+
+    private OutputStream out;
+
+    private ByteBuffer buffer;
+
+    /**
+     * 还没有配对的高代理字符
+     */
+    private char highSurrogate;
+
+    public Utf8Writer() {
+        this(8192);
+    }
+
+    /**
+     * @param bufferSize 写入输出流时使用的缓冲区大小
+     */
+    public Utf8Writer(int bufferSize) {
+        this.bytes = new byte[Math.max(bufferSize, 16)];
+    }
+
+    public Utf8Writer(OutputStream out) {
+        this();
+        reset(out);
+    }
+
+    public Utf8Writer(ByteBuffer buffer) {
+        this(16);
+        reset(buffer);
+    }
+
+    /**
+     * 改为写入输出流，之前没有刷新的内容会被丢弃
+     */
+    public Utf8Writer reset(OutputStream out) {
+        this.out = Objects.requireNonNull(out);
+        this.buffer = null;
+        this.size = 0;
+        this.highSurrogate = 0;
+        return this;
+    }
+
+    /**
+     * 改为从缓冲区的当前位置开始写入，之前没有刷新的内容会被丢弃
+     */
+    public Utf8Writer reset(ByteBuffer buffer) {
+        this.buffer = Objects.requireNonNull(buffer);
+        this.out = null;
+        this.size = 0;
+        this.highSurrogate = 0;
+        return this;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, chars.length);
+        for (int i = off, end = off + len; i < end; i++) {
+            writeChar(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, str.length());
+        for (int i = off, end = off + len; i < end; i++) {
+            writeChar(str.charAt(i));
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
+        Objects.checkFromToIndex(start, end, csq.length());
+        for (int i = start; i < end; i++) {
+            writeChar(csq.charAt(i));
+        }
+        return this;
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (buffer == null && size > bytes.length - 4) {
+            flushBytes();
+        }
+
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                put((byte) (0xF0 | codePoint >> 18));
+                put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                put((byte) (0x80 | codePoint & 0x3F));
+                return;
+            }
+            put((byte) '?');
+        }
+
+        if (c < 0x80) {
+            put((byte) c);
+        } else if (c < 0x800) {
+            put((byte) (0xC0 | c >> 6));
+            put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put((byte) '?');
+        } else {
+            put((byte) (0xE0 | c >> 12));
+            put((byte) (0x80 | c >> 6 & 0x3F));
+            put((byte) (0x80 | c & 0x3F));
+        }
+    }
+
+    private void put(byte b) {
+        if (buffer != null) {
+            buffer.put(b);
+        } else {
+            bytes[size++] = b;
+        }
+    }
+
+    private void flushBytes() throws IOException {
+        if (size > 0 && out != null) {
+            out.write(bytes, 0, size);
+        }
+        size = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBytes();
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * 只刷新缓冲的内容，不会关闭输出流
+     */
+    @Override
+    public void close() throws IOException {
+        flushBytes();
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            put((byte) '?');
+            flushBytes();
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package quan.data.definition;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import quan.data.definition.DependentSource.DependentType;
 
@@ -12,9 +13,20 @@ import java.util.regex.Pattern;
  */
 public class BeanDefinition extends ClassDefinition {
 
+    //紧凑模式，基本类型字段存放在同一个SlotsField里
+    private boolean compact;
+
     public BeanDefinition() {
     }
 
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public void setCompact(String compact) {
+        this.compact = compact != null && compact.trim().equals("true");
+    }
+
     @Override
     public int getKind() {
         return KIND_BEAN;
@@ -208,4 +220,55 @@ public class BeanDefinition extends ClassDefinition {
         return false;
     }
 
+
+    /**
+     * 二进制格式的结构指纹，由字段的位置、名字和类型计算，包含了字段依赖的Bean的结构
+     */
+    public String getFingerprint() {
+        StringBuilder schema = new StringBuilder();
+        appendSchema(schema);
+
+        byte[] md5 = DigestUtils.md5(schema.toString());
+        long fingerprint = 0;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = fingerprint << 8 | md5[i] & 0xFF;
+        }
+
+        return String.format("0x%016XL", fingerprint);
+    }
+
+    private void appendSchema(StringBuilder schema) {
+        schema.append('{');
+        for (int i = 0; i < fields.size(); i++) {
+            FieldDefinition field = fields.get(i);
+            if (field.isIgnore()) {
+                continue;
+            }
+
+            schema.append(i + 1).append(':').append(field.getName()).append(':');
+            if (field.isEnumType()) {
+                schema.append("enum");
+            } else if (field.isBeanType()) {
+                field.getTypeBean().appendSchema(schema);
+            } else {
+                schema.append(field.getType());
+            }
+
+            if (field.isCollectionType()) {
+                if (field.getType().equals("map")) {
+                    schema.append(':').append(field.getKeyType());
+                }
+                schema.append(':');
+                if (field.isBeanValueType()) {
+                    field.getValueTypeBean().appendSchema(schema);
+                } else {
+                    schema.append(field.getValueType());
+                }
+            }
+
+            schema.append(';');
+        }
+        schema.append('}');
+    }
+
 }
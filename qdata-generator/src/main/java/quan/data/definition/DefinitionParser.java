@@ -418,6 +418,9 @@ public class DefinitionParser {
             classDefinition.setComment(getComment(element, indexInParent));
             classDefinition.setDefinitionFile(definitionFile);
             classDefinition.setVersion(element.asXML().trim());
+            if (classDefinition instanceof BeanDefinition) {
+                ((BeanDefinition) classDefinition).setCompact(element.attributeValue("compact"));
+            }
         }
 
         return classDefinition;
@@ -429,10 +432,10 @@ public class DefinitionParser {
                 validateElementAttributes(definitionFile, element, "name");
                 return new EnumDefinition();
             case "bean":
-                validateElementAttributes(definitionFile, element, "name");
+                validateElementAttributes(definitionFile, element, "name", "compact");
                 return new BeanDefinition();
             case "data":
-                validateElementAttributes(definitionFile, element, "name", "id");
+                validateElementAttributes(definitionFile, element, "name", "id", "compact");
                 return new DataDefinition(element.attributeValue("id"));
             default:
                 addValidatedError("定义文件[" + definitionFile + "]不支持定义元素:" + element.getName());
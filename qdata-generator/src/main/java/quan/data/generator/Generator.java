@@ -8,6 +8,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import quan.data.DataRegistry;
 import quan.data.definition.BeanDefinition;
 import quan.data.definition.ClassDefinition;
 import quan.data.definition.DataDefinition;
@@ -22,6 +23,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -29,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -73,12 +76,20 @@ public class Generator {
 
     protected String codePath;
 
+    //资源文件的生成路径，不为空时把数据类注册表注册成ServiceLoader的服务
+    protected String resourcePath;
+
     protected DefinitionParser parser;
 
     protected Configuration freemarkerCfg;
 
     protected Map<Class<? extends ClassDefinition>, Template> templates = new HashMap<>();
 
+    /**
+     * 数据类注册表的模板
+     */
+    protected Template registryTemplate;
+
     //<包名,<类名,类定义>
     protected Map<String, Map<String, ClassDefinition>> packagesClasses = new HashMap<>();
 
@@ -119,6 +130,10 @@ public class Generator {
         this.codePath = codePath;
     }
 
+    public void setResourcePath(String resourcePath) {
+        this.resourcePath = resourcePath;
+    }
+
     public void setPackagePrefix(String packagePrefix) {
         this.packagePrefix = packagePrefix;
     }
@@ -212,15 +227,20 @@ public class Generator {
         classNames.put("ListField", "quan.data.field.ListField");
         classNames.put("MapField", "quan.data.field.MapField");
         classNames.put("SetField", "quan.data.field.SetField");
+        classNames.put("SlotsField", "quan.data.field.SlotsField");
         classNames.put("NumberUtils", "quan.util.NumberUtils");
         classNames.put("BsonReader", "org.bson.BsonReader");
         classNames.put("BsonWriter", "org.bson.BsonWriter");
         classNames.put("Codec", "org.bson.codecs.Codec");
+        classNames.put("DataCodec", "quan.data.DataCodec");
         classNames.put("BsonType", "org.bson.codecs.BsonType");
         classNames.put("JsonWriter", "org.bson.json.JsonWriter");
         classNames.put("EncoderContext", "org.bson.codecs.EncoderContext");
         classNames.put("DecoderContext", "org.bson.codecs.DecoderContext");
         classNames.put("CodecRegistry", "org.bson.codecs.configuration.CodecRegistry");
+        classNames.put("BinaryCodec", "quan.data.binary.BinaryCodec");
+        classNames.put("BinaryReader", "quan.data.binary.BinaryReader");
+        classNames.put("BinaryWriter", "quan.data.binary.BinaryWriter");
     }
 
     protected void parseParams(Properties params) {
@@ -258,6 +278,11 @@ public class Generator {
             setCodePath(codePath);
         }
 
+        String resourcePath = params.getProperty("resourcePath");
+        if (!StringUtils.isBlank(resourcePath)) {
+            setResourcePath(resourcePath);
+        }
+
         packagePrefix = params.getProperty("packagePrefix");
         enumPackagePrefix = params.getProperty("enumPackagePrefix");
     }
@@ -286,6 +311,7 @@ public class Generator {
             templates.put(EnumDefinition.class, enumTemplate);
             templates.put(DataDefinition.class, dataTemplate);
             templates.put(BeanDefinition.class, dataTemplate);
+            registryTemplate = freemarkerCfg.getTemplate("Registry.ftl");
         } catch (IOException e) {
             logger.error("加载模板文件失败", e);
             return;
@@ -343,6 +369,8 @@ public class Generator {
 
         generate(classDefinitions);
 
+        generateRegistry(classDefinitions);
+
         packagesClasses.clear();
 
         oldRecords.keySet().forEach(this::delete);
@@ -450,6 +478,124 @@ public class Generator {
         logger.info("生成[{}]成功", classFile);
     }
 
+    /**
+     * 生成数据类注册表，每次都会包含所有的数据类，内容没有变化时不会重写文件，增量生成时没有增删类就不会触发重新编译
+     */
+    protected void generateRegistry(List<ClassDefinition> classDefinitions) {
+        List<ClassDefinition> dataClasses = new ArrayList<>();
+        List<ClassDefinition> entityClasses = new ArrayList<>();
+        for (ClassDefinition classDefinition : classDefinitions) {
+            if (classDefinition instanceof DataDefinition) {
+                dataClasses.add(classDefinition);
+            }
+            if (classDefinition instanceof BeanDefinition) {
+                entityClasses.add(classDefinition);
+            }
+        }
+
+        if (dataClasses.isEmpty() || registryTemplate == null) {
+            return;
+        }
+
+        dataClasses.sort(Comparator.comparing(ClassDefinition::getFullName));
+        entityClasses.sort(Comparator.comparing(ClassDefinition::getFullName));
+
+        String packageName = StringUtils.isBlank(packagePrefix) ? commonPackageName(dataClasses) : packagePrefix;
+        String className = DataRegistry.CLASS_NAME;
+
+        Map<String, Object> model = new HashMap<>();
+        model.put("packageName", packageName);
+        model.put("className", className);
+        model.put("dataClasses", dataClasses);
+        model.put("entityClasses", entityClasses);
+
+        File packagePath = new File(codePath, packageName.replace(".", File.separator));
+        File classFile = new File(packagePath, className + ".java");
+
+        if (!packagePath.exists() && !packagePath.mkdirs()) {
+            logger.error("生成[{}]失败，无法创建目录[{}]", classFile, packagePath);
+            return;
+        }
+
+        StringWriter content = new StringWriter();
+        try {
+            registryTemplate.process(model, content);
+            if (writeIfChanged(classFile, content.toString())) {
+                logger.info("生成[{}]成功", classFile);
+            }
+        } catch (Exception e) {
+            logger.error("生成[{}]失败", classFile, e);
+            return;
+        }
+
+        if (!StringUtils.isBlank(resourcePath)) {
+            generateRegistryService(packageName.isEmpty() ? className : packageName + "." + className);
+        }
+    }
+
+    /**
+     * 把注册表实现类添加到META-INF/services下的服务文件，保留文件里其他的实现类
+     */
+    protected void generateRegistryService(String registryClassName) {
+        File serviceFile = new File(resourcePath, "META-INF/services/" + DataRegistry.class.getName());
+        Set<String> classNames = new LinkedHashSet<>();
+        try {
+            if (serviceFile.exists()) {
+                for (String line : Files.readAllLines(serviceFile.toPath(), StandardCharsets.UTF_8)) {
+                    if (!StringUtils.isBlank(line)) {
+                        classNames.add(line.trim());
+                    }
+                }
+            }
+            classNames.add(registryClassName);
+
+            File servicePath = serviceFile.getParentFile();
+            if (!servicePath.exists() && !servicePath.mkdirs()) {
+                logger.error("生成[{}]失败，无法创建目录[{}]", serviceFile, servicePath);
+                return;
+            }
+            if (writeIfChanged(serviceFile, String.join("\n", classNames) + "\n")) {
+                logger.info("生成[{}]成功", serviceFile);
+            }
+        } catch (IOException e) {
+            logger.error("生成[{}]失败", serviceFile, e);
+        }
+    }
+
+    /**
+     * 文件内容有变化时才写入
+     *
+     * @return 是否写入了文件
+     */
+    private static boolean writeIfChanged(File file, String content) throws IOException {
+        if (file.exists() && new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).equals(content)) {
+            return false;
+        }
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * 所有类的公共包名
+     */
+    private static String commonPackageName(List<ClassDefinition> classDefinitions) {
+        String[] common = classDefinitions.get(0).getFullPackageName().split("\\.");
+        int length = common.length;
+
+        for (ClassDefinition classDefinition : classDefinitions) {
+            String[] names = classDefinition.getFullPackageName().split("\\.");
+            length = Math.min(length, names.length);
+            for (int i = 0; i < length; i++) {
+                if (!common[i].equals(names[i])) {
+                    length = i;
+                    break;
+                }
+            }
+        }
+
+        return String.join(".", Arrays.asList(common).subList(0, length));
+    }
+
     protected void prepareClass(ClassDefinition classDefinition) {
         classDefinition.setDependentClassNames(this.classNames);
 
@@ -519,6 +665,7 @@ public class Generator {
         beanDefinition.addImport("org.bson.codecs.configuration.CodecRegistry");
         beanDefinition.addImport("quan.data.*");
         beanDefinition.addImport("quan.data.field.*");
+        beanDefinition.addImport("quan.data.binary.*");
 
         if (beanDefinition instanceof DataDefinition) {
             beanDefinition.addImport("org.bson.json.JsonWriter");
@@ -37,10 +37,43 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
     </#if>
     public static final ${dn("String")} ${field.underscoreName} = "${field.name}";
 </#list>
+<#if kind ==5>
+
+    /**
+     * 所有的字段名，下标加1就是字段在数据中的位置
+     */
+    public static final ${dn("List")}<${dn("String")}> _FIELDS = ${dn("List")}.of(<#list fields as field>${field.underscoreName}<#if field?has_next>, </#if></#list>);
+</#if>
+
+    /**
+     * 二进制格式的结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    public static final long _FINGERPRINT = ${fingerprint};
 
 <#assign owner><#if kind ==5>this<#else>_getLogOwner()</#if></#assign>
 <#macro position index><#if kind ==5>${index + 1}<#else>_getLogPosition()</#if></#macro>
+<#-- 紧凑模式下基本类型和枚举字段存放在_slots里，slots是字段名:槽位 -->
+<#assign slotTypes={"bool":"Boolean","short":"Short","int":"Int","long":"Long","float":"Float","double":"Double","string":"Object"}/>
+<#assign slots={} longSlots=0 objectSlots=[]/>
+<#if compact>
 <#list fields as field>
+    <#if field.type == "string">
+        <#assign slots=slots+{field.name:objectSlots?size} objectSlots=objectSlots+[field]/>
+    <#elseif field.enumType || field.primitiveType>
+        <#assign slots=slots+{field.name:longSlots} longSlots=longSlots+1/>
+    </#if>
+</#list>
+</#if>
+<#function slotType field><#if field.enumType><#return "Int"><#else><#return slotTypes[field.type]></#if></#function>
+<#macro get field prefix="" transaction="">${prefix}<#if slots[field.name]??>_slots.get${slotType(field)}(<#if transaction!="">${transaction}, </#if>${slots[field.name]})<#else>${field.name}.getValue(${transaction})</#if></#macro>
+<#macro set field value prefix="" owner="" position="">${prefix}<#if slots[field.name]??>_slots.set${slotType(field)}(${slots[field.name]}, ${value}<#if owner!="">, ${owner}, ${position}</#if>)<#else>${field.name}.setValue(${value}<#if owner!="">, ${owner}, ${position}</#if>)</#if></#macro>
+<#if slots?size gt 0>
+    private final ${dn("SlotsField")} _slots = new ${dn("SlotsField")}(${longSlots}<#list objectSlots as field>, ""</#list>);
+</#if>
+<#list fields as field>
+    <#if slots[field.name]??>
+        <#continue/>
+    </#if>
 
     <#if field.type == "set" || field.type == "list">
     private final ${field.classType}<${field.valueClassType}> ${field.name} = new ${field.classType}<>(${owner}, <@position field?index/>);
@@ -75,7 +108,7 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
      */
     @Override
     public ${idField.classType} id() {
-        return ${idName}.getValue();
+        return <@get idField/>;
     }
 
 <#elseif fields?size<=5>
@@ -116,17 +149,26 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
     </#if>
     <#if field.type == "list" || field.type == "set">
     public ${field.basicType}<${field.valueClassType}> get${field.name?cap_first}() {
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
         return ${field.name}.getDelegate();
     }
 
     <#elseif field.type == "map">
     public ${field.basicType}<${field.keyClassType}, ${field.valueClassType}> get${field.name?cap_first}() {
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
         return ${field.name}.getDelegate();
     }
 
     <#elseif field.enumType>
     public ${field.classType} get${field.name?cap_first}() {
-        return ${field.classType}.valueOf(${field.name}.getValue());
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
+        return ${field.classType}.valueOf(<@get field/>);
     }
 
     <#if field.comment !="">
@@ -135,13 +177,20 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
      */
     </#if>
     public ${name} set${field.name?cap_first}(${field.classType} ${field.name}) {
-        this.${field.name}.setValue(${field.name}.value, ${owner}, <@position field?index/>);
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
+        <#assign logPosition><@position field?index/></#assign>
+        <@set field "${field.name}.value" "this." owner logPosition/>;
         return this;
     }
 
     <#elseif field.builtinType>
     public ${field.basicType} get${field.name?cap_first}() {
-        return ${field.name}.getValue();
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
+        return <@get field/>;
     }
 
     <#if field.comment !="">
@@ -157,12 +206,19 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
     <#elseif field.max??>
         ${dn("NumberUtils")}.validateMax(${field.name}, ${field.max}, "参数[${field.name}]");
     </#if>
-        this.${field.name}.setValue(${field.name}, ${owner}, <@position field?index/>);
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
+        <#assign logPosition><@position field?index/></#assign>
+        <@set field field.name "this." owner logPosition/>;
         return this;
     }
 
     <#else>
     public ${field.classType} get${field.name?cap_first}() {
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
         return ${field.name}.getValue();
     }
 
@@ -172,12 +228,29 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
      */
     </#if>
     public ${name} set${field.name?cap_first}(${field.classType} ${field.name}) {
+    <#if kind ==5 && field.name != idName>
+        _checkLoaded(${field?index+1});
+    </#if>
         this.${field.name}.setValue(${field.name}, ${owner}, <@position field?index/>);
         return this;
     }
 
     </#if>
 </#list>
+<#if kind ==5>
+
+    @${dn("Override")}
+    public ${dn("Object")} _getFieldValue(int position) {
+        switch (position) {
+    <#list fields as field>
+            case ${field?index+1}:
+                return get${field.name?cap_first}();
+    </#list>
+            default:
+                throw new ${dn("IllegalArgumentException")}("字段位置[" + position + "]不存在");
+        }
+    }
+</#if>
 <#if kind !=5>
 
     @${dn("Override")}
@@ -186,7 +259,7 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
         <#if field.collectionType>
         _setLogOwner(${field.name}, owner, position);
         <#elseif field.beanType>
-        _setLogOwner(${field.name}.getValue(), owner, positionr);
+        _setLogOwner(${field.name}.getValue(), owner, position);
         </#if>
     </#list>
     }
@@ -206,7 +279,7 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
             <#continue/>
         <#else>
         if (_updatedFields.get(${field?index+1}))
-            patch.put(${field.underscoreName}, ${field.name}.<#if field.collectionType>getCurrent<#else>getValue</#if>(transaction));
+            patch.put(${field.underscoreName}, <#if field.collectionType>${field.name}.getCurrent(transaction)<#else><@get field "" "transaction"/></#if>);
 
        </#if>
     </#list>
@@ -224,9 +297,11 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
                 <#lt>,<#rt>
             </#if>
             <#if field.type == "string">
-                <#lt>${field.name}='" + ${field.name} + '\'' +
+                <#lt>${field.name}='" + <#if slots[field.name]??><@get field/><#else>${field.name}</#if> + '\'' +
             <#elseif field.enumType>
-                <#lt>${field.name}=" + ${field.classType}.valueOf(${field.name}.getValue()) +
+                <#lt>${field.name}=" + ${field.classType}.valueOf(<@get field/>) +
+            <#elseif slots[field.name]??>
+                <#lt>${field.name}=" + <@get field/> +
             <#else>
                 <#lt>${field.name}=" + ${field.name} +
             </#if>
@@ -241,7 +316,7 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
     <#assign bsonTypes={"byte":"Int32","bool":"Boolean","short":"Int32","int":"Int32","long":"Int64","float":"Double","double":"Double","string":"String"}/>
     <#assign convertTypes={"byte":"byte","short":"short","float":"float"}/>
 
-    public static class CodecImpl implements ${dn("Codec")}<${name}> {
+    public static class CodecImpl implements <#if kind ==5>${dn("DataCodec")}<#else>${dn("Codec")}</#if><${name}> {
 
         private final ${dn("CodecRegistry")} registry;
 
@@ -269,9 +344,10 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
                         </#if>
                     case ${name}.${field.underscoreName}:
                         <#if field.enumType>
-                        value.${field.name}.setValue(reader.readInt32());
+                        <@set field "reader.readInt32()" "value."/>;
                         <#elseif field.primitiveType>
-                        value.${field.name}.setValue(<#if convertTypes[field.type]??>(${field.type}) </#if>reader.read${bsonTypes[field.type]}());
+                        <#assign fieldValue><#if convertTypes[field.type]??>(${field.type}) </#if>reader.read${bsonTypes[field.type]}()</#assign>
+                        <@set field fieldValue "value."/>;
                         <#elseif field.beanType>
                         value.${field.name}.setValue(decoderContext.decodeWithChildContext(registry.get(${field.classType}.class), reader));
                         <#elseif field.type == "list" || field.type == "set">
@@ -317,9 +393,9 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
             <#if kind ==5>
 
             if (writer instanceof ${dn("JsonWriter")}) {
-                writer.write${bsonTypes[idField.type]}(${name}.${idField.underscoreName}, value.${idField.name}.getValue(transaction));
+                writer.write${bsonTypes[idField.type]}(${name}.${idField.underscoreName}, <@get idField "value." "transaction"/>);
             } else {
-                writer.write${bsonTypes[idField.type]}(${name}._ID, value.${idField.name}.getValue(transaction));
+                writer.write${bsonTypes[idField.type]}(${name}._ID, <@get idField "value." "transaction"/>);
             }
             </#if>
 
@@ -327,9 +403,9 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
                 <#if field.ignore || kind == 5 && field.name == idName >
                     <#continue/>
                 <#elseif field.enumType>
-            writer.writeInt32(${name}.${field.underscoreName}, value.${field.name}.getValue(transaction));
+            writer.writeInt32(${name}.${field.underscoreName}, <@get field "value." "transaction"/>);
                 <#elseif field.primitiveType>
-            writer.write${bsonTypes[field.type]}(${name}.${field.underscoreName}, value.${field.name}.getValue(transaction));
+            writer.write${bsonTypes[field.type]}(${name}.${field.underscoreName}, <@get field "value." "transaction"/>);
                 <#elseif field.beanType>
                     <#if field_index gt 0 >
 
@@ -392,6 +468,63 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
 
             writer.writeEndDocument();
         }
+        <#if kind ==5>
+
+        @${dn("Override")}
+        public boolean encodePatch(${dn("BsonWriter")} writer, ${name} value, ${dn("EncoderContext")} encoderContext) {
+            if (value._updatedFields.isEmpty()) {
+                return false;
+            }
+
+            ${dn("Transaction")} transaction = ${dn("Transaction")}.get();
+            <#list fields as field>
+                <#if field.ignore || field==idField>
+                    <#continue/>
+                </#if>
+
+            if (value._updatedFields.get(${field?index+1})) {
+                <#if field.enumType>
+                writer.writeInt32(${name}.${field.underscoreName}, <@get field "value." "transaction"/>);
+                <#elseif field.primitiveType>
+                writer.write${bsonTypes[field.type]}(${name}.${field.underscoreName}, <@get field "value." "transaction"/>);
+                <#elseif field.beanType>
+                ${field.classType} $${field.name} = value.${field.name}.getValue(transaction);
+                if ($${field.name} != null) {
+                    writer.writeName(${name}.${field.underscoreName});
+                    encoderContext.encodeWithChildContext(registry.get(${field.classType}.class), writer, $${field.name});
+                } else {
+                    writer.writeNull(${name}.${field.underscoreName});
+                }
+                <#elseif field.type == "list" || field.type == "set">
+                writer.writeStartArray(${name}.${field.underscoreName});
+                for (${field.valueClassType} ${field.name}Value : value.${field.name}.getCurrent(transaction)) {
+                    <#if field.primitiveValueType>
+                    writer.write${bsonTypes[field.valueType]}(${field.name}Value);
+                    <#elseif field.beanValueType>
+                    encoderContext.encodeWithChildContext(registry.get(${field.valueClassType}.class), writer, ${field.name}Value);
+                    <#else>
+                    writer.write${field.valueType?cap_first}(${field.name}Value);
+                    </#if>
+                }
+                writer.writeEndArray();
+                <#elseif field.type == "map">
+                writer.writeStartDocument(${name}.${field.underscoreName});
+                for (Map.Entry<${field.keyClassType}, ${field.valueClassType}> ${field.name}Entry : value.${field.name}.getCurrent(transaction).entrySet()) {
+                    writer.writeName(String.valueOf(${field.name}Entry.getKey()));
+                    <#if field.primitiveValueType>
+                    writer.write${bsonTypes[field.valueType]}(${field.name}Entry.getValue());
+                    <#else>
+                    encoderContext.encodeWithChildContext(registry.get(${field.valueClassType}.class), writer, ${field.name}Entry.getValue());
+                    </#if>
+                }
+                writer.writeEndDocument();
+                </#if>
+            }
+            </#list>
+
+            return true;
+        }
+        </#if>
         
         @${dn("Override")}
         public ${dn("Class")}<${name}> getEncoderClass() {
@@ -400,4 +533,136 @@ public class ${name} extends <#if kind ==2>${dn("Bean")}<#elseif kind ==5>${dn("
 
     }
 
+    <#assign binaryTypes={"bool":"Bool","short":"Int","int":"Int","long":"Long","float":"Float","double":"Double","string":"String"}/>
+    <#assign binaryCasts={"short":"(short) "}/>
+    public static class BinaryCodecImpl implements ${dn("BinaryCodec")}<${name}> {
+
+        public static final BinaryCodecImpl INSTANCE = new BinaryCodecImpl();
+
+        @${dn("Override")}
+        public long getFingerprint() {
+            return _FINGERPRINT;
+        }
+
+        @${dn("Override")}
+        public ${dn("Class")}<${name}> getEncoderClass() {
+            return ${name}.class;
+        }
+
+        @${dn("Override")}
+        public void encode(${dn("BinaryWriter")} writer, ${name} value) {
+            ${dn("Transaction")} transaction = ${dn("Transaction")}.get();
+            <#list fields as field>
+                <#if field.ignore>
+                    <#continue/>
+                </#if>
+                <#assign position = field?index + 1/>
+                <#if field.enumType>
+            writer.writeIntField(${position}, <@get field "value." "transaction"/>);
+                <#elseif field.primitiveType>
+            writer.write${binaryTypes[field.type]}Field(${position}, <@get field "value." "transaction"/>);
+                <#elseif field.beanType>
+
+            ${field.classType} $${field.name} = value.${field.name}.getValue(transaction);
+            if ($${field.name} != null) {
+                int mark = writer.beginNested(${position});
+                ${field.classType}.BinaryCodecImpl.INSTANCE.encode(writer, $${field.name});
+                writer.endNested(mark);
+            }
+                    <#if field_has_next && !fields[field_index+1].collectionType && !fields[field_index+1].beanType>
+
+                    </#if>
+                <#elseif field.type == "list" || field.type == "set">
+
+            ${dn("Collection")}<${field.valueClassType}> $${field.name} = value.${field.name}.getCurrent(transaction);
+            if (!$${field.name}.isEmpty()) {
+                int mark = writer.beginNested(${position});
+                writer.writeVarInt($${field.name}.size());
+                for (${field.valueClassType} ${field.name}Value : $${field.name}) {
+                    <#if field.beanValueType>
+                    ${field.valueClassType}.BinaryCodecImpl.INSTANCE.encode(writer, ${field.name}Value);
+                    <#else>
+                    writer.write${binaryTypes[field.valueType]}(${field.name}Value);
+                    </#if>
+                }
+                writer.endNested(mark);
+            }
+                    <#if field_has_next && !fields[field_index+1].collectionType && !fields[field_index+1].beanType>
+
+                    </#if>
+                <#elseif field.type == "map">
+
+            ${dn("Map")}<${field.keyClassType}, ${field.valueClassType}> $${field.name} = value.${field.name}.getCurrent(transaction);
+            if (!$${field.name}.isEmpty()) {
+                int mark = writer.beginNested(${position});
+                writer.writeVarInt($${field.name}.size());
+                for (Map.Entry<${field.keyClassType}, ${field.valueClassType}> ${field.name}Entry : $${field.name}.entrySet()) {
+                    writer.write${binaryTypes[field.keyType]}(${field.name}Entry.getKey());
+                    <#if field.beanValueType>
+                    ${field.valueClassType}.BinaryCodecImpl.INSTANCE.encode(writer, ${field.name}Entry.getValue());
+                    <#else>
+                    writer.write${binaryTypes[field.valueType]}(${field.name}Entry.getValue());
+                    </#if>
+                }
+                writer.endNested(mark);
+            }
+                    <#if field_has_next && !fields[field_index+1].collectionType && !fields[field_index+1].beanType>
+
+                    </#if>
+                </#if>
+            </#list>
+
+            writer.writeEnd();
+        }
+
+        @${dn("Override")}
+        public ${name} decode(${dn("BinaryReader")} reader) {
+            ${name} value = new ${name}();
+
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    <#list fields as field>
+                        <#if field.ignore>
+                            <#continue/>
+                        </#if>
+                    case ${field?index + 1}:
+                        <#if field.enumType>
+                        <@set field "reader.readInt()" "value."/>;
+                        <#elseif field.primitiveType>
+                        <@set field "${binaryCasts[field.type]!}reader.read${binaryTypes[field.type]}()" "value."/>;
+                        <#elseif field.beanType>
+                        reader.beginNested();
+                        value.${field.name}.setValue(${field.classType}.BinaryCodecImpl.INSTANCE.decode(reader));
+                        <#elseif field.type == "list" || field.type == "set">
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            <#if field.beanValueType>
+                            value.${field.name}.plus(${field.valueClassType}.BinaryCodecImpl.INSTANCE.decode(reader));
+                            <#else>
+                            value.${field.name}.plus(${binaryCasts[field.valueType]!}reader.read${binaryTypes[field.valueType]}());
+                            </#if>
+                        }
+                        <#elseif field.type == "map">
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            <#if field.beanValueType>
+                            value.${field.name}.plus(${binaryCasts[field.keyType]!}reader.read${binaryTypes[field.keyType]}(), ${field.valueClassType}.BinaryCodecImpl.INSTANCE.decode(reader));
+                            <#else>
+                            value.${field.name}.plus(${binaryCasts[field.keyType]!}reader.read${binaryTypes[field.keyType]}(), ${binaryCasts[field.valueType]!}reader.read${binaryTypes[field.valueType]}());
+                            </#if>
+                        }
+                        </#if>
+                        break;
+                    </#list>
+                    default:
+                        reader.skip(tag);
+                }
+            }
+
+            return value;
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+<#if packageName !="">
+package ${packageName};
+
+</#if>
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+import quan.data.Data;
+import quan.data.DataRegistry;
+import quan.data.Entity;
+import quan.data.binary.BinaryCodec;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 数据类注册表<br/>
+ * 代码自动生成，请勿手动修改
+ */
+public class ${className} implements DataRegistry {
+
+    private static final List<Class<? extends Data<?>>> dataClasses = new ArrayList<>();
+
+    private static final Map<Class<? extends Data<?>>, String> dataNames = new HashMap<>();
+
+    private static final Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> codecFactories = new HashMap<>();
+
+    private static final Map<Class<? extends Entity>, BinaryCodec<?>> binaryCodecs = new HashMap<>();
+
+    static {
+<#list dataClasses as class>
+        dataClasses.add(${class.fullName}.class);
+</#list>
+
+<#list dataClasses as class>
+        dataNames.put(${class.fullName}.class, ${class.fullName}._NAME);
+</#list>
+
+<#list entityClasses as class>
+        codecFactories.put(${class.fullName}.class, ${class.fullName}.CodecImpl::new);
+</#list>
+
+<#list entityClasses as class>
+        binaryCodecs.put(${class.fullName}.class, ${class.fullName}.BinaryCodecImpl.INSTANCE);
+</#list>
+    }
+
+    @Override
+    public List<Class<? extends Data<?>>> getDataClasses() {
+        return Collections.unmodifiableList(dataClasses);
+    }
+
+    @Override
+    public Map<Class<? extends Data<?>>, String> getDataNames() {
+        return Collections.unmodifiableMap(dataNames);
+    }
+
+    @Override
+    public Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> getCodecFactories() {
+        return Collections.unmodifiableMap(codecFactories);
+    }
+
+    @Override
+    public Map<Class<? extends Entity>, BinaryCodec<?>> getBinaryCodecs() {
+        return Collections.unmodifiableMap(binaryCodecs);
+    }
+
+}
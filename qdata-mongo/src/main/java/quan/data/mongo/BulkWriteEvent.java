@@ -0,0 +1,35 @@
+package quan.data.mongo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 批量写数据库的JFR事件，在数据库线程上执行，调用栈没有意义
+ */
+@Name("quan.data.mongo.BulkWrite")
+@Label("Bulk Write")
+@Category({"QData", "Database"})
+@Description("提交事务之后批量写数据库")
+@StackTrace(false)
+class BulkWriteEvent extends Event {
+
+    /**
+     * @see FindEvent#TYPE
+     */
+    static final EventType TYPE = EventType.getEventType(BulkWriteEvent.class);
+
+    @Label("Collection")
+    String collection;
+
+    @Label("Operations")
+    int operations;
+
+    @Label("Failed")
+    boolean failed;
+
+}
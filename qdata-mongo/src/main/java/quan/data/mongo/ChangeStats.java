@@ -0,0 +1,83 @@
+package quan.data.mongo;
+
+/**
+ * 一个集合的变更通知统计
+ */
+public class ChangeStats {
+
+    /**
+     * 收到的变更通知数量
+     */
+    private final long count;
+
+    /**
+     * 本进程自己写的数据被跳过的数量
+     */
+    private final long skippedCount;
+
+    /**
+     * 从缓存中移除或者刷新了的数据数量
+     */
+    private final long invalidatedCount;
+
+    /**
+     * 处理出错被跳过的数量
+     */
+    private final long failedCount;
+
+    /**
+     * 最近一次变更通知的延迟(毫秒)
+     */
+    private final long lastLag;
+
+    /**
+     * 最大延迟(毫秒)
+     */
+    private final long maxLag;
+
+    public ChangeStats(long count, long skippedCount, long invalidatedCount, long failedCount, long lastLag, long maxLag) {
+        this.count = count;
+        this.skippedCount = skippedCount;
+        this.invalidatedCount = invalidatedCount;
+        this.failedCount = failedCount;
+        this.lastLag = lastLag;
+        this.maxLag = maxLag;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public long getInvalidatedCount() {
+        return invalidatedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeStats{" +
+                "count=" + count +
+                ",skippedCount=" + skippedCount +
+                ",invalidatedCount=" + invalidatedCount +
+                ",failedCount=" + failedCount +
+                ",lastLag=" + lastLag + "ms" +
+                ",maxLag=" + maxLag + "ms" +
+                '}';
+    }
+
+}
@@ -0,0 +1,430 @@
+package quan.data.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import quan.data.Data;
+import quan.data.DataCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听数据类对应集合的变更流，其他进程修改了数据之后同步到本进程的{@link DataCache}<br/>
+ * 每个数据类使用一个单独的数据库线程监听，恢复令牌保存在{@link TokenStore}里，重启之后从上次的位置继续监听<br/>
+ * 本进程自己写的数据通过{@link LocalWrites}按操作类型和写的字段值识别并跳过，恢复令牌过期时会清空对应数据类的缓存
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class ChangeWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeWatcher.class);
+
+    /**
+     * 变更流历史已经丢失的错误码
+     */
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    /**
+     * 保存恢复令牌的时间间隔(毫秒)
+     */
+    private static final long SAVE_TOKEN_INTERVAL = 1000;
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private final Database database;
+
+    /**
+     * 节点名，区分不同进程的恢复令牌
+     */
+    private final String nodeName;
+
+    private final TokenStore tokenStore;
+
+    private volatile Mode mode = Mode.INVALIDATE;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Map<Class<?>, Watcher> watchers = new ConcurrentHashMap<>();
+
+    /**
+     * 使用默认的恢复令牌存储
+     *
+     * @param nodeName 节点名，每个进程必须不一样
+     * @see MongoTokenStore
+     */
+    public ChangeWatcher(Database database, String nodeName) {
+        this(database, nodeName, new MongoTokenStore(database));
+    }
+
+    public ChangeWatcher(Database database, String nodeName, TokenStore tokenStore) {
+        this.database = Objects.requireNonNull(database, "参数[database]不能为空");
+        this.nodeName = Objects.requireNonNull(nodeName, "参数[nodeName]不能为空");
+        this.tokenStore = Objects.requireNonNull(tokenStore, "参数[tokenStore]不能为空");
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public ChangeWatcher setMode(Mode mode) {
+        this.mode = Objects.requireNonNull(mode, "参数[mode]不能为空");
+        return this;
+    }
+
+    /**
+     * 添加变更监听器，在监听线程上回调
+     */
+    public ChangeWatcher addListener(Listener listener) {
+        listeners.add(Objects.requireNonNull(listener, "参数[listener]不能为空"));
+        return this;
+    }
+
+    /**
+     * 开始监听数据类对应集合的变更
+     */
+    public synchronized void watch(Class<? extends Data<?>> clazz) {
+        MongoCollection collection = database.getCollection((Class) clazz);
+        if (collection == null) {
+            throw new IllegalArgumentException("数据类[" + clazz + "]未注册");
+        }
+        if (watchers.containsKey(clazz)) {
+            return;
+        }
+
+        if (database.localWrites == null) {
+            database.localWrites = new LocalWrites();
+        }
+
+        Watcher watcher = new Watcher(clazz, collection);
+        watchers.put(clazz, watcher);
+        watcher.start();
+    }
+
+    /**
+     * 停止所有的监听
+     */
+    public synchronized void stop() {
+        for (Watcher watcher : watchers.values()) {
+            watcher.running = false;
+        }
+        for (Watcher watcher : watchers.values()) {
+            try {
+                watcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        watchers.clear();
+    }
+
+    /**
+     * 各数据类的变更通知统计
+     */
+    public Map<Class<?>, ChangeStats> getStats() {
+        Map<Class<?>, ChangeStats> stats = new ConcurrentHashMap<>();
+        watchers.forEach((clazz, watcher) -> stats.put(clazz, watcher.getStats()));
+        return stats;
+    }
+
+    /**
+     * 把变更通知中的主键转换成缓存中的主键类型，和数据类的编解码器解码出来的类型一致
+     */
+    static Object toId(BsonValue value) {
+        switch (value.getBsonType()) {
+            case INT32:
+                return value.asInt32().getValue();
+            case INT64:
+                return value.asInt64().getValue();
+            case DOUBLE:
+                return value.asDouble().getValue();
+            case STRING:
+                return value.asString().getValue();
+            case BOOLEAN:
+                return value.asBoolean().getValue();
+            case OBJECT_ID:
+                return value.asObjectId().getValue();
+            default:
+                //其他类型使用驱动默认的解码方式
+                try (BsonDocumentReader reader = new BsonDocumentReader(new BsonDocument(Data._ID, value))) {
+                    return DOCUMENT_CODEC.decode(reader, DECODER_CONTEXT).get(Data._ID);
+                }
+        }
+    }
+
+    /**
+     * 一个数据类的监听线程
+     */
+    private class Watcher extends OperationThread {
+
+        private final Class<? extends Data<?>> clazz;
+
+        private final MongoCollection<Data<?>> collection;
+
+        private final String collectionName;
+
+        private final String tokenKey;
+
+        private volatile boolean running = true;
+
+        private BsonDocument resumeToken;
+
+        private long lastSaveTime;
+
+        private volatile long count;
+
+        private volatile long skippedCount;
+
+        private volatile long invalidatedCount;
+
+        private volatile long failedCount;
+
+        private volatile long lastLag;
+
+        private volatile long maxLag;
+
+        Watcher(Class<? extends Data<?>> clazz, MongoCollection<Data<?>> collection) {
+            super(null);
+            this.clazz = clazz;
+            this.collection = collection;
+            this.collectionName = collection.getNamespace().getCollectionName();
+            this.tokenKey = nodeName + ":" + collectionName;
+            setName("change-watcher-" + collectionName);
+            setDaemon(true);
+        }
+
+        ChangeStats getStats() {
+            return new ChangeStats(count, skippedCount, invalidatedCount, failedCount, lastLag, maxLag);
+        }
+
+        @Override
+        public void run() {
+            try {
+                resumeToken = tokenStore.load(tokenKey);
+            } catch (Exception e) {
+                logger.error("加载集合[{}]的变更流恢复令牌出错", collectionName, e);
+            }
+
+            while (running) {
+                try {
+                    watch();
+                } catch (MongoException e) {
+                    if (e.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                        //恢复令牌已经过期，中间的变更无法知道了
+                        logger.error("集合[{}]的变更流历史已经丢失，清空缓存", collectionName);
+                        DataCache.clear(clazz);
+                        resumeToken = null;
+                    } else if (running) {
+                        logger.error("监听集合[{}]的变更流出错", collectionName, e);
+                        sleep();
+                    }
+                } catch (Exception e) {
+                    logger.error("处理集合[{}]的变更通知出错", collectionName, e);
+                    sleep();
+                }
+            }
+
+            saveToken(true);
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+        }
+
+        private void watch() {
+            List<Bson> pipeline = List.of(Aggregates.match(Filters.in("operationType", "insert", "update", "replace", "delete")));
+            FullDocument fullDocument = mode == Mode.REFRESH ? FullDocument.UPDATE_LOOKUP : FullDocument.DEFAULT;
+
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Data<?>>> cursor = (resumeToken == null ? collection.watch(pipeline) : collection.watch(pipeline).resumeAfter(resumeToken))
+                    .fullDocument(fullDocument).maxAwaitTime(1, TimeUnit.SECONDS).cursor()) {
+                while (running) {
+                    ChangeStreamDocument<Data<?>> change = cursor.tryNext();
+                    if (change != null) {
+                        try {
+                            onChange(change);
+                        } catch (Exception e) {
+                            //跳过处理不了的变更，否则会一直从这条变更之前的恢复令牌重新监听
+                            failedCount++;
+                            logger.error("处理集合[{}]的变更通知出错，跳过变更:{}", collectionName, change.getResumeToken(), e);
+                        }
+                    }
+                    BsonDocument token = cursor.getResumeToken();
+                    if (token != null) {
+                        resumeToken = token;
+                    }
+                    saveToken(false);
+                }
+            }
+        }
+
+        private void saveToken(boolean force) {
+            long now = System.currentTimeMillis();
+            if (resumeToken == null || !force && now - lastSaveTime < SAVE_TOKEN_INTERVAL) {
+                return;
+            }
+
+            lastSaveTime = now;
+            try {
+                tokenStore.save(tokenKey, resumeToken);
+            } catch (Exception e) {
+                logger.error("保存集合[{}]的变更流恢复令牌出错", collectionName, e);
+            }
+            database.localWrites.expire();
+        }
+
+        private void onChange(ChangeStreamDocument<Data<?>> change) {
+            count++;
+
+            long now = System.currentTimeMillis();
+            long lag = -1;
+            if (change.getWallTime() != null) {
+                lag = now - change.getWallTime().getValue();
+            } else if (change.getClusterTime() != null) {
+                lag = now - change.getClusterTime().getTime() * 1000L;
+            }
+            if (lag >= 0) {
+                lastLag = lag;
+                maxLag = Math.max(maxLag, lag);
+            }
+
+            BsonDocument documentKey = change.getDocumentKey();
+            if (documentKey == null) {
+                return;
+            }
+
+            Object id = toId(documentKey.get(Data._ID));
+            OperationType operationType = change.getOperationType();
+
+            if (database.localWrites.consume(collectionName, id, operationType, change.getUpdateDescription())) {
+                skippedCount++;
+                return;
+            }
+
+            Data<?> data = DataCache.get((Class) clazz, id);
+            Data<?> newData = null;
+
+            if (data != null) {
+                invalidatedCount++;
+                newData = mode == Mode.REFRESH && operationType != OperationType.DELETE ? change.getFullDocument() : null;
+                if (newData != null) {
+                    Cursor.setAccessor(newData, database);
+                    try {
+                        DataCache.put(newData);
+                    } catch (RuntimeException e) {
+                        //替换不了时移除旧数据，缓存里不能留着过期的数据
+                        DataCache.remove(data);
+                        throw e;
+                    }
+                } else {
+                    DataCache.remove(data);
+                }
+            }
+
+            for (Listener listener : listeners) {
+                try {
+                    listener.onChange(clazz, id, operationType, newData);
+                } catch (Exception e) {
+                    logger.error("变更监听器处理出错", e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * 收到其他进程的变更通知后怎么处理本进程缓存的数据
+     */
+    public enum Mode {
+
+        /**
+         * 从缓存中移除
+         */
+        INVALIDATE,
+
+        /**
+         * 从数据库查询最新的数据替换缓存中的数据
+         */
+        REFRESH
+
+    }
+
+    /**
+     * 变更监听器
+     */
+    public interface Listener {
+
+        /**
+         * @param data 刷新后的数据，没有刷新时为空
+         */
+        void onChange(Class<? extends Data<?>> clazz, Object id, OperationType operationType, Data<?> data);
+
+    }
+
+    /**
+     * 恢复令牌存储
+     */
+    public interface TokenStore {
+
+        BsonDocument load(String key);
+
+        void save(String key, BsonDocument token);
+
+    }
+
+    /**
+     * 把恢复令牌保存在数据库的集合里
+     */
+    public static class MongoTokenStore implements TokenStore {
+
+        public static final String COLLECTION_NAME = "_change_tokens";
+
+        private final Database database;
+
+        public MongoTokenStore(Database database) {
+            this.database = database;
+        }
+
+        @Override
+        public BsonDocument load(String key) {
+            Document document = database.getCollection(COLLECTION_NAME).find(Filters.eq(Data._ID, key)).first();
+            if (document == null) {
+                return null;
+            }
+            Document token = document.get("token", Document.class);
+            return token == null ? null : token.toBsonDocument();
+        }
+
+        @Override
+        public void save(String key, BsonDocument token) {
+            Document document = new Document(Data._ID, key).append("token", token);
+            database.getCollection(COLLECTION_NAME).replaceOne(Filters.eq(Data._ID, key), document, new ReplaceOptions().upsert(true));
+        }
+
+    }
+
+}
@@ -3,39 +3,115 @@ package quan.data.mongo;
 import com.mongodb.ServerAddress;
 import com.mongodb.ServerCursor;
 import com.mongodb.internal.operation.BatchCursor;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import quan.data.Data;
-import quan.data.DataAccessor;
 
-import java.lang.reflect.Field;
+import java.util.BitSet;
 import java.util.List;
-import java.util.function.BiConsumer;
+import java.util.Map;
 
 @SuppressWarnings({"unchecked", "rawtypes", "NullableProblems"})
 public class Cursor implements BatchCursor {
 
     private static final Logger logger = LoggerFactory.getLogger(Cursor.class);
 
-    private static BiConsumer<Data, DataAccessor> setDataAccessor;
-
-    static {
-        try {
-            Field field = Data.class.getDeclaredField("_setAccessor");
-            field.setAccessible(true);
-            setDataAccessor = (BiConsumer<Data, DataAccessor>) field.get(Data.class);
-        } catch (Exception e) {
-            logger.error("", e);
-        }
-    }
-
     private Database database;
 
     private BatchCursor cursor;
 
+    /**
+     * 查询时的投影，为空时代表加载全部字段
+     */
+    private BsonDocument projection;
+
+    private Class<?> dataClass;
+
+    /**
+     * 根据投影计算出来的已加载字段，所有数据共用
+     */
+    private BitSet loadedFields;
+
     public Cursor(Database database, BatchCursor cursor) {
+        this(database, cursor, null);
+    }
+
+    public Cursor(Database database, BatchCursor cursor, BsonDocument projection) {
         this.database = database;
         this.cursor = cursor;
+        this.projection = projection == null || projection.isEmpty() ? null : projection;
+    }
+
+    /**
+     * 根据投影计算已加载的字段，嵌套字段和投影表达式都当做未加载，防止被整体覆盖
+     *
+     * @return 全部字段都加载了返回空
+     */
+    static BitSet loadedFields(List<String> fields, BsonDocument projection) {
+        boolean inclusion = false;
+        for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+            if (!entry.getKey().equals(Data._ID) && isIncluded(entry.getValue())) {
+                inclusion = true;
+                break;
+            }
+        }
+
+        BitSet loadedFields = new BitSet();
+        if (!inclusion) {
+            loadedFields.set(1, fields.size() + 1);
+        }
+
+        for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+            String name = entry.getKey();
+            if (name.equals(Data._ID)) {
+                continue;
+            }
+
+            int dot = name.indexOf('.');
+            int position = fields.indexOf(dot < 0 ? name : name.substring(0, dot)) + 1;
+            if (position <= 0) {
+                continue;
+            }
+
+            BsonValue value = entry.getValue();
+            if (inclusion && dot < 0 && isIncluded(value) && (value.isNumber() || value.isBoolean())) {
+                loadedFields.set(position);
+            } else if (!inclusion) {
+                loadedFields.clear(position);
+            }
+        }
+
+        return loadedFields.cardinality() == fields.size() ? null : loadedFields;
+    }
+
+    private static boolean isIncluded(BsonValue value) {
+        if (value.isNumber()) {
+            return value.asNumber().intValue() != 0;
+        }
+        if (value.isBoolean()) {
+            return value.asBoolean().getValue();
+        }
+        return true;
+    }
+
+    /**
+     * 设置数据的存取器，和从数据库查询出来的数据一样
+     */
+    static void setAccessor(Data data, Database database) {
+        Data._setAccessor(data, database);
+    }
+
+    private void setLoadedFields(Data data) {
+        if (data.getClass() != dataClass) {
+            dataClass = data.getClass();
+            List<String> fields = Data.fields((Class) dataClass);
+            loadedFields = fields == null ? null : loadedFields(fields, projection);
+        }
+        if (loadedFields != null) {
+            Data._setLoadedFields(data, loadedFields);
+        }
     }
 
     @Override
@@ -48,12 +124,25 @@ public class Cursor implements BatchCursor {
         return cursor.hasNext();
     }
 
+    /**
+     * 查询出来的数据设置存取器，有投影时设置已加载的字段
+     */
+    void afterRead(Object result) {
+        if (!(result instanceof Data)) {
+            return;
+        }
+        if (database != null) {
+            Data._setAccessor((Data) result, database);
+        }
+        if (projection != null) {
+            setLoadedFields((Data) result);
+        }
+    }
+
     @Override
     public List next() {
         List list = cursor.next();
-        if (database != null) {
-            list.stream().filter(d -> d instanceof Data).forEach(d -> setDataAccessor.accept((Data) d, database));
-        }
+        list.forEach(this::afterRead);
         return list;
     }
 
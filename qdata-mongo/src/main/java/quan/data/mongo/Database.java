@@ -25,11 +25,18 @@ import com.mongodb.client.model.IndexModel;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.WriteModel;
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
@@ -37,21 +44,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import quan.data.Data;
 import quan.data.DataAccessor;
+import quan.data.DataRegistry;
+import quan.data.EncodedPatch;
 import quan.data.EntityCodecProvider;
 import quan.data.Index;
+import quan.data.WarmSnapshot;
+import quan.data.binary.BinaryCodecs;
+import quan.data.metrics.Metrics;
 import quan.data.util.ClassUtils;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
@@ -71,11 +96,54 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
 
     static final Map<MongoClient, List<ExecutorService>> clientsExecutors = new ConcurrentHashMap<>();
 
+    /**
+     * 预热快照的代数记录，退出时保存快照之后写入，启动时取出校验
+     */
+    public static final String WARM_SNAPSHOTS = "_warm_snapshots";
+
+    /**
+     * 批量写数据库的时间，标签collection
+     */
+    public static final String WRITE_TIME = "qdata.database.write.time";
+
+    /**
+     * 每次批量写的操作数量，标签collection
+     */
+    public static final String WRITE_SIZE = "qdata.database.write.size";
+
+    /**
+     * 同步查询数据的时间，标签collection
+     */
+    public static final String FIND_TIME = "qdata.database.find.time";
+
+    /**
+     * 操作在队列中的等待时间，标签priority
+     */
+    public static final String QUEUE_WAIT_TIME = "qdata.database.queue.wait";
+
+    /**
+     * 操作出队时同一优先级的子队列中剩余的操作数量，标签priority
+     */
+    public static final String QUEUE_SIZE = "qdata.database.queue.size";
+
+    /**
+     * 操作在数据库线程上的执行时间，标签priority
+     */
+    public static final String OPERATION_TIME = "qdata.database.operation.time";
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
     /**
      * 是否校验数据库线程
      */
     static boolean validateThread = true;
 
+    /**
+     * 是否通过织入驱动的方式校验数据库线程和设置访问器，可以通过系统属性[quan.data.mongo.weaving]关闭，
+     * 关闭后改为通过驱动的公开接口代理{@link MongoDatabase}，不再需要Agent
+     */
+    static final boolean WEAVING = Boolean.parseBoolean(System.getProperty("quan.data.mongo.weaving", "true"));
+
     /**
      * 数据类所在的包名
      */
@@ -85,12 +153,41 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
 
     private MongoDatabase db;
 
-    private final Map<Class, MongoCollection> collections = new HashMap<>();
+    private final Map<Class, MongoCollection> collections = new ConcurrentHashMap<>();
 
     private final List<ExecutorService> executors = new ArrayList<>();
 
+    /**
+     * 开始监听变更流之后记录本进程写过的数据
+     *
+     * @see ChangeWatcher
+     */
+    volatile LocalWrites localWrites;
+
+    /**
+     * 开启写数据库统计之后记录写入的操作数量和字节数
+     */
+    private volatile WriteRecorder writeRecorder;
+
+    /**
+     * 定时报告写数据库统计
+     */
+    private ScheduledExecutorService writeStatsReporter;
+
+    /**
+     * 进程退出时保存预热快照的文件
+     */
+    private volatile Path warmSnapshotFile;
+
+    /**
+     * 保存预热快照的退出钩子，只注册一次
+     */
+    Thread warmSnapshotHook;
+
     static {
-        ClassUtils.initAop();
+        if (WEAVING) {
+            ClassUtils.initAop();
+        }
     }
 
     /**
@@ -150,7 +247,7 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
                 .daemon(true).build();
 
         for (int i = 1; i <= Runtime.getRuntime().availableProcessors(); i++) {
-            executors.add(Executors.newSingleThreadExecutor(threadFactory));
+            executors.add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new OperationQueue(), threadFactory));
         }
 
         clientsExecutors.put(client, executors);
@@ -158,6 +255,9 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
 
     private void initDatabase(String databaseName) {
         db = client.getDatabase(databaseName);
+        if (!WEAVING) {
+            db = OperationInterceptor.wrap(db, this);
+        }
 
         try {
             databasesLock.writeLock().lock();
@@ -166,14 +266,199 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
             databasesLock.writeLock().unlock();
         }
 
+        //优先使用生成的注册表，没有时才扫描类路径
+        Map<Class<? extends Data<?>>, String> dataNames = new HashMap<>();
+        DataRegistry registry = DataRegistry.load(dataPackage);
+        if (registry != null) {
+            EntityCodecProvider.DEFAULT_PROVIDER.register(registry);
+            BinaryCodecs.register(registry);
+            dataNames.putAll(registry.getDataNames());
+        } else {
+            for (Class<?> clazz : ClassUtils.loadClasses(dataPackage, Data.class)) {
+                dataNames.put((Class<? extends Data<?>>) clazz, Data.name((Class<? extends Data<?>>) clazz));
+            }
+        }
+
+        //在各自的数据库线程上并行初始化集合
+        List<Future<?>> futures = new ArrayList<>();
+        dataNames.forEach((clazz, name) -> futures.add(getExecutor(clazz).submit(() -> initCollection(clazz, name))));
+
         try {
-            getExecutor().submit(() -> ClassUtils.loadClasses(dataPackage, Data.class).forEach(this::initCollection)).get();
+            for (Future<?> future : futures) {
+                future.get();
+            }
         } catch (Exception e) {
             throw new MongoException("初始化数据库集合失败", e);
         }
 
     }
 
+    static void shutdownExecutors(MongoClient client) {
+        List<ExecutorService> clientExecutors = clientsExecutors.remove(client);
+        if (clientExecutors != null) {
+            //关闭线程池
+            clientExecutors.forEach(ExecutorService::shutdown);
+        }
+    }
+
+    /**
+     * 关闭数据库线程池和MongoClient，同一个MongoClient上的其他数据库对象也不能再使用了
+     */
+    public void close() {
+        reportWriteStats(0, 0);
+        shutdownExecutors(client);
+        client.close();
+    }
+
+    /**
+     * 开启或者关闭写数据库统计，开启后插入的数据会多编码一次，更新补丁会多解析一次
+     */
+    public void setWriteStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            writeRecorder = null;
+        } else if (writeRecorder == null) {
+            writeRecorder = new WriteRecorder();
+        }
+    }
+
+    /**
+     * 获取开启统计或者上次清空之后按集合统计的写数据库操作数量和字节数
+     *
+     * @param topFields 每个集合最多返回写入字节数最多的多少个字段
+     * @return 集合名:统计，未开启统计时为空
+     */
+    public Map<String, WriteStats> getWriteStats(int topFields) {
+        WriteRecorder writeRecorder = this.writeRecorder;
+        return writeRecorder == null ? Collections.emptyMap() : writeRecorder.getStats(topFields, false);
+    }
+
+    /**
+     * 获取写数据库统计并清空
+     *
+     * @see #getWriteStats(int)
+     */
+    public Map<String, WriteStats> resetWriteStats(int topFields) {
+        WriteRecorder writeRecorder = this.writeRecorder;
+        return writeRecorder == null ? Collections.emptyMap() : writeRecorder.getStats(topFields, true);
+    }
+
+    /**
+     * 开启写数据库统计并定时打印日志，每次打印之后清空统计
+     *
+     * @param period    报告周期(毫秒)，小于等于0时停止报告
+     * @param topFields 每个集合报告写入字节数最多的多少个字段
+     */
+    public synchronized void reportWriteStats(long period, int topFields) {
+        if (writeStatsReporter != null) {
+            writeStatsReporter.shutdown();
+            writeStatsReporter = null;
+        }
+        if (period <= 0) {
+            return;
+        }
+
+        setWriteStatsEnabled(true);
+        writeStatsReporter = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder().namingPattern("write-stats-reporter").daemon(true).build());
+        writeStatsReporter.scheduleAtFixedRate(() -> {
+            try {
+                resetWriteStats(topFields).forEach((collection, stats) -> logger.info("集合[{}]写数据库统计:{}", collection, stats));
+            } catch (Exception e) {
+                logger.error("", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 加载上次退出时保存的预热快照，并且注册进程退出时保存快照的钩子，多次调用只会注册一个钩子<br/>
+     * 快照代数记录不存在(例如上次没有正常退出)或者和快照文件不一致时快照可能已经过期，会被忽略，
+     * 代数记录取出后就删除了，所以一份快照只会被加载一次<br/>
+     * 需要保证进程退出期间没有其他进程修改快照里的数据
+     *
+     * @param file 快照文件，同时也作为代数记录的主键
+     * @return 加载的记录数
+     * @see WarmSnapshot
+     */
+    public synchronized int warmRestart(Path file) {
+        Path snapshotFile = file.toAbsolutePath();
+        int count = 0;
+
+        if (Files.exists(snapshotFile)) {
+            try {
+                long generation = WarmSnapshot.readGeneration(snapshotFile);
+                Document record = call(getExecutor(), Priority.INTERACTIVE, () -> removeWarmSnapshotRecord(snapshotFile.toString()));
+                if (record != null && Objects.equals(record.getLong("generation"), generation)) {
+                    count = WarmSnapshot.load(snapshotFile, this);
+                    logger.info("加载预热快照[{}]，记录数:{}", snapshotFile, count);
+                } else {
+                    logger.warn("预热快照[{}]的代数[{}]和数据库里的记录[{}]不一致，已忽略", snapshotFile, generation, record);
+                }
+            } catch (Exception e) {
+                logger.error("加载预热快照[{}]失败", snapshotFile, e);
+            }
+        }
+
+        //多次调用时保存到最后一次指定的文件
+        warmSnapshotFile = snapshotFile;
+        if (warmSnapshotHook == null) {
+            warmSnapshotHook = new Thread(() -> saveWarmSnapshot(warmSnapshotFile), "warm-snapshot");
+            Runtime.getRuntime().addShutdownHook(warmSnapshotHook);
+        }
+
+        return count;
+    }
+
+    void saveWarmSnapshot(Path file) {
+        try {
+            //等待已经提交的写操作执行完，线程池已经关闭时等待它把剩下的任务执行完
+            for (ExecutorService executor : executors) {
+                if (executor.isShutdown()) {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } else {
+                    call(executor, Priority.BACKGROUND, () -> null);
+                }
+            }
+
+            long generation = RandomUtils.nextLong();
+            int count = WarmSnapshot.save(file, generation);
+
+            Document record = new Document(Data._ID, file.toString()).append("generation", generation).append("time", new Date());
+            call(getExecutor(), Priority.WRITE, () -> {
+                replaceWarmSnapshotRecord(record);
+                return null;
+            });
+            logger.info("保存预热快照[{}]，记录数:{}", file, count);
+        } catch (Exception e) {
+            logger.error("保存预热快照[{}]失败", file, e);
+        }
+    }
+
+    /**
+     * 取出并删除预热快照的代数记录
+     */
+    Document removeWarmSnapshotRecord(String key) {
+        return getCollection(WARM_SNAPSHOTS).findOneAndDelete(Filters.eq(Data._ID, key));
+    }
+
+    void replaceWarmSnapshotRecord(Document record) {
+        getCollection(WARM_SNAPSHOTS).replaceOne(Filters.eq(Data._ID, record.get(Data._ID)), record, new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * 在指定的数据库线程上按优先级执行任务并等待结果，线程池已经关闭时(例如在退出钩子里)直接在当前线程执行
+     */
+    static <R> R call(ExecutorService executor, Priority priority, Callable<R> task) throws Exception {
+        FutureTask<R> future = new FutureTask<>(task);
+        try {
+            executor.execute(new OperationQueue.Task(future, priority));
+        } catch (RejectedExecutionException e) {
+            if (!executor.isShutdown()) {
+                throw e;
+            }
+            return task.call();
+        }
+        return future.get();
+    }
+
     static Database getDatabase(MongoClient client, String databaseName) {
         databasesLock.readLock().lock();
         try {
@@ -183,8 +468,7 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
         }
     }
 
-    private void initCollection(Class<?> clazz) {
-        String collectionName = Data.name((Class<? extends Data<?>>) clazz);
+    private void initCollection(Class<?> clazz, String collectionName) {
         if (collectionName == null) {
             logger.error("{}._NAME未定义", clazz.getName());
             return;
@@ -194,11 +478,8 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
         collections.put(clazz, collection);
 
         Map<String, Index> collectionIndexes = new HashMap<>();
-        Index.List indexes = clazz.getAnnotation(Index.List.class);
-        if (indexes != null) {
-            for (Index index : indexes.value()) {
-                collectionIndexes.put(index.name(), index);
-            }
+        for (Index index : clazz.getAnnotationsByType(Index.class)) {
+            collectionIndexes.put(index.name(), index);
         }
 
         Set<String> dropIndexes = new HashSet<>();
@@ -250,11 +531,45 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
     }
 
     /**
-     * 随机选择一个线程执行指定的任务
+     * 设置指定优先级的操作在队列中的最大等待时间，超过之后会优先于高优先级的操作执行
+     *
+     * @param priority    操作优先级，{@link Priority#INTERACTIVE}总是最先执行，不能设置
+     * @param maxWaitTime 最大等待时间(毫秒)
+     */
+    public static void setMaxWaitTime(Priority priority, long maxWaitTime) {
+        if (priority == Priority.INTERACTIVE) {
+            throw new IllegalArgumentException("不能设置" + priority + "操作的最大等待时间");
+        }
+        OperationQueue.setMaxWaitTime(priority, TimeUnit.MILLISECONDS.toNanos(maxWaitTime));
+    }
+
+    /**
+     * 统计所有数据库线程的操作在队列中的等待时间
+     */
+    public Map<Priority, WaitStats> getWaitStats() {
+        Map<Priority, WaitStats> waitStats = new EnumMap<>(Priority.class);
+        for (ExecutorService executor : executors) {
+            OperationQueue queue = (OperationQueue) ((ThreadPoolExecutor) executor).getQueue();
+            for (Priority priority : Priority.values()) {
+                waitStats.merge(priority, queue.getWaitStats(priority), WaitStats::merge);
+            }
+        }
+        return waitStats;
+    }
+
+    /**
+     * 随机选择一个线程执行指定的任务，优先级为{@link Priority#INTERACTIVE}
      */
     @Override
     public void execute(Runnable task) {
-        getExecutor().execute(task);
+        execute(task, Priority.INTERACTIVE);
+    }
+
+    /**
+     * 随机选择一个线程按指定的优先级执行任务
+     */
+    public void execute(Runnable task, Priority priority) {
+        getExecutor().execute(new OperationQueue.Task(task, priority));
     }
 
     /**
@@ -266,13 +581,22 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
      * @param consumer 接收结果的消费者
      */
     public <R> void execute(Supplier<R> task, Executor executor, Consumer<R> consumer) {
-        if (task == null || consumer == null || executor == null) {
+        execute(task, Priority.INTERACTIVE, executor, consumer);
+    }
+
+    /**
+     * 随机选择一个线程按指定的优先级执行任务，并且通过外部指定的执行器消费结果
+     *
+     * @see #execute(Supplier, Executor, Consumer)
+     */
+    public <R> void execute(Supplier<R> task, Priority priority, Executor executor, Consumer<R> consumer) {
+        if (task == null || priority == null || consumer == null || executor == null) {
             throw new NullPointerException("参数不能为空");
         }
         execute(() -> {
             R r = task.get();
             executor.execute(() -> consumer.accept(r));
-        });
+        }, priority);
     }
 
     /**
@@ -303,7 +627,8 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
      */
     @Override
     public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
-        return find(clazz, Filters.eq(Data._ID, _id)).first();
+        Bson filter = Filters.eq(Data._ID, _id);
+        return recordFind(clazz, filter, () -> find(clazz, filter).first());
     }
 
     /**
@@ -313,7 +638,26 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
      * @see #execute(Supplier, Executor, Consumer)
      */
     public <D extends Data<I>, I> void find(Class<D> clazz, I _id, Executor executor, Consumer<D> consumer) {
-        execute(() -> find(clazz, _id), executor, consumer);
+        find(clazz, _id, Priority.INTERACTIVE, executor, consumer);
+    }
+
+    /**
+     * 通过主键_id按指定的优先级异步查询数据
+     *
+     * @see #find(Class, Object, Executor, Consumer)
+     */
+    public <D extends Data<I>, I> void find(Class<D> clazz, I _id, Priority priority, Executor executor, Consumer<D> consumer) {
+        execute(() -> find(clazz, _id), priority, executor, consumer);
+    }
+
+    /**
+     * 按指定的优先级异步查询数据
+     *
+     * @param filter {@link Filters}
+     * @see #find(Class, Bson)
+     */
+    public <D extends Data<?>> void find(Class<D> clazz, Bson filter, Priority priority, Executor executor, Consumer<List<D>> consumer) {
+        execute(() -> recordFind(clazz, filter, () -> find(clazz, filter).into(new ArrayList<>())), priority, executor, consumer);
     }
 
     @Override
@@ -335,6 +679,122 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
         return collection.find(filter);
     }
 
+    /**
+     * 查询数据但不解码，每个结果只保留一份{@link RawBsonDocument}的字节缓冲区，
+     * 可以先通过{@link RawBsonDocument#get(Object)}只读取需要的字段，再通过{@link #decode(Class, RawBsonDocument)}解码需要的数据<br/>
+     * 不支持投影，需要部分字段时使用{@link #find(Class, Bson, String...)}
+     *
+     * @param filter {@link Filters}，可以为空
+     */
+    public <D extends Data<?>> MongoIterable<RawBsonDocument> findRaw(Class<D> clazz, Bson filter) {
+        MongoCollection<D> collection = getCollection(clazz);
+        if (collection == null) {
+            throw new IllegalArgumentException("数据类[" + clazz + "]未注册");
+        }
+        return collection.withDocumentClass(RawBsonDocument.class).find(filter == null ? new BsonDocument() : filter);
+    }
+
+    /**
+     * 直接从{@link RawBsonDocument}的字节缓冲区解码数据，不需要在数据库线程上调用
+     *
+     * @param document 通过{@link #findRaw(Class, Bson)}查询出来的完整文档
+     */
+    public <D extends Data<?>> D decode(Class<D> clazz, RawBsonDocument document) {
+        Codec<D> codec = db.getCodecRegistry().get(clazz);
+        D data;
+        try (BsonBinaryReader reader = new BsonBinaryReader(document.getByteBuffer().asNIO())) {
+            data = codec.decode(reader, DECODER_CONTEXT);
+        }
+        Cursor.setAccessor(data, this);
+        return data;
+    }
+
+    /**
+     * 并行扫描集合，按_id把集合切分成多个区间，在多个数据库线程上同时查询，并在当前线程上消费查询出来的数据<br/>
+     * 缓冲区满了之后会暂停查询，不能在数据库线程里调用
+     *
+     * @param filter      {@link Filters}，可以为空
+     * @param parallelism 并行度，不会超过数据库线程数量
+     * @param consumer    数据消费者，抛出异常时会取消扫描
+     */
+    public <D extends Data<?>> void scan(Class<D> clazz, Bson filter, int parallelism, Consumer<D> consumer) {
+        if (OperationThread.isInside()) {
+            throw new IllegalStateException("不能在数据库线程里扫描数据");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("参数[parallelism]不能小于1");
+        }
+        Objects.requireNonNull(consumer, "参数[consumer]不能为空");
+
+        MongoCollection<D> collection = getCollection(clazz);
+        if (collection == null) {
+            throw new IllegalArgumentException("数据类[" + clazz + "]未注册");
+        }
+
+        new Scanner<>(collection, filter, executors, parallelism).scan(consumer);
+    }
+
+    /**
+     * 查询数据，只加载指定的字段，返回的数据是部分加载的，不能访问未加载的字段，也不会覆盖数据库中未加载的字段
+     *
+     * @param filter {@link Filters}
+     * @param fields 需要加载的字段，使用生成的字段名常量
+     * @see Data#isPartial()
+     */
+    public <D extends Data<?>> FindIterable<D> find(Class<D> clazz, Bson filter, String... fields) {
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("参数[fields]不能为空");
+        }
+
+        List<String> allFields = Data.fields(clazz);
+        for (String field : fields) {
+            if (allFields != null && !allFields.contains(field)) {
+                throw new IllegalArgumentException(String.format("数据类[%s]的字段[%s]不存在", clazz.getName(), field));
+            }
+        }
+
+        return find(clazz, filter).projection(Projections.include(fields));
+    }
+
+    /**
+     * 按指定的优先级异步查询数据，只加载指定的字段
+     *
+     * @see #find(Class, Bson, String...)
+     */
+    public <D extends Data<?>> void find(Class<D> clazz, Bson filter, Priority priority, Executor executor, Consumer<List<D>> consumer, String... fields) {
+        execute(() -> recordFind(clazz, filter, () -> find(clazz, filter, fields).into(new ArrayList<>())), priority, executor, consumer);
+    }
+
+    /**
+     * 执行同步查询，开启度量或者JFR记录时记录查询时间
+     */
+    private <R> R recordFind(Class<?> clazz, Bson filter, Supplier<R> query) {
+        if (!Metrics.isEnabled() && !FindEvent.TYPE.isEnabled()) {
+            return query.get();
+        }
+
+        FindEvent event = new FindEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        R result = query.get();
+
+        MongoCollection<?> collection = collections.get(clazz);
+        String collectionName = collection == null ? clazz.getName() : collection.getNamespace().getCollectionName();
+        if (Metrics.isEnabled()) {
+            Metrics.timer(FIND_TIME, "collection", collectionName).recordSince(startTime);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.collection = collectionName;
+            event.filter = String.valueOf(filter);
+            event.results = result instanceof List ? ((List<?>) result).size() : result == null ? 0 : 1;
+            event.commit();
+        }
+
+        return result;
+    }
+
     /**
      * 写数据
      *
@@ -343,38 +803,118 @@ public class Database implements DataAccessor, MongoDatabase, Executor {
     @Override
     public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
         Map<MongoCollection<Data<?>>, List<WriteModel<Data<?>>>> writeModels = new HashMap<>();
+        WriteRecorder writeRecorder = this.writeRecorder;
+        LocalWrites localWrites = this.localWrites;
 
         if (inserts != null) {
             for (Data<?> data : inserts) {
                 InsertOneModel<Data<?>> insertOneModel = new InsertOneModel<>(data);
-                writeModels.computeIfAbsent(collections.get(data.getClass()), this::newList).add(insertOneModel);
+                MongoCollection collection = collections.get(data.getClass());
+                if (localWrites != null && collection != null) {
+                    localWrites.recordInsert(collection.getNamespace().getCollectionName(), data.id());
+                }
+                writeModels.computeIfAbsent(collection, this::newList).add(insertOneModel);
+                if (writeRecorder != null && collection != null) {
+                    writeRecorder.recordInsert(collection.getNamespace().getCollectionName(), data, collection.getCodecRegistry().get(data.getClass()));
+                }
             }
         }
 
         if (updates != null) {
             for (Data<?> data : updates.keySet()) {
-                UpdateOneModel<Document> updateOneModel = new UpdateOneModel<>(Filters.eq(data.id()), new Document("$set", updates.get(data)));
-                writeModels.computeIfAbsent(collections.get(data.getClass()), this::newList).add(updateOneModel);
+                Map<String, Object> patch = updates.get(data);
+                Bson update = patch instanceof EncodedPatch ? ((EncodedPatch) patch).getUpdate() : new Document("$set", patch);
+                UpdateOneModel<Document> updateOneModel = new UpdateOneModel<>(Filters.eq(data.id()), update);
+                MongoCollection collection = collections.get(data.getClass());
+                writeModels.computeIfAbsent(collection, this::newList).add(updateOneModel);
+                if ((writeRecorder != null || localWrites != null) && collection != null) {
+                    RawBsonDocument rawUpdate = update instanceof RawBsonDocument ? (RawBsonDocument) update : new RawBsonDocument((Document) update, collection.getCodecRegistry().get(Document.class));
+                    if (localWrites != null) {
+                        localWrites.recordUpdate(collection.getNamespace().getCollectionName(), data.id(), rawUpdate.getDocument("$set"));
+                    }
+                    if (writeRecorder != null) {
+                        writeRecorder.recordUpdate(collection.getNamespace().getCollectionName(), rawUpdate);
+                    }
+                }
             }
         }
 
         if (deletes != null) {
             for (Data<?> data : deletes) {
                 DeleteOneModel<Object> deleteOneModel = new DeleteOneModel<>(Filters.eq(data.id()));
-                writeModels.computeIfAbsent(collections.get(data.getClass()), this::newList).add(deleteOneModel);
+                MongoCollection collection = collections.get(data.getClass());
+                if (localWrites != null && collection != null) {
+                    localWrites.recordDelete(collection.getNamespace().getCollectionName(), data.id());
+                }
+                writeModels.computeIfAbsent(collection, this::newList).add(deleteOneModel);
+                if (writeRecorder != null && collection != null) {
+                    writeRecorder.recordDelete(collection.getNamespace().getCollectionName());
+                }
             }
         }
 
+        if (writeRecorder != null) {
+            writeModels.forEach((collection, models) -> {
+                if (collection != null) {
+                    writeRecorder.recordBulkWrite(collection.getNamespace().getCollectionName(), models.size());
+                }
+            });
+        }
+
         if (!clientsExecutors.containsKey(client)) {
             logger.error("MongoClient已经关闭了，数据无法写入到数据库");
             return;
         }
 
         for (MongoCollection<Data<?>> collection : writeModels.keySet()) {
-            getExecutor(collection.getDocumentClass()).execute(() -> collection.bulkWrite(writeModels.get(collection)));
+            List<WriteModel<Data<?>>> models = writeModels.get(collection);
+            Runnable task = () -> bulkWrite(collection, models);
+            getExecutor(collection.getDocumentClass()).execute(new OperationQueue.Task(task, Priority.WRITE));
+        }
+    }
+
+    /**
+     * 批量写数据库，开启度量或者JFR记录时记录写数据库的时间
+     */
+    private void bulkWrite(MongoCollection<Data<?>> collection, List<WriteModel<Data<?>>> models) {
+        if (!Metrics.isEnabled() && !BulkWriteEvent.TYPE.isEnabled()) {
+            collection.bulkWrite(models);
+            return;
+        }
+
+        String collectionName = collection.getNamespace().getCollectionName();
+        BulkWriteEvent event = new BulkWriteEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            collection.bulkWrite(models);
+            failed = false;
+        } finally {
+            if (Metrics.isEnabled()) {
+                Metrics.timer(WRITE_TIME, "collection", collectionName).recordSince(startTime);
+                Metrics.histogram(WRITE_SIZE, "collection", collectionName).record(models.size());
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.collection = collectionName;
+                event.operations = models.size();
+                event.failed = failed;
+                event.commit();
+            }
         }
     }
 
+    /**
+     * 使用生成的编解码器把修改过的字段直接编码成更新文档，不再经过字段名:字段值的中间映射
+     *
+     * @see EncodedPatch
+     */
+    @Override
+    public Map<String, Object> getPatch(Data<?> data) {
+        return EncodedPatch.of(data, db.getCodecRegistry());
+    }
+
     private <K, V> ArrayList<V> newList(K k) {
         return new ArrayList<>();
     }
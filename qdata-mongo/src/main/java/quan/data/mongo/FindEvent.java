@@ -0,0 +1,35 @@
+package quan.data.mongo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 查询数据的JFR事件，默认不记录调用栈，可以通过配置quan.data.mongo.Find#stackTrace=true开启
+ */
+@Name("quan.data.mongo.Find")
+@Label("Find")
+@Category({"QData", "Database"})
+@Description("同步查询数据")
+@StackTrace(false)
+class FindEvent extends Event {
+
+    /**
+     * 缓存下来的事件类型，没有开启记录时查询不用创建事件对象
+     */
+    static final EventType TYPE = EventType.getEventType(FindEvent.class);
+
+    @Label("Collection")
+    String collection;
+
+    @Label("Filter")
+    String filter;
+
+    @Label("Results")
+    int results;
+
+}
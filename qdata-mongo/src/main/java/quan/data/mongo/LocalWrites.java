@@ -0,0 +1,177 @@
+package quan.data.mongo;
+
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.TruncatedArray;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录本进程最近写过的文档，{@link ChangeWatcher}收到变更通知时用来跳过自己写的数据<br/>
+ * 变更通知要和记录的写操作匹配才会跳过：操作类型相同，更新操作的变更字段值和本进程写的值相同，
+ * 其他进程写的值不一样时不会被当成本进程的写<br/>
+ * 同一个文档的变更通知是按写的顺序到达的，匹配上一个写操作时，它之前的写操作都没有实际修改文档，不会再有变更通知，会一起清除，
+ * 剩下一直没有匹配上的记录会在一段时间后过期
+ */
+class LocalWrites {
+
+    /**
+     * 记录的过期时间(纳秒)
+     */
+    private static final long EXPIRE_TIME = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * [集合名,主键]:按顺序记录的写操作
+     */
+    private final Map<List<Object>, ArrayDeque<Write>> writes = new ConcurrentHashMap<>();
+
+    void recordInsert(String collectionName, Object id) {
+        record(collectionName, id, new Write(OperationType.INSERT, null));
+    }
+
+    /**
+     * @param set 更新的字段名:字段值
+     */
+    void recordUpdate(String collectionName, Object id, BsonDocument set) {
+        record(collectionName, id, new Write(OperationType.UPDATE, set));
+    }
+
+    void recordDelete(String collectionName, Object id) {
+        record(collectionName, id, new Write(OperationType.DELETE, null));
+    }
+
+    private void record(String collectionName, Object id, Write write) {
+        writes.compute(List.of(collectionName, id), (k, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+            }
+            queue.addLast(write);
+            return queue;
+        });
+    }
+
+    /**
+     * 用变更通知匹配一次写记录
+     *
+     * @param description 更新操作的变更描述
+     * @return 匹配上本进程的写操作返回true
+     */
+    boolean consume(String collectionName, Object id, OperationType operationType, UpdateDescription description) {
+        long now = System.nanoTime();
+        boolean[] consumed = new boolean[1];
+        writes.computeIfPresent(List.of(collectionName, id), (k, queue) -> {
+            int n = 0;
+            for (Iterator<Write> iterator = queue.iterator(); iterator.hasNext(); n++) {
+                Write write = iterator.next();
+                if (now - write.time <= EXPIRE_TIME && write.matches(operationType, description)) {
+                    consumed[0] = true;
+                    break;
+                }
+            }
+            if (consumed[0]) {
+                for (int i = 0; i <= n; i++) {
+                    queue.pollFirst();
+                }
+            }
+            return queue.isEmpty() ? null : queue;
+        });
+        return consumed[0];
+    }
+
+    /**
+     * 清除过期的记录
+     */
+    void expire() {
+        long now = System.nanoTime();
+        for (List<Object> key : writes.keySet()) {
+            writes.computeIfPresent(key, (k, queue) -> {
+                queue.removeIf(w -> now - w.time > EXPIRE_TIME);
+                return queue.isEmpty() ? null : queue;
+            });
+        }
+    }
+
+    int size() {
+        return writes.values().stream().mapToInt(ArrayDeque::size).sum();
+    }
+
+    /**
+     * 本进程的一次写操作
+     */
+    private static class Write {
+
+        final OperationType type;
+
+        final BsonDocument set;
+
+        final long time = System.nanoTime();
+
+        Write(OperationType type, BsonDocument set) {
+            this.type = type;
+            this.set = set;
+        }
+
+        boolean matches(OperationType operationType, UpdateDescription description) {
+            if (operationType != type) {
+                return false;
+            }
+            if (type != OperationType.UPDATE) {
+                return true;
+            }
+            if (description == null || description.getRemovedFields() != null && !description.getRemovedFields().isEmpty()) {
+                return false;
+            }
+
+            //变更的字段名可能是以点分隔的路径，例如只修改了数组中的几个元素
+            BsonDocument updatedFields = description.getUpdatedFields();
+            if (updatedFields != null) {
+                for (Map.Entry<String, BsonValue> entry : updatedFields.entrySet()) {
+                    if (!entry.getValue().equals(value(entry.getKey()))) {
+                        return false;
+                    }
+                }
+            }
+
+            List<TruncatedArray> truncatedArrays = description.getTruncatedArrays();
+            if (truncatedArrays != null) {
+                for (TruncatedArray truncatedArray : truncatedArrays) {
+                    BsonValue array = value(truncatedArray.getField());
+                    if (!(array instanceof BsonArray) || ((BsonArray) array).size() != truncatedArray.getNewSize()) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * 更新的字段值，字段名可以是以点分隔的路径
+         */
+        private BsonValue value(String path) {
+            BsonValue value = set;
+            for (String name : path.split("\\.")) {
+                if (value instanceof BsonDocument) {
+                    value = ((BsonDocument) value).get(name);
+                } else if (value instanceof BsonArray && !name.isEmpty() && name.chars().allMatch(Character::isDigit)) {
+                    BsonArray array = (BsonArray) value;
+                    int index = Integer.parseInt(name);
+                    value = index < array.size() ? array.get(index) : null;
+                } else {
+                    return null;
+                }
+            }
+            return value;
+        }
+
+    }
+
+}
@@ -11,14 +11,16 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
-import quan.data.Transaction;
 
 import java.lang.reflect.Field;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 
+/**
+ * 通过织入驱动的方式校验数据库线程并给查询出来的数据设置访问器，只在{@link Database#WEAVING}开启时生效
+ *
+ * @see OperationInterceptor
+ */
 @Aspect
 public class OperationAspect {
 
@@ -29,45 +31,39 @@ public class OperationAspect {
     private void execute() {
     }
 
-    @SuppressWarnings("rawtypes")
+    @SuppressWarnings({"rawtypes", "unchecked"})
     @Around("execute() && args(com.mongodb.internal.operation.ReadOperation,..,com.mongodb.client.ClientSession)")
     public Object aroundRead(ProceedingJoinPoint joinPoint) throws Throwable {
-        if (Database.validateThread && !OperationThread.isInside()) {
-            throw new IllegalStateException("只能在数据库线程里读数据库");
+        if (!Database.WEAVING) {
+            return joinPoint.proceed();
         }
 
+        OperationInterceptor.checkRead();
+
         ReadOperation operation = (ReadOperation) joinPoint.getArgs()[0];
         if (!(operation instanceof FindOperation)) {
             return joinPoint.proceed();
         }
 
-        BatchCursor cursor = (BatchCursor) joinPoint.proceed();
+        Object cursor = joinPoint.proceed();
         MongoClient client = getMongoClient((OperationExecutor) joinPoint.getThis());
 
         String databaseName = ((FindOperation) operation).getNamespace().getDatabaseName();
         Database database = Database.getDatabase(client, databaseName);
 
-        return new Cursor(database, cursor);
+        return new Cursor(database, (BatchCursor) cursor, ((FindOperation) operation).getProjection());
     }
 
     @Before("execute() && args(com.mongodb.internal.operation.WriteOperation,..,com.mongodb.client.ClientSession)")
     public void beforeWrite() {
-        if (Transaction.isInside()) {
-            throw new IllegalStateException("不能在内存事务中写数据库");
-        }
-        if (Database.validateThread && !OperationThread.isInside()) {
-            throw new IllegalStateException("只能在数据库线程里写数据库");
+        if (Database.WEAVING) {
+            OperationInterceptor.checkWrite();
         }
     }
 
     @Before("execution(* com.mongodb.client.internal.MongoClientImpl.close())")
     public void beforeClose(JoinPoint joinPoint) {
-        MongoClient client = (MongoClient) joinPoint.getThis();
-        List<ExecutorService> clientExecutors = Database.clientsExecutors.remove(client);
-        if (clientExecutors != null) {
-            //关闭线程池
-            clientExecutors.forEach(ExecutorService::shutdown);
-        }
+        Database.shutdownExecutors((MongoClient) joinPoint.getThis());
     }
 
     private static MongoClient getMongoClient(OperationExecutor executor) throws Exception {
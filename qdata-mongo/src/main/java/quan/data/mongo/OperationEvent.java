@@ -0,0 +1,34 @@
+package quan.data.mongo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 数据库线程执行操作的JFR事件，持续时间是执行时间，另外记录在队列中的等待时间
+ */
+@Name("quan.data.mongo.Operation")
+@Label("Database Operation")
+@Category({"QData", "Database"})
+@Description("数据库线程上执行的操作")
+@StackTrace(false)
+class OperationEvent extends Event {
+
+    /**
+     * @see FindEvent#TYPE
+     */
+    static final EventType TYPE = EventType.getEventType(OperationEvent.class);
+
+    @Label("Priority")
+    String priority;
+
+    @Label("Queue Wait")
+    @Timespan
+    long queueWait;
+
+}
@@ -0,0 +1,200 @@
+package quan.data.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import quan.data.Transaction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 通过驱动的公开接口代理{@link MongoDatabase}，不使用织入时校验数据库线程并给查询出来的数据设置访问器<br/>
+ * 从它获取的集合、查询结果和游标也会被代理，查询结果在真正读数据库的时候才校验，只有find查询出来的数据才设置访问器
+ *
+ * @see OperationAspect
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+class OperationInterceptor implements InvocationHandler {
+
+    /**
+     * 数据库和集合上直接执行的读操作，其他不返回查询结果的操作都当做写操作
+     */
+    private static final Set<String> READ_METHODS = Set.of("countDocuments", "estimatedDocumentCount", "runCommand");
+
+    private final Object target;
+
+    private final Database database;
+
+    /**
+     * 是否是find的查询结果或者游标
+     */
+    private final boolean find;
+
+    /**
+     * find查询的投影
+     */
+    private final BsonDocument projection;
+
+    /**
+     * 给find查询出来的数据设置访问器和已加载字段
+     */
+    private final Cursor reader;
+
+    private OperationInterceptor(Object target, Database database, boolean find, BsonDocument projection) {
+        this.target = target;
+        this.database = database;
+        this.find = find;
+        this.projection = projection;
+        this.reader = find ? new Cursor(database, null, projection) : null;
+    }
+
+    static MongoDatabase wrap(MongoDatabase db, Database database) {
+        return proxy(MongoDatabase.class, db, database, false, null);
+    }
+
+    private static <T> T proxy(Class<?> type, Object target, Database database, boolean find, BsonDocument projection) {
+        if (target == null) {
+            return null;
+        }
+        return (T) Proxy.newProxyInstance(OperationInterceptor.class.getClassLoader(), new Class<?>[]{type}, new OperationInterceptor(target, database, find, projection));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invoke(method, args);
+        }
+        if (target instanceof MongoCursor) {
+            return invokeCursor(method, args);
+        }
+        if (target instanceof MongoIterable) {
+            return invokeIterable(proxy, method, args);
+        }
+
+        String name = method.getName();
+        Class<?> returnType = method.getReturnType();
+
+        if (returnType == MongoDatabase.class || returnType == MongoCollection.class) {
+            return proxy(returnType, invoke(method, args), database, false, null);
+        }
+        if (MongoIterable.class.isAssignableFrom(returnType)) {
+            return proxy(returnType, invoke(method, args), database, name.equals("find"), null);
+        }
+
+        if (READ_METHODS.contains(name)) {
+            checkRead();
+        } else if (!name.startsWith("get")) {
+            checkWrite();
+        }
+        return invoke(method, args);
+    }
+
+    private Object invokeIterable(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        Class<?> returnType = method.getReturnType();
+        MongoIterable iterable = (MongoIterable) target;
+
+        switch (name) {
+            case "iterator":
+            case "cursor":
+                checkRead();
+                return proxy(returnType, invoke(method, args), database, find, projection);
+            case "first":
+                checkRead();
+                return afterRead(invoke(method, args));
+            case "forEach":
+                checkRead();
+                Consumer consumer = (Consumer) args[0];
+                iterable.forEach(result -> consumer.accept(afterRead(result)));
+                return null;
+            case "into":
+                checkRead();
+                Collection collection = (Collection) args[0];
+                iterable.forEach(result -> collection.add(afterRead(result)));
+                return collection;
+            case "map":
+                Function function = (Function) args[0];
+                return proxy(MongoIterable.class, iterable.map(result -> function.apply(afterRead(result))), database, false, null);
+            case "spliterator":
+                return Spliterators.spliteratorUnknownSize(((Iterable) proxy).iterator(), 0);
+            default:
+                break;
+        }
+
+        if (MongoIterable.class.isAssignableFrom(returnType)) {
+            //设置查询参数的方法返回的还是查询结果
+            BsonDocument projection = this.projection;
+            if (name.equals("projection")) {
+                Bson bson = (Bson) args[0];
+                projection = bson == null ? null : bson.toBsonDocument(BsonDocument.class, database.getCodecRegistry());
+            }
+            return proxy(returnType, invoke(method, args), database, find, projection);
+        }
+
+        if (!name.startsWith("get")) {
+            //explain等方法会直接执行查询
+            checkRead();
+        }
+        return invoke(method, args);
+    }
+
+    private Object invokeCursor(Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+            case "tryNext":
+                return afterRead(invoke(method, args));
+            case "forEachRemaining":
+                Consumer consumer = (Consumer) args[0];
+                Iterator iterator = (Iterator) target;
+                while (iterator.hasNext()) {
+                    consumer.accept(afterRead(iterator.next()));
+                }
+                return null;
+            default:
+                return invoke(method, args);
+        }
+    }
+
+    private Object afterRead(Object result) {
+        if (reader != null) {
+            reader.afterRead(result);
+        }
+        return result;
+    }
+
+    private Object invoke(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static void checkRead() {
+        if (Database.validateThread && !OperationThread.isInside()) {
+            throw new IllegalStateException("只能在数据库线程里读数据库");
+        }
+    }
+
+    static void checkWrite() {
+        if (Transaction.isInside()) {
+            throw new IllegalStateException("不能在内存事务中写数据库");
+        }
+        if (Database.validateThread && !OperationThread.isInside()) {
+            throw new IllegalStateException("只能在数据库线程里写数据库");
+        }
+    }
+
+}
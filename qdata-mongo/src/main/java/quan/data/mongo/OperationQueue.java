@@ -0,0 +1,341 @@
+package quan.data.mongo;
+
+import quan.data.metrics.Metrics;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 数据库线程的操作队列，按{@link Priority}分成多个子队列，优先取出高优先级的操作，
+ * 低优先级的操作等待时间超过限制后会被优先取出，保证不会被饿死
+ */
+@SuppressWarnings("NullableProblems")
+class OperationQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private static final Priority[] priorities = Priority.values();
+
+    /**
+     * 各优先级操作的最大等待时间(纳秒)，超过之后优先执行，修改时整个数组替换，保证数据库线程能看到修改
+     */
+    private static volatile long[] maxWaitTimes;
+
+    static {
+        long[] maxWaitTimes = new long[priorities.length];
+        maxWaitTimes[Priority.INTERACTIVE.ordinal()] = Long.MAX_VALUE;
+        maxWaitTimes[Priority.WRITE.ordinal()] = TimeUnit.MILLISECONDS.toNanos(100);
+        maxWaitTimes[Priority.BACKGROUND.ordinal()] = TimeUnit.MILLISECONDS.toNanos(1000);
+        OperationQueue.maxWaitTimes = maxWaitTimes;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final List<ArrayDeque<Task>> queues = new ArrayList<>(priorities.length);
+
+    private final long[] waitCounts = new long[priorities.length];
+
+    private final long[] totalWaitTimes = new long[priorities.length];
+
+    private final long[] maxWaitTimesSeen = new long[priorities.length];
+
+    private int size;
+
+    OperationQueue() {
+        for (int i = 0; i < priorities.length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    static long getMaxWaitTime(Priority priority) {
+        return maxWaitTimes[priority.ordinal()];
+    }
+
+    /**
+     * 设置指定优先级操作的最大等待时间
+     *
+     * @param maxWaitTime 最大等待时间(纳秒)
+     */
+    static synchronized void setMaxWaitTime(Priority priority, long maxWaitTime) {
+        long[] maxWaitTimes = OperationQueue.maxWaitTimes.clone();
+        maxWaitTimes[priority.ordinal()] = maxWaitTime;
+        OperationQueue.maxWaitTimes = maxWaitTimes;
+    }
+
+    /**
+     * 选出下一个要执行的操作所在的子队列
+     */
+    private int select(long now) {
+        //有多个等待超时的操作时，先执行等待时间最长的
+        long[] maxWaitTimes = OperationQueue.maxWaitTimes;
+        int overdue = -1;
+        long overdueEnqueueTime = 0;
+        for (int i = 1; i < priorities.length; i++) {
+            Task head = queues.get(i).peekFirst();
+            if (head != null && now - head.enqueueTime > maxWaitTimes[i] && (overdue < 0 || head.enqueueTime - overdueEnqueueTime < 0)) {
+                overdue = i;
+                overdueEnqueueTime = head.enqueueTime;
+            }
+        }
+        if (overdue >= 0) {
+            return overdue;
+        }
+
+        for (int i = 0; i < priorities.length; i++) {
+            if (!queues.get(i).isEmpty()) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private Task dequeue() {
+        long now = System.nanoTime();
+        int i = select(now);
+        if (i < 0) {
+            return null;
+        }
+
+        Task task = queues.get(i).pollFirst();
+        size--;
+
+        long waitTime = now - task.enqueueTime;
+        waitCounts[i]++;
+        totalWaitTimes[i] += waitTime;
+        maxWaitTimesSeen[i] = Math.max(maxWaitTimesSeen[i], waitTime);
+        task.waitTime = waitTime;
+
+        if (Metrics.isEnabled()) {
+            Metrics.timer(Database.QUEUE_WAIT_TIME, "priority", task.priority.name()).record(waitTime);
+            Metrics.histogram(Database.QUEUE_SIZE, "priority", task.priority.name()).record(queues.get(i).size());
+        }
+
+        return task;
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+        Objects.requireNonNull(runnable);
+        Task task = runnable instanceof Task ? (Task) runnable : new Task(runnable, Priority.INTERACTIVE);
+
+        lock.lock();
+        try {
+            task.enqueueTime = System.nanoTime();
+            queues.get(task.priority.ordinal()).offerLast(task);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable runnable) {
+        offer(runnable);
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) {
+        return offer(runnable);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            int i = select(System.nanoTime());
+            return i < 0 ? null : queues.get(i).peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            for (ArrayDeque<Task> queue : queues) {
+                for (Iterator<Task> iterator = queue.iterator(); iterator.hasNext(); ) {
+                    Task task = iterator.next();
+                    if (task == o || task.runnable == o) {
+                        iterator.remove();
+                        size--;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        Objects.requireNonNull(c);
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && size > 0) {
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回快照的迭代器
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<>(size);
+            for (ArrayDeque<Task> queue : queues) {
+                tasks.addAll(queue);
+            }
+            return tasks.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取指定优先级操作的等待时间统计
+     */
+    WaitStats getWaitStats(Priority priority) {
+        int i = priority.ordinal();
+        lock.lock();
+        try {
+            return new WaitStats(waitCounts[i], totalWaitTimes[i], maxWaitTimesSeen[i], queues.get(i).size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 带优先级的数据库操作
+     */
+    static class Task implements Runnable {
+
+        final Runnable runnable;
+
+        final Priority priority;
+
+        /**
+         * 入队时间(纳秒)
+         */
+        long enqueueTime;
+
+        /**
+         * 在队列中的等待时间(纳秒)
+         */
+        long waitTime;
+
+        Task(Runnable runnable, Priority priority) {
+            this.runnable = Objects.requireNonNull(runnable);
+            this.priority = Objects.requireNonNull(priority);
+        }
+
+        @Override
+        public void run() {
+            if (!Metrics.isEnabled() && !OperationEvent.TYPE.isEnabled()) {
+                runnable.run();
+                return;
+            }
+
+            OperationEvent event = new OperationEvent();
+            event.begin();
+            long startTime = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                if (Metrics.isEnabled()) {
+                    Metrics.timer(Database.OPERATION_TIME, "priority", priority.name()).recordSince(startTime);
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.priority = priority.name();
+                    event.queueWait = waitTime;
+                    event.commit();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package quan.data.mongo;
+
+/**
+ * 数据库操作的优先级，数据库线程优先执行高优先级的操作
+ */
+public enum Priority {
+
+    /**
+     * 交互式读操作，例如玩家登录加载数据
+     */
+    INTERACTIVE,
+
+    /**
+     * 写操作，等待时间超过限制后会优先于交互式读操作执行，保证不会被饿死
+     */
+    WRITE,
+
+    /**
+     * 后台操作，例如批量扫描，等待时间超过限制后才会优先执行
+     */
+    BACKGROUND
+
+}
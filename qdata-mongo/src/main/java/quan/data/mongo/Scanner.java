@@ -0,0 +1,309 @@
+package quan.data.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import quan.data.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 并行扫描集合，通过$sample采样把_id切分成多个区间，每个区间在一个数据库线程上以{@link Priority#BACKGROUND}优先级查询，
+ * 查询出来的数据放进有界的缓冲区，由调用线程消费<br/>
+ * 缓冲区满了的区间会挂起，不会占用数据库线程，等调用线程消费到缓冲区剩余一半空间时再恢复查询<br/>
+ * 缓冲区为空时调用线程阻塞等待，所有区间查询完或者出错时通过{@link #completion}结束扫描，
+ * 同时往缓冲区放一个结束标记唤醒调用线程，缓冲区满了时调用线程没有阻塞，不需要唤醒<br/>
+ * 数据类的_id类型必须一致，MongoDB按类型区分大小，其他类型的_id不会被扫描到
+ */
+class Scanner<D extends Data<?>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(Scanner.class);
+
+    /**
+     * 每个区间的采样数量
+     */
+    private static final int SAMPLES_PER_PARTITION = 16;
+
+    /**
+     * 每个区间对应的缓冲区大小
+     */
+    private static final int BUFFER_SIZE_PER_PARTITION = 256;
+
+    /**
+     * 缓冲区中的结束标记
+     */
+    private static final Object END = new Object();
+
+    private final MongoCollection<D> collection;
+
+    private final Bson filter;
+
+    private final List<ExecutorService> executors;
+
+    private final int parallelism;
+
+    private BlockingQueue<Object> buffer;
+
+    private final Queue<Partition> suspended = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger finished = new AtomicInteger();
+
+    private int partitionCount;
+
+    /**
+     * 所有区间查询完时正常完成，任何一个区间出错时异常完成
+     */
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private volatile boolean cancelled;
+
+    Scanner(MongoCollection<D> collection, Bson filter, List<ExecutorService> executors, int parallelism) {
+        this.collection = collection;
+        this.filter = filter;
+        this.executors = executors;
+        this.parallelism = Math.min(parallelism, executors.size());
+    }
+
+    /**
+     * 在数据库线程上采样，计算出各个区间的边界
+     */
+    private List<BsonValue> sampleBoundaries() {
+        List<BsonValue> samples = new ArrayList<>();
+        List<Bson> pipeline = List.of(
+                Aggregates.sample(parallelism * SAMPLES_PER_PARTITION),
+                Aggregates.project(Projections.include(Data._ID)),
+                Aggregates.sort(Sorts.ascending(Data._ID)));
+        collection.withDocumentClass(BsonDocument.class).aggregate(pipeline).forEach(d -> samples.add(d.get(Data._ID)));
+
+        List<BsonValue> boundaries = new ArrayList<>();
+        for (int i = 1; i < parallelism && !samples.isEmpty(); i++) {
+            BsonValue boundary = samples.get(i * samples.size() / parallelism);
+            if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                boundaries.add(boundary);
+            }
+        }
+
+        return boundaries;
+    }
+
+    /**
+     * 在调用线程上消费扫描出来的数据，消费者抛出异常时会取消扫描
+     */
+    @SuppressWarnings("unchecked")
+    void scan(Consumer<D> consumer) {
+        List<BsonValue> boundaries;
+        try {
+            ExecutorService executor = executors.get(0);
+            boundaries = CompletableFuture.supplyAsync(this::sampleBoundaries, r -> executor.execute(new OperationQueue.Task(r, Priority.BACKGROUND))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MongoInterruptedException("扫描数据被中断", e);
+        } catch (ExecutionException e) {
+            throw new MongoException("扫描数据采样失败", e.getCause());
+        }
+
+        List<Partition> partitions = new ArrayList<>();
+        BsonValue from = null;
+        for (int i = 0; i <= boundaries.size(); i++) {
+            BsonValue to = i < boundaries.size() ? boundaries.get(i) : null;
+            partitions.add(new Partition(executors.get(i % executors.size()), partitionFilter(from, to)));
+            from = to;
+        }
+
+        partitionCount = partitions.size();
+        buffer = new ArrayBlockingQueue<>(partitionCount * BUFFER_SIZE_PER_PARTITION);
+        partitions.forEach(Partition::submit);
+
+        boolean completed = false;
+        try {
+            while (true) {
+                if (completion.isCompletedExceptionally()) {
+                    completion.get();
+                }
+
+                Object data = buffer.poll();
+                if (data == null) {
+                    if (completion.isDone()) {
+                        //结束之前放进缓冲区的数据都要消费完
+                        if (buffer.isEmpty()) {
+                            completion.get();
+                            completed = true;
+                            return;
+                        }
+                        continue;
+                    }
+                    resume(true);
+                    data = buffer.take();
+                }
+
+                if (data != END) {
+                    consumer.accept((D) data);
+                    resume(false);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MongoInterruptedException("扫描数据被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new MongoException("扫描数据失败", cause);
+        } finally {
+            if (!completed) {
+                cancelled = true;
+                resume(true);
+                buffer.clear();
+            }
+        }
+    }
+
+    private Bson partitionFilter(BsonValue from, BsonValue to) {
+        List<Bson> filters = new ArrayList<>();
+        if (filter != null) {
+            filters.add(filter);
+        }
+        if (from != null) {
+            filters.add(Filters.gte(Data._ID, from));
+        }
+        if (to != null) {
+            filters.add(Filters.lt(Data._ID, to));
+        }
+
+        if (filters.isEmpty()) {
+            return new BsonDocument();
+        }
+        return filters.size() == 1 ? filters.get(0) : Filters.and(filters);
+    }
+
+    /**
+     * 恢复挂起的区间查询
+     *
+     * @param force 为false时缓冲区剩余一半空间才恢复
+     */
+    private void resume(boolean force) {
+        if (!force && buffer.remainingCapacity() < buffer.size()) {
+            return;
+        }
+        Partition partition;
+        while ((partition = suspended.poll()) != null) {
+            partition.submit();
+        }
+    }
+
+    /**
+     * 一个_id区间的查询
+     */
+    private class Partition implements Runnable {
+
+        private final ExecutorService executor;
+
+        private final Bson partitionFilter;
+
+        private MongoCursor<D> cursor;
+
+        /**
+         * 缓冲区满了没放进去的数据
+         */
+        private D pending;
+
+        Partition(ExecutorService executor, Bson partitionFilter) {
+            this.executor = executor;
+            this.partitionFilter = partitionFilter;
+        }
+
+        void submit() {
+            executor.execute(new OperationQueue.Task(this, Priority.BACKGROUND));
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                close();
+                return;
+            }
+
+            try {
+                if (cursor == null) {
+                    cursor = collection.find(partitionFilter).batchSize(BUFFER_SIZE_PER_PARTITION).iterator();
+                }
+
+                if (pending != null) {
+                    if (!buffer.offer(pending)) {
+                        suspend();
+                        return;
+                    }
+                    pending = null;
+                }
+
+                while (!cancelled && cursor.hasNext()) {
+                    D data = cursor.next();
+                    if (!buffer.offer(data)) {
+                        pending = data;
+                        suspend();
+                        return;
+                    }
+                }
+
+                close();
+                if (finished.incrementAndGet() == partitionCount) {
+                    complete(null);
+                }
+            } catch (Throwable e) {
+                close();
+                complete(e);
+            }
+        }
+
+        private void complete(Throwable e) {
+            if (e == null ? completion.complete(null) : completion.completeExceptionally(e)) {
+                buffer.offer(END);
+            }
+        }
+
+        private void suspend() {
+            suspended.add(this);
+            if (cancelled) {
+                //取消之后可能不会再被恢复，直接关闭
+                if (suspended.remove(this)) {
+                    close();
+                }
+            } else if (buffer.remainingCapacity() >= buffer.size() && suspended.remove(this)) {
+                //挂起之前调用线程可能已经把缓冲区消费完了，不会再来恢复
+                submit();
+            }
+        }
+
+        private void close() {
+            pending = null;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (Exception e) {
+                    logger.error("关闭游标出错", e);
+                }
+                cursor = null;
+            }
+        }
+
+    }
+
+}
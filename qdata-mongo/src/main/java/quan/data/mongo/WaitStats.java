@@ -0,0 +1,75 @@
+package quan.data.mongo;
+
+/**
+ * 数据库操作在队列中的等待时间统计
+ */
+public class WaitStats {
+
+    /**
+     * 已出队的操作数量
+     */
+    private final long count;
+
+    /**
+     * 总等待时间(纳秒)
+     */
+    private final long totalTime;
+
+    /**
+     * 最大等待时间(纳秒)
+     */
+    private final long maxTime;
+
+    /**
+     * 当前还在排队的操作数量
+     */
+    private final int queueSize;
+
+    public WaitStats(long count, long totalTime, long maxTime, int queueSize) {
+        this.count = count;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+        this.queueSize = queueSize;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * 平均等待时间(纳秒)
+     */
+    public long getAverageTime() {
+        return count == 0 ? 0 : totalTime / count;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * 合并多个队列的统计
+     */
+    public WaitStats merge(WaitStats other) {
+        return new WaitStats(count + other.count, totalTime + other.totalTime, Math.max(maxTime, other.maxTime), queueSize + other.queueSize);
+    }
+
+    @Override
+    public String toString() {
+        return "WaitStats{" +
+                "count=" + count +
+                ",averageTime=" + getAverageTime() / 1000000D + "ms" +
+                ",maxTime=" + maxTime / 1000000D + "ms" +
+                ",queueSize=" + queueSize +
+                '}';
+    }
+
+}
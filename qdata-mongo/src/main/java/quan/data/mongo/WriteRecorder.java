@@ -0,0 +1,183 @@
+package quan.data.mongo;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按集合记录写数据库的操作数量和字节数
+ *
+ * @see WriteStats
+ */
+class WriteRecorder {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private final Map<String, CollectionCounters> collections = new ConcurrentHashMap<>();
+
+    private CollectionCounters collection(String name) {
+        CollectionCounters collection = collections.get(name);
+        if (collection == null) {
+            collection = collections.computeIfAbsent(name, k -> new CollectionCounters());
+        }
+        return collection;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void recordInsert(String collectionName, Object document, Codec codec) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            codec.encode(writer, document, ENCODER_CONTEXT);
+        }
+
+        CollectionCounters collection = collection(collectionName);
+        collection.inserts.increment();
+        collection.insertBytes.add(buffer.getPosition());
+    }
+
+    /**
+     * @param update 包含$set的更新文档
+     */
+    void recordUpdate(String collectionName, RawBsonDocument update) {
+        CollectionCounters collection = collection(collectionName);
+        collection.updates.increment();
+
+        int size = update.getByteBuffer().remaining();
+        collection.updateBytes.add(size);
+        collection.maxUpdateBytes.accumulateAndGet(size, Math::max);
+
+        try (BsonBinaryReader reader = new BsonBinaryReader(update.getByteBuffer().asNIO())) {
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                reader.readName();
+                if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.readStartDocument();
+                while (true) {
+                    //字段的字节数包含类型和字段名
+                    int start = reader.getBsonInput().getPosition();
+                    if (reader.readBsonType() == BsonType.END_OF_DOCUMENT) {
+                        break;
+                    }
+                    String field = reader.readName();
+                    reader.skipValue();
+                    collection.field(field).record(reader.getBsonInput().getPosition() - start);
+                }
+                reader.readEndDocument();
+            }
+        }
+    }
+
+    void recordDelete(String collectionName) {
+        collection(collectionName).deletes.increment();
+    }
+
+    void recordBulkWrite(String collectionName, int operations) {
+        CollectionCounters collection = collection(collectionName);
+        collection.bulkWrites.increment();
+        collection.maxOperations.accumulateAndGet(operations, Math::max);
+    }
+
+    /**
+     * @param topFields 每个集合最多返回多少个字段
+     * @param reset     是否清空已经记录的数据
+     */
+    Map<String, WriteStats> getStats(int topFields, boolean reset) {
+        Map<String, WriteStats> stats = new TreeMap<>();
+        collections.forEach((name, collection) -> stats.put(name, collection.getStats(topFields, reset)));
+        return stats;
+    }
+
+    /**
+     * 一个集合的计数器
+     */
+    private static class CollectionCounters {
+
+        final LongAdder bulkWrites = new LongAdder();
+
+        final AtomicLong maxOperations = new AtomicLong();
+
+        final LongAdder inserts = new LongAdder();
+
+        final LongAdder updates = new LongAdder();
+
+        final LongAdder deletes = new LongAdder();
+
+        final LongAdder insertBytes = new LongAdder();
+
+        final LongAdder updateBytes = new LongAdder();
+
+        final AtomicLong maxUpdateBytes = new AtomicLong();
+
+        final Map<String, FieldCounters> fields = new ConcurrentHashMap<>();
+
+        FieldCounters field(String name) {
+            FieldCounters field = fields.get(name);
+            if (field == null) {
+                field = fields.computeIfAbsent(name, k -> new FieldCounters());
+            }
+            return field;
+        }
+
+        /**
+         * @param reset 是否清零，计数器不会被替换掉，清零的同时记录的数据会算到下一次统计里，不会丢失
+         */
+        WriteStats getStats(int topFields, boolean reset) {
+            List<WriteStats.FieldStats> fieldStats = new ArrayList<>();
+            fields.forEach((name, field) -> {
+                long count = sum(field.count, reset);
+                if (count > 0) {
+                    fieldStats.add(new WriteStats.FieldStats(name, count, sum(field.bytes, reset)));
+                }
+            });
+            fieldStats.sort(Comparator.comparingLong(WriteStats.FieldStats::getBytes).reversed());
+            if (fieldStats.size() > topFields) {
+                fieldStats.subList(topFields, fieldStats.size()).clear();
+            }
+
+            return new WriteStats(sum(bulkWrites, reset), max(maxOperations, reset), sum(inserts, reset), sum(updates, reset), sum(deletes, reset),
+                    sum(insertBytes, reset), sum(updateBytes, reset), max(maxUpdateBytes, reset), fieldStats);
+        }
+
+        private static long sum(LongAdder adder, boolean reset) {
+            return reset ? adder.sumThenReset() : adder.sum();
+        }
+
+        private static long max(AtomicLong max, boolean reset) {
+            return reset ? max.getAndSet(0) : max.get();
+        }
+
+    }
+
+    /**
+     * 一个字段在更新补丁中的计数器
+     */
+    private static class FieldCounters {
+
+        final LongAdder count = new LongAdder();
+
+        final LongAdder bytes = new LongAdder();
+
+        void record(int size) {
+            count.increment();
+            bytes.add(size);
+        }
+
+    }
+
+}
@@ -0,0 +1,171 @@
+package quan.data.mongo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个集合的写数据库统计，字节数是编码后的BSON大小
+ */
+public class WriteStats {
+
+    /**
+     * 批量写的次数
+     */
+    private final long bulkWrites;
+
+    /**
+     * 单次批量写的最大操作数量
+     */
+    private final long maxOperations;
+
+    private final long inserts;
+
+    private final long updates;
+
+    private final long deletes;
+
+    /**
+     * 插入的文档总字节数
+     */
+    private final long insertBytes;
+
+    /**
+     * 更新补丁的总字节数
+     */
+    private final long updateBytes;
+
+    /**
+     * 最大的更新补丁字节数
+     */
+    private final long maxUpdateBytes;
+
+    /**
+     * 按写入字节数从大到小排列的字段
+     */
+    private final List<FieldStats> fields;
+
+    public WriteStats(long bulkWrites, long maxOperations, long inserts, long updates, long deletes, long insertBytes, long updateBytes, long maxUpdateBytes, List<FieldStats> fields) {
+        this.bulkWrites = bulkWrites;
+        this.maxOperations = maxOperations;
+        this.inserts = inserts;
+        this.updates = updates;
+        this.deletes = deletes;
+        this.insertBytes = insertBytes;
+        this.updateBytes = updateBytes;
+        this.maxUpdateBytes = maxUpdateBytes;
+        this.fields = Collections.unmodifiableList(fields);
+    }
+
+    public long getBulkWrites() {
+        return bulkWrites;
+    }
+
+    public long getMaxOperations() {
+        return maxOperations;
+    }
+
+    public long getInserts() {
+        return inserts;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public long getDeletes() {
+        return deletes;
+    }
+
+    public long getInsertBytes() {
+        return insertBytes;
+    }
+
+    public long getUpdateBytes() {
+        return updateBytes;
+    }
+
+    public long getMaxUpdateBytes() {
+        return maxUpdateBytes;
+    }
+
+    /**
+     * 平均每次更新的字节数
+     */
+    public long getAverageUpdateBytes() {
+        return updates == 0 ? 0 : updateBytes / updates;
+    }
+
+    public List<FieldStats> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteStats{" +
+                "bulkWrites=" + bulkWrites +
+                ",maxOperations=" + maxOperations +
+                ",inserts=" + inserts +
+                ",updates=" + updates +
+                ",deletes=" + deletes +
+                ",insertBytes=" + insertBytes +
+                ",updateBytes=" + updateBytes +
+                ",averageUpdateBytes=" + getAverageUpdateBytes() +
+                ",maxUpdateBytes=" + maxUpdateBytes +
+                ",fields=" + fields +
+                '}';
+    }
+
+    /**
+     * 一个字段在更新补丁中的统计
+     */
+    public static class FieldStats {
+
+        private final String name;
+
+        /**
+         * 字段出现在更新补丁中的次数
+         */
+        private final long count;
+
+        /**
+         * 字段在更新补丁中的总字节数，包含字段名
+         */
+        private final long bytes;
+
+        public FieldStats(String name, long count, long bytes) {
+            this.name = name;
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * 平均每次写入的字节数，越大说明小修改导致重写的数据越多
+         */
+        public long getAverageBytes() {
+            return count == 0 ? 0 : bytes / count;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{" +
+                    "count=" + count +
+                    ",bytes=" + bytes +
+                    ",averageBytes=" + getAverageBytes() +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package quan.data;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+import quan.data.Data;
+import quan.data.DataRegistry;
+import quan.data.Entity;
+import quan.data.binary.BinaryCodec;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 数据类注册表<br/>
+ * 代码自动生成，请勿手动修改
+ */
+public class DataRegistryImpl implements DataRegistry {
+
+    private static final List<Class<? extends Data<?>>> dataClasses = new ArrayList<>();
+
+    private static final Map<Class<? extends Data<?>>, String> dataNames = new HashMap<>();
+
+    private static final Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> codecFactories = new HashMap<>();
+
+    private static final Map<Class<? extends Entity>, BinaryCodec<?>> binaryCodecs = new HashMap<>();
+
+    static {
+        dataClasses.add(quan.data.compact.CompactData.class);
+        dataClasses.add(quan.data.item.ItemData.class);
+        dataClasses.add(quan.data.role.RoleData.class);
+
+        dataNames.put(quan.data.compact.CompactData.class, quan.data.compact.CompactData._NAME);
+        dataNames.put(quan.data.item.ItemData.class, quan.data.item.ItemData._NAME);
+        dataNames.put(quan.data.role.RoleData.class, quan.data.role.RoleData._NAME);
+
+        codecFactories.put(quan.data.compact.CompactBean.class, quan.data.compact.CompactBean.CodecImpl::new);
+        codecFactories.put(quan.data.compact.CompactData.class, quan.data.compact.CompactData.CodecImpl::new);
+        codecFactories.put(quan.data.item.ItemBean.class, quan.data.item.ItemBean.CodecImpl::new);
+        codecFactories.put(quan.data.item.ItemData.class, quan.data.item.ItemData.CodecImpl::new);
+        codecFactories.put(quan.data.role.RoleData.class, quan.data.role.RoleData.CodecImpl::new);
+
+        binaryCodecs.put(quan.data.compact.CompactBean.class, quan.data.compact.CompactBean.BinaryCodecImpl.INSTANCE);
+        binaryCodecs.put(quan.data.compact.CompactData.class, quan.data.compact.CompactData.BinaryCodecImpl.INSTANCE);
+        binaryCodecs.put(quan.data.item.ItemBean.class, quan.data.item.ItemBean.BinaryCodecImpl.INSTANCE);
+        binaryCodecs.put(quan.data.item.ItemData.class, quan.data.item.ItemData.BinaryCodecImpl.INSTANCE);
+        binaryCodecs.put(quan.data.role.RoleData.class, quan.data.role.RoleData.BinaryCodecImpl.INSTANCE);
+    }
+
+    @Override
+    public List<Class<? extends Data<?>>> getDataClasses() {
+        return Collections.unmodifiableList(dataClasses);
+    }
+
+    @Override
+    public Map<Class<? extends Data<?>>, String> getDataNames() {
+        return Collections.unmodifiableMap(dataNames);
+    }
+
+    @Override
+    public Map<Class<? extends Entity>, Function<CodecRegistry, Codec<?>>> getCodecFactories() {
+        return Collections.unmodifiableMap(codecFactories);
+    }
+
+    @Override
+    public Map<Class<? extends Entity>, BinaryCodec<?>> getBinaryCodecs() {
+        return Collections.unmodifiableMap(binaryCodecs);
+    }
+
+}
@@ -0,0 +1,195 @@
+package quan.data.compact;
+
+import java.util.*;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import quan.data.*;
+import quan.data.binary.*;
+import quan.data.field.*;
+
+/**
+ * 紧凑模式的Bean<br/>
+ * 代码自动生成，请勿手动修改
+ */
+public class CompactBean extends Bean {
+
+    public static final String ID = "id";
+
+    public static final String NAME = "name";
+
+    public static final String COUNT = "count";
+
+    /**
+     * 二进制格式的结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    public static final long _FINGERPRINT = 0x96D28FAD87B48202L;
+
+    private final SlotsField _slots = new SlotsField(2, "");
+
+    public CompactBean() {
+    }
+    
+    public CompactBean(int id, String name, long count) {
+        this.setId(id);
+        this.setName(name);
+        this.setCount(count);
+    }
+
+    public int getId() {
+        return _slots.getInt(0);
+    }
+
+    public CompactBean setId(int id) {
+        this._slots.setInt(0, id, _getLogOwner(), _getLogPosition());
+        return this;
+    }
+
+    public String getName() {
+        return _slots.getObject(0);
+    }
+
+    public CompactBean setName(String name) {
+        this._slots.setObject(0, name, _getLogOwner(), _getLogPosition());
+        return this;
+    }
+
+    public long getCount() {
+        return _slots.getLong(1);
+    }
+
+    public CompactBean setCount(long count) {
+        this._slots.setLong(1, count, _getLogOwner(), _getLogPosition());
+        return this;
+    }
+
+
+    @Override
+    protected void _setChildrenLogOwner(Data<?> owner, int position) {
+    }
+
+    @Override
+    public String toString() {
+        return "CompactBean{" +
+                "id=" + _slots.getInt(0) +
+                ",name='" + _slots.getObject(0) + '\'' +
+                ",count=" + _slots.getLong(1) +
+                '}';
+
+    }
+
+    public static CompactBean parseJson(String json) {
+        return Entity.parseJson(CompactBean.class, json);
+    }
+
+    public static class CodecImpl implements Codec<CompactBean> {
+
+        private final CodecRegistry registry;
+
+        public CodecImpl(CodecRegistry registry) {
+            this.registry = registry;
+        }
+
+        public CodecRegistry getRegistry() {
+            return registry;
+        }
+
+        @Override
+        public CompactBean decode(BsonReader reader, DecoderContext decoderContext) {
+            reader.readStartDocument();
+            CompactBean value = new CompactBean(); 
+        
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case CompactBean.ID:
+                        value._slots.setInt(0, reader.readInt32());
+                        break;
+                    case CompactBean.NAME:
+                        value._slots.setObject(0, reader.readString());
+                        break;
+                    case CompactBean.COUNT:
+                        value._slots.setLong(1, reader.readInt64());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            reader.readEndDocument();
+            return value;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, CompactBean value, EncoderContext encoderContext) {
+            Transaction transaction = Transaction.get();
+            writer.writeStartDocument();
+
+            writer.writeInt32(CompactBean.ID, value._slots.getInt(transaction, 0));
+            writer.writeString(CompactBean.NAME, value._slots.getObject(transaction, 0));
+            writer.writeInt64(CompactBean.COUNT, value._slots.getLong(transaction, 1));
+
+            writer.writeEndDocument();
+        }
+        
+        @Override
+        public Class<CompactBean> getEncoderClass() {
+            return CompactBean.class;
+        }
+
+    }
+
+    public static class BinaryCodecImpl implements BinaryCodec<CompactBean> {
+
+        public static final BinaryCodecImpl INSTANCE = new BinaryCodecImpl();
+
+        @Override
+        public long getFingerprint() {
+            return _FINGERPRINT;
+        }
+
+        @Override
+        public Class<CompactBean> getEncoderClass() {
+            return CompactBean.class;
+        }
+
+        @Override
+        public void encode(BinaryWriter writer, CompactBean value) {
+            Transaction transaction = Transaction.get();
+            writer.writeIntField(1, value._slots.getInt(transaction, 0));
+            writer.writeStringField(2, value._slots.getObject(transaction, 0));
+            writer.writeLongField(3, value._slots.getLong(transaction, 1));
+
+            writer.writeEnd();
+        }
+
+        @Override
+        public CompactBean decode(BinaryReader reader) {
+            CompactBean value = new CompactBean();
+
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    case 1:
+                        value._slots.setInt(0, reader.readInt());
+                        break;
+                    case 2:
+                        value._slots.setObject(0, reader.readString());
+                        break;
+                    case 3:
+                        value._slots.setLong(1, reader.readLong());
+                        break;
+                    default:
+                        reader.skip(tag);
+                }
+            }
+
+            return value;
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,624 @@
+package quan.data.compact;
+
+import java.util.*;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.json.JsonWriter;
+import quan.data.*;
+import quan.data.binary.*;
+import quan.data.field.*;
+import quan.data.item.ItemBean;
+
+/**
+ * 紧凑模式的数据<br/>
+ * 代码自动生成，请勿手动修改
+ */
+@Index(name = "name", fields = {CompactData.NAME}, type = Index.Type.UNIQUE)
+public class CompactData extends Data<Long> {
+
+    /**
+     * 对应的表名
+     */
+    public static final String _NAME = "compact_data";
+
+
+    public static final String ID = "id";
+
+    public static final String NAME = "name";
+
+    public static final String LEVEL = "level";
+
+    public static final String EXP = "exp";
+
+    public static final String VIP = "vip";
+
+    public static final String VIP_LEVEL = "vipLevel";
+
+    public static final String SPEED = "speed";
+
+    public static final String RATE = "rate";
+
+    public static final String SIGNATURE = "signature";
+
+    public static final String ITEM = "item";
+
+    public static final String ITEMS = "items";
+
+    public static final String BEANS = "beans";
+
+    /**
+     * 所有的字段名，下标加1就是字段在数据中的位置
+     */
+    public static final List<String> _FIELDS = List.of(ID, NAME, LEVEL, EXP, VIP, VIP_LEVEL, SPEED, RATE, SIGNATURE, ITEM, ITEMS, BEANS);
+
+    /**
+     * 二进制格式的结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    public static final long _FINGERPRINT = 0xB6C473AD288ED62AL;
+
+    private final SlotsField _slots = new SlotsField(7, "", "");
+
+    private final BeanField<ItemBean> item = new BeanField<>();
+
+    private final ListField<ItemBean> items = new ListField<>(this, 11);
+
+    private final MapField<Integer, CompactBean> beans = new MapField<>(this, 12);
+
+    private CompactData() {
+    }
+
+    public CompactData(long id) {
+        this.setId(id);
+    }
+
+    /**
+     * 主键
+     */
+    @Override
+    public Long id() {
+        return _slots.getLong(0);
+    }
+
+
+    public long getId() {
+        return _slots.getLong(0);
+    }
+
+    private CompactData setId(long id) {
+        this._slots.setLong(0, id, this, 1);
+        return this;
+    }
+
+    public String getName() {
+        _checkLoaded(2);
+        return _slots.getObject(0);
+    }
+
+    public CompactData setName(String name) {
+        _checkLoaded(2);
+        this._slots.setObject(0, name, this, 2);
+        return this;
+    }
+
+    public int getLevel() {
+        _checkLoaded(3);
+        return _slots.getInt(1);
+    }
+
+    public CompactData setLevel(int level) {
+        _checkLoaded(3);
+        this._slots.setInt(1, level, this, 3);
+        return this;
+    }
+
+    public long getExp() {
+        _checkLoaded(4);
+        return _slots.getLong(2);
+    }
+
+    public CompactData setExp(long exp) {
+        _checkLoaded(4);
+        this._slots.setLong(2, exp, this, 4);
+        return this;
+    }
+
+    public boolean getVip() {
+        _checkLoaded(5);
+        return _slots.getBoolean(3);
+    }
+
+    public CompactData setVip(boolean vip) {
+        _checkLoaded(5);
+        this._slots.setBoolean(3, vip, this, 5);
+        return this;
+    }
+
+    public short getVipLevel() {
+        _checkLoaded(6);
+        return _slots.getShort(4);
+    }
+
+    public CompactData setVipLevel(short vipLevel) {
+        _checkLoaded(6);
+        this._slots.setShort(4, vipLevel, this, 6);
+        return this;
+    }
+
+    public float getSpeed() {
+        _checkLoaded(7);
+        return _slots.getFloat(5);
+    }
+
+    public CompactData setSpeed(float speed) {
+        _checkLoaded(7);
+        this._slots.setFloat(5, speed, this, 7);
+        return this;
+    }
+
+    public double getRate() {
+        _checkLoaded(8);
+        return _slots.getDouble(6);
+    }
+
+    public CompactData setRate(double rate) {
+        _checkLoaded(8);
+        this._slots.setDouble(6, rate, this, 8);
+        return this;
+    }
+
+    public String getSignature() {
+        _checkLoaded(9);
+        return _slots.getObject(1);
+    }
+
+    public CompactData setSignature(String signature) {
+        _checkLoaded(9);
+        this._slots.setObject(1, signature, this, 9);
+        return this;
+    }
+
+    public ItemBean getItem() {
+        _checkLoaded(10);
+        return item.getValue();
+    }
+
+    public CompactData setItem(ItemBean item) {
+        _checkLoaded(10);
+        this.item.setValue(item, this, 10);
+        return this;
+    }
+
+    public List<ItemBean> getItems() {
+        _checkLoaded(11);
+        return items.getDelegate();
+    }
+
+    public Map<Integer, CompactBean> getBeans() {
+        _checkLoaded(12);
+        return beans.getDelegate();
+    }
+
+
+    @Override
+    public Object _getFieldValue(int position) {
+        switch (position) {
+            case 1:
+                return getId();
+            case 2:
+                return getName();
+            case 3:
+                return getLevel();
+            case 4:
+                return getExp();
+            case 5:
+                return getVip();
+            case 6:
+                return getVipLevel();
+            case 7:
+                return getSpeed();
+            case 8:
+                return getRate();
+            case 9:
+                return getSignature();
+            case 10:
+                return getItem();
+            case 11:
+                return getItems();
+            case 12:
+                return getBeans();
+            default:
+                throw new IllegalArgumentException("字段位置[" + position + "]不存在");
+        }
+    }
+
+    @Override
+    protected Map<String, Object> _getPatch() {
+        if (_updatedFields.isEmpty()) {
+            return null;
+        }
+
+        Transaction transaction = Transaction.get();
+        Map<String, Object> patch = new HashMap<>();
+
+        if (_updatedFields.get(2))
+            patch.put(NAME, _slots.getObject(transaction, 0));
+
+        if (_updatedFields.get(3))
+            patch.put(LEVEL, _slots.getInt(transaction, 1));
+
+        if (_updatedFields.get(4))
+            patch.put(EXP, _slots.getLong(transaction, 2));
+
+        if (_updatedFields.get(5))
+            patch.put(VIP, _slots.getBoolean(transaction, 3));
+
+        if (_updatedFields.get(6))
+            patch.put(VIP_LEVEL, _slots.getShort(transaction, 4));
+
+        if (_updatedFields.get(7))
+            patch.put(SPEED, _slots.getFloat(transaction, 5));
+
+        if (_updatedFields.get(8))
+            patch.put(RATE, _slots.getDouble(transaction, 6));
+
+        if (_updatedFields.get(9))
+            patch.put(SIGNATURE, _slots.getObject(transaction, 1));
+
+        if (_updatedFields.get(10))
+            patch.put(ITEM, item.getValue(transaction));
+
+        if (_updatedFields.get(11))
+            patch.put(ITEMS, items.getCurrent(transaction));
+
+        if (_updatedFields.get(12))
+            patch.put(BEANS, beans.getCurrent(transaction));
+
+        return patch;
+    }
+
+
+    @Override
+    public String toString() {
+        return "CompactData{" +
+                "id=" + _slots.getLong(0) +
+                ",name='" + _slots.getObject(0) + '\'' +
+                ",level=" + _slots.getInt(1) +
+                ",exp=" + _slots.getLong(2) +
+                ",vip=" + _slots.getBoolean(3) +
+                ",vipLevel=" + _slots.getShort(4) +
+                ",speed=" + _slots.getFloat(5) +
+                ",rate=" + _slots.getDouble(6) +
+                ",signature='" + _slots.getObject(1) + '\'' +
+                ",item=" + item +
+                ",items=" + items +
+                ",beans=" + beans +
+                '}';
+
+    }
+
+    public static CompactData parseJson(String json) {
+        return Entity.parseJson(CompactData.class, json);
+    }
+
+    public static class CodecImpl implements DataCodec<CompactData> {
+
+        private final CodecRegistry registry;
+
+        public CodecImpl(CodecRegistry registry) {
+            this.registry = registry;
+        }
+
+        public CodecRegistry getRegistry() {
+            return registry;
+        }
+
+        @Override
+        public CompactData decode(BsonReader reader, DecoderContext decoderContext) {
+            reader.readStartDocument();
+            CompactData value = new CompactData(); 
+        
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case CompactData._ID:
+                    case CompactData.ID:
+                        value._slots.setLong(0, reader.readInt64());
+                        break;
+                    case CompactData.NAME:
+                        value._slots.setObject(0, reader.readString());
+                        break;
+                    case CompactData.LEVEL:
+                        value._slots.setInt(1, reader.readInt32());
+                        break;
+                    case CompactData.EXP:
+                        value._slots.setLong(2, reader.readInt64());
+                        break;
+                    case CompactData.VIP:
+                        value._slots.setBoolean(3, reader.readBoolean());
+                        break;
+                    case CompactData.VIP_LEVEL:
+                        value._slots.setShort(4, (short) reader.readInt32());
+                        break;
+                    case CompactData.SPEED:
+                        value._slots.setFloat(5, (float) reader.readDouble());
+                        break;
+                    case CompactData.RATE:
+                        value._slots.setDouble(6, reader.readDouble());
+                        break;
+                    case CompactData.SIGNATURE:
+                        value._slots.setObject(1, reader.readString());
+                        break;
+                    case CompactData.ITEM:
+                        value.item.setValue(decoderContext.decodeWithChildContext(registry.get(ItemBean.class), reader));
+                        break;
+                    case CompactData.ITEMS:
+                        reader.readStartArray();
+                        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                            value.items.plus(decoderContext.decodeWithChildContext(registry.get(ItemBean.class), reader));
+                        }
+                        reader.readEndArray();
+                        break;
+                    case CompactData.BEANS:
+                        reader.readStartDocument();
+                        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                            value.beans.plus(Integer.valueOf(reader.readName()), decoderContext.decodeWithChildContext(registry.get(CompactBean.class), reader));
+                        }
+                        reader.readEndDocument();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            reader.readEndDocument();
+            return value;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, CompactData value, EncoderContext encoderContext) {
+            Transaction transaction = Transaction.get();
+            writer.writeStartDocument();
+
+            if (writer instanceof JsonWriter) {
+                writer.writeInt64(CompactData.ID, value._slots.getLong(transaction, 0));
+            } else {
+                writer.writeInt64(CompactData._ID, value._slots.getLong(transaction, 0));
+            }
+
+            writer.writeString(CompactData.NAME, value._slots.getObject(transaction, 0));
+            writer.writeInt32(CompactData.LEVEL, value._slots.getInt(transaction, 1));
+            writer.writeInt64(CompactData.EXP, value._slots.getLong(transaction, 2));
+            writer.writeBoolean(CompactData.VIP, value._slots.getBoolean(transaction, 3));
+            writer.writeInt32(CompactData.VIP_LEVEL, value._slots.getShort(transaction, 4));
+            writer.writeDouble(CompactData.SPEED, value._slots.getFloat(transaction, 5));
+            writer.writeDouble(CompactData.RATE, value._slots.getDouble(transaction, 6));
+            writer.writeString(CompactData.SIGNATURE, value._slots.getObject(transaction, 1));
+
+            ItemBean $item = value.item.getValue(transaction);
+            if ($item != null) {
+                writer.writeName(CompactData.ITEM);
+                encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, $item);
+            }
+
+            Collection<ItemBean> $items = value.items.getCurrent(transaction);
+            if (!$items.isEmpty()) {
+                writer.writeStartArray(CompactData.ITEMS);
+                for (ItemBean itemsValue : $items) {
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, itemsValue);
+                }
+                writer.writeEndArray();
+            }
+
+            Map<Integer, CompactBean> $beans = value.beans.getCurrent(transaction);
+            if (!$beans.isEmpty()) {
+                writer.writeStartDocument(CompactData.BEANS);
+                for (Map.Entry<Integer, CompactBean> beansEntry : $beans.entrySet()) {
+                    writer.writeName(String.valueOf(beansEntry.getKey()));
+                    encoderContext.encodeWithChildContext(registry.get(CompactBean.class), writer, beansEntry.getValue());
+                }
+                writer.writeEndDocument();
+            }
+
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public boolean encodePatch(BsonWriter writer, CompactData value, EncoderContext encoderContext) {
+            if (value._updatedFields.isEmpty()) {
+                return false;
+            }
+
+            Transaction transaction = Transaction.get();
+
+            if (value._updatedFields.get(2)) {
+                writer.writeString(CompactData.NAME, value._slots.getObject(transaction, 0));
+            }
+
+            if (value._updatedFields.get(3)) {
+                writer.writeInt32(CompactData.LEVEL, value._slots.getInt(transaction, 1));
+            }
+
+            if (value._updatedFields.get(4)) {
+                writer.writeInt64(CompactData.EXP, value._slots.getLong(transaction, 2));
+            }
+
+            if (value._updatedFields.get(5)) {
+                writer.writeBoolean(CompactData.VIP, value._slots.getBoolean(transaction, 3));
+            }
+
+            if (value._updatedFields.get(6)) {
+                writer.writeInt32(CompactData.VIP_LEVEL, value._slots.getShort(transaction, 4));
+            }
+
+            if (value._updatedFields.get(7)) {
+                writer.writeDouble(CompactData.SPEED, value._slots.getFloat(transaction, 5));
+            }
+
+            if (value._updatedFields.get(8)) {
+                writer.writeDouble(CompactData.RATE, value._slots.getDouble(transaction, 6));
+            }
+
+            if (value._updatedFields.get(9)) {
+                writer.writeString(CompactData.SIGNATURE, value._slots.getObject(transaction, 1));
+            }
+
+            if (value._updatedFields.get(10)) {
+                ItemBean $item = value.item.getValue(transaction);
+                if ($item != null) {
+                    writer.writeName(CompactData.ITEM);
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, $item);
+                } else {
+                    writer.writeNull(CompactData.ITEM);
+                }
+            }
+
+            if (value._updatedFields.get(11)) {
+                writer.writeStartArray(CompactData.ITEMS);
+                for (ItemBean itemsValue : value.items.getCurrent(transaction)) {
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, itemsValue);
+                }
+                writer.writeEndArray();
+            }
+
+            if (value._updatedFields.get(12)) {
+                writer.writeStartDocument(CompactData.BEANS);
+                for (Map.Entry<Integer, CompactBean> beansEntry : value.beans.getCurrent(transaction).entrySet()) {
+                    writer.writeName(String.valueOf(beansEntry.getKey()));
+                    encoderContext.encodeWithChildContext(registry.get(CompactBean.class), writer, beansEntry.getValue());
+                }
+                writer.writeEndDocument();
+            }
+
+            return true;
+        }
+        
+        @Override
+        public Class<CompactData> getEncoderClass() {
+            return CompactData.class;
+        }
+
+    }
+
+    public static class BinaryCodecImpl implements BinaryCodec<CompactData> {
+
+        public static final BinaryCodecImpl INSTANCE = new BinaryCodecImpl();
+
+        @Override
+        public long getFingerprint() {
+            return _FINGERPRINT;
+        }
+
+        @Override
+        public Class<CompactData> getEncoderClass() {
+            return CompactData.class;
+        }
+
+        @Override
+        public void encode(BinaryWriter writer, CompactData value) {
+            Transaction transaction = Transaction.get();
+            writer.writeLongField(1, value._slots.getLong(transaction, 0));
+            writer.writeStringField(2, value._slots.getObject(transaction, 0));
+            writer.writeIntField(3, value._slots.getInt(transaction, 1));
+            writer.writeLongField(4, value._slots.getLong(transaction, 2));
+            writer.writeBoolField(5, value._slots.getBoolean(transaction, 3));
+            writer.writeIntField(6, value._slots.getShort(transaction, 4));
+            writer.writeFloatField(7, value._slots.getFloat(transaction, 5));
+            writer.writeDoubleField(8, value._slots.getDouble(transaction, 6));
+            writer.writeStringField(9, value._slots.getObject(transaction, 1));
+
+            ItemBean $item = value.item.getValue(transaction);
+            if ($item != null) {
+                int mark = writer.beginNested(10);
+                ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, $item);
+                writer.endNested(mark);
+            }
+
+            Collection<ItemBean> $items = value.items.getCurrent(transaction);
+            if (!$items.isEmpty()) {
+                int mark = writer.beginNested(11);
+                writer.writeVarInt($items.size());
+                for (ItemBean itemsValue : $items) {
+                    ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, itemsValue);
+                }
+                writer.endNested(mark);
+            }
+
+            Map<Integer, CompactBean> $beans = value.beans.getCurrent(transaction);
+            if (!$beans.isEmpty()) {
+                int mark = writer.beginNested(12);
+                writer.writeVarInt($beans.size());
+                for (Map.Entry<Integer, CompactBean> beansEntry : $beans.entrySet()) {
+                    writer.writeInt(beansEntry.getKey());
+                    CompactBean.BinaryCodecImpl.INSTANCE.encode(writer, beansEntry.getValue());
+                }
+                writer.endNested(mark);
+            }
+
+            writer.writeEnd();
+        }
+
+        @Override
+        public CompactData decode(BinaryReader reader) {
+            CompactData value = new CompactData();
+
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    case 1:
+                        value._slots.setLong(0, reader.readLong());
+                        break;
+                    case 2:
+                        value._slots.setObject(0, reader.readString());
+                        break;
+                    case 3:
+                        value._slots.setInt(1, reader.readInt());
+                        break;
+                    case 4:
+                        value._slots.setLong(2, reader.readLong());
+                        break;
+                    case 5:
+                        value._slots.setBoolean(3, reader.readBool());
+                        break;
+                    case 6:
+                        value._slots.setShort(4, (short) reader.readInt());
+                        break;
+                    case 7:
+                        value._slots.setFloat(5, reader.readFloat());
+                        break;
+                    case 8:
+                        value._slots.setDouble(6, reader.readDouble());
+                        break;
+                    case 9:
+                        value._slots.setObject(1, reader.readString());
+                        break;
+                    case 10:
+                        reader.beginNested();
+                        value.item.setValue(ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        break;
+                    case 11:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.items.plus(ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        }
+                        break;
+                    case 12:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.beans.plus(reader.readInt(), CompactBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        }
+                        break;
+                    default:
+                        reader.skip(tag);
+                }
+            }
+
+            return value;
+        }
+
+    }
+
+}
\ No newline at end of file
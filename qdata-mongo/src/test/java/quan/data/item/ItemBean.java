@@ -9,6 +9,7 @@ import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import quan.data.*;
+import quan.data.binary.*;
 import quan.data.field.*;
 
 /**
@@ -23,6 +24,11 @@ public class ItemBean extends Bean {
 
     public static final String LIST = "list";
 
+    /**
+     * 二进制格式的结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    public static final long _FINGERPRINT = 0x5B71842759254AF2L;
+
 
     private final BaseField<Integer> id = new BaseField<>(0);
 
@@ -149,4 +155,66 @@ public class ItemBean extends Bean {
 
     }
 
+    public static class BinaryCodecImpl implements BinaryCodec<ItemBean> {
+
+        public static final BinaryCodecImpl INSTANCE = new BinaryCodecImpl();
+
+        @Override
+        public long getFingerprint() {
+            return _FINGERPRINT;
+        }
+
+        @Override
+        public Class<ItemBean> getEncoderClass() {
+            return ItemBean.class;
+        }
+
+        @Override
+        public void encode(BinaryWriter writer, ItemBean value) {
+            Transaction transaction = Transaction.get();
+            writer.writeIntField(1, value.id.getValue(transaction));
+            writer.writeStringField(2, value.name.getValue(transaction));
+
+            Collection<Integer> $list = value.list.getCurrent(transaction);
+            if (!$list.isEmpty()) {
+                int mark = writer.beginNested(3);
+                writer.writeVarInt($list.size());
+                for (Integer listValue : $list) {
+                    writer.writeInt(listValue);
+                }
+                writer.endNested(mark);
+            }
+
+            writer.writeEnd();
+        }
+
+        @Override
+        public ItemBean decode(BinaryReader reader) {
+            ItemBean value = new ItemBean();
+
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    case 1:
+                        value.id.setValue(reader.readInt());
+                        break;
+                    case 2:
+                        value.name.setValue(reader.readString());
+                        break;
+                    case 3:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.list.plus(reader.readInt());
+                        }
+                        break;
+                    default:
+                        reader.skip(tag);
+                }
+            }
+
+            return value;
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+package quan.data.item;
+
+import java.util.*;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.json.JsonWriter;
+import quan.data.*;
+import quan.data.binary.*;
+import quan.data.field.*;
+
+/**
+ * 道具数据，没有索引<br/>
+ * 代码自动生成，请勿手动修改
+ */
+public class ItemData extends Data<Long> {
+
+    /**
+     * 对应的表名
+     */
+    public static final String _NAME = "item_data";
+
+
+    public static final String ID = "id";
+
+    public static final String NAME = "name";
+
+    public static final String COUNT = "count";
+
+    public static final String BEAN = "bean";
+
+    /**
+     * 所有的字段名，下标加1就是字段在数据中的位置
+     */
+    public static final List<String> _FIELDS = List.of(ID, NAME, COUNT, BEAN);
+
+    /**
+     * 二进制格式的结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    public static final long _FINGERPRINT = 0x7C36DCC8326B1069L;
+
+
+    private final BaseField<Long> id = new BaseField<>((long) 0);
+
+    private final BaseField<String> name = new BaseField<>("");
+
+    private final BaseField<Integer> count = new BaseField<>(0);
+
+    private final BeanField<ItemBean> bean = new BeanField<>();
+
+    private ItemData() {
+    }
+
+    public ItemData(long id) {
+        this.setId(id);
+    }
+
+    /**
+     * 主键
+     */
+    @Override
+    public Long id() {
+        return id.getValue();
+    }
+
+
+    public long getId() {
+        return id.getValue();
+    }
+
+    private ItemData setId(long id) {
+        this.id.setValue(id, this, 1);
+        return this;
+    }
+
+    public String getName() {
+        _checkLoaded(2);
+        return name.getValue();
+    }
+
+    public ItemData setName(String name) {
+        _checkLoaded(2);
+        this.name.setValue(name, this, 2);
+        return this;
+    }
+
+    public int getCount() {
+        _checkLoaded(3);
+        return count.getValue();
+    }
+
+    public ItemData setCount(int count) {
+        _checkLoaded(3);
+        this.count.setValue(count, this, 3);
+        return this;
+    }
+
+    public ItemBean getBean() {
+        _checkLoaded(4);
+        return bean.getValue();
+    }
+
+    public ItemData setBean(ItemBean bean) {
+        _checkLoaded(4);
+        this.bean.setValue(bean, this, 4);
+        return this;
+    }
+
+
+    @Override
+    public Object _getFieldValue(int position) {
+        switch (position) {
+            case 1:
+                return getId();
+            case 2:
+                return getName();
+            case 3:
+                return getCount();
+            case 4:
+                return getBean();
+            default:
+                throw new IllegalArgumentException("字段位置[" + position + "]不存在");
+        }
+    }
+
+    @Override
+    protected Map<String, Object> _getPatch() {
+        if (_updatedFields.isEmpty()) {
+            return null;
+        }
+
+        Transaction transaction = Transaction.get();
+        Map<String, Object> patch = new HashMap<>();
+
+        if (_updatedFields.get(2))
+            patch.put(NAME, name.getValue(transaction));
+
+        if (_updatedFields.get(3))
+            patch.put(COUNT, count.getValue(transaction));
+
+        if (_updatedFields.get(4))
+            patch.put(BEAN, bean.getValue(transaction));
+
+        return patch;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ItemData{" +
+                "id=" + id +
+                ",name='" + name + '\'' +
+                ",count=" + count +
+                ",bean=" + bean +
+                '}';
+
+    }
+
+    public static ItemData parseJson(String json) {
+        return Entity.parseJson(ItemData.class, json);
+    }
+
+    public static class CodecImpl implements DataCodec<ItemData> {
+
+        private final CodecRegistry registry;
+
+        public CodecImpl(CodecRegistry registry) {
+            this.registry = registry;
+        }
+
+        public CodecRegistry getRegistry() {
+            return registry;
+        }
+
+        @Override
+        public ItemData decode(BsonReader reader, DecoderContext decoderContext) {
+            reader.readStartDocument();
+            ItemData value = new ItemData(); 
+        
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case ItemData._ID:
+                    case ItemData.ID:
+                        value.id.setValue(reader.readInt64());
+                        break;
+                    case ItemData.NAME:
+                        value.name.setValue(reader.readString());
+                        break;
+                    case ItemData.COUNT:
+                        value.count.setValue(reader.readInt32());
+                        break;
+                    case ItemData.BEAN:
+                        value.bean.setValue(decoderContext.decodeWithChildContext(registry.get(ItemBean.class), reader));
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            reader.readEndDocument();
+            return value;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, ItemData value, EncoderContext encoderContext) {
+            Transaction transaction = Transaction.get();
+            writer.writeStartDocument();
+
+            if (writer instanceof JsonWriter) {
+                writer.writeInt64(ItemData.ID, value.id.getValue(transaction));
+            } else {
+                writer.writeInt64(ItemData._ID, value.id.getValue(transaction));
+            }
+
+            writer.writeString(ItemData.NAME, value.name.getValue(transaction));
+            writer.writeInt32(ItemData.COUNT, value.count.getValue(transaction));
+
+            ItemBean $bean = value.bean.getValue(transaction);
+            if ($bean != null) {
+                writer.writeName(ItemData.BEAN);
+                encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, $bean);
+            }
+
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public boolean encodePatch(BsonWriter writer, ItemData value, EncoderContext encoderContext) {
+            if (value._updatedFields.isEmpty()) {
+                return false;
+            }
+
+            Transaction transaction = Transaction.get();
+
+            if (value._updatedFields.get(2)) {
+                writer.writeString(ItemData.NAME, value.name.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(3)) {
+                writer.writeInt32(ItemData.COUNT, value.count.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(4)) {
+                ItemBean $bean = value.bean.getValue(transaction);
+                if ($bean != null) {
+                    writer.writeName(ItemData.BEAN);
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, $bean);
+                } else {
+                    writer.writeNull(ItemData.BEAN);
+                }
+            }
+
+            return true;
+        }
+        
+        @Override
+        public Class<ItemData> getEncoderClass() {
+            return ItemData.class;
+        }
+
+    }
+
+    public static class BinaryCodecImpl implements BinaryCodec<ItemData> {
+
+        public static final BinaryCodecImpl INSTANCE = new BinaryCodecImpl();
+
+        @Override
+        public long getFingerprint() {
+            return _FINGERPRINT;
+        }
+
+        @Override
+        public Class<ItemData> getEncoderClass() {
+            return ItemData.class;
+        }
+
+        @Override
+        public void encode(BinaryWriter writer, ItemData value) {
+            Transaction transaction = Transaction.get();
+            writer.writeLongField(1, value.id.getValue(transaction));
+            writer.writeStringField(2, value.name.getValue(transaction));
+            writer.writeIntField(3, value.count.getValue(transaction));
+
+            ItemBean $bean = value.bean.getValue(transaction);
+            if ($bean != null) {
+                int mark = writer.beginNested(4);
+                ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, $bean);
+                writer.endNested(mark);
+            }
+
+            writer.writeEnd();
+        }
+
+        @Override
+        public ItemData decode(BinaryReader reader) {
+            ItemData value = new ItemData();
+
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    case 1:
+                        value.id.setValue(reader.readLong());
+                        break;
+                    case 2:
+                        value.name.setValue(reader.readString());
+                        break;
+                    case 3:
+                        value.count.setValue(reader.readInt());
+                        break;
+                    case 4:
+                        reader.beginNested();
+                        value.bean.setValue(ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        break;
+                    default:
+                        reader.skip(tag);
+                }
+            }
+
+            return value;
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,214 @@
+package quan.data.mongo;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.TruncatedArray;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.DataCache;
+import quan.data.Transaction;
+import quan.data.compact.CompactData;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 变更通知的主键转换和本进程写操作识别测试，不需要连接数据库
+ */
+@SuppressWarnings("unchecked")
+public class ChangeWatcherTest {
+
+    private static final String COLLECTION = "role";
+
+    private static UpdateDescription update(BsonDocument updatedFields) {
+        return new UpdateDescription(List.of(), updatedFields, List.of(), null);
+    }
+
+    @Test
+    public void testToId() {
+        ObjectId objectId = new ObjectId();
+        Assertions.assertEquals(objectId, ChangeWatcher.toId(new BsonObjectId(objectId)));
+        Assertions.assertEquals(1, ChangeWatcher.toId(new BsonInt32(1)));
+        Assertions.assertEquals(1L, ChangeWatcher.toId(new BsonInt64(1)));
+        Assertions.assertEquals("a", ChangeWatcher.toId(new BsonString("a")));
+        Assertions.assertEquals(new Date(1000), ChangeWatcher.toId(new BsonDateTime(1000)));
+    }
+
+    @Test
+    public void testMatchOperation() {
+        LocalWrites localWrites = new LocalWrites();
+        localWrites.recordInsert(COLLECTION, 1L);
+
+        //其他进程删除了数据，操作类型不一样，不能当成自己的写
+        Assertions.assertFalse(localWrites.consume(COLLECTION, 1L, OperationType.DELETE, null));
+        Assertions.assertTrue(localWrites.consume(COLLECTION, 1L, OperationType.INSERT, null));
+        Assertions.assertFalse(localWrites.consume(COLLECTION, 1L, OperationType.INSERT, null));
+        Assertions.assertEquals(0, localWrites.size());
+    }
+
+    @Test
+    public void testMatchUpdate() {
+        LocalWrites localWrites = new LocalWrites();
+        BsonDocument set = new BsonDocument("name", new BsonString("a"))
+                .append("list", new BsonArray(List.of(new BsonInt32(1), new BsonInt32(2), new BsonInt32(3))));
+        localWrites.recordUpdate(COLLECTION, 1L, set);
+
+        //其他进程写的值不一样
+        Assertions.assertFalse(localWrites.consume(COLLECTION, 1L, OperationType.UPDATE, update(new BsonDocument("name", new BsonString("b")))));
+        Assertions.assertFalse(localWrites.consume(COLLECTION, 1L, OperationType.UPDATE, update(new BsonDocument("other", new BsonInt32(1)))));
+        Assertions.assertEquals(1, localWrites.size());
+
+        //只有部分字段实际修改了，数组元素的修改以路径表示
+        BsonDocument updatedFields = new BsonDocument("list.2", new BsonInt32(3));
+        Assertions.assertTrue(localWrites.consume(COLLECTION, 1L, OperationType.UPDATE, update(updatedFields)));
+        Assertions.assertEquals(0, localWrites.size());
+
+        //数组被截断
+        localWrites.recordUpdate(COLLECTION, 1L, set);
+        UpdateDescription truncated = new UpdateDescription(List.of(), new BsonDocument(), List.of(new TruncatedArray("list", 3)), null);
+        Assertions.assertTrue(localWrites.consume(COLLECTION, 1L, OperationType.UPDATE, truncated));
+    }
+
+    @Test
+    public void testSkipNoopWrites() {
+        LocalWrites localWrites = new LocalWrites();
+
+        //第一次更新没有实际修改文档，不会有变更通知
+        localWrites.recordUpdate(COLLECTION, 1L, new BsonDocument("name", new BsonString("a")));
+        localWrites.recordUpdate(COLLECTION, 1L, new BsonDocument("name", new BsonString("b")));
+
+        Assertions.assertTrue(localWrites.consume(COLLECTION, 1L, OperationType.UPDATE, update(new BsonDocument("name", new BsonString("b")))));
+        Assertions.assertEquals(0, localWrites.size());
+
+        //之前的记录已经清除了，后面其他进程把值改回去不会被当成自己的写
+        Assertions.assertFalse(localWrites.consume(COLLECTION, 1L, OperationType.UPDATE, update(new BsonDocument("name", new BsonString("a")))));
+    }
+
+    /**
+     * 变更流用内存里的变更通知模拟的数据库对象
+     */
+    private static class ChangeDatabase extends Database {
+
+        final List<ChangeStreamDocument<Data<?>>> changes = new ArrayList<>();
+
+        final AtomicInteger watchCount = new AtomicInteger();
+
+        ChangeDatabase() {
+            super(MongoClients.create("mongodb://127.0.0.1:27017"), "test", "quan.data.mongo");
+        }
+
+        @Override
+        public <D extends Data<?>> MongoCollection<D> getCollection(Class<D> clazz) {
+            return ScannerTest.proxy(MongoCollection.class, (self, method, args) -> {
+                switch (method) {
+                    case "getNamespace":
+                        return new MongoNamespace("test", "compact");
+                    case "watch":
+                        watchCount.incrementAndGet();
+                        return ScannerTest.proxy(ChangeStreamIterable.class, (s, m, a) -> m.equals("cursor") ? cursor() : s);
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private MongoChangeStreamCursor<ChangeStreamDocument<Data<?>>> cursor() {
+            Iterator<ChangeStreamDocument<Data<?>>> iterator = changes.iterator();
+            BsonDocument[] token = new BsonDocument[1];
+            return ScannerTest.proxy(MongoChangeStreamCursor.class, (self, method, args) -> {
+                switch (method) {
+                    case "tryNext":
+                        if (!iterator.hasNext()) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                            return null;
+                        }
+                        ChangeStreamDocument<Data<?>> change = iterator.next();
+                        token[0] = change.getResumeToken();
+                        return change;
+                    case "getResumeToken":
+                        return token[0];
+                    default:
+                        return null;
+                }
+            });
+        }
+
+    }
+
+    private static ChangeStreamDocument<Data<?>> change(int token, Data<?> fullDocument) {
+        BsonDocument documentKey = new BsonDocument(Data._ID, new BsonInt64((Long) fullDocument.id()));
+        return new ChangeStreamDocument<>("update", new BsonDocument("token", new BsonInt32(token)), null, null, fullDocument, null, documentKey, null, null, null, null, null, null);
+    }
+
+    @Test
+    public void testSkipFailedChange() throws Exception {
+        ChangeDatabase database = new ChangeDatabase();
+        Map<String, BsonDocument> tokens = new ConcurrentHashMap<>();
+        ChangeWatcher changeWatcher = new ChangeWatcher(database, "node", new ChangeWatcher.TokenStore() {
+
+            @Override
+            public BsonDocument load(String key) {
+                return tokens.get(key);
+            }
+
+            @Override
+            public void save(String key, BsonDocument token) {
+                tokens.put(key, token);
+            }
+
+        }).setMode(ChangeWatcher.Mode.REFRESH);
+
+        try {
+            Transaction.run(() -> {
+                for (long i = 1; i <= 3; i++) {
+                    DataCache.put(new CompactData(i).setName("name" + i));
+                }
+                //其他进程把2的名字改成和1一样，刷新缓存时唯一索引冲突
+                database.changes.add(change(1, new CompactData(2L).setName("name1")));
+                database.changes.add(change(2, new CompactData(3L).setName("name3-1")));
+            });
+
+            changeWatcher.watch(CompactData.class);
+            BsonDocument lastToken = database.changes.get(1).getResumeToken();
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (!lastToken.equals(tokens.get("node:compact"))) {
+                    Thread.sleep(10);
+                }
+            });
+
+            //出错的变更跳过之后继续处理后面的变更，不会从出错之前的恢复令牌重新监听
+            Assertions.assertEquals(1, database.watchCount.get());
+            Assertions.assertEquals(1, changeWatcher.getStats().get(CompactData.class).getFailedCount());
+            Assertions.assertNull(DataCache.get(CompactData.class, 2L));
+            Assertions.assertEquals("name3-1", DataCache.get(CompactData.class, 3L).getName());
+        } finally {
+            changeWatcher.stop();
+            database.close();
+            DataCache.clear(CompactData.class);
+        }
+    }
+
+}
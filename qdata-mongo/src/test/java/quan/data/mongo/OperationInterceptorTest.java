@@ -0,0 +1,139 @@
+package quan.data.mongo;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Transaction;
+import quan.data.item.ItemData;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不使用织入时通过公开接口代理数据库的测试，数据库和集合用内存里的数据模拟，不需要连接数据库
+ */
+public class OperationInterceptorTest {
+
+    private final Database database = new Database(MongoClients.create("mongodb://127.0.0.1:27017"), "test", "quan.data.mongo");
+
+    private final List<ItemData> inserted = new ArrayList<>();
+
+    private final MongoDatabase db = OperationInterceptor.wrap(ScannerTest.proxy(MongoDatabase.class, (self, method, args) -> {
+        if (method.equals("getCollection")) {
+            return collection();
+        }
+        throw new UnsupportedOperationException(method);
+    }), database);
+
+    @AfterEach
+    public void close() {
+        database.close();
+    }
+
+    private MongoCollection<ItemData> collection() {
+        List<ItemData> items = Transaction.run(() -> List.of(new ItemData(1L).setName("item1"), new ItemData(2L).setName("item2")));
+        return ScannerTest.proxy(MongoCollection.class, (self, method, args) -> {
+            switch (method) {
+                case "find":
+                    return ScannerTest.proxy(FindIterable.class, (s, m, a) -> {
+                        switch (m) {
+                            case "iterator":
+                                return cursor(items);
+                            case "first":
+                                return items.get(0);
+                            default:
+                                return s;
+                        }
+                    });
+                case "insertOne":
+                    inserted.add((ItemData) args[0]);
+                    return null;
+                case "countDocuments":
+                    return (long) items.size();
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static MongoCursor<ItemData> cursor(List<ItemData> items) {
+        Iterator<ItemData> iterator = items.iterator();
+        return ScannerTest.proxy(MongoCursor.class, (self, method, args) -> {
+            switch (method) {
+                case "hasNext":
+                    return iterator.hasNext();
+                case "next":
+                    return iterator.next();
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private <T> T call(Callable<T> task) throws Exception {
+        return database.getExecutor().submit(task).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCheckThread() {
+        MongoCollection<ItemData> collection = db.getCollection(ItemData._NAME, ItemData.class);
+        ItemData itemData = Transaction.run(() -> new ItemData(3L));
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> collection.insertOne(itemData));
+        Assertions.assertEquals("只能在数据库线程里写数据库", e.getMessage());
+        Assertions.assertThrows(IllegalStateException.class, collection::countDocuments);
+        Assertions.assertTrue(inserted.isEmpty());
+
+        //查询结果在真正读数据库的时候才校验
+        FindIterable<ItemData> iterable = collection.find().batchSize(10);
+        Assertions.assertThrows(IllegalStateException.class, iterable::first);
+        Assertions.assertThrows(IllegalStateException.class, iterable::iterator);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> {
+            collection.insertOne(itemData);
+        }));
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        MongoCollection<ItemData> collection = db.getCollection(ItemData._NAME, ItemData.class);
+        ItemData itemData = Transaction.run(() -> new ItemData(3L));
+
+        call(() -> {
+            collection.insertOne(itemData);
+            return null;
+        });
+        Assertions.assertEquals(List.of(itemData), inserted);
+        Assertions.assertEquals(Long.valueOf(2), call(collection::countDocuments));
+
+        //查询出来的数据设置了访问器，有投影时只加载了投影的字段
+        List<ItemData> items = call(() -> {
+            List<ItemData> list = new ArrayList<>();
+            try (MongoCursor<ItemData> cursor = collection.find().projection(Projections.include(ItemData.NAME)).iterator()) {
+                cursor.forEachRemaining(list::add);
+            }
+            return list;
+        });
+        Assertions.assertEquals(2, items.size());
+        for (ItemData item : items) {
+            Assertions.assertSame(database, item._getAccessor());
+            Assertions.assertTrue(item.isPartial());
+        }
+
+        MongoCollection<ItemData> collection2 = db.getCollection(ItemData._NAME, ItemData.class);
+        ItemData first = call(() -> collection2.find(new Document()).first());
+        Assertions.assertSame(database, first._getAccessor());
+        Assertions.assertFalse(first.isPartial());
+    }
+
+}
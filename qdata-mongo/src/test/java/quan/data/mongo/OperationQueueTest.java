@@ -0,0 +1,85 @@
+package quan.data.mongo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据库操作队列的优先级测试
+ */
+public class OperationQueueTest {
+
+    private final long writeMaxWaitTime = OperationQueue.getMaxWaitTime(Priority.WRITE);
+
+    private final long backgroundMaxWaitTime = OperationQueue.getMaxWaitTime(Priority.BACKGROUND);
+
+    @AfterEach
+    public void reset() {
+        OperationQueue.setMaxWaitTime(Priority.WRITE, writeMaxWaitTime);
+        OperationQueue.setMaxWaitTime(Priority.BACKGROUND, backgroundMaxWaitTime);
+    }
+
+    private static OperationQueue.Task task(List<String> executed, String name, Priority priority) {
+        return new OperationQueue.Task(() -> executed.add(name), priority);
+    }
+
+    private static void drain(OperationQueue queue) {
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void testPriority() {
+        List<String> executed = new ArrayList<>();
+        OperationQueue queue = new OperationQueue();
+        queue.offer(task(executed, "background", Priority.BACKGROUND));
+        queue.offer(task(executed, "write1", Priority.WRITE));
+        queue.offer(task(executed, "interactive", Priority.INTERACTIVE));
+        queue.offer(task(executed, "write2", Priority.WRITE));
+
+        Assertions.assertEquals(4, queue.size());
+        drain(queue);
+        Assertions.assertEquals(List.of("interactive", "write1", "write2", "background"), executed);
+        Assertions.assertEquals(2, queue.getWaitStats(Priority.WRITE).getCount());
+    }
+
+    @Test
+    public void testMaxWaitTime() throws Exception {
+        OperationQueue.setMaxWaitTime(Priority.WRITE, TimeUnit.MILLISECONDS.toNanos(10));
+
+        List<String> executed = new ArrayList<>();
+        OperationQueue queue = new OperationQueue();
+        queue.offer(task(executed, "write", Priority.WRITE));
+        Thread.sleep(20);
+        queue.offer(task(executed, "interactive", Priority.INTERACTIVE));
+
+        //写操作等待超时后先于交互式操作执行
+        drain(queue);
+        Assertions.assertEquals(List.of("write", "interactive"), executed);
+    }
+
+    @Test
+    public void testLongestOverdueFirst() throws Exception {
+        OperationQueue.setMaxWaitTime(Priority.WRITE, TimeUnit.MILLISECONDS.toNanos(10));
+        OperationQueue.setMaxWaitTime(Priority.BACKGROUND, TimeUnit.MILLISECONDS.toNanos(10));
+
+        List<String> executed = new ArrayList<>();
+        OperationQueue queue = new OperationQueue();
+        queue.offer(task(executed, "background", Priority.BACKGROUND));
+        Thread.sleep(5);
+        queue.offer(task(executed, "write", Priority.WRITE));
+        Thread.sleep(20);
+        queue.offer(task(executed, "interactive", Priority.INTERACTIVE));
+
+        //都等待超时了，等待时间更长的后台操作先执行
+        drain(queue);
+        Assertions.assertEquals(List.of("background", "write", "interactive"), executed);
+    }
+
+}
@@ -0,0 +1,170 @@
+package quan.data.mongo;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.Transaction;
+import quan.data.item.ItemData;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+
+/**
+ * 并行扫描测试，集合用内存里的数据模拟，只实现了扫描用到的方法，不需要连接数据库
+ */
+@SuppressWarnings("unchecked")
+public class ScannerTest {
+
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    {
+        for (int i = 0; i < 4; i++) {
+            executors.add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new OperationQueue()));
+        }
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * 主键为1到count的集合，第failAt条数据查询出错，为0时不出错
+     */
+    private static MongoCollection<ItemData> collection(int count, int failAt) {
+        List<ItemData> items = Transaction.run(() -> {
+            List<ItemData> list = new ArrayList<>();
+            for (long i = 1; i <= count; i++) {
+                list.add(new ItemData(i));
+            }
+            return list;
+        });
+
+        return proxy(MongoCollection.class, (self, method, args) -> {
+            switch (method) {
+                case "withDocumentClass":
+                    //采样时返回所有主键
+                    List<BsonDocument> samples = new ArrayList<>();
+                    for (long i = 1; i <= count; i++) {
+                        samples.add(new BsonDocument(Data._ID, new BsonInt64(i)));
+                    }
+                    return proxy(MongoCollection.class, (s, m, a) -> proxy(AggregateIterable.class, (s2, m2, a2) -> {
+                        samples.forEach((Consumer<BsonDocument>) a2[0]);
+                        return null;
+                    }));
+                case "find":
+                    LongPredicate range = range(((Bson) args[0]).toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()));
+                    //batchSize等设置方法返回自己
+                    return proxy(FindIterable.class, (s, m, a) -> m.equals("iterator") ? cursor(items, failAt, range) : s);
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static MongoCursor<ItemData> cursor(List<ItemData> items, int failAt, LongPredicate range) {
+        Iterator<Long> ids = LongStream.rangeClosed(1, items.size()).filter(range).boxed().iterator();
+        return proxy(MongoCursor.class, (self, method, args) -> {
+            switch (method) {
+                case "hasNext":
+                    return ids.hasNext();
+                case "next":
+                    long id = ids.next();
+                    if (id == failAt) {
+                        throw new IllegalStateException("查询出错:" + id);
+                    }
+                    return items.get((int) id - 1);
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * 解析区间的$gte和$lt条件
+     */
+    private static LongPredicate range(BsonDocument filter) {
+        LongPredicate predicate = id -> true;
+        for (String key : filter.keySet()) {
+            BsonValue value = filter.get(key);
+            if (key.equals("$gte")) {
+                long from = value.asNumber().longValue();
+                predicate = predicate.and(id -> id >= from);
+            } else if (key.equals("$lt")) {
+                long to = value.asNumber().longValue();
+                predicate = predicate.and(id -> id < to);
+            } else if (value.isDocument()) {
+                predicate = predicate.and(range(value.asDocument()));
+            } else if (value.isArray()) {
+                for (BsonValue element : value.asArray()) {
+                    predicate = predicate.and(range(element.asDocument()));
+                }
+            }
+        }
+        return predicate;
+    }
+
+    /**
+     * 只需要处理方法名的代理，其他测试也用它模拟驱动的接口
+     */
+    interface Handler {
+
+        Object invoke(Object proxy, String method, Object[] args);
+
+    }
+
+    static <T> T proxy(Class<?> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> handler.invoke(p, method.getName(), args));
+    }
+
+    @Test
+    public void testScan() {
+        int count = 10000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Scanner<ItemData> scanner = new Scanner<>(collection(count, 0), null, executors, 4);
+
+        //缓冲区会多次填满，挂起的区间都要恢复，扫描完之后结束
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> scanner.scan(data -> Assertions.assertTrue(ids.add(data.getId()))));
+        Assertions.assertEquals(count, ids.size());
+    }
+
+    @Test
+    public void testScanEmpty() {
+        List<ItemData> scanned = new ArrayList<>();
+        Scanner<ItemData> scanner = new Scanner<>(collection(0, 0), null, executors, 4);
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> scanner.scan(scanned::add));
+        Assertions.assertTrue(scanned.isEmpty());
+    }
+
+    @Test
+    public void testScanError() {
+        Scanner<ItemData> scanner = new Scanner<>(collection(10000, 5000), null, executors, 4);
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> scanner.scan(data -> {
+            }));
+            Assertions.assertEquals("查询出错:5000", e.getMessage());
+        });
+    }
+
+}
@@ -0,0 +1,121 @@
+package quan.data.mongo;
+
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.DataCache;
+import quan.data.Transaction;
+import quan.data.WarmSnapshot;
+import quan.data.item.ItemData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预热重启和快照代数记录测试，代数记录保存在内存里，不需要连接数据库
+ */
+public class WarmRestartTest {
+
+    /**
+     * 代数记录保存在内存里的数据库对象
+     */
+    private static class WarmDatabase extends Database {
+
+        final Map<Object, Document> records = new ConcurrentHashMap<>();
+
+        WarmDatabase() {
+            super(MongoClients.create("mongodb://127.0.0.1:27017"), "test", "quan.data.mongo");
+        }
+
+        @Override
+        Document removeWarmSnapshotRecord(String key) {
+            return records.remove(key);
+        }
+
+        @Override
+        void replaceWarmSnapshotRecord(Document record) {
+            records.put(record.get(Data._ID), record);
+        }
+
+    }
+
+    private WarmDatabase database;
+
+    private Path file;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        database = new WarmDatabase();
+        file = Files.createTempFile("warm-restart", ".warm");
+        Files.delete(file);
+
+        Transaction.run(() -> {
+            for (long i = 1; i <= 10; i++) {
+                DataCache.put(new ItemData(i).setName("item" + i).setCount((int) i));
+            }
+        });
+    }
+
+    @AfterEach
+    public void clear() throws Exception {
+        if (database.warmSnapshotHook != null) {
+            Assertions.assertTrue(Runtime.getRuntime().removeShutdownHook(database.warmSnapshotHook));
+        }
+        database.close();
+        DataCache.clear(ItemData.class);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testWarmRestart() throws Exception {
+        //快照不存在时只注册钩子，多次调用只注册一次
+        Assertions.assertEquals(0, database.warmRestart(file));
+        Thread hook = database.warmSnapshotHook;
+        Assertions.assertNotNull(hook);
+        Assertions.assertEquals(0, database.warmRestart(file));
+        Assertions.assertSame(hook, database.warmSnapshotHook);
+
+        database.saveWarmSnapshot(file.toAbsolutePath());
+        Document record = database.records.get(file.toAbsolutePath().toString());
+        Assertions.assertEquals(WarmSnapshot.readGeneration(file), record.getLong("generation"));
+
+        DataCache.clear(ItemData.class);
+        Assertions.assertEquals(10, database.warmRestart(file));
+        Assertions.assertEquals("item5", DataCache.get(ItemData.class, 5L).getName());
+        Assertions.assertSame(hook, database.warmSnapshotHook);
+
+        //代数记录取出后就删除了，同一份快照不会再被加载
+        Assertions.assertTrue(database.records.isEmpty());
+        DataCache.clear(ItemData.class);
+        Assertions.assertEquals(0, database.warmRestart(file));
+        Assertions.assertNull(DataCache.get(ItemData.class, 5L));
+    }
+
+    @Test
+    public void testGenerationMismatch() throws Exception {
+        database.saveWarmSnapshot(file.toAbsolutePath());
+        database.records.values().forEach(record -> record.put("generation", record.getLong("generation") + 1));
+
+        DataCache.clear(ItemData.class);
+        Assertions.assertEquals(0, database.warmRestart(file));
+        Assertions.assertNull(DataCache.get(ItemData.class, 5L));
+    }
+
+    @Test
+    public void testSaveAfterShutdown() throws Exception {
+        //退出钩子执行时线程池可能已经关闭了，直接在当前线程保存
+        Database.shutdownExecutors(database.getClient());
+        database.saveWarmSnapshot(file.toAbsolutePath());
+
+        Document record = database.records.get(file.toAbsolutePath().toString());
+        Assertions.assertNotNull(record);
+        Assertions.assertEquals(WarmSnapshot.readGeneration(file), record.getLong("generation"));
+    }
+
+}
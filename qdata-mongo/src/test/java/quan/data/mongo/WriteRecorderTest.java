@@ -0,0 +1,92 @@
+package quan.data.mongo;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 写数据库统计测试
+ */
+public class WriteRecorderTest {
+
+    private static RawBsonDocument update() {
+        BsonDocument set = new BsonDocument("name", new BsonString("abc")).append("a", new BsonInt32(1));
+        return new RawBsonDocument(new BsonDocument("$set", set), new BsonDocumentCodec());
+    }
+
+    @Test
+    public void testRecordUpdate() {
+        WriteRecorder recorder = new WriteRecorder();
+        RawBsonDocument update = update();
+        recorder.recordUpdate("role", update);
+        recorder.recordUpdate("role", update);
+
+        WriteStats stats = recorder.getStats(10, false).get("role");
+        Assertions.assertEquals(2, stats.getUpdates());
+        Assertions.assertEquals(update.getByteBuffer().remaining() * 2L, stats.getUpdateBytes());
+        Assertions.assertEquals(update.getByteBuffer().remaining(), stats.getMaxUpdateBytes());
+
+        //字段的字节数包含类型、字段名和值
+        Map<String, WriteStats.FieldStats> fields = new HashMap<>();
+        stats.getFields().forEach(f -> fields.put(f.getName(), f));
+        Assertions.assertEquals(2, fields.get("name").getCount());
+        Assertions.assertEquals(1 + 5 + 4 + 4, fields.get("name").getAverageBytes());
+        Assertions.assertEquals(1 + 2 + 4, fields.get("a").getAverageBytes());
+        Assertions.assertEquals("name", stats.getFields().get(0).getName());
+
+        Assertions.assertEquals(1, recorder.getStats(1, false).get("role").getFields().size());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        WriteRecorder recorder = new WriteRecorder();
+        RawBsonDocument update = update();
+        int threads = 4, updates = 10000;
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread writer = new Thread(() -> {
+                for (int j = 0; j < updates; j++) {
+                    recorder.recordUpdate("role", update);
+                    recorder.recordDelete("role");
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+
+        //一边写一边清零，所有的统计加起来不能少
+        long totalUpdates = 0, totalDeletes = 0, totalFieldCount = 0;
+        while (writers.stream().anyMatch(Thread::isAlive)) {
+            WriteStats stats = recorder.getStats(10, true).get("role");
+            if (stats != null) {
+                totalUpdates += stats.getUpdates();
+                totalDeletes += stats.getDeletes();
+                totalFieldCount += stats.getFields().stream().filter(f -> f.getName().equals("a")).mapToLong(WriteStats.FieldStats::getCount).sum();
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        WriteStats stats = recorder.getStats(10, true).get("role");
+        totalUpdates += stats.getUpdates();
+        totalDeletes += stats.getDeletes();
+        totalFieldCount += stats.getFields().stream().filter(f -> f.getName().equals("a")).mapToLong(WriteStats.FieldStats::getCount).sum();
+
+        Assertions.assertEquals(threads * updates, totalUpdates);
+        Assertions.assertEquals(threads * updates, totalDeletes);
+        Assertions.assertEquals(threads * updates, totalFieldCount);
+        Assertions.assertEquals(0, recorder.getStats(10, false).get("role").getUpdates());
+    }
+
+}
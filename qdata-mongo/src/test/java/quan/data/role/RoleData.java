@@ -10,6 +10,7 @@ import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.json.JsonWriter;
 import quan.data.*;
+import quan.data.binary.*;
 import quan.data.field.*;
 import quan.data.item.ItemBean;
 import quan.data.util.NumberUtils;
@@ -20,6 +21,7 @@ import quan.data.util.NumberUtils;
  */
 @Index(name = "aa", fields = {RoleData.A, RoleData.A2}, type = Index.Type.NORMAL)
 @Index(name = "bb", fields = {RoleData.B, RoleData.B2}, type = Index.Type.NORMAL)
+@Index(name = "dd", fields = {RoleData.D}, type = Index.Type.NORMAL)
 @Index(name = "name", fields = {RoleData.NAME, RoleData.NAME2}, type = Index.Type.TEXT)
 public class RoleData extends Data<Long> {
 
@@ -87,6 +89,16 @@ public class RoleData extends Data<Long> {
 
     public static final String MAP2 = "map2";
 
+    /**
+     * 所有的字段名，下标加1就是字段在数据中的位置
+     */
+    public static final List<String> _FIELDS = List.of(ID, NAME, NAME2, ROLE_TYPE, A, A2, B, B2, S, I, F, D, ITEM, ITEMS, SET, LIST, MAP, SET2, LIST2, MAP2);
+
+    /**
+     * 二进制格式的结构指纹，字段的位置、名字或者类型变化之后会改变
+     */
+    public static final long _FINGERPRINT = 0x5244F9149E2A5D00L;
+
 
     private final BaseField<Long> id = new BaseField<>((long) 0);
 
@@ -160,19 +172,23 @@ public class RoleData extends Data<Long> {
     }
 
     public String getName() {
+        _checkLoaded(2);
         return name.getValue();
     }
 
     public RoleData setName(String name) {
+        _checkLoaded(2);
         this.name.setValue(name, this, 2);
         return this;
     }
 
     public String getName2() {
+        _checkLoaded(3);
         return name2.getValue();
     }
 
     public RoleData setName2(String name2) {
+        _checkLoaded(3);
         this.name2.setValue(name2, this, 3);
         return this;
     }
@@ -181,6 +197,7 @@ public class RoleData extends Data<Long> {
      * 角色类型
      */
     public RoleType getRoleType() {
+        _checkLoaded(4);
         return RoleType.valueOf(roleType.getValue());
     }
 
@@ -188,43 +205,52 @@ public class RoleData extends Data<Long> {
      * 角色类型
      */
     public RoleData setRoleType(RoleType roleType) {
+        _checkLoaded(4);
         this.roleType.setValue(roleType.value, this, 4);
         return this;
     }
 
     public int getA() {
+        _checkLoaded(5);
         return a.getValue();
     }
 
     public RoleData setA(int a) {
+        _checkLoaded(5);
         this.a.setValue(a, this, 5);
         return this;
     }
 
     public int getA2() {
+        _checkLoaded(6);
         return a2.getValue();
     }
 
     public RoleData setA2(int a2) {
+        _checkLoaded(6);
         this.a2.setValue(a2, this, 6);
         return this;
     }
 
     public boolean getB() {
+        _checkLoaded(7);
         return b.getValue();
     }
 
     public RoleData setB(boolean b) {
+        _checkLoaded(7);
         this.b.setValue(b, this, 7);
         return this;
     }
 
     public int getB2() {
+        _checkLoaded(8);
         return b2.getValue();
     }
 
     public RoleData setB2(int b2) {
         NumberUtils.validateRange(b2, 1, 20, "参数[b2]");
+        _checkLoaded(8);
         this.b2.setValue(b2, this, 8);
         return this;
     }
@@ -233,6 +259,7 @@ public class RoleData extends Data<Long> {
      * sssss
      */
     public short getS() {
+        _checkLoaded(9);
         return s.getValue();
     }
 
@@ -241,6 +268,7 @@ public class RoleData extends Data<Long> {
      */
     public RoleData setS(short s) {
         NumberUtils.validateRange(s, 1, 20, "参数[s]");
+        _checkLoaded(9);
         this.s.setValue(s, this, 9);
         return this;
     }
@@ -249,6 +277,7 @@ public class RoleData extends Data<Long> {
      * iiii
      */
     public int getI() {
+        _checkLoaded(10);
         return i.getValue();
     }
 
@@ -256,6 +285,7 @@ public class RoleData extends Data<Long> {
      * iiii
      */
     public RoleData setI(int i) {
+        _checkLoaded(10);
         this.i.setValue(i, this, 10);
         return this;
     }
@@ -264,6 +294,7 @@ public class RoleData extends Data<Long> {
      * ffff
      */
     public float getF() {
+        _checkLoaded(11);
         return f.getValue();
     }
 
@@ -271,16 +302,19 @@ public class RoleData extends Data<Long> {
      * ffff
      */
     public RoleData setF(float f) {
+        _checkLoaded(11);
         this.f.setValue(f, this, 11);
         return this;
     }
 
     public double getD() {
+        _checkLoaded(12);
         return d.getValue();
     }
 
     public RoleData setD(double d) {
         NumberUtils.validateRange(d, 1, 20, "参数[d]");
+        _checkLoaded(12);
         this.d.setValue(d, this, 12);
         return this;
     }
@@ -289,6 +323,7 @@ public class RoleData extends Data<Long> {
      * 道具
      */
     public ItemBean getItem() {
+        _checkLoaded(13);
         return item.getValue();
     }
 
@@ -296,39 +331,95 @@ public class RoleData extends Data<Long> {
      * 道具
      */
     public RoleData setItem(ItemBean item) {
+        _checkLoaded(13);
         this.item.setValue(item, this, 13);
         return this;
     }
 
     public Map<Integer, ItemBean> getItems() {
+        _checkLoaded(14);
         return items.getDelegate();
     }
 
     public Set<Boolean> getSet() {
+        _checkLoaded(15);
         return set.getDelegate();
     }
 
     public List<String> getList() {
+        _checkLoaded(16);
         return list.getDelegate();
     }
 
     public Map<Integer, Integer> getMap() {
+        _checkLoaded(17);
         return map.getDelegate();
     }
 
     public Set<ItemBean> getSet2() {
+        _checkLoaded(18);
         return set2.getDelegate();
     }
 
     public List<ItemBean> getList2() {
+        _checkLoaded(19);
         return list2.getDelegate();
     }
 
     public Map<Integer, ItemBean> getMap2() {
+        _checkLoaded(20);
         return map2.getDelegate();
     }
 
 
+    @Override
+    public Object _getFieldValue(int position) {
+        switch (position) {
+            case 1:
+                return getId();
+            case 2:
+                return getName();
+            case 3:
+                return getName2();
+            case 4:
+                return getRoleType();
+            case 5:
+                return getA();
+            case 6:
+                return getA2();
+            case 7:
+                return getB();
+            case 8:
+                return getB2();
+            case 9:
+                return getS();
+            case 10:
+                return getI();
+            case 11:
+                return getF();
+            case 12:
+                return getD();
+            case 13:
+                return getItem();
+            case 14:
+                return getItems();
+            case 15:
+                return getSet();
+            case 16:
+                return getList();
+            case 17:
+                return getMap();
+            case 18:
+                return getSet2();
+            case 19:
+                return getList2();
+            case 20:
+                return getMap2();
+            default:
+                throw new IllegalArgumentException("字段位置[" + position + "]不存在");
+        }
+    }
+
     @Override
     protected Map<String, Object> _getPatch() {
         if (_updatedFields.isEmpty()) {
@@ -427,7 +518,7 @@ public class RoleData extends Data<Long> {
         return Entity.parseJson(RoleData.class, json);
     }
 
-    public static class CodecImpl implements Codec<RoleData> {
+    public static class CodecImpl implements DataCodec<RoleData> {
 
         private final CodecRegistry registry;
 
@@ -624,6 +715,121 @@ public class RoleData extends Data<Long> {
 
             writer.writeEndDocument();
         }
+
+        @Override
+        public boolean encodePatch(BsonWriter writer, RoleData value, EncoderContext encoderContext) {
+            if (value._updatedFields.isEmpty()) {
+                return false;
+            }
+
+            Transaction transaction = Transaction.get();
+
+            if (value._updatedFields.get(2)) {
+                writer.writeString(RoleData.NAME, value.name.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(3)) {
+                writer.writeString(RoleData.NAME2, value.name2.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(4)) {
+                writer.writeInt32(RoleData.ROLE_TYPE, value.roleType.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(5)) {
+                writer.writeInt32(RoleData.A, value.a.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(6)) {
+                writer.writeInt32(RoleData.A2, value.a2.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(7)) {
+                writer.writeBoolean(RoleData.B, value.b.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(8)) {
+                writer.writeInt32(RoleData.B2, value.b2.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(9)) {
+                writer.writeInt32(RoleData.S, value.s.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(10)) {
+                writer.writeInt32(RoleData.I, value.i.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(11)) {
+                writer.writeDouble(RoleData.F, value.f.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(12)) {
+                writer.writeDouble(RoleData.D, value.d.getValue(transaction));
+            }
+
+            if (value._updatedFields.get(13)) {
+                ItemBean $item = value.item.getValue(transaction);
+                if ($item != null) {
+                    writer.writeName(RoleData.ITEM);
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, $item);
+                } else {
+                    writer.writeNull(RoleData.ITEM);
+                }
+            }
+
+            if (value._updatedFields.get(14)) {
+                writer.writeStartDocument(RoleData.ITEMS);
+                for (Map.Entry<Integer, ItemBean> itemsEntry : value.items.getCurrent(transaction).entrySet()) {
+                    writer.writeName(String.valueOf(itemsEntry.getKey()));
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, itemsEntry.getValue());
+                }
+                writer.writeEndDocument();
+            }
+
+            if (value._updatedFields.get(15)) {
+                writer.writeStartArray(RoleData.SET);
+                for (Boolean setValue : value.set.getCurrent(transaction)) {
+                    writer.writeBoolean(setValue);
+                }
+                writer.writeEndArray();
+            }
+
+            if (value._updatedFields.get(16)) {
+                writer.writeStartArray(RoleData.LIST);
+                for (String listValue : value.list.getCurrent(transaction)) {
+                    writer.writeString(listValue);
+                }
+                writer.writeEndArray();
+            }
+
+            if (value._updatedFields.get(17)) {
+                writer.writeStartDocument(RoleData.MAP);
+                for (Map.Entry<Integer, Integer> mapEntry : value.map.getCurrent(transaction).entrySet()) {
+                    writer.writeName(String.valueOf(mapEntry.getKey()));
+                    writer.writeInt32(mapEntry.getValue());
+                }
+                writer.writeEndDocument();
+            }
+
+            if (value._updatedFields.get(18)) {
+                writer.writeStartArray(RoleData.SET2);
+                for (ItemBean set2Value : value.set2.getCurrent(transaction)) {
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, set2Value);
+                }
+                writer.writeEndArray();
+            }
+
+            if (value._updatedFields.get(19)) {
+                writer.writeStartArray(RoleData.LIST2);
+                for (ItemBean list2Value : value.list2.getCurrent(transaction)) {
+                    encoderContext.encodeWithChildContext(registry.get(ItemBean.class), writer, list2Value);
+                }
+                writer.writeEndArray();
+            }
+
+            return true;
+        }
         
         @Override
         public Class<RoleData> getEncoderClass() {
@@ -632,4 +838,199 @@ public class RoleData extends Data<Long> {
 
     }
 
+    public static class BinaryCodecImpl implements BinaryCodec<RoleData> {
+
+        public static final BinaryCodecImpl INSTANCE = new BinaryCodecImpl();
+
+        @Override
+        public long getFingerprint() {
+            return _FINGERPRINT;
+        }
+
+        @Override
+        public Class<RoleData> getEncoderClass() {
+            return RoleData.class;
+        }
+
+        @Override
+        public void encode(BinaryWriter writer, RoleData value) {
+            Transaction transaction = Transaction.get();
+            writer.writeLongField(1, value.id.getValue(transaction));
+            writer.writeStringField(2, value.name.getValue(transaction));
+            writer.writeStringField(3, value.name2.getValue(transaction));
+            writer.writeIntField(4, value.roleType.getValue(transaction));
+            writer.writeIntField(5, value.a.getValue(transaction));
+            writer.writeIntField(6, value.a2.getValue(transaction));
+            writer.writeBoolField(7, value.b.getValue(transaction));
+            writer.writeIntField(8, value.b2.getValue(transaction));
+            writer.writeIntField(9, value.s.getValue(transaction));
+            writer.writeIntField(10, value.i.getValue(transaction));
+            writer.writeFloatField(11, value.f.getValue(transaction));
+            writer.writeDoubleField(12, value.d.getValue(transaction));
+
+            ItemBean $item = value.item.getValue(transaction);
+            if ($item != null) {
+                int mark = writer.beginNested(13);
+                ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, $item);
+                writer.endNested(mark);
+            }
+
+            Map<Integer, ItemBean> $items = value.items.getCurrent(transaction);
+            if (!$items.isEmpty()) {
+                int mark = writer.beginNested(14);
+                writer.writeVarInt($items.size());
+                for (Map.Entry<Integer, ItemBean> itemsEntry : $items.entrySet()) {
+                    writer.writeInt(itemsEntry.getKey());
+                    ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, itemsEntry.getValue());
+                }
+                writer.endNested(mark);
+            }
+
+            Collection<Boolean> $set = value.set.getCurrent(transaction);
+            if (!$set.isEmpty()) {
+                int mark = writer.beginNested(15);
+                writer.writeVarInt($set.size());
+                for (Boolean setValue : $set) {
+                    writer.writeBool(setValue);
+                }
+                writer.endNested(mark);
+            }
+
+            Collection<String> $list = value.list.getCurrent(transaction);
+            if (!$list.isEmpty()) {
+                int mark = writer.beginNested(16);
+                writer.writeVarInt($list.size());
+                for (String listValue : $list) {
+                    writer.writeString(listValue);
+                }
+                writer.endNested(mark);
+            }
+
+            Map<Integer, Integer> $map = value.map.getCurrent(transaction);
+            if (!$map.isEmpty()) {
+                int mark = writer.beginNested(17);
+                writer.writeVarInt($map.size());
+                for (Map.Entry<Integer, Integer> mapEntry : $map.entrySet()) {
+                    writer.writeInt(mapEntry.getKey());
+                    writer.writeInt(mapEntry.getValue());
+                }
+                writer.endNested(mark);
+            }
+
+            Collection<ItemBean> $set2 = value.set2.getCurrent(transaction);
+            if (!$set2.isEmpty()) {
+                int mark = writer.beginNested(18);
+                writer.writeVarInt($set2.size());
+                for (ItemBean set2Value : $set2) {
+                    ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, set2Value);
+                }
+                writer.endNested(mark);
+            }
+
+            Collection<ItemBean> $list2 = value.list2.getCurrent(transaction);
+            if (!$list2.isEmpty()) {
+                int mark = writer.beginNested(19);
+                writer.writeVarInt($list2.size());
+                for (ItemBean list2Value : $list2) {
+                    ItemBean.BinaryCodecImpl.INSTANCE.encode(writer, list2Value);
+                }
+                writer.endNested(mark);
+            }
+
+            writer.writeEnd();
+        }
+
+        @Override
+        public RoleData decode(BinaryReader reader) {
+            RoleData value = new RoleData();
+
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    case 1:
+                        value.id.setValue(reader.readLong());
+                        break;
+                    case 2:
+                        value.name.setValue(reader.readString());
+                        break;
+                    case 3:
+                        value.name2.setValue(reader.readString());
+                        break;
+                    case 4:
+                        value.roleType.setValue(reader.readInt());
+                        break;
+                    case 5:
+                        value.a.setValue(reader.readInt());
+                        break;
+                    case 6:
+                        value.a2.setValue(reader.readInt());
+                        break;
+                    case 7:
+                        value.b.setValue(reader.readBool());
+                        break;
+                    case 8:
+                        value.b2.setValue(reader.readInt());
+                        break;
+                    case 9:
+                        value.s.setValue((short) reader.readInt());
+                        break;
+                    case 10:
+                        value.i.setValue(reader.readInt());
+                        break;
+                    case 11:
+                        value.f.setValue(reader.readFloat());
+                        break;
+                    case 12:
+                        value.d.setValue(reader.readDouble());
+                        break;
+                    case 13:
+                        reader.beginNested();
+                        value.item.setValue(ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        break;
+                    case 14:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.items.plus(reader.readInt(), ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        }
+                        break;
+                    case 15:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.set.plus(reader.readBool());
+                        }
+                        break;
+                    case 16:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.list.plus(reader.readString());
+                        }
+                        break;
+                    case 17:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.map.plus(reader.readInt(), reader.readInt());
+                        }
+                        break;
+                    case 18:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.set2.plus(ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        }
+                        break;
+                    case 19:
+                        reader.beginNested();
+                        for (int i = reader.readVarInt(); i > 0; i--) {
+                            value.list2.plus(ItemBean.BinaryCodecImpl.INSTANCE.decode(reader));
+                        }
+                        break;
+                    default:
+                        reader.skip(tag);
+                }
+            }
+
+            return value;
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Entity;
+import quan.data.Transaction;
+import quan.data.binary.Snapshot;
+import quan.data.role.RoleData;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二进制格式测试
+ */
+public class BinaryTest {
+
+    @Test
+    public void testEncode() {
+        RoleData roleData1 = Transaction.run(() -> Fixtures.newRoleData(Long.MAX_VALUE));
+
+        byte[] bytes = roleData1.toBinary();
+        RoleData roleData2 = Entity.parseBinary(RoleData.class, bytes);
+
+        Assertions.assertEquals(roleData1.toJson(), roleData2.toJson());
+        Assertions.assertTrue(bytes.length < roleData1.toJson().length() / 2);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        List<RoleData> roleDataList = new ArrayList<>();
+        Transaction.run(() -> {
+            for (int i = 1; i <= 2000; i++) {
+                roleDataList.add(Fixtures.newRoleData(i));
+            }
+        });
+
+        Path file = Files.createTempFile("role", ".snapshot");
+        try {
+            Assertions.assertEquals(roleDataList.size(), Snapshot.save(file, RoleData.class, roleDataList));
+
+            List<RoleData> loadedList = Snapshot.load(file, RoleData.class);
+            Assertions.assertEquals(roleDataList.size(), loadedList.size());
+            for (int i = 0; i < roleDataList.size(); i++) {
+                Assertions.assertEquals(roleDataList.get(i).toJson(), loadedList.get(i).toJson());
+            }
+
+            //模拟旧版本类保存的快照
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(8).putLong(0, RoleData._FINGERPRINT + 1), 8);
+            }
+            Assertions.assertThrows(IllegalStateException.class, () -> Snapshot.load(file, RoleData.class));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.DataAccessor;
+import quan.data.Entity;
+import quan.data.Transaction;
+import quan.data.compact.CompactData;
+import quan.data.field.BaseField;
+import quan.data.field.SlotsField;
+import quan.data.util.Footprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 紧凑模式的数据测试
+ */
+public class CompactDataTest {
+
+    @Test
+    public void testTransaction() {
+        CompactData compactData = Transaction.run(() -> Fixtures.newCompactData(1L));
+        Assertions.assertEquals("name1", compactData.getName());
+        Assertions.assertEquals(1L << 40, compactData.getExp());
+        Assertions.assertEquals(1.5F, compactData.getSpeed());
+        Assertions.assertTrue(compactData.getVip());
+
+        Transaction.run(() -> {
+            compactData.setLevel(20).setName("name2");
+            Assertions.assertEquals(20, compactData.getLevel());
+
+            //内嵌事务回滚只丢弃内嵌事务的修改
+            Transaction.run(() -> {
+                compactData.setLevel(30).setRate(0.5D);
+                compactData.getBeans().get(1).setCount(2);
+                Assertions.assertEquals(30, compactData.getLevel());
+                Transaction.rollback();
+            }, true);
+
+            Assertions.assertEquals(20, compactData.getLevel());
+            Assertions.assertEquals(-0.25D, compactData.getRate());
+
+            Transaction.run(() -> compactData.setVipLevel((short) 5), true);
+        });
+
+        Assertions.assertEquals(20, compactData.getLevel());
+        Assertions.assertEquals("name2", compactData.getName());
+        Assertions.assertEquals(5, compactData.getVipLevel());
+        Assertions.assertEquals(1L << 41, compactData.getBeans().get(1).getCount());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> {
+            compactData.setLevel(40);
+            throw new IllegalStateException();
+        }));
+        Assertions.assertEquals(20, compactData.getLevel());
+    }
+
+    @Test
+    public void testConcurrentFields() throws Exception {
+        CompactData compactData = Transaction.run(() -> Fixtures.newCompactData(3L));
+
+        //两个事务同时修改同一个数据的不同字段，都写好日志之后再一起提交，提交时不能互相覆盖
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> Transaction.run(() -> {
+            compactData.setLevel(21).setSignature("signature3");
+            await(barrier);
+        }));
+        Transaction.run(() -> {
+            compactData.setExp(1L << 42).setSpeed(2.5F);
+            await(barrier);
+        });
+        future.get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(21, compactData.getLevel());
+        Assertions.assertEquals("signature3", compactData.getSignature());
+        Assertions.assertEquals(1L << 42, compactData.getExp());
+        Assertions.assertEquals(2.5F, compactData.getSpeed());
+        Assertions.assertEquals("name3", compactData.getName());
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testPatch() {
+        Map<Data<?>, Map<String, Object>> updates = new HashMap<>();
+        DataAccessor accessor = new DataAccessor() {
+
+            @Override
+            public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+                return null;
+            }
+
+            @Override
+            public <D extends Data<?>> Iterable<D> find(Class<D> clazz, Map<String, Object> conditions) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> _updates) {
+                updates.putAll(_updates);
+            }
+
+        };
+
+        CompactData compactData = Transaction.run(() -> {
+            CompactData data = Fixtures.newCompactData(2L);
+            data.insert(accessor);
+            return data;
+        });
+        Transaction.run(() -> {
+            compactData.setLevel(11).setSignature("signature2");
+            compactData.getBeans().get(1).setName("bean2");
+        });
+
+        Map<String, Object> patch = updates.get(compactData);
+        Assertions.assertEquals(Set.of(CompactData.LEVEL, CompactData.SIGNATURE, CompactData.BEANS), patch.keySet());
+        Assertions.assertEquals(11, patch.get(CompactData.LEVEL));
+        Assertions.assertEquals("signature2", patch.get(CompactData.SIGNATURE));
+    }
+
+    @Test
+    public void testCodec() {
+        //长整数用超过int范围的值，否则宽松模式的JSON解析时会被当成int
+        CompactData compactData1 = Transaction.run(() -> Fixtures.newCompactData(1L << 32));
+
+        CompactData compactData2 = Entity.parseJson(CompactData.class, compactData1.toJson());
+        Assertions.assertEquals(compactData1.toJson(), compactData2.toJson());
+        Assertions.assertEquals(compactData1.toString(), compactData2.toString());
+
+        CompactData compactData3 = Entity.parseBinary(CompactData.class, compactData1.toBinary());
+        Assertions.assertEquals(compactData1.toJson(), compactData3.toJson());
+        Assertions.assertEquals("bean1", compactData3.getBeans().get(1).getName());
+    }
+
+    @Test
+    public void testFootprint() {
+        List<CompactData> compactDataList = Transaction.run(() -> {
+            List<CompactData> list = new ArrayList<>();
+            for (long i = 1; i <= 10; i++) {
+                list.add(new CompactData(i).setName("compact" + i).setLevel((int) i));
+            }
+            return list;
+        });
+
+        //基本类型字段不再是一个字段一个对象
+        Footprint footprint = Footprint.of(compactDataList);
+        Assertions.assertTrue(footprint.getTypeFootprints().stream().anyMatch(t -> t.getType() == SlotsField.class && t.getCount() == 10));
+        Assertions.assertTrue(footprint.getTypeFootprints().stream().noneMatch(t -> t.getType() == BaseField.class));
+    }
+
+}
@@ -0,0 +1,209 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.DataAccessor;
+import quan.data.DataCache;
+import quan.data.Transaction;
+import quan.data.WarmSnapshot;
+import quan.data.compact.CompactData;
+import quan.data.item.ItemBean;
+import quan.data.item.ItemData;
+import quan.data.role.RoleData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 内存缓存和索引测试
+ */
+public class DataCacheTest {
+
+    /**
+     * 不写数据库的存取器
+     */
+    static final DataAccessor accessor = new DataAccessor() {
+
+        @Override
+        public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+            return null;
+        }
+
+        @Override
+        public <D extends Data<?>> Iterable<D> find(Class<D> clazz, Map<String, Object> conditions) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+        }
+
+    };
+
+    @AfterEach
+    public void clear() {
+        DataCache.clear(RoleData.class);
+        DataCache.clear(CompactData.class);
+        DataCache.clear(ItemData.class);
+    }
+
+    @Test
+    public void testIndex() {
+        RoleData roleData1 = Transaction.run(() -> new RoleData(1L).setA(1).setA2(10));
+        RoleData roleData2 = Transaction.run(() -> new RoleData(2L).setA(2).setA2(20));
+
+        Transaction.run(() -> {
+            roleData1.insert(accessor);
+            roleData2.insert(accessor);
+        });
+
+        DataCache.put(roleData1);
+        DataCache.put(roleData2);
+
+        Assertions.assertSame(roleData1, DataCache.get(RoleData.class, 1L));
+        Assertions.assertEquals(Set.of(roleData1), DataCache.find(RoleData.class, "aa", 1, 10));
+        Assertions.assertEquals(List.of(roleData1, roleData2), DataCache.findRange(RoleData.class, RoleData.A, 1, true, null, false));
+
+        Transaction.run(() -> roleData1.setA(3));
+        Assertions.assertTrue(DataCache.find(RoleData.class, "aa", 1, 10).isEmpty());
+        Assertions.assertEquals(Set.of(roleData1), DataCache.find(RoleData.class, "aa", 3, 10));
+        Assertions.assertEquals(List.of(roleData2, roleData1), DataCache.findRange(RoleData.class, RoleData.A, 2, true, 3, true));
+
+        //回滚不会修改索引
+        Transaction.run(() -> {
+            roleData2.setA(5);
+            Transaction.rollback();
+        });
+        Assertions.assertEquals(Set.of(roleData2), DataCache.find(RoleData.class, "aa", 2, 20));
+
+        Transaction.run(() -> roleData2.delete());
+        Assertions.assertNull(DataCache.get(RoleData.class, 2L));
+        Assertions.assertTrue(DataCache.find(RoleData.class, "aa", 2, 20).isEmpty());
+    }
+
+    @Test
+    public void testUniqueIndex() {
+        CompactData compactData1 = Transaction.run(() -> new CompactData(1L).setName("a"));
+        CompactData compactData2 = Transaction.run(() -> new CompactData(2L).setName("b"));
+        Transaction.run(() -> {
+            compactData1.insert(accessor);
+            compactData2.insert(accessor);
+        });
+        DataCache.put(compactData1);
+        DataCache.put(compactData2);
+
+        //放进缓存时冲突
+        CompactData compactData3 = Transaction.run(() -> new CompactData(3L).setName("a"));
+        Assertions.assertThrows(IllegalStateException.class, () -> DataCache.put(compactData3));
+        Assertions.assertNull(DataCache.get(CompactData.class, 3L));
+
+        //事务提交之前冲突，事务失败，数据和索引都不会修改
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> compactData2.setName("a")));
+        Assertions.assertEquals("b", compactData2.getName());
+        Assertions.assertEquals(Set.of(compactData1), DataCache.find(CompactData.class, "name", "a"));
+        Assertions.assertEquals(Set.of(compactData2), DataCache.find(CompactData.class, "name", "b"));
+
+        //同一个事务中两个数据改成相同的值
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> {
+            compactData1.setName("c");
+            compactData2.setName("c");
+        }));
+        Assertions.assertTrue(DataCache.find(CompactData.class, "name", "c").isEmpty());
+
+        //同一个事务中交换索引值不算冲突
+        Transaction.run(() -> {
+            compactData1.setName("b");
+            compactData2.setName("a");
+        });
+        Assertions.assertEquals(Set.of(compactData2), DataCache.find(CompactData.class, "name", "a"));
+        Assertions.assertEquals(Set.of(compactData1), DataCache.find(CompactData.class, "name", "b"));
+
+        //同一个事务中删除的数据让出了索引值
+        Transaction.run(() -> {
+            compactData1.delete();
+            compactData2.setName("b");
+        });
+        Assertions.assertEquals(Set.of(compactData2), DataCache.find(CompactData.class, "name", "b"));
+        DataCache.put(compactData3);
+        Assertions.assertEquals(Set.of(compactData3), DataCache.find(CompactData.class, "name", "a"));
+    }
+
+    @Test
+    public void testWarmSnapshot() throws Exception {
+        Transaction.run(() -> {
+            for (long i = 1; i <= 100; i++) {
+                RoleData roleData = new RoleData(i).setName("name" + i).setA((int) i).setA2(10);
+                roleData.getList().add("aaa" + i);
+                roleData.insert(accessor);
+                DataCache.put(roleData);
+            }
+        });
+
+        String json = DataCache.get(RoleData.class, 5L).toJson();
+        Path file = Files.createTempFile("role", ".warm");
+        try {
+            Assertions.assertEquals(100, WarmSnapshot.save(file, 1L));
+            Assertions.assertEquals(1L, WarmSnapshot.readGeneration(file));
+
+            DataCache.clear(RoleData.class);
+            Assertions.assertNull(DataCache.get(RoleData.class, 5L));
+
+            Assertions.assertEquals(100, WarmSnapshot.load(file, accessor));
+            RoleData roleData = DataCache.get(RoleData.class, 5L);
+            Assertions.assertEquals(json, roleData.toJson());
+            Assertions.assertEquals(Set.of(roleData), DataCache.find(RoleData.class, "aa", 5, 10));
+            Assertions.assertEquals(100, DataCache.getAll(RoleData.class).size());
+
+            //恢复了访问器和状态，已经插入过的数据不能再插入
+            Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> roleData.insert(accessor)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testWarmSnapshotLazy() throws Exception {
+        Transaction.run(() -> {
+            for (long i = 1; i <= 100; i++) {
+                ItemData itemData = new ItemData(i).setName("item" + i).setCount((int) i);
+                itemData.setBean(new ItemBean((int) i, "bean" + i, new ArrayList<>(List.of(1, 2))));
+                itemData.insert(accessor);
+                DataCache.put(itemData);
+            }
+        });
+
+        String json = DataCache.get(ItemData.class, 5L).toJson();
+        Path file = Files.createTempFile("item", ".warm");
+        try {
+            Assertions.assertEquals(100, WarmSnapshot.save(file, 2L));
+            DataCache.clear(ItemData.class);
+            Assertions.assertNull(DataCache.get(ItemData.class, 5L));
+
+            //没有索引的数据类加载时不解码，第一次访问时才解码
+            Assertions.assertEquals(100, WarmSnapshot.load(file, accessor));
+            ItemData itemData = DataCache.get(ItemData.class, 5L);
+            Assertions.assertEquals(json, itemData.toJson());
+            Assertions.assertSame(itemData, DataCache.get(ItemData.class, 5L));
+            Assertions.assertNull(DataCache.get(ItemData.class, 101L));
+            Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> itemData.insert(accessor)));
+
+            //还没解码的记录被新放进缓存的数据替换掉
+            ItemData itemData6 = Transaction.run(() -> new ItemData(6L).setName("item6-1"));
+            DataCache.put(itemData6);
+            Assertions.assertSame(itemData6, DataCache.get(ItemData.class, 6L));
+
+            Assertions.assertEquals(100, DataCache.getAll(ItemData.class).size());
+            Assertions.assertEquals("item7", DataCache.get(ItemData.class, 7L).getName());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
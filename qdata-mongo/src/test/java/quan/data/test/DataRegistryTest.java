@@ -0,0 +1,49 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.DataRegistry;
+import quan.data.DataRegistryImpl;
+import quan.data.compact.CompactData;
+import quan.data.item.ItemBean;
+import quan.data.item.ItemData;
+import quan.data.role.RoleData;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 数据类注册表的查找测试，测试数据类生成在包前缀quan.data下
+ */
+public class DataRegistryTest {
+
+    @Test
+    public void testLoadPrefix() {
+        DataRegistry registry = DataRegistry.load("quan.data");
+        Assertions.assertEquals(DataRegistryImpl.class, registry.getClass());
+        Assertions.assertEquals(List.of(CompactData.class, ItemData.class, RoleData.class), registry.getDataClasses());
+    }
+
+    @Test
+    public void testLoadSubPackage() {
+        //向上找到包前缀下的注册表，只保留这个包下的数据类
+        DataRegistry registry = DataRegistry.load("quan.data.role");
+        Assertions.assertEquals(List.of(RoleData.class), registry.getDataClasses());
+        Assertions.assertEquals(Set.of(RoleData.class), registry.getDataNames().keySet());
+        Assertions.assertTrue(registry.getCodecFactories().containsKey(ItemBean.class));
+        Assertions.assertTrue(registry.getBinaryCodecs().containsKey(ItemBean.class));
+
+        Assertions.assertNull(DataRegistry.load("quan.data.none"));
+    }
+
+    @Test
+    public void testLoadService() {
+        //包前缀下面的注册表通过ServiceLoader找到
+        DataRegistry registry = DataRegistry.load("quan");
+        Assertions.assertEquals(DataRegistryImpl.class, registry.getClass());
+        Assertions.assertEquals(3, registry.getDataNames().size());
+
+        Assertions.assertNull(DataRegistry.load("other"));
+    }
+
+}
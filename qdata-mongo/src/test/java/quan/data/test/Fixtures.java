@@ -0,0 +1,46 @@
+package quan.data.test;
+
+import quan.data.compact.CompactBean;
+import quan.data.compact.CompactData;
+import quan.data.item.ItemBean;
+import quan.data.role.RoleData;
+import quan.data.role.RoleType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试共用的数据，各种类型的字段都设置了值，需要在事务中调用
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static RoleData newRoleData(long id) {
+        RoleData roleData = new RoleData(id);
+        roleData.setName("name" + id).setRoleType(RoleType.type2).setA(-100).setB(true).setS((short) 5);
+        roleData.setI(Integer.MIN_VALUE).setF(1.5F).setD(2.25D);
+        roleData.setItem(new ItemBean(1, "item", List.of(1, 2, 3)));
+        for (int i = 0; i < 10; i++) {
+            roleData.getList().add("aaa" + i);
+            roleData.getMap().put(i, -i);
+            roleData.getItems().put(i, new ItemBean(i, "item" + i, new ArrayList<>()));
+            roleData.getList2().add(new ItemBean(i, "", List.of(i)));
+        }
+        roleData.getSet().add(false);
+        roleData.getSet2().add(new ItemBean(2, "item2", new ArrayList<>()));
+        return roleData;
+    }
+
+    static CompactData newCompactData(long id) {
+        CompactData compactData = new CompactData(id);
+        compactData.setName("name" + id).setLevel(10).setExp(1L << 40).setVip(true).setVipLevel((short) 3);
+        compactData.setSpeed(1.5F).setRate(-0.25D).setSignature("signature");
+        compactData.setItem(new ItemBean(1, "item", List.of(1, 2)));
+        compactData.getItems().add(new ItemBean(2, "item2", new ArrayList<>()));
+        compactData.getBeans().put(1, new CompactBean(1, "bean1", 1L << 41));
+        return compactData;
+    }
+
+}
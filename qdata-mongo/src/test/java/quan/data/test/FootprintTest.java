@@ -0,0 +1,48 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Transaction;
+import quan.data.field.ListField;
+import quan.data.role.RoleData;
+import quan.data.util.Footprint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存占用分析测试
+ */
+public class FootprintTest {
+
+    @Test
+    public void testFootprint() {
+        List<RoleData> roleDataList = Transaction.run(() -> {
+            List<RoleData> list = new ArrayList<>();
+            for (long i = 1; i <= 10; i++) {
+                RoleData roleData = new RoleData(i).setName("role" + i);
+                for (int j = 0; j < 100; j++) {
+                    roleData.getList().add("aaa" + j);
+                }
+                list.add(roleData);
+            }
+            return list;
+        });
+
+        Footprint footprint = Footprint.of(roleDataList);
+        System.err.println(footprint);
+
+        Footprint.DataFootprint dataFootprint = footprint.getDataFootprints().get(0);
+        Assertions.assertEquals(RoleData.class, dataFootprint.getDataClass());
+        Assertions.assertEquals(10, dataFootprint.getCount());
+        Assertions.assertEquals(footprint.getTotalBytes(), dataFootprint.getBytes());
+        Assertions.assertEquals(RoleData.LIST, dataFootprint.getFields().keySet().iterator().next());
+        Assertions.assertTrue(footprint.getTypeFootprints().stream().anyMatch(t -> t.getType() == ListField.class && t.getCount() >= 10));
+
+        //重复添加的数据不会再统计
+        long totalBytes = footprint.getTotalBytes();
+        footprint.add(roleDataList.get(0));
+        Assertions.assertEquals(totalBytes, footprint.getTotalBytes());
+    }
+
+}
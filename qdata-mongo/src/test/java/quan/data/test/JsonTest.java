@@ -0,0 +1,53 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Entity;
+import quan.data.Transaction;
+import quan.data.item.ItemBean;
+import quan.data.role.RoleData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 流式JSON编解码测试
+ */
+public class JsonTest {
+
+    @Test
+    public void testStreaming() {
+        RoleData roleData = Transaction.run(() -> {
+            RoleData r = new RoleData(Long.MAX_VALUE).setName("名字😀").setA(10);
+            r.setItem(new ItemBean(1, "item", List.of(1, 2, 3)));
+            for (int i = 0; i < 1000; i++) {
+                r.getList().add("aaa" + i);
+            }
+            return r;
+        });
+        String json = roleData.toJson();
+
+        StringBuilder builder = new StringBuilder();
+        roleData.toJson(builder);
+        Assertions.assertEquals(json, builder.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        roleData.toJson(out);
+        Assertions.assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+
+        ByteBuffer buffer = ByteBuffer.allocate(out.size() + 10);
+        buffer.put((byte) 0);
+        roleData.toJson(buffer);
+        Assertions.assertEquals(json, new String(buffer.array(), 1, buffer.position() - 1, StandardCharsets.UTF_8));
+        Assertions.assertThrows(BufferOverflowException.class, () -> roleData.toJson(ByteBuffer.allocate(10)));
+
+        Assertions.assertEquals(json, Entity.parseJson(RoleData.class, new StringReader(json)).toJson());
+        Assertions.assertEquals(json, Entity.parseJson(RoleData.class, new ByteArrayInputStream(out.toByteArray())).toJson());
+    }
+
+}
@@ -0,0 +1,156 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import quan.data.LogDatabase;
+import quan.data.Transaction;
+import quan.data.item.ItemBean;
+import quan.data.role.RoleData;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 本地日志结构数据存取器测试
+ */
+public class LogDatabaseTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testWriteAndReplay() throws Exception {
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Transaction.run(() -> {
+                for (long i = 1; i <= 10; i++) {
+                    new RoleData(i).setName("role" + i).setA((int) (i % 3)).insert(database);
+                }
+            });
+
+            RoleData roleData = database.find(RoleData.class, 1L);
+            Transaction.run(() -> {
+                roleData.setName("role1-1").setB(true);
+                roleData.getItems().put(1, new ItemBean(1, "item1", new ArrayList<>()));
+            });
+            Transaction.run(() -> roleData.setName("role1-2"));
+
+            Transaction.run(() -> database.find(RoleData.class, 2L).delete());
+            Assertions.assertNull(database.find(RoleData.class, 2L));
+            Assertions.assertEquals(9, database.count(RoleData.class));
+        }
+
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Assertions.assertEquals(9, database.count(RoleData.class));
+            Assertions.assertNull(database.find(RoleData.class, 2L));
+
+            RoleData roleData = database.find(RoleData.class, 1L);
+            Assertions.assertEquals("role1-2", roleData.getName());
+            Assertions.assertTrue(roleData.getB());
+            Assertions.assertEquals("item1", roleData.getItems().get(1).getName());
+
+            List<RoleData> roleDataList = database.find(RoleData.class, Map.of(RoleData.A, 1));
+            Assertions.assertEquals(List.of(1L, 4L, 7L, 10L), roleDataList.stream().map(RoleData::getId).sorted().collect(Collectors.toList()));
+
+            //找到的数据已经绑定了存取器，可以直接修改
+            Transaction.run(() -> roleData.setA(100));
+        }
+
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Assertions.assertEquals(100, database.find(RoleData.class, 1L).getA());
+        }
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        try (LogDatabase database = new LogDatabase(directory, 4096, 0)) {
+            Transaction.run(() -> {
+                for (long i = 1; i <= 20; i++) {
+                    new RoleData(i).setName("role" + i).insert(database);
+                }
+            });
+
+            for (int n = 0; n < 50; n++) {
+                int a = n;
+                Transaction.run(() -> {
+                    for (long i = 1; i <= 20; i++) {
+                        database.find(RoleData.class, i).setA(a).setName("role" + i + "-" + a);
+                    }
+                });
+            }
+            Transaction.run(() -> database.find(RoleData.class, 20L).delete());
+
+            int segments = database.getSegmentCount();
+            Assertions.assertTrue(segments > 2);
+            Assertions.assertTrue(database.compact() > 0);
+            Assertions.assertTrue(database.getSegmentCount() < segments);
+            Assertions.assertEquals(49, database.find(RoleData.class, 1L).getA());
+        }
+
+        try (LogDatabase database = new LogDatabase(directory, 4096, 0)) {
+            Assertions.assertEquals(19, database.count(RoleData.class));
+            Assertions.assertNull(database.find(RoleData.class, 20L));
+            Assertions.assertEquals("role19-49", database.find(RoleData.class, 19L).getName());
+        }
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Transaction.run(() -> new RoleData(1L).setName("role1").insert(database));
+            Transaction.run(() -> new RoleData(2L).setName("role2").insert(database));
+        }
+
+        //模拟最后一次写入只写了一半
+        Path segment;
+        try (Stream<Path> paths = Files.list(directory)) {
+            segment = paths.filter(p -> p.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Assertions.assertEquals("role1", database.find(RoleData.class, 1L).getName());
+            Assertions.assertNull(database.find(RoleData.class, 2L));
+
+            Transaction.run(() -> new RoleData(3L).setName("role3").insert(database));
+        }
+
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Assertions.assertEquals(2, database.count(RoleData.class));
+            Assertions.assertEquals("role3", database.find(RoleData.class, 3L).getName());
+        }
+    }
+
+    @Test
+    public void testInsertRecordSize() throws Exception {
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Transaction.run(() -> {
+                for (long i = 1; i <= 10; i++) {
+                    new RoleData(i).setName("role" + i).insert(database);
+                }
+            });
+        }
+
+        //插入记录只包含文档本身，不会带上编码缓冲区多余的空间
+        long size;
+        try (Stream<Path> paths = Files.list(directory)) {
+            size = paths.filter(p -> p.toString().endsWith(".seg")).mapToLong(p -> p.toFile().length()).sum();
+        }
+        Assertions.assertTrue(size < 10 * 1024, "段文件大小:" + size);
+
+        try (LogDatabase database = new LogDatabase(directory, 1024 * 1024, 0)) {
+            Assertions.assertEquals(10, database.count(RoleData.class));
+            Assertions.assertEquals("role10", database.find(RoleData.class, 10L).getName());
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package quan.data.test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Transaction;
+import quan.data.TransactionWatchdog;
+import quan.data.Transactional;
+import quan.data.metrics.LogLinearHistogram;
+import quan.data.metrics.Metrics;
+import quan.data.metrics.MetricsRegistry;
+import quan.data.metrics.SimpleMetricsRegistry;
+import quan.data.role.RoleData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 度量、JFR事件和慢事务检测测试
+ */
+public class MetricsTest {
+
+    @AfterEach
+    public void reset() {
+        Metrics.setRegistry(MetricsRegistry.NOOP);
+        Transaction.setWatchdog(null);
+    }
+
+    @Test
+    public void testHistogram() {
+        LogLinearHistogram histogram = new LogLinearHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        Assertions.assertEquals(100000, histogram.count());
+        Assertions.assertEquals(100000000, histogram.max());
+        Assertions.assertEquals(50000500, histogram.mean(), 0.1);
+        Assertions.assertEquals(50000000, histogram.percentile(50), 50000000 / 64D);
+        Assertions.assertEquals(99000000, histogram.percentile(99), 99000000 / 64D);
+        Assertions.assertEquals(100000000, histogram.percentile(100));
+    }
+
+    @Test
+    public void testTransaction() {
+        Transaction.run(() -> {
+        });
+
+        SimpleMetricsRegistry registry = new SimpleMetricsRegistry();
+        Metrics.setRegistry(registry);
+
+        RoleData roleData = Transaction.run(() -> new RoleData(1L).setName("aaa").setA(1));
+        Transaction.run(() -> {
+            roleData.setA(2);
+            Transaction.run(() -> {
+                roleData.setB(true);
+                Transaction.rollback();
+            }, true);
+        });
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> {
+            roleData.setA(3);
+            throw new IllegalStateException();
+        }));
+
+        Assertions.assertEquals(2, registry.timer(Metrics.TRANSACTION_TIME, "result", "succeeded").count());
+        Assertions.assertEquals(1, registry.timer(Metrics.TRANSACTION_TIME, "result", "failed").count());
+        Assertions.assertEquals(2, registry.timer(Metrics.COMMIT_TIME).count());
+        Assertions.assertEquals(1, registry.counter(Metrics.NESTED_TRANSACTIONS).count());
+        Assertions.assertEquals(3, registry.histogram(Metrics.TRANSACTION_FIELDS).max());
+        Assertions.assertEquals(2, roleData.getA());
+    }
+
+    @Test
+    public void testFlightRecorder() throws Exception {
+        RoleData roleData = Transaction.run(() -> new RoleData(2L));
+
+        Path file = Files.createTempFile("transaction", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("quan.data.Transaction").withoutThreshold();
+            recording.enable("quan.data.NestedTransaction").withoutThreshold();
+            recording.start();
+
+            Transaction.run(() -> {
+                roleData.setA(1);
+                Transaction.run(() -> {
+                    roleData.setA(2);
+                    Transaction.rollback();
+                }, true);
+            });
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent transaction = events.stream().filter(e -> e.getEventType().getName().equals("quan.data.Transaction")).findFirst().orElseThrow();
+            Assertions.assertFalse(transaction.getBoolean("failed"));
+            Assertions.assertEquals(2, transaction.getInt("maxDepth"));
+            Assertions.assertEquals(1, transaction.getInt("fieldLogs"));
+
+            RecordedEvent nested = events.stream().filter(e -> e.getEventType().getName().equals("quan.data.NestedTransaction")).findFirst().orElseThrow();
+            Assertions.assertTrue(nested.getBoolean("failed"));
+            Assertions.assertEquals(2, nested.getInt("depth"));
+        } finally {
+            Files.delete(file);
+        }
+
+        Assertions.assertEquals(1, roleData.getA());
+    }
+
+    @Transactional
+    public void touch(List<RoleData> roleDataList, int a) {
+        for (RoleData roleData : roleDataList) {
+            roleData.setName("name" + a).setA(a);
+        }
+    }
+
+    @Test
+    public void testWatchdog() {
+        List<RoleData> roleDataList = Transaction.run(() -> {
+            List<RoleData> list = new ArrayList<>();
+            for (long i = 10; i < 13; i++) {
+                RoleData roleData = new RoleData(i);
+                roleData.insert(DataCacheTest.accessor);
+                list.add(roleData);
+            }
+            return list;
+        });
+
+        TransactionWatchdog watchdog = new TransactionWatchdog(1000, 5, 60000);
+        List<TransactionWatchdog.Report> reports = new ArrayList<>();
+        watchdog.addListener(reports::add);
+        Transaction.setWatchdog(watchdog);
+
+        touch(roleDataList.subList(0, 1), 1);
+        Assertions.assertTrue(reports.isEmpty());
+
+        touch(roleDataList, 2);
+        touch(roleDataList, 3);
+        Assertions.assertEquals(1, reports.size());
+        Assertions.assertEquals(reports, watchdog.getReports());
+        Assertions.assertEquals(1, watchdog.getSuppressed());
+
+        TransactionWatchdog.Report report = reports.get(0);
+        Assertions.assertEquals(MetricsTest.class.getName() + ".touch", report.getOrigin());
+        Assertions.assertEquals(3, report.getDataLogs());
+        Assertions.assertEquals(1, report.getUpdates().size());
+
+        TransactionWatchdog.Updates updates = report.getUpdates().get(0);
+        Assertions.assertEquals(RoleData.class, updates.getDataClass());
+        Assertions.assertEquals(3, updates.getCount());
+        Assertions.assertEquals(3, updates.getFields().get(RoleData.NAME));
+        Assertions.assertEquals(3, updates.getFields().get(RoleData.A));
+        Assertions.assertNull(updates.getFields().get(RoleData.B));
+    }
+
+}
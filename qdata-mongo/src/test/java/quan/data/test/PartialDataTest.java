@@ -0,0 +1,68 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.DataAccessor;
+import quan.data.DataCache;
+import quan.data.Transaction;
+import quan.data.role.RoleData;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 部分加载的数据测试
+ */
+public class PartialDataTest {
+
+    @Test
+    public void testPartial() {
+        Map<Data<?>, Map<String, Object>> patches = new HashMap<>();
+
+        DataAccessor accessor = new DataAccessor() {
+
+            @Override
+            public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+                return null;
+            }
+
+            @Override
+            public <D extends Data<?>> Iterable<D> find(Class<D> clazz, Map<String, Object> conditions) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+                if (updates != null) {
+                    patches.putAll(updates);
+                }
+            }
+
+        };
+
+        RoleData roleData = Transaction.run(() -> new RoleData(1L));
+
+        //模拟数据库查询出来只加载了字段a
+        Data._setAccessor(roleData, accessor);
+        BitSet loadedFields = new BitSet();
+        loadedFields.set(RoleData._FIELDS.indexOf(RoleData.A) + 1);
+        Data._setLoadedFields(roleData, loadedFields);
+
+        Assertions.assertTrue(roleData.isPartial());
+        Assertions.assertEquals(1L, roleData.id());
+        Assertions.assertEquals(0, roleData.getA());
+        Assertions.assertThrows(IllegalStateException.class, roleData::getA2);
+        Assertions.assertThrows(IllegalStateException.class, roleData::getList);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DataCache.put(roleData));
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> roleData.setA2(1)));
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> roleData.insert(accessor)));
+
+        Transaction.run(() -> roleData.setA(2));
+        Assertions.assertEquals(Map.of(RoleData.A, 2), patches.get(roleData));
+    }
+
+}
@@ -0,0 +1,156 @@
+package quan.data.test;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.Data;
+import quan.data.DataAccessor;
+import quan.data.EncodedPatch;
+import quan.data.EntityCodecProvider;
+import quan.data.Transaction;
+import quan.data.item.ItemBean;
+import quan.data.role.RoleData;
+import quan.data.role.RoleType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 直接编码的更新补丁和字段名:字段值的更新补丁编码结果要一致，不需要连接数据库
+ */
+public class PatchTest {
+
+    private static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(EntityCodecProvider.DEFAULT_REGISTRY, MongoClientSettings.getDefaultCodecRegistry());
+
+    /**
+     * 在提交时分别用两种方式生成更新补丁
+     */
+    private static class PatchAccessor implements DataAccessor {
+
+        BsonDocument encodedPatch;
+
+        BsonDocument mapPatch;
+
+        @Override
+        public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+            return null;
+        }
+
+        @Override
+        public <D extends Data<?>> Iterable<D> find(Class<D> clazz, Map<String, Object> conditions) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+        }
+
+        @Override
+        public Map<String, Object> getPatch(Data<?> data) {
+            EncodedPatch encoded = (EncodedPatch) EncodedPatch.of(data, REGISTRY);
+            encodedPatch = encoded.getUpdate().toBsonDocument();
+
+            //作为字段名:字段值读取时和编码好的$set内容一致
+            Assertions.assertEquals(encoded.getSet().keySet(), encoded.keySet());
+            encoded.forEach((name, value) -> Assertions.assertEquals(encoded.getSet().get(name), value));
+
+            Map<String, Object> patch = DataAccessor.super.getPatch(data);
+            Document document = new Document("$set", toStringKeys(patch));
+            mapPatch = document.toBsonDocument(BsonDocument.class, REGISTRY);
+            return patch;
+        }
+
+    }
+
+    /**
+     * 数据库里的文档键都是字符串，非字符串键的映射要转换一下才能用驱动的编解码器编码
+     */
+    @SuppressWarnings("unchecked")
+    private static Object toStringKeys(Object value) {
+        if (!(value instanceof Map) || value instanceof Document) {
+            return value;
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        ((Map<Object, Object>) value).forEach((k, v) -> map.put(String.valueOf(k), toStringKeys(v)));
+        return map;
+    }
+
+    private static RoleData insert(PatchAccessor accessor) {
+        return Transaction.run(() -> {
+            RoleData roleData = Fixtures.newRoleData(1L);
+            roleData.insert(accessor);
+            return roleData;
+        });
+    }
+
+    @Test
+    public void testScalarAndBean() {
+        PatchAccessor accessor = new PatchAccessor();
+        RoleData roleData = insert(accessor);
+
+        Transaction.run(() -> {
+            roleData.setName("role1-1").setRoleType(RoleType.type2).setA(2).setB(true).setS((short) 3).setF(1.5F).setD(2.5D);
+            roleData.setItem(new ItemBean(3, "item3", new ArrayList<>(List.of(3))));
+            roleData.getList2().add(new ItemBean(4, "item4", new ArrayList<>()));
+        });
+
+        Assertions.assertEquals(accessor.mapPatch, accessor.encodedPatch);
+        Assertions.assertEquals("role1-1", accessor.encodedPatch.getDocument("$set").getString(RoleData.NAME).getValue());
+    }
+
+    @Test
+    public void testNullBean() {
+        PatchAccessor accessor = new PatchAccessor();
+        RoleData roleData = insert(accessor);
+
+        Transaction.run(() -> roleData.setItem(null));
+
+        Assertions.assertEquals(accessor.mapPatch, accessor.encodedPatch);
+        Assertions.assertTrue(accessor.encodedPatch.getDocument("$set").isNull(RoleData.ITEM));
+    }
+
+    @Test
+    public void testEmptiedCollections() {
+        PatchAccessor accessor = new PatchAccessor();
+        RoleData roleData = insert(accessor);
+
+        Transaction.run(() -> {
+            roleData.getItems().clear();
+            roleData.getList().clear();
+            roleData.getMap().clear();
+            roleData.getSet2().clear();
+        });
+
+        Assertions.assertEquals(accessor.mapPatch, accessor.encodedPatch);
+        BsonDocument set = accessor.encodedPatch.getDocument("$set");
+        Assertions.assertTrue(set.getDocument(RoleData.ITEMS).isEmpty());
+        Assertions.assertTrue(set.getArray(RoleData.LIST).isEmpty());
+        Assertions.assertTrue(set.getDocument(RoleData.MAP).isEmpty());
+        Assertions.assertTrue(set.getArray(RoleData.SET2).isEmpty());
+    }
+
+    @Test
+    public void testNonStringKeys() {
+        PatchAccessor accessor = new PatchAccessor();
+        RoleData roleData = insert(accessor);
+
+        Transaction.run(() -> {
+            roleData.getItems().put(-2, new ItemBean(2, "item2", new ArrayList<>(List.of(5))));
+            roleData.getMap().put(100, 1000);
+        });
+
+        Assertions.assertEquals(accessor.mapPatch, accessor.encodedPatch);
+        BsonDocument set = accessor.encodedPatch.getDocument("$set");
+        Assertions.assertEquals("item2", set.getDocument(RoleData.ITEMS).getDocument("-2").getString("name").getValue());
+        Assertions.assertEquals(1000, set.getDocument(RoleData.MAP).getInt32("100").getValue());
+    }
+
+}
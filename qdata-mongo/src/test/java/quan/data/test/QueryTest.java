@@ -0,0 +1,141 @@
+package quan.data.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import quan.data.DataCache;
+import quan.data.Transaction;
+import quan.data.query.Query;
+import quan.data.role.RoleData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 本地查询测试
+ */
+public class QueryTest {
+
+    @AfterEach
+    public void clear() {
+        DataCache.clear(RoleData.class);
+    }
+
+    @Test
+    public void testQuery() {
+        int size = Query.PARALLEL_THRESHOLD * 2;
+        List<RoleData> roleDataList = new ArrayList<>();
+
+        Transaction.run(() -> {
+            for (long i = 1; i <= size; i++) {
+                RoleData roleData = new RoleData(i).setA((int) (i % 10)).setA2((int) i).setB(i % 3 == 0);
+                roleData.insert(DataCacheTest.accessor);
+                roleDataList.add(roleData);
+            }
+        });
+
+        roleDataList.forEach(DataCache::put);
+
+        Query<RoleData> query1 = Query.of(RoleData.class).eq(RoleData.A, 1L).eq(RoleData.A2, 11);
+        Assertions.assertEquals("INDEX(aa)", query1.explain());
+        Assertions.assertEquals(List.of(roleDataList.get(10)), query1.list());
+
+        Query<RoleData> query2 = Query.of(RoleData.class).gte(RoleData.A, 8).lt(RoleData.A, 9).desc(RoleData.A2).limit(3);
+        Assertions.assertEquals("RANGE(aa)", query2.explain());
+        Assertions.assertEquals(List.of(size - 4, size - 14, size - 24), query2.list().stream().map(RoleData::getA2).collect(Collectors.toList()));
+        Assertions.assertEquals(size / 10, query2.count());
+
+        Query<RoleData> query3 = Query.of(RoleData.class).eq(RoleData.I, 0).where(RoleData.A2, v -> (int) v % 7 == 0);
+        Assertions.assertEquals("PARALLEL_SCAN", query3.explain());
+        Assertions.assertEquals(size / 7, query3.count());
+        Assertions.assertEquals(7, query3.asc(RoleData.A2).first().getA2());
+
+        Transaction.run(() -> roleDataList.get(0).setA(100));
+        Assertions.assertEquals(roleDataList.get(0), Query.of(RoleData.class).gt(RoleData.A, 50).first());
+    }
+
+    /**
+     * 走索引的查询和遍历数据的查询结果要一致，索引字段d和没有索引的字段f的值相同
+     */
+    @Test
+    public void testNumberKeys() {
+        int size = Query.PARALLEL_THRESHOLD * 2;
+        List<RoleData> roleDataList = new ArrayList<>();
+
+        Transaction.run(() -> {
+            for (long i = 1; i <= size; i++) {
+                double d = 1 + i % 4 * 0.5;
+                RoleData roleData = new RoleData(i).setD(d).setF((float) d);
+                roleData.insert(DataCacheTest.accessor);
+                roleDataList.add(roleData);
+            }
+        });
+
+        roleDataList.forEach(DataCache::put);
+
+        for (Object value : List.of(2, 2L, 2.0D, 2.0F, 1.5D, 1.5F, 3, 2.25D)) {
+            Query<RoleData> indexQuery = Query.of(RoleData.class).eq(RoleData.D, value);
+            Query<RoleData> scanQuery = Query.of(RoleData.class).eq(RoleData.F, value);
+            Assertions.assertEquals("INDEX(dd)", indexQuery.explain());
+            Assertions.assertEquals("PARALLEL_SCAN", scanQuery.explain());
+            Assertions.assertEquals(ids(scanQuery.list()), ids(indexQuery.list()), "value:" + value);
+        }
+
+        Assertions.assertEquals(size / 4, Query.of(RoleData.class).eq(RoleData.D, 2).count());
+
+        Query<RoleData> rangeQuery = Query.of(RoleData.class).gte(RoleData.D, 2).lt(RoleData.D, 2.5F);
+        Assertions.assertEquals("RANGE(dd)", rangeQuery.explain());
+        Assertions.assertEquals(ids(Query.of(RoleData.class).gte(RoleData.F, 2).lt(RoleData.F, 2.5F).list()), ids(rangeQuery.list()));
+    }
+
+    /**
+     * 多个线程同时修改不同数据的索引字段，索引键相同的数据共用同一个集合，修改之后索引不能丢数据
+     */
+    @Test
+    public void testConcurrentIndex() throws Exception {
+        int threads = 4, count = 100;
+        List<RoleData> roleDataList = new ArrayList<>();
+
+        Transaction.run(() -> {
+            for (long i = 1; i <= threads * count; i++) {
+                RoleData roleData = new RoleData(i).setA2((int) i);
+                roleData.insert(DataCacheTest.accessor);
+                roleDataList.add(roleData);
+            }
+        });
+
+        roleDataList.forEach(DataCache::put);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<RoleData> part = roleDataList.subList(t * count, (t + 1) * count);
+            futures.add(executor.submit(() -> {
+                for (int i = 1; i <= 200; i++) {
+                    int a = i % 2;
+                    part.forEach(roleData -> Transaction.run(() -> roleData.setA(a)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(threads * count, Query.of(RoleData.class).eq(RoleData.A, 0).count());
+        Assertions.assertEquals(threads * count, Query.of(RoleData.class).gte(RoleData.A, 0).lte(RoleData.A, 1).count());
+        for (RoleData roleData : roleDataList) {
+            Assertions.assertEquals(List.of(roleData), Query.of(RoleData.class).eq(RoleData.A, 0).eq(RoleData.A2, roleData.getA2()).list());
+        }
+    }
+
+    private static List<Long> ids(List<RoleData> roleDataList) {
+        return roleDataList.stream().map(RoleData::getId).sorted().collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,841 @@
+package quan.data.rocksdb;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.BsonValueCodecProvider;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodecProvider;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.IterableCodecProvider;
+import org.bson.codecs.MapCodecProvider;
+import org.bson.codecs.ValueCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatchWithIndex;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import quan.data.Data;
+import quan.data.DataAccessor;
+import quan.data.DataRegistry;
+import quan.data.EncodedPatch;
+import quan.data.EntityCodecProvider;
+import quan.data.Index;
+import quan.data.Transaction;
+import quan.data.binary.BinaryCodecs;
+import quan.data.util.ClassUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于RocksDB的嵌入式数据存取器<br/>
+ * 每个数据类一个列族，键是编码后的主键，值是{@link EntityCodecProvider}编码的完整BSON文档，
+ * 每个普通索引和唯一索引一个索引列族，键是编码后的索引字段值加主键，值是主键，文本索引不支持<br/>
+ * 每次{@link #write(Set, Set, Map)}的所有数据和索引修改放在同一个{@link WriteBatchWithIndex}里原子写入，
+ * 唯一索引冲突时整批都不会写入<br/>
+ * 涉及唯一索引的事务在内存提交之前由{@link #validate(Set, Set, Set)}检查，冲突时事务失败，异常抛给开启事务的调用者，
+ * 检查通过后持有唯一索引锁到写入完成，避免检查和写入之间被其他涉及唯一索引的事务抢先，查询不受影响<br/>
+ * 条件查询优先使用前缀字段匹配最多的索引，没有可用的索引时遍历整个列族
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class RocksDatabase implements DataAccessor, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RocksDatabase.class);
+
+    /**
+     * 索引列族名的分隔符，索引列族名为[表名#索引名]
+     */
+    public static final String INDEX_SEPARATOR = "#";
+
+    private static final byte NULL = 0, BOOLEAN = 1, LONG = 2, DOUBLE = 3, STRING = 4, OTHER = 5;
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    /**
+     * 编码查询条件
+     */
+    private static final CodecRegistry REGISTRY = CodecRegistries.fromProviders(EntityCodecProvider.DEFAULT_PROVIDER, new ValueCodecProvider(),
+            new BsonValueCodecProvider(), new DocumentCodecProvider(), new IterableCodecProvider(), new MapCodecProvider());
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private final String path;
+
+    private final DBOptions options;
+
+    private final ColumnFamilyOptions columnFamilyOptions;
+
+    private final WriteOptions writeOptions = new WriteOptions();
+
+    private final ReadOptions readOptions = new ReadOptions();
+
+    private RocksDB db;
+
+    private final List<ColumnFamilyHandle> handles = new ArrayList<>();
+
+    /**
+     * 数据类:列族
+     */
+    private final Map<Class<?>, Family> families = new HashMap<>();
+
+    /**
+     * 写入时要读取旧值维护索引，所有写入串行执行，关闭时不能有查询
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 涉及唯一索引的写入从检查到写入完成一直持有，只有这些写入之间互斥
+     */
+    private final ReentrantLock uniqueLock = new ReentrantLock();
+
+    private boolean closed;
+
+    /**
+     * @param path            数据库目录，不存在时会创建
+     * @param dataPackageName 数据类所在的包名
+     */
+    public RocksDatabase(String path, String dataPackageName) {
+        this(path, dataPackageName, new DBOptions(), new ColumnFamilyOptions());
+    }
+
+    /**
+     * @param options             数据库选项，关闭时会一起关闭
+     * @param columnFamilyOptions 所有列族共用的选项，关闭时会一起关闭
+     */
+    public RocksDatabase(String path, String dataPackageName, DBOptions options, ColumnFamilyOptions columnFamilyOptions) {
+        this.path = Objects.requireNonNull(path, "参数[path]不能为空");
+        Objects.requireNonNull(dataPackageName, "参数[dataPackageName]不能为空");
+        this.options = options.setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+        this.columnFamilyOptions = columnFamilyOptions;
+
+        //优先使用生成的注册表，没有时才扫描类路径
+        Map<Class<? extends Data<?>>, String> dataNames = new HashMap<>();
+        DataRegistry registry = DataRegistry.load(dataPackageName);
+        if (registry != null) {
+            EntityCodecProvider.DEFAULT_PROVIDER.register(registry);
+            BinaryCodecs.register(registry);
+            dataNames.putAll(registry.getDataNames());
+        } else {
+            for (Class<?> clazz : ClassUtils.loadClasses(dataPackageName, Data.class)) {
+                dataNames.put((Class<? extends Data<?>>) clazz, Data.name((Class<? extends Data<?>>) clazz));
+            }
+        }
+
+        try {
+            Set<String> existingNames = listColumnFamilies(path);
+
+            Set<String> names = new LinkedHashSet<>();
+            names.add(new String(RocksDB.DEFAULT_COLUMN_FAMILY, StandardCharsets.UTF_8));
+            names.addAll(existingNames);
+            dataNames.forEach((clazz, name) -> {
+                if (name == null) {
+                    logger.error("{}._NAME未定义", clazz.getName());
+                    return;
+                }
+                names.add(name);
+                for (Index index : indexes(clazz)) {
+                    names.add(name + INDEX_SEPARATOR + index.name());
+                }
+            });
+
+            List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+            for (String name : names) {
+                descriptors.add(new ColumnFamilyDescriptor(name.getBytes(StandardCharsets.UTF_8), columnFamilyOptions));
+            }
+
+            db = RocksDB.open(options, path, descriptors, handles);
+
+            Map<String, ColumnFamilyHandle> namedHandles = new HashMap<>();
+            for (ColumnFamilyHandle handle : handles) {
+                namedHandles.put(new String(handle.getName(), StandardCharsets.UTF_8), handle);
+            }
+
+            dataNames.forEach((clazz, name) -> {
+                if (name != null) {
+                    initFamily(clazz, name, namedHandles, existingNames);
+                }
+            });
+        } catch (RocksDBException e) {
+            close();
+            throw new IllegalStateException("打开RocksDB[" + path + "]失败", e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static Set<String> listColumnFamilies(String path) {
+        Set<String> names = new HashSet<>();
+        try (Options options = new Options()) {
+            for (byte[] name : RocksDB.listColumnFamilies(options, path)) {
+                names.add(new String(name, StandardCharsets.UTF_8));
+            }
+        } catch (RocksDBException e) {
+            //数据库还不存在
+        }
+        return names;
+    }
+
+    /**
+     * 普通索引和唯一索引
+     */
+    private static List<Index> indexes(Class<?> clazz) {
+        List<Index> indexes = new ArrayList<>();
+        for (Index index : clazz.getAnnotationsByType(Index.class)) {
+            if (index.type() == Index.Type.TEXT) {
+                logger.warn("{}的文本索引[{}]不支持", clazz.getName(), index.name());
+            } else {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    private void initFamily(Class<?> clazz, String name, Map<String, ColumnFamilyHandle> namedHandles, Set<String> existingNames) {
+        Family family = new Family(name, namedHandles.get(name));
+        families.put(clazz, family);
+
+        Set<String> indexNames = new HashSet<>();
+        for (Index index : indexes(clazz)) {
+            String indexName = name + INDEX_SEPARATOR + index.name();
+            indexNames.add(indexName);
+            IndexFamily indexFamily = new IndexFamily(index, namedHandles.get(indexName));
+            family.indexes.add(indexFamily);
+
+            //新建的索引要用已有的数据建立
+            if (!existingNames.contains(indexName)) {
+                buildIndex(family, indexFamily);
+            }
+        }
+
+        //删除已经不存在的索引
+        for (String existingName : existingNames) {
+            if (existingName.startsWith(name + INDEX_SEPARATOR) && !indexNames.contains(existingName)) {
+                ColumnFamilyHandle handle = namedHandles.get(existingName);
+                try {
+                    db.dropColumnFamily(handle);
+                    handles.remove(handle);
+                    handle.close();
+                    logger.info("删除索引[{}]", existingName);
+                } catch (RocksDBException e) {
+                    throw new IllegalStateException("删除索引[" + existingName + "]失败", e);
+                }
+            }
+        }
+    }
+
+    private void buildIndex(Family family, IndexFamily indexFamily) {
+        try (WriteBatchWithIndex batch = new WriteBatchWithIndex(true);
+             RocksIterator iterator = db.newIterator(family.handle, readOptions)) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                byte[] key = iterator.key();
+                byte[] prefix = indexFamily.prefix(new RawBsonDocument(iterator.value()));
+                batch.put(indexFamily.handle, concat(prefix, key), key);
+            }
+            iterator.status();
+
+            if (indexFamily.index.type() == Index.Type.UNIQUE) {
+                checkUnique(batch, indexFamily);
+            }
+
+            db.write(writeOptions, batch);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("建立索引[" + family.name + INDEX_SEPARATOR + indexFamily.index.name() + "]失败", e);
+        }
+    }
+
+    /**
+     * 写入时是否同步刷盘，默认只写预写日志，进程崩溃不会丢数据，操作系统崩溃可能会丢失最近的写入
+     */
+    public void setSync(boolean sync) {
+        writeOptions.setSync(sync);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public RocksDB getRocksDB() {
+        return db;
+    }
+
+    private Family family(Class<?> clazz) {
+        Family family = families.get(clazz);
+        if (family == null) {
+            throw new IllegalArgumentException("数据类[" + clazz.getName() + "]没有对应的列族");
+        }
+        return family;
+    }
+
+    @Override
+    public <D extends Data<I>, I> D find(Class<D> clazz, I _id) {
+        Objects.requireNonNull(_id, "参数[_id]不能为空");
+        lock.readLock().lock();
+        try {
+            checkClosed();
+            byte[] value = db.get(family(clazz).handle, readOptions, key(_id));
+            return value == null ? null : decode(clazz, value);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 条件是字段名:字段值，字段名可以是以点分隔的路径，主键的字段名是_id
+     */
+    @Override
+    public <D extends Data<?>> List<D> find(Class<D> clazz, Map<String, Object> conditions) {
+        Family family = family(clazz);
+        BsonDocument filter = conditions == null || conditions.isEmpty() ? new BsonDocument() : new Document(conditions).toBsonDocument(BsonDocument.class, REGISTRY);
+        List<D> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            checkClosed();
+            BsonValue id = filter.get(Data._ID);
+            if (id != null) {
+                byte[] value = db.get(family.handle, readOptions, key(id));
+                if (value != null && match(new RawBsonDocument(value), filter)) {
+                    result.add(decode(clazz, value));
+                }
+                return result;
+            }
+
+            IndexFamily indexFamily = null;
+            int indexFields = 0;
+            for (IndexFamily f : family.indexes) {
+                int n = f.matchFields(filter);
+                if (n > indexFields) {
+                    indexFamily = f;
+                    indexFields = n;
+                }
+            }
+
+            if (indexFamily == null) {
+                try (RocksIterator iterator = db.newIterator(family.handle, readOptions)) {
+                    for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                        byte[] value = iterator.value();
+                        if (match(new RawBsonDocument(value), filter)) {
+                            result.add(decode(clazz, value));
+                        }
+                    }
+                    iterator.status();
+                }
+                return result;
+            }
+
+            byte[] prefix = indexFamily.prefix(filter, indexFields);
+            try (RocksIterator iterator = db.newIterator(indexFamily.handle, readOptions)) {
+                for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+                    byte[] value = db.get(family.handle, readOptions, iterator.value());
+                    if (value != null && match(new RawBsonDocument(value), filter)) {
+                        result.add(decode(clazz, value));
+                    }
+                }
+                iterator.status();
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    private <D extends Data<?>> D decode(Class<D> clazz, byte[] value) {
+        D data;
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(value))) {
+            data = EntityCodecProvider.DEFAULT_REGISTRY.get(clazz).decode(reader, DECODER_CONTEXT);
+        }
+        Data._setAccessor(data, this);
+        return data;
+    }
+
+    /**
+     * 在提交修改的线程上只编码修改过的字段，写入时合并到已经保存的文档里
+     *
+     * @see EncodedPatch
+     */
+    @Override
+    public Map<String, Object> getPatch(Data<?> data) {
+        return EncodedPatch.of(data, EntityCodecProvider.DEFAULT_REGISTRY);
+    }
+
+    private static RawBsonDocument encode(Data<?> data) {
+        Codec codec = EntityCodecProvider.DEFAULT_REGISTRY.get(data.getClass());
+        return new RawBsonDocument(data, codec);
+    }
+
+    /**
+     * 有唯一索引时在内存提交之前预先生成写入批次检查唯一约束，检查只持有读锁，
+     * 检查通过后持有唯一索引锁直到{@link #write(Set, Set, Map)}写入完成，事务在写入之前失败时在事务结束时释放
+     */
+    @Override
+    public void validate(Set<Data<?>> inserts, Set<Data<?>> deletes, Set<Data<?>> updates) {
+        if (!hasUniqueIndex(inserts) && !hasUniqueIndex(updates)) {
+            return;
+        }
+
+        uniqueLock.lock();
+        lock.readLock().lock();
+        try {
+            checkClosed();
+            Map<Data<?>, Map<String, Object>> documents = new HashMap<>();
+            for (Data<?> data : updates) {
+                documents.put(data, null);
+            }
+            batch(inserts, deletes, documents).close();
+        } catch (RuntimeException e) {
+            uniqueLock.unlock();
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Transaction.onFinished(this::unlockUnique);
+    }
+
+    private void unlockUnique() {
+        while (uniqueLock.isHeldByCurrentThread()) {
+            uniqueLock.unlock();
+        }
+    }
+
+    private boolean hasUniqueIndex(Set<Data<?>> dataSet) {
+        if (dataSet == null) {
+            return false;
+        }
+        for (Data<?> data : dataSet) {
+            for (IndexFamily indexFamily : family(data.getClass()).indexes) {
+                if (indexFamily.index.type() == Index.Type.UNIQUE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void write(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+        //事务外的写入也要和已经检查通过还没写入的事务互斥
+        boolean unique = hasUniqueIndex(inserts) || updates != null && hasUniqueIndex(updates.keySet());
+        if (unique) {
+            uniqueLock.lock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkClosed();
+            try (WriteBatchWithIndex batch = batch(inserts, deletes, updates)) {
+                db.write(writeOptions, batch);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.writeLock().unlock();
+            unlockUnique();
+        }
+    }
+
+    /**
+     * 生成写入批次并检查唯一索引，更新数据没有编码好的更新补丁时直接编码当前字段值
+     */
+    private WriteBatchWithIndex batch(Set<Data<?>> inserts, Set<Data<?>> deletes, Map<Data<?>, Map<String, Object>> updates) {
+        WriteBatchWithIndex batch = new WriteBatchWithIndex(true);
+        try {
+            List<Object[]> uniqueChecks = new ArrayList<>();
+
+            if (inserts != null) {
+                for (Data<?> data : inserts) {
+                    put(batch, family(data.getClass()), key(data.id()), encode(data), uniqueChecks);
+                }
+            }
+
+            if (updates != null) {
+                for (Data<?> data : updates.keySet()) {
+                    Map<String, Object> patch = updates.get(data);
+                    Family family = family(data.getClass());
+                    byte[] key = key(data.id());
+                    RawBsonDocument document = patch instanceof EncodedPatch ? merge(batch, family, key, (EncodedPatch) patch, data) : encode(data);
+                    put(batch, family, key, document, uniqueChecks);
+                }
+            }
+
+            if (deletes != null) {
+                for (Data<?> data : deletes) {
+                    put(batch, family(data.getClass()), key(data.id()), null, uniqueChecks);
+                }
+            }
+
+            //全部修改之后再检查唯一索引，同一批里交换索引字段值不算冲突
+            for (Object[] uniqueCheck : uniqueChecks) {
+                checkUnique(batch, (IndexFamily) uniqueCheck[0], (byte[]) uniqueCheck[1], (byte[]) uniqueCheck[2]);
+            }
+
+            return batch;
+        } catch (RocksDBException e) {
+            batch.close();
+            throw new IllegalStateException(e);
+        } catch (RuntimeException e) {
+            batch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 把更新补丁修改过的字段合并到已经保存的文档里，还没有保存过时直接编码当前字段值
+     */
+    private RawBsonDocument merge(WriteBatchWithIndex batch, Family family, byte[] key, EncodedPatch patch, Data<?> data) throws RocksDBException {
+        byte[] value = batch.getFromBatchAndDB(db, family.handle, readOptions, key);
+        if (value == null) {
+            return encode(data);
+        }
+
+        BsonDocument document = new RawBsonDocument(value).decode(BSON_DOCUMENT_CODEC);
+        document.putAll(patch.getSet());
+        return new RawBsonDocument(document, BSON_DOCUMENT_CODEC);
+    }
+
+    /**
+     * 写入或者删除一条数据，并维护索引
+     *
+     * @param document 为空时删除
+     */
+    private void put(WriteBatchWithIndex batch, Family family, byte[] key, RawBsonDocument document, List<Object[]> uniqueChecks) throws RocksDBException {
+        RawBsonDocument oldDocument = null;
+        if (!family.indexes.isEmpty()) {
+            byte[] oldValue = batch.getFromBatchAndDB(db, family.handle, readOptions, key);
+            oldDocument = oldValue == null ? null : new RawBsonDocument(oldValue);
+        }
+
+        for (IndexFamily indexFamily : family.indexes) {
+            byte[] oldPrefix = oldDocument == null ? null : indexFamily.prefix(oldDocument);
+            byte[] newPrefix = document == null ? null : indexFamily.prefix(document);
+            if (oldPrefix != null && newPrefix != null && Arrays.equals(oldPrefix, newPrefix)) {
+                continue;
+            }
+            if (oldPrefix != null) {
+                batch.delete(indexFamily.handle, concat(oldPrefix, key));
+            }
+            if (newPrefix != null) {
+                batch.put(indexFamily.handle, concat(newPrefix, key), key);
+                if (indexFamily.index.type() == Index.Type.UNIQUE) {
+                    uniqueChecks.add(new Object[]{indexFamily, newPrefix, key});
+                }
+            }
+        }
+
+        if (document == null) {
+            batch.delete(family.handle, key);
+        } else {
+            byte[] value = new byte[document.getByteBuffer().remaining()];
+            document.getByteBuffer().get(value);
+            batch.put(family.handle, key, value);
+        }
+    }
+
+    /**
+     * 检查唯一索引中同一个索引值是否只对应一个主键
+     */
+    private void checkUnique(WriteBatchWithIndex batch, IndexFamily indexFamily, byte[] prefix, byte[] key) {
+        try (RocksIterator iterator = batch.newIteratorWithBase(indexFamily.handle, db.newIterator(indexFamily.handle, readOptions))) {
+            for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+                if (!Arrays.equals(iterator.value(), key)) {
+                    throw new IllegalStateException("唯一索引[" + indexFamily.index.name() + "]的值重复");
+                }
+            }
+        }
+    }
+
+    /**
+     * 检查整个唯一索引，索引键是按索引值排序的，相同索引值的键是连续的
+     */
+    private void checkUnique(WriteBatchWithIndex batch, IndexFamily indexFamily) {
+        try (RocksIterator iterator = batch.newIteratorWithBase(indexFamily.handle, db.newIterator(indexFamily.handle, readOptions))) {
+            byte[] lastPrefix = null;
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                byte[] indexKey = iterator.key();
+                byte[] prefix = Arrays.copyOf(indexKey, indexKey.length - iterator.value().length);
+                if (Arrays.equals(prefix, lastPrefix)) {
+                    throw new IllegalStateException("唯一索引[" + indexFamily.index.name() + "]的值重复");
+                }
+                lastPrefix = prefix;
+            }
+        }
+    }
+
+    private static boolean match(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+            BsonValue value = value(document, condition.getKey());
+            if (!equals(value, condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(BsonValue value1, BsonValue value2) {
+        if (value1.isNumber() && value2.isNumber()) {
+            if (value1.isDouble() || value2.isDouble()) {
+                return value1.asNumber().doubleValue() == value2.asNumber().doubleValue();
+            }
+            return value1.asNumber().longValue() == value2.asNumber().longValue();
+        }
+        return value1.equals(value2);
+    }
+
+    /**
+     * 字段值，字段名可以是以点分隔的路径，不存在时返回{@link BsonNull#VALUE}
+     */
+    private static BsonValue value(BsonDocument document, String field) {
+        BsonValue value = document;
+        for (String name : field.split("\\.")) {
+            value = value instanceof BsonDocument ? ((BsonDocument) value).get(name) : null;
+        }
+        return value == null ? BsonNull.VALUE : value;
+    }
+
+    /**
+     * 编码主键，和索引字段值的编码方式相同
+     */
+    private static byte[] key(Object id) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(16);
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            writeLong(output, ((Number) id).longValue());
+        } else if (id instanceof Double || id instanceof Float) {
+            writeDouble(output, ((Number) id).doubleValue());
+        } else if (id instanceof String) {
+            writeString(output, (String) id);
+        } else if (id instanceof Boolean) {
+            output.write(BOOLEAN);
+            output.write((Boolean) id ? 1 : 0);
+        } else {
+            throw new IllegalArgumentException("不支持的主键类型:" + id.getClass().getName());
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] key(BsonValue id) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(16);
+        write(output, id);
+        return output.toByteArray();
+    }
+
+    /**
+     * 编码一个值，整数统一编码成long，整数值的浮点数也编码成long，编码之后是自定界的，可以直接拼接
+     */
+    private static void write(ByteArrayOutputStream output, BsonValue value) {
+        BsonType type = value.getBsonType();
+        switch (type) {
+            case NULL:
+            case UNDEFINED:
+                output.write(NULL);
+                break;
+            case BOOLEAN:
+                output.write(BOOLEAN);
+                output.write(value.asBoolean().getValue() ? 1 : 0);
+                break;
+            case INT32:
+            case INT64:
+                writeLong(output, value.asNumber().longValue());
+                break;
+            case DOUBLE:
+                writeDouble(output, value.asDouble().getValue());
+                break;
+            case STRING:
+                writeString(output, value.asString().getValue());
+                break;
+            default:
+                BasicOutputBuffer buffer = new BasicOutputBuffer(64);
+                try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+                    BSON_DOCUMENT_CODEC.encode(writer, new BsonDocument("", value), ENCODER_CONTEXT);
+                }
+                output.write(OTHER);
+                writeInt(output, buffer.getPosition());
+                output.write(buffer.getInternalBuffer(), 0, buffer.getPosition());
+        }
+    }
+
+    /**
+     * 翻转符号位之后按大端序写入，字节序和数值大小顺序一致
+     */
+    private static void writeLong(ByteArrayOutputStream output, long value) {
+        output.write(LONG);
+        value ^= Long.MIN_VALUE;
+        for (int i = 56; i >= 0; i -= 8) {
+            output.write((int) (value >>> i));
+        }
+    }
+
+    private static void writeDouble(ByteArrayOutputStream output, double value) {
+        if (value == (long) value && value != 0x1p63) {
+            writeLong(output, (long) value);
+            return;
+        }
+        output.write(DOUBLE);
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 56; i >= 0; i -= 8) {
+            output.write((int) (bits >>> i));
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream output, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.write(STRING);
+        writeInt(output, bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        for (int i = 24; i >= 0; i -= 8) {
+            output.write(value >>> i);
+        }
+    }
+
+    private static byte[] concat(byte[] bytes1, byte[] bytes2) {
+        byte[] bytes = Arrays.copyOf(bytes1, bytes1.length + bytes2.length);
+        System.arraycopy(bytes2, 0, bytes, bytes1.length, bytes2.length);
+        return bytes;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        return bytes.length >= prefix.length && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw new IllegalStateException("数据库已经关闭了");
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (ColumnFamilyHandle handle : handles) {
+                handle.close();
+            }
+            handles.clear();
+            if (db != null) {
+                db.close();
+            }
+            readOptions.close();
+            writeOptions.close();
+            columnFamilyOptions.close();
+            options.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 数据类对应的列族
+     */
+    private static class Family {
+
+        private final String name;
+
+        private final ColumnFamilyHandle handle;
+
+        private final List<IndexFamily> indexes = new ArrayList<>();
+
+        Family(String name, ColumnFamilyHandle handle) {
+            this.name = name;
+            this.handle = handle;
+        }
+
+    }
+
+    /**
+     * 索引列族
+     */
+    private static class IndexFamily {
+
+        private final Index index;
+
+        private final ColumnFamilyHandle handle;
+
+        IndexFamily(Index index, ColumnFamilyHandle handle) {
+            this.index = index;
+            this.handle = handle;
+        }
+
+        /**
+         * 文档的所有索引字段值编码之后的前缀
+         */
+        byte[] prefix(BsonDocument document) {
+            return prefix(document, index.fields().length);
+        }
+
+        /**
+         * 前几个索引字段值编码之后的前缀
+         */
+        byte[] prefix(BsonDocument document, int fields) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(32);
+            for (int i = 0; i < fields; i++) {
+                write(output, value(document, index.fields()[i]));
+            }
+            return output.toByteArray();
+        }
+
+        /**
+         * 查询条件包含了几个前缀索引字段
+         */
+        int matchFields(BsonDocument filter) {
+            int n = 0;
+            for (String field : index.fields()) {
+                if (!filter.containsKey(field)) {
+                    break;
+                }
+                n++;
+            }
+            return n;
+        }
+
+    }
+
+}
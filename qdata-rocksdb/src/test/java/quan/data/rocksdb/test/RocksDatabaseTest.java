@@ -0,0 +1,104 @@
+package quan.data.rocksdb.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import quan.data.Transaction;
+import quan.data.rocksdb.RocksDatabase;
+import quan.data.rocksdb.test.player.AccountData;
+import quan.data.rocksdb.test.player.PlayerData;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 基于RocksDB的数据存取器测试
+ */
+public class RocksDatabaseTest {
+
+    private static final String PACKAGE_NAME = "quan.data.rocksdb.test";
+
+    @TempDir
+    Path directory;
+
+    private static List<Long> ids(List<PlayerData> playerDataList) {
+        return playerDataList.stream().map(PlayerData::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testWriteAndFind() {
+        try (RocksDatabase database = new RocksDatabase(directory.toString(), PACKAGE_NAME)) {
+            Transaction.run(() -> {
+                for (long i = 1; i <= 10; i++) {
+                    new PlayerData(i).setName("player" + i).setLevel((int) (i % 3)).setVip(i % 2 == 1).setGuild(i % 5 == 0 ? 1 : 0).insert(database);
+                }
+            });
+
+            PlayerData playerData = database.find(PlayerData.class, 1L);
+            Assertions.assertEquals("player1", playerData.getName());
+
+            //索引字段修改之后索引也要更新
+            Transaction.run(() -> playerData.setLevel(2).setName("player1-1"));
+            Transaction.run(() -> database.find(PlayerData.class, 2L).delete());
+            Assertions.assertNull(database.find(PlayerData.class, 2L));
+
+            Assertions.assertEquals(List.of(4L, 7L, 10L), ids(database.find(PlayerData.class, Map.of(PlayerData.LEVEL, 1))));
+            Assertions.assertEquals(List.of(1L, 5L, 8L), ids(database.find(PlayerData.class, Map.of(PlayerData.LEVEL, 2))));
+            Assertions.assertEquals(List.of(1L, 5L), ids(database.find(PlayerData.class, Map.of(PlayerData.LEVEL, 2, PlayerData.VIP, true))));
+            Assertions.assertEquals(List.of(5L, 10L), ids(database.find(PlayerData.class, Map.of(PlayerData.GUILD, 1))));
+            Assertions.assertEquals(List.of(3L), ids(database.find(PlayerData.class, Map.of(PlayerData.NAME, "player3"))));
+            Assertions.assertEquals(List.of(1L), ids(database.find(PlayerData.class, Map.of("_id", 1L, PlayerData.LEVEL, 2))));
+            Assertions.assertEquals(9, database.find(PlayerData.class, Map.of()).size());
+        }
+
+        try (RocksDatabase database = new RocksDatabase(directory.toString(), PACKAGE_NAME)) {
+            Assertions.assertEquals("player1-1", database.find(PlayerData.class, 1L).getName());
+            Assertions.assertEquals(List.of(1L, 5L, 8L), ids(database.find(PlayerData.class, Map.of(PlayerData.LEVEL, 2))));
+        }
+    }
+
+    @Test
+    public void testUniqueIndex() {
+        try (RocksDatabase database = new RocksDatabase(directory.toString(), PACKAGE_NAME)) {
+            Transaction.run(() -> {
+                new AccountData(1L).setName("a").insert(database);
+                new AccountData(2L).setName("b").insert(database);
+            });
+
+            //唯一索引冲突时在内存提交之前事务就失败了，内存和数据库里的数据都不会修改
+            AccountData accountData2 = database.find(AccountData.class, 2L);
+            Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> {
+                new AccountData(3L).setName("c").insert(database);
+                accountData2.setName("a");
+            }));
+            Assertions.assertEquals("b", accountData2.getName());
+            Assertions.assertNull(database.find(AccountData.class, 3L));
+            Assertions.assertEquals("b", database.find(AccountData.class, 2L).getName());
+
+            //同一批里交换索引字段值不算冲突
+            Transaction.run(() -> {
+                database.find(AccountData.class, 1L).setName("b");
+                database.find(AccountData.class, 2L).setName("a");
+            });
+            Assertions.assertEquals(2L, database.find(AccountData.class, Map.of(AccountData.NAME, "a")).get(0).getId());
+
+            //写入完成后会释放唯一索引锁，后面的写入不受影响
+            Transaction.run(() -> new AccountData(3L).setName("c").insert(database));
+            Assertions.assertEquals("c", database.find(AccountData.class, 3L).getName());
+        }
+    }
+
+    @Test
+    public void testClose() {
+        RocksDatabase database = new RocksDatabase(directory.toString(), PACKAGE_NAME);
+        database.close();
+        database.close();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> database.find(PlayerData.class, 1L));
+        Assertions.assertThrows(IllegalStateException.class, () -> database.find(PlayerData.class, Map.of()));
+        Assertions.assertThrows(IllegalStateException.class, () -> Transaction.run(() -> new AccountData(1L).setName("a").insert(database)));
+    }
+
+}